@@ -1,32 +1,63 @@
 package edu.ntnu.stud.entity;
 
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a clock and handles all system time functions.
+ * Listeners added to the clock are notified every time the time is updated.
+ *
+ * <p>The clock never moves backwards, so a time before the current time is rejected. The clock
+ * only passes midnight when it is moved on to the next day with {@link #advanceDay(LocalTime)},
+ * which increases the day of the clock. This lets departures that are delayed past midnight be
+ * compared with the time of the clock correctly, while a mistyped time does not end the day.
  */
 public class Clock {
+  public static final int MINUTES_PER_DAY = 24 * 60;
+
   private LocalTime currentTime;
+  private int day;
+  private final List<ClockListener> listeners;
 
   /**
    * Default constructor for the clock, sets time to 00:00.
    */
   public Clock() {
+    listeners = new ArrayList<>();
     setCurrentTime(LocalTime.of(0, 0));
   }
 
   /**
-   * Sets the current time to provided time.
+   * Sets the current time of the current day to provided time and notifies all listeners.
+   * A time before the current time is not accepted, see {@link #advanceDay(LocalTime)}.
    *
    * @param currentTime Time to update the system with.
+   * @return true if the time was set, false if it is null or before the current time.
    */
-  public void setCurrentTime(LocalTime currentTime) {
-    // TODO: Implement validation that data cannot be sooner than current time
+  public boolean setCurrentTime(LocalTime currentTime) {
+    if (currentTime == null
+        || (this.currentTime != null && currentTime.isBefore(this.currentTime))) {
+      return false;
+    }
+
+    moveTo(day, currentTime);
+    return true;
+  }
+
+  /**
+   * Moves the clock past midnight to a time on the next day and notifies all listeners.
+   *
+   * @param currentTime Time of the next day to update the system with.
+   * @return true if the clock was moved, false if the time is null.
+   */
+  public boolean advanceDay(LocalTime currentTime) {
     if (currentTime == null) {
-      return;
+      return false;
     }
 
-    this.currentTime = currentTime;
+    moveTo(day + 1, currentTime);
+    return true;
   }
 
   /**
@@ -37,4 +68,60 @@ public class Clock {
   public LocalTime getCurrentTime() {
     return this.currentTime;
   }
+
+  /**
+   * Get the number of times the clock has passed midnight.
+   *
+   * @return Current day, starting at 0.
+   */
+  public int getDay() {
+    return this.day;
+  }
+
+  /**
+   * Get the number of minutes since midnight of the first day of the clock.
+   *
+   * @return Current epoch minute.
+   */
+  public long getEpochMinute() {
+    if (currentTime == null) {
+      return 0;
+    }
+    return (long) day * MINUTES_PER_DAY + TimeOfDay.toMinute(currentTime);
+  }
+
+  /**
+   * Adds a listener that is notified every time the clock is updated.
+   *
+   * @param listener Listener to add.
+   * @return true if the listener was added, false if not.
+   */
+  public boolean addListener(ClockListener listener) {
+    if (listener == null || listeners.contains(listener)) {
+      return false;
+    }
+
+    return listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener from the clock.
+   *
+   * @param listener Listener to remove.
+   * @return true if the listener was removed, false if not.
+   */
+  public boolean removeListener(ClockListener listener) {
+    return listeners.remove(listener);
+  }
+
+  private void moveTo(int newDay, LocalTime newTime) {
+    long previousMinute = getEpochMinute();
+    day = newDay;
+    currentTime = newTime;
+
+    long currentMinute = getEpochMinute();
+    for (ClockListener listener : listeners) {
+      listener.onTimeChanged(previousMinute, currentMinute);
+    }
+  }
 }
@@ -0,0 +1,19 @@
+package edu.ntnu.stud.entity;
+
+/**
+ * Listener that gets notified every time the {@link Clock} is set to a new time.
+ * This is used by the register so that the clock drives the expiry of old departures.
+ *
+ * <p>Times are given as epoch minutes, which is the number of minutes since midnight of the
+ * first day of the clock. This makes the times keep increasing when the clock passes midnight.
+ */
+public interface ClockListener {
+
+  /**
+   * Called after the clock has been updated.
+   *
+   * @param previousMinute Epoch minute the clock had before the update.
+   * @param currentMinute New epoch minute of the clock.
+   */
+  void onTimeChanged(long previousMinute, long currentMinute);
+}
@@ -0,0 +1,178 @@
+package edu.ntnu.stud.entity;
+
+import java.time.LocalTime;
+
+/**
+ * A departure that repeats at a fixed interval, like "J8 to Trondheim every 15 minutes from
+ * 06:00 to 22:00". The pattern is stored once, and each departure in it, called an instance, is
+ * only created when it is needed.
+ *
+ * <p>Instances are numbered from 0 in order of departure time, and their trainIds are made of the
+ * prefix of the pattern and the departure time, so "J8" gives "J8-0600", "J8-0615" and so on.
+ * The pattern is immutable.
+ */
+public final class DeparturePattern {
+  private final String trainIdPrefix;
+  private final String destination;
+  private final String line;
+  private final int firstMinute;
+  private final int intervalMinutes;
+  private final int instanceCount;
+
+  /**
+   * Creates a new pattern. A last time before the first time gives a single departure, and
+   * intervals shorter than a minute are set to a minute. Missing texts are set in the same way as
+   * for a {@link TrainDeparture}.
+   *
+   * @param trainIdPrefix Prefix of the trainIds of the instances.
+   * @param destination Destination of the instances.
+   * @param line Line of the instances.
+   * @param first Departure time of the first instance.
+   * @param last Latest departure time of an instance.
+   * @param intervalMinutes Minutes between two instances.
+   */
+  public DeparturePattern(String trainIdPrefix, String destination, String line,
+                          LocalTime first, LocalTime last, int intervalMinutes) {
+    this.trainIdPrefix = trainIdPrefix != null && !trainIdPrefix.isEmpty()
+        ? trainIdPrefix : "INVALID ID";
+    this.destination = destination != null && !destination.isEmpty()
+        ? destination : "INVALID DESTINATION";
+    this.line = line != null && !line.isEmpty() ? line : "INVALID LINE";
+    this.firstMinute = TimeOfDay.toMinute(first);
+    this.intervalMinutes = Math.max(1, intervalMinutes);
+    int lastMinute = Math.max(firstMinute, TimeOfDay.toMinute(last));
+    this.instanceCount = (lastMinute - firstMinute) / this.intervalMinutes + 1;
+  }
+
+  /**
+   * Gets the prefix of the trainIds of the instances.
+   *
+   * @return TrainId prefix.
+   */
+  public String getTrainIdPrefix() {
+    return trainIdPrefix;
+  }
+
+  /**
+   * Gets the destination of the instances.
+   *
+   * @return Destination.
+   */
+  public String getDestination() {
+    return destination;
+  }
+
+  /**
+   * Gets the line of the instances.
+   *
+   * @return Line.
+   */
+  public String getLine() {
+    return line;
+  }
+
+  /**
+   * Gets the minutes between two instances.
+   *
+   * @return Interval in minutes.
+   */
+  public int getIntervalMinutes() {
+    return intervalMinutes;
+  }
+
+  /**
+   * Gets the number of instances in the pattern.
+   *
+   * @return Number of instances.
+   */
+  public int getInstanceCount() {
+    return instanceCount;
+  }
+
+  /**
+   * Gets the departure time of an instance in minutes since midnight.
+   *
+   * @param index Number of the instance.
+   * @return Departure minute, or -1 if there is no such instance.
+   */
+  public int getDepartureMinute(int index) {
+    if (index < 0 || index >= instanceCount) {
+      return -1;
+    }
+    return firstMinute + index * intervalMinutes;
+  }
+
+  /**
+   * Gets the number of the first instance that departs at or after a minute.
+   *
+   * @param minute Minutes since midnight.
+   * @return Number of the instance, equal to the instance count if all depart before.
+   */
+  public int firstIndexFrom(int minute) {
+    if (minute <= firstMinute) {
+      return 0;
+    }
+    int index = (minute - firstMinute + intervalMinutes - 1) / intervalMinutes;
+    return Math.min(index, instanceCount);
+  }
+
+  /**
+   * Gets the trainId of an instance.
+   *
+   * @param index Number of the instance.
+   * @return TrainId, or null if there is no such instance.
+   */
+  public String getTrainId(int index) {
+    int minute = getDepartureMinute(index);
+    if (minute < 0) {
+      return null;
+    }
+    int time = minute / 60 * 100 + minute % 60;
+    return trainIdPrefix + "-" + (time < 1000 ? "0" : "") + (time < 100 ? "0" : "")
+        + (time < 10 ? "0" : "") + time;
+  }
+
+  /**
+   * Finds the instance with the given trainId.
+   *
+   * @param trainId TrainId to look for.
+   * @return Number of the instance, or -1 if the trainId is not an instance of this pattern.
+   */
+  public int indexOf(String trainId) {
+    int length = trainIdPrefix.length();
+    if (trainId == null || trainId.length() != length + 5 || !trainId.startsWith(trainIdPrefix)
+        || trainId.charAt(length) != '-') {
+      return -1;
+    }
+
+    int time = 0;
+    for (int i = length + 1; i < trainId.length(); i++) {
+      char digit = trainId.charAt(i);
+      if (digit < '0' || digit > '9') {
+        return -1;
+      }
+      time = time * 10 + digit - '0';
+    }
+    int minute = time / 100 * 60 + time % 100;
+    if (time % 100 >= 60 || minute < firstMinute || (minute - firstMinute) % intervalMinutes != 0) {
+      return -1;
+    }
+    int index = (minute - firstMinute) / intervalMinutes;
+    return index < instanceCount ? index : -1;
+  }
+
+  /**
+   * Creates a new departure for an instance, without delay or track.
+   *
+   * @param index Number of the instance.
+   * @return New departure, or null if there is no such instance.
+   */
+  public TrainDeparture createDeparture(int index) {
+    int minute = getDepartureMinute(index);
+    if (minute < 0) {
+      return null;
+    }
+    return new TrainDeparture(TimeOfDay.toLocalTime(minute), destination, getTrainId(index),
+        line);
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ntnu.stud.entity;
+
+/**
+ * The delay, track and version of a {@link TrainDeparture} as they were at one point in time,
+ * and whether a versioned update of the departure was applied.
+ *
+ * <p>When an update is rejected, the state is the current state of the departure, so the caller
+ * can decide again from its values and retry with its version.
+ */
+public final class DepartureState {
+  private final int version;
+  private final int delayMinutes;
+  private final int track;
+  private final boolean applied;
+
+  /**
+   * Creates a state.
+   *
+   * @param version Version of the departure.
+   * @param delayMinutes Delay of the departure in minutes.
+   * @param track Track of the departure, -1 if it has none.
+   * @param applied true if the update was applied, false if not.
+   */
+  DepartureState(int version, int delayMinutes, int track, boolean applied) {
+    this.version = version;
+    this.delayMinutes = delayMinutes;
+    this.track = track;
+    this.applied = applied;
+  }
+
+  /**
+   * Get the version of the departure.
+   *
+   * @return Version of the departure.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Get the delay of the departure in minutes.
+   *
+   * @return Delay in minutes.
+   */
+  public int getDelayMinutes() {
+    return delayMinutes;
+  }
+
+  /**
+   * Get the track of the departure.
+   *
+   * @return Track, -1 if no track is assigned.
+   */
+  public int getTrack() {
+    return track;
+  }
+
+  /**
+   * Checks if the update that gave this state was applied.
+   *
+   * @return true if the update was applied, false if the departure had another version.
+   */
+  public boolean isApplied() {
+    return applied;
+  }
+}
@@ -0,0 +1,49 @@
+package edu.ntnu.stud.entity;
+
+import java.time.LocalTime;
+
+/**
+ * Converts between times of day and minutes since midnight.
+ *
+ * <p>Departures and delays are stored as minutes since midnight, so comparing them or adding a
+ * delay to a departure is plain integer arithmetic. When a {@link LocalTime} is needed, one of
+ * the 1440 canonical instances held by this class is returned instead of creating a new one.
+ * Minute 0 is {@link LocalTime#MIDNIGHT}, the same instance as {@code LocalTime.of(0, 0)}.
+ * Seconds and nanoseconds are not kept, as the register works in whole minutes.
+ */
+public final class TimeOfDay {
+  private static final LocalTime[] TIMES = new LocalTime[Clock.MINUTES_PER_DAY];
+
+  static {
+    for (int minute = 0; minute < TIMES.length; minute++) {
+      TIMES[minute] = LocalTime.of(minute / 60, minute % 60);
+    }
+  }
+
+  private TimeOfDay() {
+  }
+
+  /**
+   * Gets the minutes since midnight of a time. Seconds are dropped.
+   *
+   * @param time Time of day.
+   * @return Minutes since midnight, or 0 if the time is null.
+   */
+  public static int toMinute(LocalTime time) {
+    if (time == null) {
+      return 0;
+    }
+    return time.getHour() * 60 + time.getMinute();
+  }
+
+  /**
+   * Gets the canonical time for a number of minutes since midnight.
+   * Minutes outside of one day wrap around, so 1440 is midnight again.
+   *
+   * @param minute Minutes since midnight.
+   * @return Time of day, never null.
+   */
+  public static LocalTime toLocalTime(int minute) {
+    return TIMES[Math.floorMod(minute, Clock.MINUTES_PER_DAY)];
+  }
+}
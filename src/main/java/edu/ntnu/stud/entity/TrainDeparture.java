@@ -1,5 +1,7 @@
 package edu.ntnu.stud.entity;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalTime;
 
 /**
@@ -13,11 +15,12 @@ import java.time.LocalTime;
  *     <th>Comment</th>
  *   </tr>
  *   <tr>
- *     <td>LocalTime</td>
- *     <td>departure</td>
+ *     <td>int</td>
+ *     <td>departureMinute</td>
  *     <td>
- *        LocalTime is an easy and clear datatype that already handles exceptions like if a user
- *        tries to set the hours over 23 or minutes under 0, etc.
+ *       Minutes since midnight, from 0 to 1439. An int is used so comparing and sorting
+ *       departures is plain integer arithmetic and does not create any objects. The constructors
+ *       still take a LocalTime and convert it.
  *     </td>
  *   </tr>
  *   <tr>
@@ -51,11 +54,20 @@ import java.time.LocalTime;
  *     </td>
  *   </tr>
  *   <tr>
- *     <td>LocalTime</td>
- *     <td>delay</td>
+ *     <td>int</td>
+ *     <td>delayMinutes</td>
  *     <td>
- *       LocalTime is used as it is an easy-to-use class that handles exceptions like wrong
- *       formatted times or times outside of the range.
+ *       Minutes the departure is delayed, from 0 to 1439, so adding it to the departure time is
+ *       plain integer arithmetic. It is not a field of its own, but packed into the state.
+ *     </td>
+ *   </tr>
+ *   <tr>
+ *     <td>long</td>
+ *     <td>state</td>
+ *     <td>
+ *       The track, the delay and a version that counts their changes are packed into one long,
+ *       so they can be read and changed together with a single compare-and-set and without a
+ *       lock. The track takes the low 32 bits, the delay the next 11 and the version the rest.
  *     </td>
  *   </tr>
  * </table>
@@ -65,17 +77,39 @@ import java.time.LocalTime;
  * after the Departure has been created.
  * {@code setDeparture(), setLine(), setDestination(), setTrainId()}
  *
+ * <p>Two operators may change the same departure at the same time. {@code setDelay()} and
+ * {@code setTrack()} always win, while {@code compareAndSetDelay()} and
+ * {@code compareAndSetTrack()} only change the departure if it still has the version the operator
+ * last saw, and otherwise give back the current state so the operator can try again.
+ *
+ * <p>The LocalTime getters return the shared instances from {@link TimeOfDay}, so neither creating
+ * a departure, changing its delay nor reading its times creates new time objects.
+ *
  *
  * @author Matthew Hunt
  * @version 2023-10-18
  */
 public class TrainDeparture {
-  private LocalTime departure;
-  private LocalTime delay;
+  private int departureMinute;
   private String line;
   private String trainId; // trainId previously trainNumber.
   private String destination;
-  private int track;
+  private volatile long state;
+
+  private static final VarHandle STATE;
+  private static final long TRACK_MASK = 0xFFFF_FFFFL;
+  private static final int DELAY_SHIFT = 32;
+  private static final long DELAY_MASK = 0x7FFL;
+  private static final int VERSION_SHIFT = 43;
+  private static final int VERSION_MASK = (1 << (64 - VERSION_SHIFT)) - 1;
+
+  static {
+    try {
+      STATE = MethodHandles.lookup().findVarHandle(TrainDeparture.class, "state", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
 
   /**
    * Constructor for the train departure class.
@@ -92,7 +126,7 @@ public class TrainDeparture {
     setTrainId(trainId);
     setDestination(destination);
     setTrack(-1);
-    setDelay(LocalTime.of(0, 0));
+    setDelayMinutes(0);
   }
 
   /**
@@ -120,7 +154,16 @@ public class TrainDeparture {
    * @return Departure time
    */
   public LocalTime getDeparture() {
-    return departure;
+    return TimeOfDay.toLocalTime(departureMinute);
+  }
+
+  /**
+   * Get the departure time for this train in minutes since midnight.
+   *
+   * @return Departure time in minutes.
+   */
+  public int getDepartureMinute() {
+    return departureMinute;
   }
 
   /**
@@ -129,7 +172,27 @@ public class TrainDeparture {
    * @return Delay for the train.
    */
   public LocalTime getDelay() {
-    return delay;
+    return TimeOfDay.toLocalTime(getDelayMinutes());
+  }
+
+  /**
+   * Get the delay of the train in minutes, 0 if it is not delayed.
+   *
+   * @return Delay in minutes.
+   */
+  public int getDelayMinutes() {
+    return delayOf(state);
+  }
+
+  /**
+   * Get the time the train actually leaves, in minutes since the midnight it was scheduled after.
+   * A delay past midnight gives a value of 1440 or more, so the value can be compared with other
+   * departures from the same day without wrapping around.
+   *
+   * @return Departure time plus delay in minutes.
+   */
+  public int getEffectiveMinute() {
+    return departureMinute + getDelayMinutes();
   }
 
   /**
@@ -141,6 +204,25 @@ public class TrainDeparture {
     return line;
   }
 
+  /**
+   * Get the version of the departure. The version changes every time the delay or track is set,
+   * and starts over at 0 after about two million changes.
+   *
+   * @return Version of the departure.
+   */
+  public int getVersion() {
+    return versionOf(state);
+  }
+
+  /**
+   * Get the delay, track and version of the departure as they were at one point in time.
+   *
+   * @return Current state of the departure.
+   */
+  public DepartureState getState() {
+    return stateOf(state, true);
+  }
+
   /**
    * Get the Identifier of the train that is assigned.
    *
@@ -165,7 +247,7 @@ public class TrainDeparture {
    * @return Train track
    */
   public int getTrack() {
-    return track;
+    return trackOf(state);
   }
 
   /**
@@ -175,12 +257,8 @@ public class TrainDeparture {
    * @param departure LocalTime object that contains the time of the train departure.
    */
   private void setDeparture(LocalTime departure) {
-    if (departure != null) {
-      this.departure = departure;
-    } else {
-      this.departure = LocalTime.of(0, 0);
-    }
-
+    // TimeOfDay gives midnight for null.
+    this.departureMinute = TimeOfDay.toMinute(departure);
   }
 
   /**
@@ -190,11 +268,42 @@ public class TrainDeparture {
    * @param delay LocalTime object that represents the hh:mm the departure will be delayed
    */
   public void setDelay(LocalTime delay) {
-    if (delay != null) {
-      this.delay = delay;
-    } else {
-      this.delay = LocalTime.of(0, 0);
+    // TimeOfDay gives no delay for null.
+    setDelayMinutes(TimeOfDay.toMinute(delay));
+  }
+
+  /**
+   * Sets the delay for the train departure in minutes.
+   * Negative values and values of a day or more are not accepted and set the delay to 0.
+   *
+   * @param delayMinutes Minutes the departure will be delayed.
+   */
+  public void setDelayMinutes(int delayMinutes) {
+    int validDelay = validDelay(delayMinutes);
+    long current;
+    do {
+      current = state;
+    } while (!STATE.compareAndSet(this, current,
+        pack(versionOf(current) + 1, validDelay, trackOf(current))));
+  }
+
+  /**
+   * Sets the delay in minutes if the departure still has the expected version.
+   * Invalid delays are set to 0, as in {@link #setDelayMinutes(int)}.
+   *
+   * @param expectedVersion Version the departure had when the delay was decided.
+   * @param delayMinutes Minutes the departure will be delayed.
+   * @return The new state if the delay was set, or the current state if the departure has
+   *         been changed since the expected version.
+   */
+  public DepartureState compareAndSetDelay(int expectedVersion, int delayMinutes) {
+    long current = state;
+    if (versionOf(current) != expectedVersion) {
+      return stateOf(current, false);
     }
+    long updated = pack(expectedVersion + 1, validDelay(delayMinutes), trackOf(current));
+    return STATE.compareAndSet(this, current, updated)
+        ? stateOf(updated, true) : stateOf(state, false);
   }
 
   /**
@@ -246,10 +355,60 @@ public class TrainDeparture {
    * @param track Integer track to assign the train to.
    */
   public void setTrack(int track) {
-    if (track >= 0) {
-      this.track = track;
-    } else {
-      this.track = -1;
+    int validTrack = validTrack(track);
+    long current;
+    do {
+      current = state;
+    } while (!STATE.compareAndSet(this, current,
+        pack(versionOf(current) + 1, delayOf(current), validTrack)));
+  }
+
+  /**
+   * Sets the track if the departure still has the expected version.
+   * Negative tracks are set to -1, as in {@link #setTrack(int)}.
+   *
+   * @param expectedVersion Version the departure had when the track was decided.
+   * @param track Integer track to assign the train to.
+   * @return The new state if the track was set, or the current state if the departure has
+   *         been changed since the expected version.
+   */
+  public DepartureState compareAndSetTrack(int expectedVersion, int track) {
+    long current = state;
+    if (versionOf(current) != expectedVersion) {
+      return stateOf(current, false);
     }
+    long updated = pack(expectedVersion + 1, delayOf(current), validTrack(track));
+    return STATE.compareAndSet(this, current, updated)
+        ? stateOf(updated, true) : stateOf(state, false);
+  }
+
+  private static int validDelay(int delayMinutes) {
+    return delayMinutes >= 0 && delayMinutes < Clock.MINUTES_PER_DAY ? delayMinutes : 0;
+  }
+
+  private static int validTrack(int track) {
+    return track >= 0 ? track : -1;
+  }
+
+  private static long pack(int version, int delayMinutes, int track) {
+    return ((long) (version & VERSION_MASK) << VERSION_SHIFT)
+        | ((long) delayMinutes << DELAY_SHIFT)
+        | (track & TRACK_MASK);
+  }
+
+  private static int versionOf(long state) {
+    return (int) (state >>> VERSION_SHIFT);
+  }
+
+  private static int delayOf(long state) {
+    return (int) ((state >>> DELAY_SHIFT) & DELAY_MASK);
+  }
+
+  private static int trackOf(long state) {
+    return (int) state;
+  }
+
+  private static DepartureState stateOf(long state, boolean applied) {
+    return new DepartureState(versionOf(state), delayOf(state), trackOf(state), applied);
   }
 }
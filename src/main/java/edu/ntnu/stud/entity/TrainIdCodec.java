@@ -0,0 +1,95 @@
+package edu.ntnu.stud.entity;
+
+/**
+ * Packs short trainIds into a single long, so they can be used as keys without hashing or
+ * comparing strings.
+ *
+ * <p>A trainId of up to {@value #MAX_LENGTH} characters made of digits, capital letters and '-',
+ * like "N002" or "J8-0615", is packed as a number in base 38, one digit for each character and
+ * 0 for the positions after the end of the id. Every such id gives a different positive code,
+ * and the code can be turned back into the id. Other ids, like ids with small letters, can not be
+ * packed, so two ids that only differ in case never get the same code.
+ */
+public final class TrainIdCodec {
+  /**
+   * Code of an id that can not be packed.
+   */
+  public static final long UNPACKABLE = -1;
+
+  /**
+   * Longest id that can be packed.
+   */
+  public static final int MAX_LENGTH = 12;
+
+  private static final int BASE = 38;
+  private static final String SYMBOLS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ-";
+
+  private TrainIdCodec() {
+  }
+
+  /**
+   * Packs a trainId into a long.
+   *
+   * @param trainId TrainId to pack.
+   * @return Positive code of the id, or {@link #UNPACKABLE} if the id can not be packed.
+   */
+  public static long encode(String trainId) {
+    if (trainId == null || trainId.isEmpty() || trainId.length() > MAX_LENGTH) {
+      return UNPACKABLE;
+    }
+
+    long code = 0;
+    for (int i = 0; i < MAX_LENGTH; i++) {
+      int symbol = 0;
+      if (i < trainId.length()) {
+        symbol = symbolOf(trainId.charAt(i));
+        if (symbol == 0) {
+          return UNPACKABLE;
+        }
+      }
+      code = code * BASE + symbol;
+    }
+    return code;
+  }
+
+  /**
+   * Turns a code back into the trainId it was packed from.
+   *
+   * @param code Code made by {@link #encode(String)}.
+   * @return TrainId, or null if the code is not a packed id.
+   */
+  public static String decode(long code) {
+    if (code <= 0) {
+      return null;
+    }
+
+    char[] characters = new char[MAX_LENGTH];
+    int length = 0;
+    long rest = code;
+    for (int i = MAX_LENGTH - 1; i >= 0; i--) {
+      int symbol = (int) (rest % BASE);
+      rest /= BASE;
+      if (symbol != 0) {
+        characters[i] = SYMBOLS.charAt(symbol - 1);
+        length = Math.max(length, i + 1);
+      } else if (length > i + 1) {
+        // An end marker in the middle of the id.
+        return null;
+      }
+    }
+    if (rest != 0 || characters[0] == 0) {
+      return null;
+    }
+    return new String(characters, 0, length);
+  }
+
+  private static int symbolOf(char character) {
+    if (character >= '0' && character <= '9') {
+      return character - '0' + 1;
+    }
+    if (character >= 'A' && character <= 'Z') {
+      return character - 'A' + 11;
+    }
+    return character == '-' ? BASE - 1 : 0;
+  }
+}
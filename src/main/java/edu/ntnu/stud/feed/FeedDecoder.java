@@ -0,0 +1,207 @@
+package edu.ntnu.stud.feed;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the departures of a board from the frames of the binary feed described in
+ * {@link FeedFormat}, as a platform display would.
+ *
+ * <p>The decoder is in sync after it has applied a full frame. A delta frame is only applied if
+ * it follows the last applied frame, so a display that has missed a frame waits for the next full
+ * frame instead of showing wrong departures. A frame that cannot be read also puts the decoder out
+ * of sync.
+ *
+ * <p>The decoder is not thread-safe.
+ */
+public class FeedDecoder {
+  private static final int MAX_DATAGRAM_SIZE = 65_507;
+
+  private final Map<Integer, TrainDeparture> departures;
+  private final Map<Integer, String> strings;
+  private long sequence;
+  private boolean synced;
+
+  /**
+   * Creates a decoder that is not in sync.
+   */
+  public FeedDecoder() {
+    this.departures = new HashMap<>();
+    this.strings = new HashMap<>();
+    this.sequence = -1;
+  }
+
+  /**
+   * Gets the sequence number of the last applied frame.
+   *
+   * @return Sequence number, -1 if no frame has been applied.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Checks if the decoder has applied a full frame and every frame after it.
+   *
+   * @return true if in sync, false if not.
+   */
+  public boolean isSynced() {
+    return synced;
+  }
+
+  /**
+   * Gets the departures on the board sorted by departure time.
+   *
+   * @return Departures of the board.
+   */
+  public List<TrainDeparture> getDepartures() {
+    List<TrainDeparture> board = new ArrayList<>(departures.values());
+    board.sort(Comparator.comparingInt(TrainDeparture::getDepartureMinute)
+        .thenComparing(TrainDeparture::getTrainId));
+    return board;
+  }
+
+  /**
+   * Applies a frame.
+   *
+   * @param frame Bytes of the frame.
+   * @param length Number of bytes in the frame.
+   * @return true if the frame was applied, false if it was skipped or could not be read.
+   */
+  public boolean apply(byte[] frame, int length) {
+    ByteBuffer in = ByteBuffer.wrap(frame, 0, Math.min(length, frame.length));
+    if (!in.hasRemaining()) {
+      return false;
+    }
+    byte type = in.get();
+    long frameSequence = FeedFormat.readVarint(in);
+    long count = FeedFormat.readVarint(in);
+    if (count < 0 || (type != FeedFormat.FULL && type != FeedFormat.DELTA)) {
+      return false;
+    }
+    if (type == FeedFormat.DELTA && (!synced || frameSequence != sequence + 1)) {
+      return false;
+    }
+
+    if (type == FeedFormat.FULL) {
+      departures.clear();
+      strings.clear();
+    }
+    boolean state = true;
+    for (long i = 0; i < count && state; i++) {
+      state = applyRecord(in);
+    }
+    synced = state;
+    if (state) {
+      sequence = frameSequence;
+    }
+    return state;
+  }
+
+  /**
+   * Listens for frames on a UDP port and prints the board every time it changes.
+   *
+   * @param args Port to listen on.
+   * @throws IOException If the port cannot be used.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.out.println("Usage: FeedDecoder PORT");
+      return;
+    }
+    FeedDecoder decoder = new FeedDecoder();
+    byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+    try (DatagramSocket socket = new DatagramSocket(Integer.parseInt(args[0]),
+        InetAddress.getLoopbackAddress())) {
+      while (true) {
+        DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+        socket.receive(packet);
+        if (decoder.apply(packet.getData(), packet.getLength())) {
+          System.out.println("--- Frame " + decoder.getSequence() + ", " + packet.getLength()
+              + " bytes ---");
+          for (TrainDeparture departure : decoder.getDepartures()) {
+            System.out.println(departure.getDeparture() + " " + departure.getTrainId() + " "
+                + departure.getLine() + " " + departure.getDestination() + " +"
+                + departure.getDelayMinutes() + " track " + departure.getTrack());
+          }
+        }
+      }
+    } catch (NumberFormatException | SocketException e) {
+      System.out.println("Could not listen on port " + args[0]);
+    }
+  }
+
+  private boolean applyRecord(ByteBuffer in) {
+    if (!in.hasRemaining()) {
+      return false;
+    }
+    byte record = in.get();
+    boolean state = false;
+    if (record == FeedFormat.STRING) {
+      long code = FeedFormat.readVarint(in);
+      String value = FeedFormat.readString(in);
+      if (code >= 0 && value != null) {
+        strings.put((int) code, value);
+        state = true;
+      }
+    } else if (record == FeedFormat.ADD) {
+      state = applyAdd(in);
+    } else if (record == FeedFormat.REMOVE) {
+      state = departures.remove((int) FeedFormat.readVarint(in)) != null;
+    } else if (record == FeedFormat.CHANGE) {
+      state = applyChange(in);
+    }
+    return state;
+  }
+
+  private boolean applyAdd(ByteBuffer in) {
+    long slot = FeedFormat.readVarint(in);
+    long departureMinute = FeedFormat.readVarint(in);
+    long delayMinutes = FeedFormat.readVarint(in);
+    long track = FeedFormat.readVarint(in) - 1;
+    String destination = strings.get((int) FeedFormat.readVarint(in));
+    String line = strings.get((int) FeedFormat.readVarint(in));
+    String trainId = FeedFormat.readString(in);
+    if (slot < 0 || departureMinute < 0 || delayMinutes < 0 || track < -1
+        || destination == null || line == null || trainId == null) {
+      return false;
+    }
+    departures.put((int) slot, new TrainDeparture(TimeOfDay.toLocalTime((int) departureMinute),
+        destination, trainId, line, (int) track, TimeOfDay.toLocalTime((int) delayMinutes)));
+    return true;
+  }
+
+  private boolean applyChange(ByteBuffer in) {
+    TrainDeparture departure = departures.get((int) FeedFormat.readVarint(in));
+    if (departure == null || !in.hasRemaining()) {
+      return false;
+    }
+    int fields = in.get();
+    if ((fields & FeedFormat.DELAY_CHANGED) != 0) {
+      long delayMinutes = FeedFormat.readVarint(in);
+      if (delayMinutes < 0) {
+        return false;
+      }
+      departure.setDelayMinutes((int) delayMinutes);
+    }
+    if ((fields & FeedFormat.TRACK_CHANGED) != 0) {
+      long track = FeedFormat.readVarint(in) - 1;
+      if (track < -1) {
+        return false;
+      }
+      departure.setTrack((int) track);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,366 @@
+package edu.ntnu.stud.feed;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes the departures of a board as frames of the binary feed described in
+ * {@link FeedFormat}.
+ *
+ * <p>A full frame holds every departure of the board. After it, the encoder is told which
+ * departures were added, removed or changed, and a delta frame holds only those, with only the
+ * fields that differ from what was last sent. A departure that is added and removed again before
+ * a frame is encoded is not sent at all, and a departure that is changed back and forth is only
+ * sent if it ends up different. Slots of removed departures are given to new departures, so the
+ * slots stay small.
+ *
+ * <p>Departures are told apart by their trainId, as the register creates a new departure object
+ * for a pattern instance every time it is read.
+ *
+ * <p>The departures given to a full frame come from a snapshot of the register, which may not yet
+ * hold the departures the encoder has been told were added or removed, as the register can tell
+ * its listeners before it publishes a snapshot. The encoder therefore remembers the departures
+ * that were added or removed until a full frame is given departures that agree, and adds them to,
+ * or leaves them out of, the full frames before that.
+ *
+ * <p>A frame can be split into frames of a maximum size, which are sent one after the other. The
+ * frames after the first are delta frames with the rest of the records, so a display that has
+ * applied all of them has the whole board, and a display that misses one waits for the next full
+ * frame.
+ *
+ * <p>The encoder is not thread-safe.
+ */
+public class FeedEncoder {
+  private final Map<String, Integer> stringCodes;
+  private final Map<String, SentDeparture> sent;
+  private final Deque<Integer> freeSlots;
+  private final Map<String, TrainDeparture> pendingAdds;
+  private final List<Integer> pendingRemoves;
+  private final Map<String, TrainDeparture> pendingChanges;
+  // Added departures, and null for removed ones, that a full frame has not yet agreed with.
+  private final Map<String, TrainDeparture> membershipChanges;
+  private int nextSlot;
+  private long sequence;
+
+  /**
+   * Creates an encoder that has not sent anything.
+   */
+  public FeedEncoder() {
+    this.stringCodes = new HashMap<>();
+    this.sent = new HashMap<>();
+    this.freeSlots = new ArrayDeque<>();
+    this.pendingAdds = new LinkedHashMap<>();
+    this.pendingRemoves = new ArrayList<>();
+    this.pendingChanges = new LinkedHashMap<>();
+    this.membershipChanges = new LinkedHashMap<>();
+    this.sequence = -1;
+  }
+
+  /**
+   * Gets the sequence number of the last encoded frame.
+   *
+   * @return Sequence number, -1 if no frame has been encoded.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Encodes a full frame with the given departures, and forgets everything sent before.
+   *
+   * @param departures Departures on the board.
+   * @return The frame.
+   */
+  public byte[] encodeFull(Collection<TrainDeparture> departures) {
+    return encodeFull(departures, Integer.MAX_VALUE).get(0);
+  }
+
+  /**
+   * Encodes a full frame with the given departures, split into frames of at most the given size,
+   * and forgets everything sent before. A single departure that does not fit gives a frame that
+   * is larger.
+   *
+   * @param departures Departures on the board.
+   * @param maxFrameSize Largest number of bytes in a frame.
+   * @return The full frame followed by the delta frames with the rest of the departures.
+   */
+  public List<byte[]> encodeFull(Collection<TrainDeparture> departures, int maxFrameSize) {
+    stringCodes.clear();
+    sent.clear();
+    freeSlots.clear();
+    pendingAdds.clear();
+    pendingRemoves.clear();
+    pendingChanges.clear();
+    nextSlot = 0;
+
+    FrameSplitter frames = new FrameSplitter(FeedFormat.FULL, maxFrameSize);
+    Set<String> given = new HashSet<>();
+    for (TrainDeparture departure : departures) {
+      given.add(departure.getTrainId());
+      boolean removed = membershipChanges.containsKey(departure.getTrainId())
+          && membershipChanges.get(departure.getTrainId()) == null;
+      if (!removed && !sent.containsKey(departure.getTrainId())) {
+        frames.add(departure);
+      }
+    }
+    Iterator<Map.Entry<String, TrainDeparture>> changes = membershipChanges.entrySet().iterator();
+    while (changes.hasNext()) {
+      Map.Entry<String, TrainDeparture> change = changes.next();
+      if (given.contains(change.getKey()) == (change.getValue() != null)) {
+        changes.remove();
+      } else if (change.getValue() != null && !sent.containsKey(change.getKey())) {
+        frames.add(change.getValue());
+      }
+    }
+    return frames.finish();
+  }
+
+  /**
+   * Forgets the departures that were added or removed but not yet seen in a full frame, for when
+   * the register drops departures without telling its listeners, as it does when a service day
+   * ends.
+   */
+  public void forgetMembershipChanges() {
+    membershipChanges.clear();
+  }
+
+  /**
+   * Marks a departure as added to the board.
+   *
+   * @param departure Added departure.
+   */
+  public void added(TrainDeparture departure) {
+    membershipChanges.put(departure.getTrainId(), departure);
+    if (sent.containsKey(departure.getTrainId())) {
+      pendingChanges.put(departure.getTrainId(), departure);
+    } else {
+      pendingAdds.put(departure.getTrainId(), departure);
+    }
+  }
+
+  /**
+   * Marks a departure as removed from the board.
+   *
+   * @param departure Removed departure.
+   */
+  public void removed(TrainDeparture departure) {
+    membershipChanges.put(departure.getTrainId(), null);
+    if (pendingAdds.remove(departure.getTrainId()) != null) {
+      return;
+    }
+    SentDeparture removed = sent.remove(departure.getTrainId());
+    if (removed != null) {
+      pendingChanges.remove(departure.getTrainId());
+      pendingRemoves.add(removed.slot);
+    }
+  }
+
+  /**
+   * Marks the delay or track of a departure as changed.
+   *
+   * @param departure Changed departure.
+   */
+  public void changed(TrainDeparture departure) {
+    if (sent.containsKey(departure.getTrainId())) {
+      pendingChanges.put(departure.getTrainId(), departure);
+    } else if (pendingAdds.containsKey(departure.getTrainId())) {
+      pendingAdds.put(departure.getTrainId(), departure);
+    }
+  }
+
+  /**
+   * Encodes a delta frame with the changes marked since the last frame.
+   *
+   * @return The frame, null if nothing has changed.
+   */
+  public byte[] encodeDelta() {
+    List<byte[]> frames = encodeDelta(Integer.MAX_VALUE);
+    return frames.isEmpty() ? null : frames.get(0);
+  }
+
+  /**
+   * Encodes the changes marked since the last frame as delta frames of at most the given size.
+   * A single record that does not fit gives a frame that is larger.
+   *
+   * @param maxFrameSize Largest number of bytes in a frame.
+   * @return The frames, empty if nothing has changed.
+   */
+  public List<byte[]> encodeDelta(int maxFrameSize) {
+    FrameSplitter frames = new FrameSplitter(FeedFormat.DELTA, maxFrameSize);
+    // Removes come first, so their slots can be given to the departures added in the same frame.
+    for (int slot : pendingRemoves) {
+      ByteArrayOutputStream record = new ByteArrayOutputStream(6);
+      record.write(FeedFormat.REMOVE);
+      FeedFormat.writeVarint(record, slot);
+      freeSlots.push(slot);
+      frames.add(record, 1);
+    }
+    for (TrainDeparture departure : pendingChanges.values()) {
+      ByteArrayOutputStream record = new ByteArrayOutputStream(16);
+      frames.add(record, writeChange(record, departure, sent.get(departure.getTrainId())));
+    }
+    for (TrainDeparture departure : pendingAdds.values()) {
+      frames.add(departure);
+    }
+    pendingRemoves.clear();
+    pendingChanges.clear();
+    pendingAdds.clear();
+
+    return frames.finish();
+  }
+
+  private int writeAdd(ByteArrayOutputStream records, TrainDeparture departure) {
+    int count = 0;
+    int destinationCode = stringCodes.getOrDefault(departure.getDestination(), -1);
+    if (destinationCode == -1) {
+      destinationCode = writeStringRecord(records, departure.getDestination());
+      count += 1;
+    }
+    int lineCode = stringCodes.getOrDefault(departure.getLine(), -1);
+    if (lineCode == -1) {
+      lineCode = writeStringRecord(records, departure.getLine());
+      count += 1;
+    }
+
+    int slot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop();
+    SentDeparture state = new SentDeparture(slot, departure.getDelayMinutes(),
+        departure.getTrack());
+    sent.put(departure.getTrainId(), state);
+    records.write(FeedFormat.ADD);
+    FeedFormat.writeVarint(records, slot);
+    FeedFormat.writeVarint(records, departure.getDepartureMinute());
+    FeedFormat.writeVarint(records, state.delayMinutes);
+    FeedFormat.writeVarint(records, state.track + 1L);
+    FeedFormat.writeVarint(records, destinationCode);
+    FeedFormat.writeVarint(records, lineCode);
+    FeedFormat.writeString(records, departure.getTrainId());
+    return count + 1;
+  }
+
+  private int writeChange(ByteArrayOutputStream records, TrainDeparture departure,
+                          SentDeparture state) {
+    int delayMinutes = departure.getDelayMinutes();
+    int track = departure.getTrack();
+    int fields = (delayMinutes != state.delayMinutes ? FeedFormat.DELAY_CHANGED : 0)
+        | (track != state.track ? FeedFormat.TRACK_CHANGED : 0);
+    if (fields == 0) {
+      return 0;
+    }
+
+    records.write(FeedFormat.CHANGE);
+    FeedFormat.writeVarint(records, state.slot);
+    records.write(fields);
+    if ((fields & FeedFormat.DELAY_CHANGED) != 0) {
+      FeedFormat.writeVarint(records, delayMinutes);
+      state.delayMinutes = delayMinutes;
+    }
+    if ((fields & FeedFormat.TRACK_CHANGED) != 0) {
+      FeedFormat.writeVarint(records, track + 1L);
+      state.track = track;
+    }
+    return 1;
+  }
+
+  private int writeStringRecord(ByteArrayOutputStream records, String value) {
+    int code = stringCodes.size();
+    stringCodes.put(value, code);
+    records.write(FeedFormat.STRING);
+    FeedFormat.writeVarint(records, code);
+    FeedFormat.writeString(records, value);
+    return code;
+  }
+
+  private byte[] frame(byte type, int count, ByteArrayOutputStream records) {
+    sequence += 1;
+    ByteArrayOutputStream frame = new ByteArrayOutputStream(records.size() + 12);
+    frame.write(type);
+    FeedFormat.writeVarint(frame, sequence);
+    FeedFormat.writeVarint(frame, count);
+    frame.writeBytes(records.toByteArray());
+    return frame.toByteArray();
+  }
+
+  /**
+   * Collects records into frames, and starts a new delta frame when the next records would make
+   * the frame larger than the maximum size.
+   */
+  private final class FrameSplitter {
+    // Type, sequence and count, each at their longest.
+    private static final int MAX_HEADER_SIZE = 1 + 10 + 5;
+
+    private final int maxFrameSize;
+    private final List<byte[]> frames;
+    private byte type;
+    private ByteArrayOutputStream records;
+    private int count;
+
+    private FrameSplitter(byte type, int maxFrameSize) {
+      this.type = type;
+      this.maxFrameSize = maxFrameSize;
+      this.frames = new ArrayList<>(1);
+      this.records = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Adds a departure with the strings it needs that have not been sent yet.
+     */
+    private void add(TrainDeparture departure) {
+      ByteArrayOutputStream record = new ByteArrayOutputStream(32);
+      add(record, writeAdd(record, departure));
+    }
+
+    /**
+     * Adds records that must be in the same frame.
+     */
+    private void add(ByteArrayOutputStream record, int recordCount) {
+      if (recordCount == 0) {
+        return;
+      }
+      if (count > 0
+          && (long) records.size() + record.size() + MAX_HEADER_SIZE > maxFrameSize) {
+        frames.add(frame(type, count, records));
+        type = FeedFormat.DELTA;
+        records = new ByteArrayOutputStream();
+        count = 0;
+      }
+      records.writeBytes(record.toByteArray());
+      count += recordCount;
+    }
+
+    /**
+     * Ends the last frame. A full frame is kept even if it is empty, as it clears the board.
+     */
+    private List<byte[]> finish() {
+      if (count > 0 || type == FeedFormat.FULL) {
+        frames.add(frame(type, count, records));
+      }
+      return frames;
+    }
+  }
+
+  /**
+   * Slot of a departure and the delay and track last sent for it.
+   */
+  private static class SentDeparture {
+    private final int slot;
+    private int delayMinutes;
+    private int track;
+
+    SentDeparture(int slot, int delayMinutes, int track) {
+      this.slot = slot;
+      this.delayMinutes = delayMinutes;
+      this.track = track;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package edu.ntnu.stud.feed;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Frames and records of the binary departure feed sent to platform displays.
+ *
+ * <p>All numbers are unsigned varints, seven bits per byte with the high bit set on every byte
+ * but the last, so a minute of the day takes two bytes and a delay or track usually one. Tracks
+ * are sent plus one, so that no track is 0. Destinations and lines are sent once as strings and
+ * then referred to by their code, and departures are referred to by the slot they were given when
+ * they were added, so an update does not repeat the trainId.
+ * <pre>
+ *   frame:  byte type, varint sequence, varint count, count times a record
+ *           type 1 is a full frame, which replaces everything the display had,
+ *           type 2 is a delta frame, which only holds what has changed since the frame before it
+ *           a full frame too large to send at once is followed by delta frames with the rest
+ *
+ *   string: byte 1, varint code, varint length, length bytes of UTF-8
+ *   add:    byte 2, varint slot, varint departureMinute, varint delayMinutes, varint track + 1,
+ *           varint destination code, varint line code, varint length, length bytes of trainId
+ *   remove: byte 3, varint slot
+ *   change: byte 4, varint slot, byte fields, varint delayMinutes if fields has bit 0,
+ *           varint track + 1 if fields has bit 1
+ * </pre>
+ */
+final class FeedFormat {
+  static final byte FULL = 1;
+  static final byte DELTA = 2;
+
+  static final byte STRING = 1;
+  static final byte ADD = 2;
+  static final byte REMOVE = 3;
+  static final byte CHANGE = 4;
+
+  static final int DELAY_CHANGED = 1;
+  static final int TRACK_CHANGED = 2;
+
+  private FeedFormat() {
+  }
+
+  static void writeVarint(ByteArrayOutputStream out, long value) {
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      out.write((int) ((remaining & 0x7F) | 0x80));
+      remaining >>>= 7;
+    }
+    out.write((int) remaining);
+  }
+
+  static void writeString(ByteArrayOutputStream out, String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Reads a varint.
+   *
+   * @return The value, -1 if the buffer ends before the varint or it is longer than a long.
+   */
+  static long readVarint(ByteBuffer in) {
+    long value = 0;
+    for (int shift = 0; shift < 64 && in.hasRemaining(); shift += 7) {
+      byte next = in.get();
+      value |= (long) (next & 0x7F) << shift;
+      if (next >= 0) {
+        return value;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Reads a string.
+   *
+   * @return The string, null if the buffer ends before the string.
+   */
+  static String readString(ByteBuffer in) {
+    long length = readVarint(in);
+    if (length < 0 || length > in.remaining()) {
+      return null;
+    }
+    byte[] bytes = new byte[(int) length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
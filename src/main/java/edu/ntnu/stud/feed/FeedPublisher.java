@@ -0,0 +1,205 @@
+package edu.ntnu.stud.feed;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.RegisterListener;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the departures of a register to platform displays as UDP datagrams in the binary feed
+ * format, see {@link FeedEncoder} and {@link FeedDecoder}.
+ *
+ * <p>The publisher listens to the register and collects the changes. Every flush interval, the
+ * changes are sent as one delta frame, and every {@value #DEFAULT_FULL_FRAME_INTERVAL} flushes,
+ * or when a new service day starts, a full frame is sent instead. UDP does not resend lost
+ * datagrams, so the full frames are what lets a display that has missed a frame, or was started
+ * late, catch up. A frame must fit in one datagram, so frames that would be larger are split, and
+ * the rest of a full frame follows in delta frames. A frame that still does not fit, because a
+ * single departure is larger than a datagram, is dropped together with the frames after it. The
+ * dropped frames are counted, and a full frame is sent on the next flush.
+ *
+ * <p>The publisher must be created and closed on the thread that changes the register.
+ */
+public class FeedPublisher implements RegisterListener, Closeable {
+  /**
+   * Default number of milliseconds between two frames.
+   */
+  public static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+
+  /**
+   * Default number of flushes between two full frames.
+   */
+  public static final int DEFAULT_FULL_FRAME_INTERVAL = 50;
+
+  private static final int MAX_DATAGRAM_SIZE = 65_507;
+
+  private final TrainDepartureRegister register;
+  private final FeedEncoder encoder;
+  private DatagramSocket socket;
+  private InetSocketAddress target;
+  private ScheduledExecutorService flusher;
+  private boolean fullFrameDue;
+  private int flushesSinceFullFrame;
+  private long sentBytes;
+  private long sentFrames;
+  private long droppedFrames;
+
+  /**
+   * Creates a publisher for a register and starts listening to its changes.
+   *
+   * @param register Register to publish.
+   */
+  public FeedPublisher(TrainDepartureRegister register) {
+    this.register = register;
+    this.encoder = new FeedEncoder();
+    this.fullFrameDue = true;
+    register.addListener(this);
+  }
+
+  /**
+   * Starts sending frames to a display address, beginning with a full frame.
+   *
+   * @param target Address and port the frames are sent to.
+   * @return true if the publisher was started, false if it already was started or no socket
+   *         could be opened.
+   */
+  public synchronized boolean start(InetSocketAddress target) {
+    if (socket != null || target == null) {
+      return false;
+    }
+    try {
+      socket = new DatagramSocket();
+    } catch (SocketException e) {
+      return false;
+    }
+    this.target = target;
+    fullFrameDue = true;
+
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "feed-publisher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(this::flush, 0, DEFAULT_FLUSH_INTERVAL_MILLIS,
+        TimeUnit.MILLISECONDS);
+    return true;
+  }
+
+  /**
+   * Sends the collected changes as a delta frame, or a full frame if one is due.
+   */
+  public synchronized void flush() {
+    if (socket == null) {
+      return;
+    }
+    List<byte[]> frames;
+    if (fullFrameDue || flushesSinceFullFrame >= DEFAULT_FULL_FRAME_INTERVAL) {
+      frames = encoder.encodeFull(register.getSnapshot().getDepartures(), MAX_DATAGRAM_SIZE);
+      fullFrameDue = false;
+      flushesSinceFullFrame = 0;
+    } else {
+      frames = encoder.encodeDelta(MAX_DATAGRAM_SIZE);
+      flushesSinceFullFrame += 1;
+    }
+
+    for (int i = 0; i < frames.size(); i++) {
+      byte[] frame = frames.get(i);
+      boolean sent = false;
+      if (frame.length <= MAX_DATAGRAM_SIZE) {
+        try {
+          socket.send(new DatagramPacket(frame, frame.length, target));
+          sentBytes += frame.length;
+          sentFrames += 1;
+          sent = true;
+        } catch (IOException e) {
+          // The displays catch up with the next full frame.
+        }
+      }
+      if (!sent) {
+        // The displays skip the frames after a missing one, so they are not sent.
+        droppedFrames += frames.size() - i;
+        fullFrameDue = true;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of frames sent.
+   *
+   * @return Number of frames.
+   */
+  public synchronized long getSentFrames() {
+    return sentFrames;
+  }
+
+  /**
+   * Gets the number of bytes sent in frames.
+   *
+   * @return Number of bytes.
+   */
+  public synchronized long getSentBytes() {
+    return sentBytes;
+  }
+
+  /**
+   * Gets the number of frames that were not sent, because they were larger than a datagram, the
+   * sending failed or they followed such a frame.
+   *
+   * @return Number of dropped frames.
+   */
+  public synchronized long getDroppedFrames() {
+    return droppedFrames;
+  }
+
+  /**
+   * Stops listening to the register and sending frames.
+   */
+  @Override
+  public void close() {
+    register.removeListener(this);
+    ScheduledExecutorService stopped;
+    synchronized (this) {
+      stopped = flusher;
+      flusher = null;
+      if (socket != null) {
+        socket.close();
+        socket = null;
+      }
+    }
+    if (stopped != null) {
+      stopped.shutdownNow();
+    }
+  }
+
+  @Override
+  public synchronized void departureAdded(TrainDeparture departure, int serviceDay) {
+    encoder.added(departure);
+  }
+
+  @Override
+  public synchronized void departureRemoved(TrainDeparture departure) {
+    encoder.removed(departure);
+  }
+
+  @Override
+  public synchronized void departureChanged(TrainDeparture departure) {
+    encoder.changed(departure);
+  }
+
+  @Override
+  public synchronized void serviceDayStarted(int day) {
+    // The register drops the departures of the old days without telling its listeners.
+    encoder.forgetMembershipChanges();
+    fullFrameDue = true;
+  }
+}
@@ -0,0 +1,509 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the latest changes made to a register by hand, so they can be looked at and undone.
+ *
+ * <p>Every entry is five longs in a fixed ring: the operation and the code of the trainId, the
+ * old and the new value, the time of the change, and for a delete the departure time, delay and
+ * track of the departure, so it can be added again. The value of an add or delete is the service
+ * day of the departure, of a delay the delay in minutes and of a track the track.
+ *
+ * <p>The trainIds are kept in a table with one code for each entry of the ring. A trainId keeps
+ * its code while an entry in the ring uses it, and the code is freed for another trainId when the
+ * last such entry is pushed out or removed. Recording a change to a departure that is in the ring
+ * therefore does not create any objects, so the log can always be on, and the log never holds
+ * more trainIds than entries. The log keeps no departure objects; the register looks departures
+ * up by trainId when a change is undone.
+ *
+ * <p>When the ring is full, the oldest entry is pushed out. If a spill file is set, it is written
+ * to the file first, otherwise it is dropped. Only the entries still in the ring can be undone.
+ */
+public class AuditLog implements Closeable {
+  /**
+   * Default number of entries kept in the ring.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * A departure was added.
+   */
+  public static final byte ADD = 1;
+
+  /**
+   * A departure was deleted.
+   */
+  public static final byte DELETE = 2;
+
+  /**
+   * The delay of a departure was set.
+   */
+  public static final byte DELAY = 3;
+
+  /**
+   * The track of a departure was set.
+   */
+  public static final byte TRACK = 4;
+
+  private static final byte NAME = 0;
+  private static final int WORDS_PER_ENTRY = 5;
+  private static final int SPILL_BUFFER_SIZE = 8192;
+  private static final int SPILL_ENTRY_SIZE = 1 + 4 + 4 + 4 + 8;
+  private static final String[] OPERATION_NAMES = {"NAME", "ADD", "DELETE", "DELAY", "TRACK"};
+
+  private final long[] entries;
+  private final int capacity;
+  private int first;
+  private int size;
+  private final String[] destinations;
+  private final String[] lines;
+  private final String[] idTable;
+  private final int[] idTableCodes;
+  private final String[] trainIds;
+  private final int[] useCounts;
+  private final int[] freeCodes;
+  private int freeCount;
+  private FileChannel spillChannel;
+  private ByteBuffer spillBuffer;
+  private BitSet spilledNames;
+  private long spilledCount;
+
+  /**
+   * Creates an empty log that keeps the given number of entries.
+   *
+   * @param capacity Number of entries, values below 1 are set to 1.
+   */
+  public AuditLog(int capacity) {
+    this.capacity = Math.max(1, capacity);
+    this.entries = new long[this.capacity * WORDS_PER_ENTRY];
+    this.destinations = new String[this.capacity];
+    this.lines = new String[this.capacity];
+    // Open addressing with linear probing, at most half full, so finding and freeing a code does
+    // not create any objects.
+    int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) * 2;
+    this.idTable = new String[tableSize];
+    this.idTableCodes = new int[tableSize];
+    this.trainIds = new String[this.capacity];
+    this.useCounts = new int[this.capacity];
+    this.freeCodes = new int[this.capacity];
+    for (int code = 0; code < this.capacity; code++) {
+      freeCodes[code] = this.capacity - 1 - code;
+    }
+    this.freeCount = this.capacity;
+  }
+
+  /**
+   * Writes entries that are pushed out of the ring to the end of a file from now on.
+   * A file that was set before is closed.
+   *
+   * @param file File to write to.
+   * @return true if the file could be opened, false if not.
+   */
+  public boolean spillTo(Path file) {
+    close();
+    if (file == null) {
+      return false;
+    }
+    try {
+      spillChannel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      return false;
+    }
+    spillBuffer = ByteBuffer.allocateDirect(SPILL_BUFFER_SIZE);
+    spilledNames = new BitSet();
+    return true;
+  }
+
+  /**
+   * Gets the number of entries in the ring.
+   *
+   * @return Number of entries that can be undone.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of entries the ring can hold.
+   *
+   * @return Capacity of the ring.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the number of trainIds the log holds, which is never more than its capacity.
+   *
+   * @return Number of trainIds used by the entries in the ring.
+   */
+  public int getTrainIdCount() {
+    return capacity - freeCount;
+  }
+
+  /**
+   * Gets the number of entries written to the spill file.
+   *
+   * @return Number of spilled entries.
+   */
+  public long getSpilledCount() {
+    return spilledCount;
+  }
+
+  /**
+   * Describes the entries in the ring, oldest first.
+   *
+   * @return One line per entry.
+   */
+  public List<String> getEntries() {
+    List<String> lines = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int base = ((first + i) % capacity) * WORDS_PER_ENTRY;
+      lines.add(describe((byte) (entries[base] >>> 32), trainIds[(int) entries[base]],
+          (int) (entries[base + 1] >>> 32), (int) entries[base + 1], entries[base + 2]));
+    }
+    return lines;
+  }
+
+  /**
+   * Writes the buffered spilled entries to the spill file and closes it.
+   */
+  @Override
+  public void close() {
+    if (spillChannel == null) {
+      return;
+    }
+    try {
+      flushSpill();
+      spillChannel.close();
+    } catch (IOException e) {
+      // The entries that could not be written are lost.
+    }
+    spillChannel = null;
+  }
+
+  /**
+   * Reads the entries of a spill file.
+   *
+   * @param file Spill file to read.
+   * @return One line per entry, oldest first, empty if the file could not be read.
+   */
+  public static List<String> readSpillFile(Path file) {
+    List<String> lines = new ArrayList<>();
+    Map<Integer, String> names = new HashMap<>();
+    try (InputStream stream = Files.newInputStream(file);
+         DataInputStream in = new DataInputStream(stream)) {
+      while (true) {
+        byte operation = in.readByte();
+        int code = in.readInt();
+        if (operation == NAME) {
+          byte[] name = new byte[in.readUnsignedShort()];
+          in.readFully(name);
+          names.put(code, new String(name, StandardCharsets.UTF_8));
+        } else {
+          lines.add(describe(operation, names.get(code), in.readInt(), in.readInt(),
+              in.readLong()));
+        }
+      }
+    } catch (EOFException e) {
+      // End of the file.
+    } catch (IOException e) {
+      lines.clear();
+    }
+    return lines;
+  }
+
+  /**
+   * Records a change. Does not create any objects if the trainId is in the ring already.
+   *
+   * @param operation Operation that was made.
+   * @param departure Departure that was changed.
+   * @param oldValue Value before the change.
+   * @param newValue Value after the change.
+   */
+  void record(byte operation, TrainDeparture departure, int oldValue, int newValue) {
+    if (size == capacity) {
+      pushOutFirst();
+    }
+    int code = codeOf(departure.getTrainId());
+    int slot = (first + size) % capacity;
+    int base = slot * WORDS_PER_ENTRY;
+    entries[base] = ((long) operation << 32) | (code & 0xFFFF_FFFFL);
+    entries[base + 1] = ((long) oldValue << 32) | (newValue & 0xFFFF_FFFFL);
+    entries[base + 2] = System.currentTimeMillis();
+    if (operation == DELETE) {
+      entries[base + 3] = ((long) departure.getDepartureMinute() << 32)
+          | (departure.getDelayMinutes() & 0xFFFF_FFFFL);
+      entries[base + 4] = departure.getTrack();
+      destinations[slot] = departure.getDestination();
+      lines[slot] = departure.getLine();
+    } else {
+      destinations[slot] = null;
+      lines[slot] = null;
+    }
+    size += 1;
+  }
+
+  /**
+   * Gets the operation of the newest entry.
+   *
+   * @return Operation, 0 if the ring is empty.
+   */
+  byte lastOperation() {
+    return size == 0 ? 0 : (byte) (entries[lastBase()] >>> 32);
+  }
+
+  /**
+   * Gets the trainId of the newest entry.
+   *
+   * @return TrainId, null if the ring is empty.
+   */
+  String lastTrainId() {
+    return size == 0 ? null : trainIds[(int) entries[lastBase()]];
+  }
+
+  /**
+   * Creates the departure that was deleted in the newest entry, with the delay and track it had.
+   *
+   * @return New departure, null if the ring is empty or the newest entry is not a delete.
+   */
+  TrainDeparture lastDeletedDeparture() {
+    if (lastOperation() != DELETE) {
+      return null;
+    }
+    int base = lastBase();
+    int slot = base / WORDS_PER_ENTRY;
+    return new TrainDeparture(TimeOfDay.toLocalTime((int) (entries[base + 3] >>> 32)),
+        destinations[slot], lastTrainId(), lines[slot], (int) entries[base + 4],
+        TimeOfDay.toLocalTime((int) entries[base + 3]));
+  }
+
+  /**
+   * Gets the value before the change of the newest entry.
+   *
+   * @return Old value, 0 if the ring is empty.
+   */
+  int lastOldValue() {
+    return size == 0 ? 0 : (int) (entries[lastBase() + 1] >>> 32);
+  }
+
+  /**
+   * Removes the newest entry.
+   */
+  void removeLast() {
+    if (size > 0) {
+      int base = lastBase();
+      release((int) entries[base]);
+      destinations[base / WORDS_PER_ENTRY] = null;
+      lines[base / WORDS_PER_ENTRY] = null;
+      size -= 1;
+    }
+  }
+
+  private int lastBase() {
+    return ((first + size - 1) % capacity) * WORDS_PER_ENTRY;
+  }
+
+  /**
+   * Gets the code of a trainId for a new entry. There is always a free code, as the ring has room
+   * for the entry and every entry uses at most one code.
+   */
+  private int codeOf(String trainId) {
+    int slot = findSlot(trainId);
+    int code;
+    if (idTable[slot] != null) {
+      code = idTableCodes[slot];
+    } else {
+      freeCount -= 1;
+      code = freeCodes[freeCount];
+      idTable[slot] = trainId;
+      idTableCodes[slot] = code;
+      trainIds[code] = trainId;
+    }
+    useCounts[code] += 1;
+    return code;
+  }
+
+  /**
+   * Frees a code when no entry in the ring uses it any more.
+   */
+  private void release(int code) {
+    useCounts[code] -= 1;
+    if (useCounts[code] == 0) {
+      removeSlot(findSlot(trainIds[code]));
+      trainIds[code] = null;
+      freeCodes[freeCount] = code;
+      freeCount += 1;
+      if (spilledNames != null) {
+        // The code may be given to another trainId, whose name must then be spilled.
+        spilledNames.clear(code);
+      }
+    }
+  }
+
+  /**
+   * Finds the slot of a trainId in the table, or the free slot where it would be put.
+   */
+  private int findSlot(String trainId) {
+    int mask = idTable.length - 1;
+    int slot = slotOf(trainId, mask);
+    while (idTable[slot] != null && !idTable[slot].equals(trainId)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Frees a slot of the table, and moves the following trainIds of the same probe run back so
+   * none of them is left behind a free slot.
+   */
+  private void removeSlot(int slot) {
+    int mask = idTable.length - 1;
+    int free = slot;
+    int next = (free + 1) & mask;
+    while (idTable[next] != null) {
+      int home = slotOf(idTable[next], mask);
+      if (((next - home) & mask) >= ((next - free) & mask)) {
+        idTable[free] = idTable[next];
+        idTableCodes[free] = idTableCodes[next];
+        free = next;
+      }
+      next = (next + 1) & mask;
+    }
+    idTable[free] = null;
+  }
+
+  private static int slotOf(String trainId, int mask) {
+    int hash = trainId.hashCode() * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private void pushOutFirst() {
+    if (spillChannel != null) {
+      int base = first * WORDS_PER_ENTRY;
+      int code = (int) entries[base];
+      try {
+        if (!spilledNames.get(code)) {
+          writeName(code);
+        }
+        if (spillBuffer.remaining() < SPILL_ENTRY_SIZE) {
+          flushSpill();
+        }
+        spillBuffer.put((byte) (entries[base] >>> 32));
+        spillBuffer.putInt(code);
+        spillBuffer.putInt((int) (entries[base + 1] >>> 32));
+        spillBuffer.putInt((int) entries[base + 1]);
+        spillBuffer.putLong(entries[base + 2]);
+        spilledCount += 1;
+      } catch (IOException e) {
+        close();
+      }
+    }
+    release((int) entries[first * WORDS_PER_ENTRY]);
+    destinations[first] = null;
+    lines[first] = null;
+    first = (first + 1) % capacity;
+    size -= 1;
+  }
+
+  private void writeName(int code) throws IOException {
+    String name = trainIds[code];
+    int length = utf8Length(name);
+    if (spillBuffer.remaining() < 1 + 4 + 2 + length) {
+      flushSpill();
+    }
+    spillBuffer.put(NAME);
+    spillBuffer.putInt(code);
+    spillBuffer.putShort((short) length);
+    putUtf8(name);
+    spilledNames.set(code);
+  }
+
+  /**
+   * Writes a name as UTF-8 straight into the spill buffer, so spilling it creates no byte array.
+   * Unpaired surrogates are written as '?', as {@link String#getBytes} does.
+   */
+  private void putUtf8(String name) {
+    for (int i = 0; i < name.length(); i++) {
+      char character = name.charAt(i);
+      if (character < 0x80) {
+        spillBuffer.put((byte) character);
+      } else if (character < 0x800) {
+        spillBuffer.put((byte) (0xC0 | character >> 6));
+        spillBuffer.put((byte) (0x80 | character & 0x3F));
+      } else if (isSurrogatePair(name, i)) {
+        int codePoint = Character.toCodePoint(character, name.charAt(i + 1));
+        spillBuffer.put((byte) (0xF0 | codePoint >> 18));
+        spillBuffer.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+        spillBuffer.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+        spillBuffer.put((byte) (0x80 | codePoint & 0x3F));
+        i += 1;
+      } else if (Character.isSurrogate(character)) {
+        spillBuffer.put((byte) '?');
+      } else {
+        spillBuffer.put((byte) (0xE0 | character >> 12));
+        spillBuffer.put((byte) (0x80 | character >> 6 & 0x3F));
+        spillBuffer.put((byte) (0x80 | character & 0x3F));
+      }
+    }
+  }
+
+  private static int utf8Length(String name) {
+    int length = 0;
+    for (int i = 0; i < name.length(); i++) {
+      char character = name.charAt(i);
+      if (character < 0x80) {
+        length += 1;
+      } else if (character < 0x800) {
+        length += 2;
+      } else if (isSurrogatePair(name, i)) {
+        length += 4;
+        i += 1;
+      } else {
+        length += Character.isSurrogate(character) ? 1 : 3;
+      }
+    }
+    return length;
+  }
+
+  private static boolean isSurrogatePair(String name, int index) {
+    return Character.isHighSurrogate(name.charAt(index)) && index + 1 < name.length()
+        && Character.isLowSurrogate(name.charAt(index + 1));
+  }
+
+  private void flushSpill() throws IOException {
+    spillBuffer.flip();
+    while (spillBuffer.hasRemaining()) {
+      spillChannel.write(spillBuffer);
+    }
+    spillBuffer.clear();
+  }
+
+  private static String describe(byte operation, String trainId, int oldValue, int newValue,
+                                 long timestamp) {
+    String name = operation > 0 && operation < OPERATION_NAMES.length
+        ? OPERATION_NAMES[operation] : "UNKNOWN";
+    return Instant.ofEpochMilli(timestamp) + " " + name + " " + trainId + " " + oldValue
+        + " -> " + newValue;
+  }
+}
@@ -0,0 +1,293 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Pushes delays on to the departures that depend on a delayed departure.
+ *
+ * <p>A departure depends on the departure before it on the same track, which must have left
+ * the track headway earlier, and on the departure before it on the same line, whose rolling
+ * stock it uses and which must have left the line turnaround earlier. A departure gets the
+ * smallest delay that keeps both gaps, but never less than the delay it was given by hand.
+ *
+ * <p>When a delay changes, the departures after it are checked in order of their scheduled
+ * time. A departure whose slack absorbs the change keeps its delay, and the departures after
+ * it are not checked at all, so a delay only touches the part of the day it actually moves.
+ * A delay that is reduced again is rolled back along the same path, down to the delays the
+ * departures were given by hand.
+ */
+class DelayPropagator {
+  /**
+   * Default number of minutes between two departures on the same track.
+   */
+  static final int DEFAULT_TRACK_HEADWAY_MINUTES = 3;
+
+  /**
+   * Default number of minutes between two departures on the same line.
+   */
+  static final int DEFAULT_LINE_TURNAROUND_MINUTES = 2;
+
+  /**
+   * Sets a delay that the propagator has calculated.
+   */
+  interface DelaySetter {
+    void setDelay(TrainDeparture departure, int delayMinutes);
+  }
+
+  private final ToLongFunction<TrainDeparture> scheduledMinute;
+  private final DelaySetter delaySetter;
+  private final Comparator<TrainDeparture> order;
+  private final Map<Integer, TreeSet<TrainDeparture>> byTrack;
+  private final Map<String, TreeSet<TrainDeparture>> byLine;
+  private final Map<TrainDeparture, Integer> indexedTracks;
+  private final Map<TrainDeparture, Long> scheduledMinutes;
+  private final Map<TrainDeparture, Integer> ownDelays;
+  private final int trackHeadwayMinutes;
+  private final int lineTurnaroundMinutes;
+  private int lastCheckedCount;
+
+  /**
+   * Creates a propagator.
+   *
+   * @param scheduledMinute Gives the epoch minute a departure is scheduled to leave.
+   * @param delaySetter Sets the delays calculated by the propagator.
+   * @param trackHeadwayMinutes Minutes between two departures on the same track.
+   * @param lineTurnaroundMinutes Minutes between two departures on the same line.
+   */
+  DelayPropagator(ToLongFunction<TrainDeparture> scheduledMinute, DelaySetter delaySetter,
+                  int trackHeadwayMinutes, int lineTurnaroundMinutes) {
+    this.scheduledMinute = scheduledMinute;
+    this.delaySetter = delaySetter;
+    // Removed departures are no longer in the register, so their scheduled minutes are kept.
+    this.scheduledMinutes = new IdentityHashMap<>();
+    this.order = Comparator.comparingLong((TrainDeparture departure) ->
+        scheduledMinutes.get(departure)).thenComparing(TrainDeparture::getTrainId);
+    this.byTrack = new HashMap<>();
+    this.byLine = new HashMap<>();
+    this.indexedTracks = new IdentityHashMap<>();
+    this.ownDelays = new IdentityHashMap<>();
+    this.trackHeadwayMinutes = Math.max(0, trackHeadwayMinutes);
+    this.lineTurnaroundMinutes = Math.max(0, lineTurnaroundMinutes);
+  }
+
+  /**
+   * Gets the number of departures checked by the last propagation.
+   *
+   * @return Number of checked departures.
+   */
+  int getLastCheckedCount() {
+    return lastCheckedCount;
+  }
+
+  /**
+   * Adds departures to the dependencies without changing any delays.
+   *
+   * @param departures Departures to add.
+   */
+  void index(Collection<TrainDeparture> departures) {
+    for (TrainDeparture departure : departures) {
+      addToIndexes(departure);
+    }
+  }
+
+  /**
+   * Adds a new departure and gives it and the departures after it the delays they need.
+   *
+   * @param departure Added departure.
+   */
+  void departureAdded(TrainDeparture departure) {
+    addToIndexes(departure);
+    propagate(Collections.singletonList(departure));
+  }
+
+  /**
+   * Removes a departure. If it was removed because it has left, the delays it caused are kept
+   * as they are. If it was deleted, the departures that depended on it recover.
+   *
+   * @param departure Removed departure.
+   * @param departed true if the departure has left, false if it was deleted.
+   */
+  void departureRemoved(TrainDeparture departure, boolean departed) {
+    if (!indexedTracks.containsKey(departure)) {
+      return;
+    }
+    List<TrainDeparture> followers = successorsOf(departure);
+    removeFromIndexes(departure);
+    ownDelays.remove(departure);
+    if (departed) {
+      for (TrainDeparture follower : followers) {
+        ownDelays.remove(follower);
+      }
+    } else {
+      propagate(followers);
+    }
+  }
+
+  /**
+   * Moves a departure to its new track, and updates the departures on both tracks.
+   *
+   * @param departure Departure whose track has changed.
+   */
+  void trackChanged(TrainDeparture departure) {
+    Integer track = indexedTracks.get(departure);
+    if (track == null || track == departure.getTrack()) {
+      return;
+    }
+    List<TrainDeparture> changed = new ArrayList<>(successorsOf(departure));
+    removeFromIndexes(departure);
+    addToIndexes(departure);
+    changed.add(departure);
+    propagate(changed);
+  }
+
+  /**
+   * Takes the current delay of a departure as the delay given by hand, and pushes it on.
+   *
+   * @param departure Departure whose delay was set by hand.
+   */
+  void delaySetByHand(TrainDeparture departure) {
+    if (!indexedTracks.containsKey(departure)) {
+      return;
+    }
+    ownDelays.remove(departure);
+    propagate(Collections.singletonList(departure));
+  }
+
+  /**
+   * Forgets the departures that no longer are in the register.
+   *
+   * @param held Returns true for departures that still are in the register.
+   */
+  void retainAll(Predicate<TrainDeparture> held) {
+    List<TrainDeparture> gone = new ArrayList<>();
+    for (TrainDeparture departure : indexedTracks.keySet()) {
+      if (!held.test(departure)) {
+        gone.add(departure);
+      }
+    }
+    for (TrainDeparture departure : gone) {
+      removeFromIndexes(departure);
+      ownDelays.remove(departure);
+    }
+  }
+
+  /**
+   * Recalculates the delays of the given departures, and of the departures after each one whose
+   * delay changes, in order of scheduled time.
+   */
+  private void propagate(Collection<TrainDeparture> changed) {
+    PriorityQueue<TrainDeparture> queue = new PriorityQueue<>(order);
+    Set<TrainDeparture> queued = Collections.newSetFromMap(new IdentityHashMap<>());
+    Set<TrainDeparture> starts = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (TrainDeparture departure : changed) {
+      if (indexedTracks.containsKey(departure) && queued.add(departure)) {
+        queue.add(departure);
+        starts.add(departure);
+      }
+    }
+
+    int checkedCount = 0;
+    while (!queue.isEmpty()) {
+      TrainDeparture departure = queue.poll();
+      queued.remove(departure);
+      checkedCount += 1;
+
+      int ownDelay = ownDelays.getOrDefault(departure, departure.getDelayMinutes());
+      int delay = Math.min(Math.max(ownDelay, requiredDelay(departure)),
+          Clock.MINUTES_PER_DAY - 1);
+      boolean delayChanged = delay != departure.getDelayMinutes();
+      if (delayChanged) {
+        if (delay == ownDelay) {
+          ownDelays.remove(departure);
+        } else {
+          ownDelays.putIfAbsent(departure, ownDelay);
+        }
+        delaySetter.setDelay(departure, delay);
+      }
+
+      // The slack of this departure absorbed the change, so nothing after it moves.
+      if (delayChanged || starts.contains(departure)) {
+        for (TrainDeparture successor : successorsOf(departure)) {
+          if (queued.add(successor)) {
+            queue.add(successor);
+          }
+        }
+      }
+    }
+    lastCheckedCount = checkedCount;
+  }
+
+  private int requiredDelay(TrainDeparture departure) {
+    long scheduled = scheduledMinutes.get(departure);
+    long required = 0;
+    TreeSet<TrainDeparture> track = byTrack.get(indexedTracks.get(departure));
+    TrainDeparture previous = track != null ? track.lower(departure) : null;
+    if (previous != null) {
+      required = Math.max(required, effectiveMinute(previous) + trackHeadwayMinutes - scheduled);
+    }
+    previous = byLine.get(departure.getLine()).lower(departure);
+    if (previous != null) {
+      required = Math.max(required,
+          effectiveMinute(previous) + lineTurnaroundMinutes - scheduled);
+    }
+    return (int) Math.min(required, Clock.MINUTES_PER_DAY - 1);
+  }
+
+  private long effectiveMinute(TrainDeparture departure) {
+    return scheduledMinutes.get(departure) + departure.getDelayMinutes();
+  }
+
+  private List<TrainDeparture> successorsOf(TrainDeparture departure) {
+    List<TrainDeparture> successors = new ArrayList<>(2);
+    TreeSet<TrainDeparture> track = byTrack.get(indexedTracks.get(departure));
+    TrainDeparture next = track != null ? track.higher(departure) : null;
+    if (next != null) {
+      successors.add(next);
+    }
+    next = byLine.get(departure.getLine()).higher(departure);
+    if (next != null && !successors.contains(next)) {
+      successors.add(next);
+    }
+    return successors;
+  }
+
+  /**
+   * Departures without a track only depend on their line.
+   */
+  private void addToIndexes(TrainDeparture departure) {
+    int track = departure.getTrack();
+    scheduledMinutes.put(departure, scheduledMinute.applyAsLong(departure));
+    indexedTracks.put(departure, track);
+    if (track >= 0) {
+      byTrack.computeIfAbsent(track, key -> new TreeSet<>(order)).add(departure);
+    }
+    byLine.computeIfAbsent(departure.getLine(), key -> new TreeSet<>(order)).add(departure);
+  }
+
+  private void removeFromIndexes(TrainDeparture departure) {
+    Integer track = indexedTracks.remove(departure);
+    if (track == null) {
+      return;
+    }
+    TreeSet<TrainDeparture> onTrack = byTrack.get(track);
+    if (onTrack != null) {
+      onTrack.remove(departure);
+    }
+    byLine.get(departure.getLine()).remove(departure);
+    scheduledMinutes.remove(departure);
+  }
+}
@@ -0,0 +1,154 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+
+/**
+ * A compound query on the departures in a register.
+ * Every condition that is set must match for a departure to be in the result, and conditions
+ * that are not set match every departure. The conditions are set with chained calls, for
+ * example:
+ * <pre>
+ *   new DepartureQuery().line("J8").destination("Trondheim")
+ *       .between(LocalTime.of(8, 0), LocalTime.of(10, 0)).withoutTrack();
+ * </pre>
+ */
+public class DepartureQuery {
+  private String destination;
+  private String line;
+  private LocalTime from;
+  private LocalTime to;
+  private boolean withoutTrack;
+  private boolean delayedOnly;
+
+  /**
+   * Only match departures going to a destination.
+   *
+   * @param destination Destination to match, null removes the condition.
+   * @return This query.
+   */
+  public DepartureQuery destination(String destination) {
+    this.destination = destination;
+    return this;
+  }
+
+  /**
+   * Only match departures on a line.
+   *
+   * @param line Line to match, null removes the condition.
+   * @return This query.
+   */
+  public DepartureQuery line(String line) {
+    this.line = line;
+    return this;
+  }
+
+  /**
+   * Only match departures scheduled between two times, both included.
+   * The delay is not included, in the same way as the sorting of the register.
+   *
+   * @param from First departure time to match, null for no lower limit.
+   * @param to Last departure time to match, null for no upper limit.
+   * @return This query.
+   */
+  public DepartureQuery between(LocalTime from, LocalTime to) {
+    this.from = from;
+    this.to = to;
+    return this;
+  }
+
+  /**
+   * Only match departures that have not been assigned a track.
+   *
+   * @return This query.
+   */
+  public DepartureQuery withoutTrack() {
+    this.withoutTrack = true;
+    return this;
+  }
+
+  /**
+   * Only match departures that are delayed.
+   *
+   * @return This query.
+   */
+  public DepartureQuery delayedOnly() {
+    this.delayedOnly = true;
+    return this;
+  }
+
+  /**
+   * Get the destination condition.
+   *
+   * @return Destination to match, or null if not set.
+   */
+  public String getDestination() {
+    return destination;
+  }
+
+  /**
+   * Get the line condition.
+   *
+   * @return Line to match, or null if not set.
+   */
+  public String getLine() {
+    return line;
+  }
+
+  /**
+   * Get the first departure time to match.
+   *
+   * @return Lower time limit, or null if not set.
+   */
+  public LocalTime getFrom() {
+    return from;
+  }
+
+  /**
+   * Get the last departure time to match.
+   *
+   * @return Upper time limit, or null if not set.
+   */
+  public LocalTime getTo() {
+    return to;
+  }
+
+  /**
+   * Check if only departures without a track should match.
+   *
+   * @return true if the condition is set.
+   */
+  public boolean isWithoutTrack() {
+    return withoutTrack;
+  }
+
+  /**
+   * Check if only delayed departures should match.
+   *
+   * @return true if the condition is set.
+   */
+  public boolean isDelayedOnly() {
+    return delayedOnly;
+  }
+
+  /**
+   * Checks if a departure matches every condition of the query.
+   *
+   * @param departure Departure to check.
+   * @return true if the departure matches, false if not.
+   */
+  public boolean matches(TrainDeparture departure) {
+    if (departure == null) {
+      return false;
+    }
+
+    int minute = departure.getDepartureMinute();
+    return (destination == null || destination.equals(departure.getDestination()))
+        && (line == null || line.equals(departure.getLine()))
+        && (from == null || minute >= TimeOfDay.toMinute(from))
+        && (to == null || minute <= TimeOfDay.toMinute(to))
+        && (!withoutTrack || departure.getTrack() == -1)
+        && (!delayedOnly || departure.getDelayMinutes() > 0);
+  }
+}
@@ -0,0 +1,150 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Plans and runs {@link DepartureQuery} objects against the partitions of a register.
+ *
+ * <p>The planner counts how many rows each available access path would scan and starts from the
+ * smallest one. The destination and line indexes give exact counts, while the rows in a time
+ * window are estimated from the share of the day the window covers. The rest of the conditions
+ * are checked on every scanned row. The number of matching rows is estimated by multiplying the
+ * selectivity of each remaining condition, which assumes the conditions are independent. Full
+ * scans are run through the {@link ParallelScanExecutor}, so they run in parallel on large
+ * registers.
+ */
+class DepartureQueryPlanner {
+  private static final double UNASSIGNED_TRACK_SELECTIVITY = 0.5;
+  private static final double DELAYED_SELECTIVITY = 0.3;
+
+  private final ParallelScanExecutor scanExecutor;
+
+  /**
+   * Creates a new planner.
+   *
+   * @param scanExecutor Executor used for full scans.
+   */
+  DepartureQueryPlanner(ParallelScanExecutor scanExecutor) {
+    this.scanExecutor = scanExecutor;
+  }
+
+  /**
+   * Plans and runs a query.
+   *
+   * @param query Query to run.
+   * @param days Partitions of the register in order of service day.
+   * @param snapshot Snapshot with all departures of the register, used for full scans.
+   * @return Result of the query.
+   */
+  QueryResult run(DepartureQuery query, List<ServiceDayPartition> days,
+                  MembershipSnapshot snapshot) {
+    long totalRows = snapshot.size();
+    long destinationRows = -1;
+    long lineRows = -1;
+    if (query.getDestination() != null) {
+      destinationRows = 0;
+      for (ServiceDayPartition partition : days) {
+        destinationRows += partition.departuresTo(query.getDestination()).size();
+      }
+    }
+    if (query.getLine() != null) {
+      lineRows = 0;
+      for (ServiceDayPartition partition : days) {
+        lineRows += partition.departuresOnLine(query.getLine()).size();
+      }
+    }
+
+    boolean hasTimeWindow = query.getFrom() != null || query.getTo() != null;
+    LocalTime from = query.getFrom() != null ? query.getFrom() : LocalTime.MIN;
+    LocalTime to = query.getTo() != null ? query.getTo() : LocalTime.MAX;
+    double windowSelectivity = timeWindowSelectivity(query.getFrom(), query.getTo());
+
+    QueryPlan.AccessPath path = QueryPlan.AccessPath.FULL_SCAN;
+    long estimatedScanned = totalRows;
+    if (hasTimeWindow && Math.ceil(totalRows * windowSelectivity) < estimatedScanned) {
+      path = QueryPlan.AccessPath.TIME_INDEX;
+      estimatedScanned = (long) Math.ceil(totalRows * windowSelectivity);
+    }
+    if (destinationRows >= 0 && destinationRows < estimatedScanned) {
+      path = QueryPlan.AccessPath.DESTINATION_INDEX;
+      estimatedScanned = destinationRows;
+    }
+    if (lineRows >= 0 && lineRows < estimatedScanned) {
+      path = QueryPlan.AccessPath.LINE_INDEX;
+      estimatedScanned = lineRows;
+    }
+
+    double estimatedMatched = estimatedScanned;
+    if (path != QueryPlan.AccessPath.DESTINATION_INDEX && destinationRows >= 0) {
+      estimatedMatched *= selectivity(destinationRows, totalRows);
+    }
+    if (path != QueryPlan.AccessPath.LINE_INDEX && lineRows >= 0) {
+      estimatedMatched *= selectivity(lineRows, totalRows);
+    }
+    if (path != QueryPlan.AccessPath.TIME_INDEX) {
+      estimatedMatched *= windowSelectivity;
+    }
+    if (query.isWithoutTrack()) {
+      estimatedMatched *= UNASSIGNED_TRACK_SELECTIVITY;
+    }
+    if (query.isDelayedOnly()) {
+      estimatedMatched *= DELAYED_SELECTIVITY;
+    }
+
+    QueryPlan plan = new QueryPlan(path, estimatedScanned, estimatedMatched);
+    List<TrainDeparture> matched = new ArrayList<>();
+    long scanned = 0;
+    if (path == QueryPlan.AccessPath.FULL_SCAN) {
+      matched.addAll(scanExecutor.filter(snapshot.getDepartures(), query::matches));
+      scanned = snapshot.size();
+    } else {
+      for (ServiceDayPartition partition : days) {
+        Collection<TrainDeparture> candidates;
+        if (path == QueryPlan.AccessPath.TIME_INDEX) {
+          candidates = partition.departuresBetween(from, to);
+        } else if (path == QueryPlan.AccessPath.DESTINATION_INDEX) {
+          candidates = partition.departuresTo(query.getDestination());
+        } else {
+          candidates = partition.departuresOnLine(query.getLine());
+        }
+        scanned += scan(candidates, query, matched);
+      }
+    }
+
+    plan.setActual(scanned, matched.size());
+    return new QueryResult(matched, plan);
+  }
+
+  private static long scan(Collection<TrainDeparture> candidates, DepartureQuery query,
+                           List<TrainDeparture> matched) {
+    for (TrainDeparture departure : candidates) {
+      if (query.matches(departure)) {
+        matched.add(departure);
+      }
+    }
+    return candidates.size();
+  }
+
+  private static double selectivity(long rows, long totalRows) {
+    return totalRows > 0 ? (double) rows / totalRows : 0;
+  }
+
+  private static double timeWindowSelectivity(LocalTime from, LocalTime to) {
+    if (from == null && to == null) {
+      return 1;
+    }
+
+    int fromMinute = from != null ? TimeOfDay.toMinute(from) : 0;
+    int toMinute = to != null ? TimeOfDay.toMinute(to) : Clock.MINUTES_PER_DAY - 1;
+    if (toMinute < fromMinute) {
+      return 0;
+    }
+    return (double) (toMinute - fromMinute + 1) / Clock.MINUTES_PER_DAY;
+  }
+}
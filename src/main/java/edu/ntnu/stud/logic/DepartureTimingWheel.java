@@ -0,0 +1,258 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+
+/**
+ * Hashed timing wheel that keeps track of when departures are due to expire.
+ *
+ * <p>Every departure is placed in the slot of the minute it is due, so scheduling and
+ * rescheduling a departure is O(1). When the wheel is advanced only the slots between the
+ * previous and the new time that actually hold departures are visited, which means advancing the
+ * time costs next to nothing when no trains are due.
+ *
+ * <p>The wheel only stores when a departure is due. Whether a departure is still in the register
+ * and when it is due right now is decided by the {@link ExpiryTarget} when a slot fires, so a
+ * departure that got its delay changed without being rescheduled is moved to the right slot
+ * instead of being expired too early.
+ *
+ * <p>Each slot is a doubly linked list of nodes, and every scheduled departure keeps its node, so
+ * a departure is cancelled or moved by unlinking its node without searching the slot. A departure
+ * that is moved reuses its node.
+ */
+class DepartureTimingWheel {
+
+  /**
+   * Callback used by the wheel to validate and expire departures when their slot fires.
+   */
+  interface ExpiryTarget {
+
+    /**
+     * Returns the minute the departure is currently due.
+     *
+     * @param departure Departure to check.
+     * @return Minute the departure is due, or -1 if it is no longer in the register.
+     */
+    long dueMinuteOf(TrainDeparture departure);
+
+    /**
+     * Expires a departure that is overdue.
+     *
+     * @param departure Departure to expire.
+     */
+    void expire(TrainDeparture departure);
+  }
+
+  // Slot of the nodes that are taken out of a slot that is firing.
+  private static final int FIRING = -1;
+
+  /**
+   * Place of a scheduled departure in the list of its slot.
+   */
+  private static final class Node {
+    private final TrainDeparture departure;
+    private int slot;
+    private Node previous;
+    private Node next;
+
+    private Node(TrainDeparture departure) {
+      this.departure = departure;
+    }
+  }
+
+  private final Node[] slots;
+  private final BitSet occupiedSlots;
+  private final IdentityHashMap<TrainDeparture, Node> scheduled;
+  private Node firing;
+  private long cursor;
+
+  /**
+   * Creates a new timing wheel.
+   *
+   * @param slotCount Number of one-minute slots in the wheel.
+   * @param startMinute First minute that has not yet been fired.
+   */
+  DepartureTimingWheel(int slotCount, long startMinute) {
+    slots = new Node[Math.max(1, slotCount)];
+    occupiedSlots = new BitSet(slots.length);
+    scheduled = new IdentityHashMap<>();
+    cursor = startMinute;
+  }
+
+  /**
+   * Schedules a departure to expire after the given minute. If the departure already is
+   * scheduled it gets moved to the new slot.
+   * Departures that are due before the current cursor fire on the next advance.
+   *
+   * @param departure Departure to schedule.
+   * @param dueMinute Minute the departure is due.
+   */
+  void schedule(TrainDeparture departure, long dueMinute) {
+    if (departure == null) {
+      return;
+    }
+
+    Node node = scheduled.get(departure);
+    if (node == null) {
+      node = new Node(departure);
+      scheduled.put(departure, node);
+    } else {
+      unlink(node);
+    }
+    link(node, slotOf(Math.max(dueMinute, cursor)));
+  }
+
+  /**
+   * Removes a departure from the wheel.
+   *
+   * @param departure Departure to remove.
+   * @return true if the departure was scheduled, false if not.
+   */
+  boolean cancel(TrainDeparture departure) {
+    Node node = scheduled.remove(departure);
+    if (node == null) {
+      return false;
+    }
+
+    unlink(node);
+    return true;
+  }
+
+  /**
+   * Advances the wheel to the given minute and fires every slot before it.
+   * Moving the wheel backwards only moves the cursor.
+   *
+   * @param minute Minute to advance to, departures due before this minute are expired.
+   * @param target Target that validates and expires the departures.
+   * @return Number of departures that were expired.
+   */
+  int advanceTo(long minute, ExpiryTarget target) {
+    if (minute <= cursor) {
+      cursor = minute;
+      return 0;
+    }
+
+    long from = cursor;
+    cursor = minute;
+
+    if (occupiedSlots.isEmpty()) {
+      return 0;
+    }
+
+    int expired = 0;
+    if (minute - from >= slots.length) {
+      expired += fireRange(0, slots.length, target);
+    } else {
+      int fromSlot = slotOf(from);
+      int toSlot = slotOf(minute);
+      if (fromSlot < toSlot) {
+        expired += fireRange(fromSlot, toSlot, target);
+      } else {
+        expired += fireRange(fromSlot, slots.length, target);
+        expired += fireRange(0, toSlot, target);
+      }
+    }
+
+    return expired;
+  }
+
+  /**
+   * Gets the first minute that has not yet been fired.
+   *
+   * @return Cursor of the wheel.
+   */
+  long getCursor() {
+    return cursor;
+  }
+
+  /**
+   * Gets the number of departures currently scheduled in the wheel.
+   *
+   * @return Number of scheduled departures.
+   */
+  int size() {
+    return scheduled.size();
+  }
+
+  /**
+   * Removes all departures from the wheel.
+   */
+  void clear() {
+    for (int slot = occupiedSlots.nextSetBit(0); slot >= 0;
+         slot = occupiedSlots.nextSetBit(slot + 1)) {
+      slots[slot] = null;
+    }
+    occupiedSlots.clear();
+    scheduled.clear();
+  }
+
+  private int fireRange(int fromSlot, int toSlot, ExpiryTarget target) {
+    int expired = 0;
+
+    for (int slot = occupiedSlots.nextSetBit(fromSlot); slot >= 0 && slot < toSlot;
+         slot = occupiedSlots.nextSetBit(slot + 1)) {
+      // The departures stay cancellable while the slot fires, as expiring one can remove others.
+      firing = slots[slot];
+      slots[slot] = null;
+      occupiedSlots.clear(slot);
+      for (Node node = firing; node != null; node = node.next) {
+        node.slot = FIRING;
+      }
+
+      while (firing != null) {
+        Node node = firing;
+        TrainDeparture departure = node.departure;
+        scheduled.remove(departure);
+        unlink(node);
+        long dueMinute = target.dueMinuteOf(departure);
+
+        if (dueMinute < 0) {
+          continue;
+        }
+        if (dueMinute < cursor) {
+          target.expire(departure);
+          expired += 1;
+        } else if (!scheduled.containsKey(departure)) {
+          scheduled.put(departure, node);
+          link(node, slotOf(dueMinute));
+        }
+      }
+    }
+
+    return expired;
+  }
+
+  private void link(Node node, int slot) {
+    node.slot = slot;
+    node.previous = null;
+    node.next = slots[slot];
+    if (node.next != null) {
+      node.next.previous = node;
+    }
+    slots[slot] = node;
+    occupiedSlots.set(slot);
+  }
+
+  private void unlink(Node node) {
+    if (node.previous != null) {
+      node.previous.next = node.next;
+    } else if (node.slot == FIRING) {
+      firing = node.next;
+    } else {
+      slots[node.slot] = node.next;
+    }
+    if (node.next != null) {
+      node.next.previous = node.previous;
+    }
+    if (node.slot != FIRING && slots[node.slot] == null) {
+      occupiedSlots.clear(node.slot);
+    }
+    node.previous = null;
+    node.next = null;
+  }
+
+  private int slotOf(long minute) {
+    return (int) Math.floorMod(minute, (long) slots.length);
+  }
+}
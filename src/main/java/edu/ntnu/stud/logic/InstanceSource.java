@@ -0,0 +1,73 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+
+/**
+ * Departures that are kept in a compact form and only created as objects when they are read.
+ *
+ * <p>The departures of a source are called instances, and are numbered from 0 in order of
+ * departure time. A source never changes, so it can be read from any thread.
+ */
+interface InstanceSource {
+
+  /**
+   * Gets the number of instances.
+   *
+   * @return Number of instances.
+   */
+  int getInstanceCount();
+
+  /**
+   * Gets the departure time of an instance in minutes since midnight.
+   *
+   * @param index Number of the instance.
+   * @return Departure minute.
+   */
+  int getDepartureMinute(int index);
+
+  /**
+   * Gets the number of the first instance that departs at or after a minute.
+   *
+   * @param minute Minutes since midnight.
+   * @return Number of the instance, equal to the instance count if all depart before.
+   */
+  int firstIndexFrom(int minute);
+
+  /**
+   * Finds the instance with the given trainId.
+   *
+   * @param trainId TrainId to look for.
+   * @return Number of the instance, or -1 if there is no such instance.
+   */
+  int indexOf(String trainId);
+
+  /**
+   * Creates a new departure for an instance.
+   *
+   * @param index Number of the instance.
+   * @return New departure.
+   */
+  TrainDeparture createDeparture(int index);
+
+  /**
+   * Checks if an instance goes to a destination and runs on a line.
+   *
+   * @param index Number of the instance.
+   * @param destination Destination to check for, or null for any destination.
+   * @param line Line to check for, or null for any line.
+   * @return true if the instance matches, false if not.
+   */
+  boolean matches(int index, String destination, String line);
+
+  /**
+   * Checks if any instance can go to a destination and run on a line, so sources that can not
+   * are skipped without checking every instance.
+   *
+   * @param destination Destination to check for, or null for any destination.
+   * @param line Line to check for, or null for any line.
+   * @return false if no instance matches, true if some may.
+   */
+  default boolean mayMatch(String destination, String line) {
+    return true;
+  }
+}
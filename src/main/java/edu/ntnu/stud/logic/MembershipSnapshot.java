@@ -0,0 +1,351 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Versioned snapshot of which departures are in a register.
+ *
+ * <p>The snapshot only fixes the membership of the register: the set of departures and their
+ * order. The departure objects are the live objects of the register, so their delays and tracks
+ * are not frozen and always show the latest values. A reader that needs the state of a departure
+ * at one moment must copy it.
+ *
+ * <p>The register publishes a new snapshot through a single volatile field when departures are
+ * added or removed, so readers never lock and never see the membership while it is being
+ * changed. The departures are kept in an array sorted by service day and departure time. A
+ * single change copies the array with one departure inserted or removed, which is one memory
+ * copy and does not need a new sort. Changes made together, like a batch of the
+ * {@link RegisterCommandPipeline}, are merged into the array in one pass.
+ *
+ * <p>Departure patterns and the departures loaded off the heap are held as they are, and their
+ * live instances are only created when the departures of the snapshot are read. The sorted list
+ * with the instances mixed in is built the first time it is needed and then kept for the
+ * snapshot. Instances have no delay or track, as instances that are changed are stored as their
+ * own departures.
+ */
+public final class MembershipSnapshot {
+  private static final ScheduledPattern[] NO_PATTERNS = new ScheduledPattern[0];
+
+  static final MembershipSnapshot EMPTY =
+      new MembershipSnapshot(0, new TrainDeparture[0], new long[0], NO_PATTERNS);
+
+  private final long version;
+  private final TrainDeparture[] departures;
+  private final long[] keys;
+  private final ScheduledPattern[] patterns;
+  private volatile List<TrainDeparture> departureList;
+  private volatile Map<String, TrainDeparture> idIndex;
+
+  /**
+   * Creates a new snapshot. The arrays are owned by the snapshot and must not be changed.
+   *
+   * @param version Version of the snapshot.
+   * @param departures Departures sorted by key and trainId.
+   * @param keys Scheduled epoch minute of each departure.
+   * @param patterns Departure patterns with live instances.
+   */
+  private MembershipSnapshot(long version, TrainDeparture[] departures, long[] keys,
+                           ScheduledPattern[] patterns) {
+    this.version = version;
+    this.departures = departures;
+    this.keys = keys;
+    this.patterns = patterns;
+    if (patterns.length == 0) {
+      this.departureList = Collections.unmodifiableList(Arrays.asList(departures));
+    }
+  }
+
+  /**
+   * Gets the version of the snapshot. Every published snapshot has a higher version than the
+   * one before it.
+   *
+   * @return Version of the snapshot.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the number of departures in the snapshot.
+   *
+   * @return Number of departures.
+   */
+  public int size() {
+    int size = departures.length;
+    for (ScheduledPattern pattern : patterns) {
+      size += pattern.liveCount();
+    }
+    return size;
+  }
+
+  /**
+   * Gets all departures sorted by service day and departure time.
+   *
+   * @return Unmodifiable list of departures.
+   */
+  public List<TrainDeparture> getDepartures() {
+    List<TrainDeparture> list = departureList;
+    if (list == null) {
+      // As with the index by trainId, two readers may both build the list.
+      list = Collections.unmodifiableList(Arrays.asList(withInstances()));
+      departureList = list;
+    }
+    return list;
+  }
+
+  /**
+   * Gets a departure by its trainId.
+   * The index by trainId is built the first time it is needed for this snapshot.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Train departure object if found, null if not found.
+   */
+  public TrainDeparture getDepartureFromId(String trainId) {
+    if (trainId == null) {
+      return null;
+    }
+
+    Map<String, TrainDeparture> index = idIndex;
+    if (index == null) {
+      // Two readers may build the index at the same time, but they build the same map.
+      TrainIdIndex built = new TrainIdIndex();
+      for (TrainDeparture departure : departures) {
+        built.put(departure.getTrainId(), departure);
+      }
+      index = Collections.unmodifiableMap(built);
+      idIndex = index;
+    }
+    TrainDeparture departure = index.get(trainId);
+    for (int i = 0; departure == null && i < patterns.length; i++) {
+      int instance = patterns[i].liveIndexOf(trainId);
+      if (instance >= 0) {
+        departure = patterns[i].getSource().createDeparture(instance);
+      }
+    }
+    return departure;
+  }
+
+  /**
+   * Gets the departures going to a destination, sorted by service day and departure time.
+   *
+   * @param destination Destination to check for.
+   * @return List of train departures.
+   */
+  public List<TrainDeparture> getDeparturesByDestination(String destination) {
+    List<TrainDeparture> found = new ArrayList<>();
+    for (TrainDeparture departure : getDepartures()) {
+      if (departure.getDestination().equals(destination)) {
+        found.add(departure);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Makes the next version of the snapshot with a departure added in sorted position.
+   *
+   * @param departure Departure to add.
+   * @param key Scheduled epoch minute of the departure.
+   * @return New snapshot.
+   */
+  MembershipSnapshot withAdded(TrainDeparture departure, long key) {
+    int position = insertionPoint(key, departure.getTrainId());
+
+    TrainDeparture[] newDepartures = new TrainDeparture[departures.length + 1];
+    long[] newKeys = new long[keys.length + 1];
+    System.arraycopy(departures, 0, newDepartures, 0, position);
+    System.arraycopy(keys, 0, newKeys, 0, position);
+    newDepartures[position] = departure;
+    newKeys[position] = key;
+    System.arraycopy(departures, position, newDepartures, position + 1,
+        departures.length - position);
+    System.arraycopy(keys, position, newKeys, position + 1, keys.length - position);
+
+    return new MembershipSnapshot(version + 1, newDepartures, newKeys, patterns);
+  }
+
+  /**
+   * Makes the next version of the snapshot with a departure removed.
+   *
+   * @param departure Departure to remove.
+   * @param key Scheduled epoch minute of the departure.
+   * @return New snapshot, or this snapshot if the departure was not in it.
+   */
+  MembershipSnapshot withRemoved(TrainDeparture departure, long key) {
+    // TrainIds are unique, so the departure is right before its insertion point.
+    int position = insertionPoint(key, departure.getTrainId()) - 1;
+    if (position < 0 || departures[position] != departure) {
+      return this;
+    }
+
+    TrainDeparture[] newDepartures = new TrainDeparture[departures.length - 1];
+    long[] newKeys = new long[keys.length - 1];
+    System.arraycopy(departures, 0, newDepartures, 0, position);
+    System.arraycopy(keys, 0, newKeys, 0, position);
+    System.arraycopy(departures, position + 1, newDepartures, position,
+        departures.length - position - 1);
+    System.arraycopy(keys, position + 1, newKeys, position, keys.length - position - 1);
+
+    return new MembershipSnapshot(version + 1, newDepartures, newKeys, patterns);
+  }
+
+  /**
+   * Makes the next version of the snapshot with many departures added and removed in one pass.
+   *
+   * @param added Departures to add, with the scheduled epoch minute of each.
+   * @param removed Departures to remove, compared by identity.
+   * @return New snapshot.
+   */
+  MembershipSnapshot withChanges(Map<TrainDeparture, Long> added, Set<TrainDeparture> removed) {
+    TrainDeparture[] addedDepartures = added.keySet().toArray(new TrainDeparture[0]);
+    Arrays.sort(addedDepartures, Comparator.comparingLong((TrainDeparture departure) ->
+        added.get(departure)).thenComparing(TrainDeparture::getTrainId));
+
+    TrainDeparture[] newDepartures = new TrainDeparture[departures.length + added.size()];
+    long[] newKeys = new long[newDepartures.length];
+    int size = 0;
+    int next = 0;
+    for (int i = 0; i <= departures.length; i++) {
+      while (next < addedDepartures.length && (i == departures.length
+          || compare(added.get(addedDepartures[next]), addedDepartures[next], keys[i],
+          departures[i]) < 0)) {
+        newDepartures[size] = addedDepartures[next];
+        newKeys[size] = added.get(addedDepartures[next]);
+        size += 1;
+        next += 1;
+      }
+      if (i < departures.length && !removed.contains(departures[i])) {
+        newDepartures[size] = departures[i];
+        newKeys[size] = keys[i];
+        size += 1;
+      }
+    }
+
+    return new MembershipSnapshot(version + 1, Arrays.copyOf(newDepartures, size),
+        Arrays.copyOf(newKeys, size), patterns);
+  }
+
+  /**
+   * Makes the next version of the snapshot with only the departures that should be kept.
+   * Used when many departures are removed at once, as it copies the array a single time.
+   *
+   * @param keep Returns true for the departures to keep.
+   * @return New snapshot.
+   */
+  MembershipSnapshot retainAll(Predicate<TrainDeparture> keep) {
+    TrainDeparture[] newDepartures = new TrainDeparture[departures.length];
+    long[] newKeys = new long[keys.length];
+    int size = 0;
+    for (int i = 0; i < departures.length; i++) {
+      if (keep.test(departures[i])) {
+        newDepartures[size] = departures[i];
+        newKeys[size] = keys[i];
+        size += 1;
+      }
+    }
+
+    return new MembershipSnapshot(version + 1, Arrays.copyOf(newDepartures, size),
+        Arrays.copyOf(newKeys, size), patterns);
+  }
+
+  /**
+   * Makes the next version of the snapshot from a full set of departures.
+   * Used after many departures are added at once.
+   *
+   * @param sortedDepartures Departures sorted by key and trainId, owned by the new snapshot.
+   * @param sortedKeys Scheduled epoch minute of each departure, owned by the new snapshot.
+   * @return New snapshot.
+   */
+  MembershipSnapshot withDepartures(TrainDeparture[] sortedDepartures, long[] sortedKeys) {
+    return new MembershipSnapshot(version + 1, sortedDepartures, sortedKeys, patterns);
+  }
+
+  /**
+   * Makes the next version of the snapshot with another set of departure patterns.
+   *
+   * @param newPatterns Departure patterns of the register, owned by the new snapshot.
+   * @return New snapshot.
+   */
+  MembershipSnapshot withPatterns(ScheduledPattern[] newPatterns) {
+    return new MembershipSnapshot(version + 1, departures, keys, newPatterns);
+  }
+
+  /**
+   * Merges the live pattern instances into the sorted departures. The instances of each day are
+   * sorted on their own, and the two sorted arrays are then merged in one pass.
+   */
+  private TrainDeparture[] withInstances() {
+    ScheduledPattern[] byDay = patterns.clone();
+    Arrays.sort(byDay, Comparator.comparingInt(ScheduledPattern::getDay));
+    int count = 0;
+    for (ScheduledPattern pattern : byDay) {
+      count += pattern.liveCount();
+    }
+
+    TrainDeparture[] instances = new TrainDeparture[count];
+    long[] instanceKeys = new long[count];
+    int size = 0;
+    int next = 0;
+    while (next < byDay.length) {
+      int day = byDay[next].getDay();
+      List<TrainDeparture> dayInstances = new ArrayList<>();
+      for (; next < byDay.length && byDay[next].getDay() == day; next++) {
+        byDay[next].addLive(0, Clock.MINUTES_PER_DAY - 1, dayInstances);
+      }
+      dayInstances.sort(ServiceDayPartition.DEPARTURE_ORDER);
+      for (TrainDeparture instance : dayInstances) {
+        instances[size] = instance;
+        instanceKeys[size] = (long) day * Clock.MINUTES_PER_DAY + instance.getDepartureMinute();
+        size += 1;
+      }
+    }
+
+    TrainDeparture[] merged = new TrainDeparture[departures.length + size];
+    int stored = 0;
+    int created = 0;
+    for (int i = 0; i < merged.length; i++) {
+      boolean takeStored = created == size || (stored < departures.length
+          && compare(keys[stored], departures[stored], instanceKeys[created],
+          instances[created]) <= 0);
+      merged[i] = takeStored ? departures[stored++] : instances[created++];
+    }
+    return merged;
+  }
+
+  private static int compare(long key, TrainDeparture departure, long otherKey,
+                             TrainDeparture other) {
+    int compared = Long.compare(key, otherKey);
+    return compared != 0 ? compared : departure.getTrainId().compareTo(other.getTrainId());
+  }
+
+  /**
+   * Finds the position after every departure that sorts before or equal to the given key and
+   * trainId.
+   */
+  private int insertionPoint(long key, String trainId) {
+    int low = 0;
+    int high = departures.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int compared = Long.compare(keys[middle], key);
+      if (compared == 0) {
+        compared = departures[middle].getTrainId().compareTo(trainId);
+      }
+      if (compared <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,180 @@
+package edu.ntnu.stud.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Runs scans and sorts over large collections of departures either sequentially or in parallel.
+ *
+ * <p>Below the size threshold, or on a machine with a single processor, the work is done on the
+ * calling thread, as splitting it up costs more than it saves. Above the threshold the work is
+ * split by the spliterator of the collection and run on a dedicated {@link ForkJoinPool}, so
+ * large scans do not compete with other users of the common pool. The pool is shared by all
+ * registers and uses daemon threads, so it never keeps the application running.
+ * See the ParallelScanBenchmark tool for measuring where the threshold should be.
+ */
+class ParallelScanExecutor {
+  /**
+   * Default number of elements before a scan or sort is run in parallel.
+   *
+   * <p>The threshold is used by the full scans of queries, the timetable diff, the expiry scan
+   * and the snapshot sort. The value is a guess and has not been tuned. Run the
+   * ParallelScanBenchmark tool on the target machine and set the threshold with
+   * {@link TrainDepartureRegister#setParallelThreshold(int)}.
+   */
+  static final int DEFAULT_THRESHOLD = 20_000;
+
+  private static final int MIN_SPLIT_SIZE = 2_048;
+  private static ForkJoinPool pool;
+
+  private final int processors;
+  private int threshold;
+
+  /**
+   * Creates an executor with the default threshold.
+   */
+  ParallelScanExecutor() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates an executor with the default threshold that acts as if the machine has the given
+   * number of processors.
+   *
+   * @param processors Number of processors, scans only run in parallel if it is above 1.
+   */
+  ParallelScanExecutor(int processors) {
+    this.processors = processors;
+    this.threshold = DEFAULT_THRESHOLD;
+  }
+
+  /**
+   * Gets the number of elements before a scan is run in parallel.
+   *
+   * @return Size threshold.
+   */
+  int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the number of elements before a scan is run in parallel.
+   * A threshold of 0 runs every scan in parallel, {@link Integer#MAX_VALUE} runs none.
+   *
+   * @param threshold Size threshold, negative values are set to 0.
+   */
+  void setThreshold(int threshold) {
+    this.threshold = Math.max(0, threshold);
+  }
+
+  /**
+   * Checks if a scan of the given size would run in parallel.
+   *
+   * @param size Number of elements to scan.
+   * @return true if the scan would run in parallel.
+   */
+  boolean isParallel(int size) {
+    return size >= threshold && processors > 1;
+  }
+
+  /**
+   * Returns the elements that match a predicate, in the encounter order of the collection.
+   *
+   * @param source Elements to scan. Must not be changed during the scan.
+   * @param filter Returns true for the elements to keep. Must be safe to call from several
+   *               threads when the scan runs in parallel.
+   * @param <T> Type of the elements.
+   * @return List of matching elements.
+   */
+  <T> List<T> filter(Collection<T> source, Predicate<? super T> filter) {
+    if (!isParallel(source.size())) {
+      List<T> matched = new ArrayList<>();
+      for (T element : source) {
+        if (filter.test(element)) {
+          matched.add(element);
+        }
+      }
+      return matched;
+    }
+
+    return pool().invoke(new FilterTask<>(source.spliterator(), filter));
+  }
+
+  /**
+   * Sorts an array in place.
+   *
+   * @param array Array to sort.
+   * @param comparator Order of the elements.
+   * @param <T> Type of the elements.
+   */
+  <T> void sort(T[] array, Comparator<? super T> comparator) {
+    if (!isParallel(array.length)) {
+      Arrays.sort(array, comparator);
+      return;
+    }
+
+    // Arrays.parallelSort forks into the pool of the worker that calls it.
+    pool().submit(() -> Arrays.parallelSort(array, comparator)).join();
+  }
+
+  private static synchronized ForkJoinPool pool() {
+    if (pool == null) {
+      pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+          forkJoinPool -> {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("register-scan-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+          }, null, false);
+    }
+    return pool;
+  }
+
+  /**
+   * Filters the part of the collection covered by a spliterator. Splits the spliterator in two
+   * until the parts are small, and joins the results in encounter order.
+   */
+  private static class FilterTask<T> extends RecursiveTask<List<T>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Spliterator<T> spliterator;
+    private final Predicate<? super T> filter;
+
+    FilterTask(Spliterator<T> spliterator, Predicate<? super T> filter) {
+      this.spliterator = spliterator;
+      this.filter = filter;
+    }
+
+    @Override
+    protected List<T> compute() {
+      if (spliterator.estimateSize() > MIN_SPLIT_SIZE) {
+        Spliterator<T> prefix = spliterator.trySplit();
+        if (prefix != null) {
+          FilterTask<T> prefixTask = new FilterTask<>(prefix, filter);
+          prefixTask.fork();
+          List<T> suffixResult = compute();
+          List<T> result = prefixTask.join();
+          result.addAll(suffixResult);
+          return result;
+        }
+      }
+
+      List<T> matched = new ArrayList<>();
+      spliterator.forEachRemaining(element -> {
+        if (filter.test(element)) {
+          matched.add(element);
+        }
+      });
+      return matched;
+    }
+  }
+}
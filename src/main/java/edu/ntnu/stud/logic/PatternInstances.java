@@ -0,0 +1,57 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.DeparturePattern;
+import edu.ntnu.stud.entity.TrainDeparture;
+
+/**
+ * The instances of a {@link DeparturePattern}. All instances share the destination and line of
+ * the pattern.
+ */
+final class PatternInstances implements InstanceSource {
+  private final DeparturePattern pattern;
+
+  /**
+   * Creates the instances of a pattern.
+   *
+   * @param pattern Pattern of the departures.
+   */
+  PatternInstances(DeparturePattern pattern) {
+    this.pattern = pattern;
+  }
+
+  @Override
+  public int getInstanceCount() {
+    return pattern.getInstanceCount();
+  }
+
+  @Override
+  public int getDepartureMinute(int index) {
+    return pattern.getDepartureMinute(index);
+  }
+
+  @Override
+  public int firstIndexFrom(int minute) {
+    return pattern.firstIndexFrom(minute);
+  }
+
+  @Override
+  public int indexOf(String trainId) {
+    return pattern.indexOf(trainId);
+  }
+
+  @Override
+  public TrainDeparture createDeparture(int index) {
+    return pattern.createDeparture(index);
+  }
+
+  @Override
+  public boolean matches(int index, String destination, String line) {
+    return mayMatch(destination, line);
+  }
+
+  @Override
+  public boolean mayMatch(String destination, String line) {
+    return (destination == null || destination.equals(pattern.getDestination()))
+        && (line == null || line.equals(pattern.getLine()));
+  }
+}
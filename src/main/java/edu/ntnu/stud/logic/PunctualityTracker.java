@@ -0,0 +1,144 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.monitoring.PunctualityStatistics;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the punctuality statistics of a register up to date as departures are added, delayed
+ * and leave, so the statistics never have to be computed by scanning the departures.
+ *
+ * <p>The tracker remembers the delay it has counted for each trainId in the register. When the
+ * delay changes the old delay is taken out of the statistics and the new one put in. A departure
+ * that leaves keeps its last delay in the statistics of its service day, while a departure that
+ * is deleted is taken out again, as it never ran.
+ *
+ * <p>The tracker is changed on the thread that changes the register, and the statistics can be
+ * read from any thread. Create it with {@link TrainDepartureRegister#enablePunctuality()}.
+ */
+public class PunctualityTracker implements RegisterListener {
+  private final Map<Integer, PunctualityStatistics> days;
+  private final Map<String, Counted> counted;
+
+  /**
+   * Creates a tracker without any statistics.
+   */
+  PunctualityTracker() {
+    this.days = new ConcurrentHashMap<>();
+    this.counted = new HashMap<>();
+  }
+
+  /**
+   * Gets the punctuality statistics of a service day.
+   *
+   * @param day Service day to get the statistics of.
+   * @return Statistics of the day, empty if nothing has been counted for the day.
+   */
+  public PunctualityStatistics getDay(int day) {
+    PunctualityStatistics statistics = days.get(day);
+    return statistics != null ? statistics : new PunctualityStatistics();
+  }
+
+  /**
+   * Drops the statistics of the service days before the given day, for example once they have
+   * been stored elsewhere.
+   *
+   * @param day First service day to keep.
+   */
+  public void forgetDaysBefore(int day) {
+    days.keySet().removeIf((Integer key) -> key < day);
+  }
+
+  /**
+   * Counts the delay of an added departure.
+   *
+   * @param departure Added departure.
+   * @param serviceDay Service day the departure was added to.
+   */
+  @Override
+  public void departureAdded(TrainDeparture departure, int serviceDay) {
+    int delay = departure.getDelayMinutes();
+    days.computeIfAbsent(serviceDay, (Integer key) -> new PunctualityStatistics())
+        .record(departure.getDestination(), departure.getLine(), delay, 1);
+    counted.put(departure.getTrainId(), new Counted(serviceDay, delay));
+  }
+
+  /**
+   * Takes a deleted departure out of the statistics.
+   *
+   * @param departure Deleted departure.
+   */
+  @Override
+  public void departureRemoved(TrainDeparture departure) {
+    Counted previous = counted.remove(departure.getTrainId());
+    if (previous != null) {
+      record(departure, previous.day, previous.delayMinutes, -1);
+    }
+  }
+
+  /**
+   * Keeps the last delay of a departure that has left in the statistics.
+   *
+   * @param departure Departure that left.
+   */
+  @Override
+  public void departureLeft(TrainDeparture departure) {
+    counted.remove(departure.getTrainId());
+  }
+
+  /**
+   * Moves a departure to its new delay in the statistics.
+   *
+   * @param departure Changed departure.
+   */
+  @Override
+  public void departureChanged(TrainDeparture departure) {
+    Counted previous = counted.get(departure.getTrainId());
+    int delay = departure.getDelayMinutes();
+    if (previous == null || previous.delayMinutes == delay) {
+      return;
+    }
+    record(departure, previous.day, previous.delayMinutes, -1);
+    record(departure, previous.day, delay, 1);
+    counted.put(departure.getTrainId(), new Counted(previous.day, delay));
+  }
+
+  /**
+   * Stops following the departures of the days the register no longer holds. Their last delays
+   * stay in the statistics.
+   *
+   * @param day New current service day.
+   */
+  @Override
+  public void serviceDayStarted(int day) {
+    Iterator<Counted> iterator = counted.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().day < day - 1) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private void record(TrainDeparture departure, int day, int delayMinutes, long count) {
+    PunctualityStatistics statistics = days.get(day);
+    if (statistics != null) {
+      statistics.record(departure.getDestination(), departure.getLine(), delayMinutes, count);
+    }
+  }
+
+  /**
+   * The service day and delay a departure has been counted with.
+   */
+  private static final class Counted {
+    private final int day;
+    private final int delayMinutes;
+
+    private Counted(int day, int delayMinutes) {
+      this.day = day;
+      this.delayMinutes = delayMinutes;
+    }
+  }
+}
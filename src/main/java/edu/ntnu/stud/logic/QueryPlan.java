@@ -0,0 +1,100 @@
+package edu.ntnu.stud.logic;
+
+/**
+ * Describes how a {@link DepartureQuery} was run.
+ * Holds the access path the planner chose together with its estimates and the actual number of
+ * rows that were scanned and matched, so bad estimates can be spotted.
+ */
+public class QueryPlan {
+
+  /**
+   * The ways the register can find the candidate departures of a query.
+   */
+  public enum AccessPath {
+    FULL_SCAN,
+    TIME_INDEX,
+    DESTINATION_INDEX,
+    LINE_INDEX
+  }
+
+  private final AccessPath accessPath;
+  private final long estimatedRowsScanned;
+  private final double estimatedRowsMatched;
+  private long rowsScanned;
+  private long rowsMatched;
+
+  /**
+   * Creates a new plan.
+   *
+   * @param accessPath Access path chosen by the planner.
+   * @param estimatedRowsScanned Number of rows the planner expects to scan.
+   * @param estimatedRowsMatched Number of rows the planner expects to match.
+   */
+  QueryPlan(AccessPath accessPath, long estimatedRowsScanned, double estimatedRowsMatched) {
+    this.accessPath = accessPath;
+    this.estimatedRowsScanned = estimatedRowsScanned;
+    this.estimatedRowsMatched = estimatedRowsMatched;
+  }
+
+  /**
+   * Sets the actual numbers after the query has run.
+   *
+   * @param rowsScanned Number of rows that were scanned.
+   * @param rowsMatched Number of rows that matched.
+   */
+  void setActual(long rowsScanned, long rowsMatched) {
+    this.rowsScanned = rowsScanned;
+    this.rowsMatched = rowsMatched;
+  }
+
+  /**
+   * Get the access path chosen by the planner.
+   *
+   * @return Access path.
+   */
+  public AccessPath getAccessPath() {
+    return accessPath;
+  }
+
+  /**
+   * Get the number of rows the planner expected to scan.
+   *
+   * @return Estimated rows scanned.
+   */
+  public long getEstimatedRowsScanned() {
+    return estimatedRowsScanned;
+  }
+
+  /**
+   * Get the number of rows the planner expected to match.
+   *
+   * @return Estimated rows matched.
+   */
+  public double getEstimatedRowsMatched() {
+    return estimatedRowsMatched;
+  }
+
+  /**
+   * Get the number of rows that were scanned.
+   *
+   * @return Actual rows scanned.
+   */
+  public long getRowsScanned() {
+    return rowsScanned;
+  }
+
+  /**
+   * Get the number of rows that matched.
+   *
+   * @return Actual rows matched.
+   */
+  public long getRowsMatched() {
+    return rowsMatched;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: scanned %d (estimated %d), matched %d (estimated %.1f)",
+        accessPath, rowsScanned, estimatedRowsScanned, rowsMatched, estimatedRowsMatched);
+  }
+}
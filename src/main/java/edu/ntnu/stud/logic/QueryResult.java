@@ -0,0 +1,41 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.List;
+
+/**
+ * Result of a {@link DepartureQuery}, with the matching departures and the plan that was used.
+ */
+public class QueryResult {
+  private final List<TrainDeparture> departures;
+  private final QueryPlan plan;
+
+  /**
+   * Creates a new query result.
+   *
+   * @param departures Matching departures sorted by service day and departure time.
+   * @param plan Plan that was used to run the query.
+   */
+  QueryResult(List<TrainDeparture> departures, QueryPlan plan) {
+    this.departures = List.copyOf(departures);
+    this.plan = plan;
+  }
+
+  /**
+   * Get the departures that matched the query, sorted by service day and departure time.
+   *
+   * @return Unmodifiable list of departures.
+   */
+  public List<TrainDeparture> getDepartures() {
+    return departures;
+  }
+
+  /**
+   * Get the plan that was used to run the query.
+   *
+   * @return Query plan.
+   */
+  public QueryPlan getPlan() {
+    return plan;
+  }
+}
@@ -0,0 +1,368 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.ClockListener;
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.io.Closeable;
+import java.time.LocalTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lets many threads change a register without locking it, by passing every change as a command
+ * through a bounded ring to a single writer thread that applies them in order.
+ *
+ * <p>The ring holds preallocated command slots. A producer claims the next sequence number with
+ * one atomic increment, fills in the slot and publishes it by writing the sequence number into
+ * the slot. The writer applies every published command it finds in one batch, and then frees
+ * their slots with a single write, so the cost of handing over commands is spread over the batch.
+ * A producer that finds the ring full waits for the writer, which bounds the memory a burst of
+ * changes can take. Each command gets a future that is completed with its result when it has been
+ * applied. The changes of a batch are published to readers as one snapshot.
+ *
+ * <p>How the writer waits for commands, and a producer waits for a free slot, is set by the
+ * {@link WaitStrategy}. Spinning gives the lowest latency but keeps a core busy, so parking is the
+ * default.
+ *
+ * <p>Closing the pipeline marks the claim counter as closed in the same atomic step that reads
+ * it, so every command is either claimed before the close, and applied by the writer before it
+ * stops, or rejected. No future is left behind.
+ *
+ * <p>While the pipeline is running, the writer thread is the only thread that may change the
+ * register, and other threads must read it through {@link TrainDepartureRegister#getSnapshot()}.
+ * Listeners of the register are called on the writer thread.
+ */
+public class RegisterCommandPipeline implements ClockListener, Closeable {
+  /**
+   * Default number of slots in the ring.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private static final long PARK_NANOS = 50_000L;
+  // Set in the claim counter when the pipeline is closed.
+  private static final long CLOSED = 1L << 62;
+
+  /**
+   * How threads wait for the ring.
+   */
+  public enum WaitStrategy {
+    /**
+     * Checks again at once, for the lowest latency when there are cores to spare.
+     */
+    BUSY_SPIN,
+
+    /**
+     * Lets other threads run before checking again.
+     */
+    YIELDING,
+
+    /**
+     * Sleeps for a short while before checking again, which leaves the core to other work.
+     */
+    PARKING
+  }
+
+  private enum CommandType {
+    ADD,
+    ADD_TO_DAY,
+    DELETE,
+    DELAY,
+    TRACK,
+    CLOCK_TICK
+  }
+
+  private final TrainDepartureRegister register;
+  private final Command[] ring;
+  private final int mask;
+  private final WaitStrategy waitStrategy;
+  private final AtomicLong claimed;
+  private final Thread writer;
+  private volatile long applied;
+  private volatile long batchCount;
+
+  /**
+   * Creates a pipeline with the default capacity that parks while waiting.
+   *
+   * @param register Register to change.
+   */
+  public RegisterCommandPipeline(TrainDepartureRegister register) {
+    this(register, DEFAULT_CAPACITY, WaitStrategy.PARKING);
+  }
+
+  /**
+   * Creates a pipeline and starts its writer thread.
+   *
+   * @param register Register to change.
+   * @param capacity Number of slots in the ring, rounded up to a power of two.
+   * @param waitStrategy How threads wait for the ring, null gives parking.
+   */
+  public RegisterCommandPipeline(TrainDepartureRegister register, int capacity,
+                                 WaitStrategy waitStrategy) {
+    this.register = register;
+    int size = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 24)) * 2 - 1);
+    this.ring = new Command[size];
+    for (int i = 0; i < size; i++) {
+      ring[i] = new Command();
+    }
+    this.mask = size - 1;
+    this.waitStrategy = waitStrategy != null ? waitStrategy : WaitStrategy.PARKING;
+    this.claimed = new AtomicLong(0);
+    this.applied = -1;
+    this.writer = new Thread(this::applyCommands, "register-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Gets the number of slots in the ring.
+   *
+   * @return Capacity of the ring.
+   */
+  public int getCapacity() {
+    return ring.length;
+  }
+
+  /**
+   * Gets the number of commands that have been applied.
+   *
+   * @return Number of applied commands.
+   */
+  public long getAppliedCount() {
+    return applied + 1;
+  }
+
+  /**
+   * Gets the number of batches the writer has applied. The number of applied commands divided by
+   * this is the average batch size.
+   *
+   * @return Number of batches.
+   */
+  public long getBatchCount() {
+    return batchCount;
+  }
+
+  /**
+   * Adds a departure to the current service day of the register.
+   *
+   * @param departure Departure to add.
+   * @return Future completed with true if the departure was added, false if not.
+   */
+  public CompletableFuture<Boolean> submitAdd(TrainDeparture departure) {
+    return submit(CommandType.ADD, departure, null, 0, false);
+  }
+
+  /**
+   * Adds a departure to the given service day of the register.
+   *
+   * @param departure Departure to add.
+   * @param serviceDay Service day the departure belongs to.
+   * @return Future completed with true if the departure was added, false if not.
+   */
+  public CompletableFuture<Boolean> submitAdd(TrainDeparture departure, int serviceDay) {
+    return submit(CommandType.ADD_TO_DAY, departure, null, serviceDay, false);
+  }
+
+  /**
+   * Deletes the departure with the given trainId.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Future completed with true if the departure was deleted, false if not.
+   */
+  public CompletableFuture<Boolean> submitDelete(String trainId) {
+    return submit(CommandType.DELETE, null, trainId, 0, false);
+  }
+
+  /**
+   * Sets the delay of a departure.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @param delay New delay of the departure.
+   * @return Future completed with true if the delay was set, false if not.
+   */
+  public CompletableFuture<Boolean> submitDelay(String trainId, LocalTime delay) {
+    return submit(CommandType.DELAY, null, trainId, TimeOfDay.toMinute(delay), false);
+  }
+
+  /**
+   * Sets the track of a departure.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @param track New track, negative values mean no track is assigned.
+   * @return Future completed with true if the track was set, false if not.
+   */
+  public CompletableFuture<Boolean> submitTrack(String trainId, int track) {
+    return submit(CommandType.TRACK, null, trainId, track, false);
+  }
+
+  /**
+   * Expires the departures that have left by the given epoch minute.
+   *
+   * @param epochMinute Current epoch minute.
+   * @return Future completed with the number of expired departures.
+   */
+  public CompletableFuture<Integer> submitClockTick(long epochMinute) {
+    return submit(CommandType.CLOCK_TICK, null, null, epochMinute, 0);
+  }
+
+  /**
+   * Passes a new time of the clock on to the register through the pipeline.
+   *
+   * @param previousMinute Epoch minute the clock had before the update.
+   * @param currentMinute New epoch minute of the clock.
+   */
+  @Override
+  public void onTimeChanged(long previousMinute, long currentMinute) {
+    submitClockTick(currentMinute);
+  }
+
+  /**
+   * Applies the commands already submitted and stops the writer thread. Commands submitted
+   * afterwards are completed with false or 0 without being applied.
+   */
+  @Override
+  public void close() {
+    claimed.getAndUpdate((long next) -> next | CLOSED);
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> CompletableFuture<T> submit(CommandType type, TrainDeparture departure,
+                                          String trainId, long value, T rejected) {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if ((sequence & CLOSED) != 0) {
+        return CompletableFuture.completedFuture(rejected);
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+    // The writer applies every command claimed before the close, so the slot is freed.
+    int idleCount = 0;
+    while (sequence - ring.length > applied) {
+      idle(idleCount++);
+    }
+
+    Command command = ring[(int) sequence & mask];
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    command.type = type;
+    command.departure = departure;
+    command.trainId = trainId;
+    command.value = value;
+    command.future = future;
+    command.sequence = sequence;
+    return (CompletableFuture<T>) future;
+  }
+
+  /**
+   * Applies batches of published commands until the pipeline is closed and every command claimed
+   * before the close has been applied.
+   */
+  private void applyCommands() {
+    long next = 0;
+    int idleCount = 0;
+    while (true) {
+      long claimedCount = claimed.get();
+      if ((claimedCount & CLOSED) != 0 && next >= (claimedCount & ~CLOSED)) {
+        break;
+      }
+      long last = next - 1;
+      while (last + 1 - next < ring.length && ring[(int) (last + 1) & mask].sequence == last + 1) {
+        last += 1;
+      }
+      if (last < next) {
+        idle(idleCount++);
+        continue;
+      }
+
+      // The changes of the batch are published as one snapshot, before any of its futures are
+      // completed, so a caller that waits for its future sees the change in the snapshot.
+      register.deferPublishing();
+      try {
+        for (long sequence = next; sequence <= last; sequence++) {
+          apply(ring[(int) sequence & mask]);
+        }
+      } finally {
+        register.publishDeferred();
+      }
+      for (long sequence = next; sequence <= last; sequence++) {
+        complete(ring[(int) sequence & mask]);
+      }
+      applied = last;
+      batchCount += 1;
+      next = last + 1;
+      idleCount = 0;
+    }
+  }
+
+  private void apply(Command command) {
+    try {
+      command.result = run(command);
+    } catch (RuntimeException e) {
+      command.failure = e;
+    }
+  }
+
+  private void complete(Command command) {
+    if (command.failure != null) {
+      command.future.completeExceptionally(command.failure);
+    } else {
+      command.future.complete(command.result);
+    }
+    command.departure = null;
+    command.trainId = null;
+    command.future = null;
+    command.result = null;
+    command.failure = null;
+  }
+
+  private Object run(Command command) {
+    switch (command.type) {
+      case ADD:
+        return register.addDeparture(command.departure);
+      case ADD_TO_DAY:
+        return register.addDeparture(command.departure, (int) command.value);
+      case DELETE:
+        return register.deleteDeparture(register.getDepartureFromId(command.trainId));
+      case DELAY:
+        return register.updateDelay(command.trainId, TimeOfDay.toLocalTime((int) command.value));
+      case TRACK:
+        return register.updateTrack(command.trainId, (int) command.value);
+      case CLOCK_TICK:
+        return register.expireDepartures(command.value);
+      default:
+        return null;
+    }
+  }
+
+  private void idle(int idleCount) {
+    if (waitStrategy == WaitStrategy.BUSY_SPIN) {
+      Thread.onSpinWait();
+    } else if (waitStrategy == WaitStrategy.YIELDING) {
+      Thread.yield();
+    } else if (idleCount < 100) {
+      // A few spins first, as the next command is often only a moment away.
+      Thread.onSpinWait();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  /**
+   * A slot of the ring. The sequence number is written last, which publishes the command.
+   */
+  private static final class Command {
+    private volatile long sequence = -1;
+    private CommandType type;
+    private TrainDeparture departure;
+    private String trainId;
+    private long value;
+    private CompletableFuture<Object> future;
+    private Object result;
+    private RuntimeException failure;
+  }
+}
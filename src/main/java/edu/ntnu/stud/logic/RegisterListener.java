@@ -0,0 +1,59 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+
+/**
+ * Listener that gets notified of every change to a {@link TrainDepartureRegister}.
+ * This is used to copy the register to other processes, see
+ * {@link edu.ntnu.stud.replication.ReplicationLeader}.
+ *
+ * <p>The listener is called on the thread that changed the register, right after the change.
+ * Departures that expire or are deleted as old are reported as left, which by default is the
+ * same as removed.
+ *
+ * <p>The instances of a {@link edu.ntnu.stud.entity.DeparturePattern} are reported like any
+ * other departure, but a new departure object is created for each event, and the instance is
+ * stored as a departure of its own when it is first changed. Listeners must therefore tell
+ * departures apart by their trainId, not by the departure object.
+ */
+public interface RegisterListener {
+
+  /**
+   * Called after a departure has been added.
+   *
+   * @param departure Added departure.
+   * @param serviceDay Service day the departure was added to.
+   */
+  void departureAdded(TrainDeparture departure, int serviceDay);
+
+  /**
+   * Called after a departure has been removed, deleted or expired.
+   *
+   * @param departure Removed departure.
+   */
+  void departureRemoved(TrainDeparture departure);
+
+  /**
+   * Called after a departure has left the station and expired from the register.
+   * By default this is reported as {@link #departureRemoved(TrainDeparture)}.
+   *
+   * @param departure Departure that left.
+   */
+  default void departureLeft(TrainDeparture departure) {
+    departureRemoved(departure);
+  }
+
+  /**
+   * Called after the delay or track of a departure has been changed through the register.
+   *
+   * @param departure Changed departure.
+   */
+  void departureChanged(TrainDeparture departure);
+
+  /**
+   * Called after the register has moved on to a new service day.
+   *
+   * @param day New current service day.
+   */
+  void serviceDayStarted(int day);
+}
@@ -0,0 +1,210 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.DeparturePattern;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Departures on a service day of a register that are only created when they are read, with the
+ * instances that are still live. The instances come from an {@link InstanceSource}, which is
+ * either a {@link DeparturePattern} or a block of departures loaded into an off-heap store.
+ *
+ * <p>Instances before the first live one have left. Instances that have been materialized, that
+ * is added to the register as their own departure because they were changed, or deleted are
+ * detached and no longer come from the pattern. The object is immutable, so it can be shared with
+ * snapshots, and the register replaces it with a new one when an instance leaves or is detached.
+ */
+final class ScheduledPattern {
+  private final InstanceSource source;
+  private final int day;
+  private final int firstLive;
+  private final BitSet detached;
+
+  /**
+   * Creates a pattern where every instance is live.
+   *
+   * @param pattern Pattern of the departures.
+   * @param day Service day the pattern belongs to.
+   */
+  ScheduledPattern(DeparturePattern pattern, int day) {
+    this(new PatternInstances(pattern), day);
+  }
+
+  /**
+   * Creates a pattern where every instance of a source is live.
+   *
+   * @param source Instances of the departures.
+   * @param day Service day the instances belong to.
+   */
+  ScheduledPattern(InstanceSource source, int day) {
+    this(source, day, 0, new BitSet());
+  }
+
+  private ScheduledPattern(InstanceSource source, int day, int firstLive, BitSet detached) {
+    this.source = source;
+    this.day = day;
+    this.firstLive = firstLive;
+    this.detached = detached;
+  }
+
+  /**
+   * Gets the instances of the departures.
+   *
+   * @return Source of the instances.
+   */
+  InstanceSource getSource() {
+    return source;
+  }
+
+  /**
+   * Gets the service day the pattern belongs to.
+   *
+   * @return Service day.
+   */
+  int getDay() {
+    return day;
+  }
+
+  /**
+   * Checks if an instance still comes from the pattern.
+   *
+   * @param index Number of the instance.
+   * @return true if the instance is live, false if not.
+   */
+  boolean isLive(int index) {
+    return index >= firstLive && index < source.getInstanceCount() && !detached.get(index);
+  }
+
+  /**
+   * Gets the number of live instances.
+   *
+   * @return Number of live instances.
+   */
+  int liveCount() {
+    int count = source.getInstanceCount();
+    return count - firstLive - detached.get(firstLive, Math.max(firstLive, count)).cardinality();
+  }
+
+  /**
+   * Gets the number of the live instance with the given trainId.
+   *
+   * @param trainId TrainId to look for.
+   * @return Number of the instance, or -1 if it is not a live instance of the pattern.
+   */
+  int liveIndexOf(String trainId) {
+    int index = source.indexOf(trainId);
+    return isLive(index) ? index : -1;
+  }
+
+  /**
+   * Gets the epoch minute an instance is scheduled to leave.
+   *
+   * @param index Number of the instance.
+   * @return Scheduled epoch minute.
+   */
+  long scheduledMinuteOf(int index) {
+    return (long) day * Clock.MINUTES_PER_DAY + source.getDepartureMinute(index);
+  }
+
+  /**
+   * Adds a new departure for each live instance scheduled between two minutes of the day.
+   *
+   * @param fromMinute First minute to include.
+   * @param toMinute Last minute to include.
+   * @param out Collection to add the departures to.
+   */
+  void addLive(int fromMinute, int toMinute, Collection<TrainDeparture> out) {
+    addLive(fromMinute, toMinute, null, null, out);
+  }
+
+  /**
+   * Adds a new departure for each live instance scheduled between two minutes of the day that
+   * goes to a destination and runs on a line.
+   *
+   * @param fromMinute First minute to include.
+   * @param toMinute Last minute to include.
+   * @param destination Destination to include, or null for every destination.
+   * @param line Line to include, or null for every line.
+   * @param out Collection to add the departures to.
+   */
+  void addLive(int fromMinute, int toMinute, String destination, String line,
+               Collection<TrainDeparture> out) {
+    if (!source.mayMatch(destination, line)) {
+      return;
+    }
+    boolean filtered = destination != null || line != null;
+    int count = source.getInstanceCount();
+    for (int index = Math.max(firstLive, source.firstIndexFrom(fromMinute)); index < count
+        && source.getDepartureMinute(index) <= toMinute; index++) {
+      if (!detached.get(index) && (!filtered || source.matches(index, destination, line))) {
+        out.add(source.createDeparture(index));
+      }
+    }
+  }
+
+  /**
+   * Adds a new departure for each instance that is live in this pattern, but has left in a later
+   * version of it.
+   *
+   * @param later Later version of this pattern.
+   * @param out Collection to add the departures to.
+   */
+  void addLeftIn(ScheduledPattern later, Collection<TrainDeparture> out) {
+    int end = Math.min(later.firstLive, source.getInstanceCount());
+    for (int index = firstLive; index < end; index++) {
+      if (!detached.get(index)) {
+        out.add(source.createDeparture(index));
+      }
+    }
+  }
+
+  /**
+   * Gets the first live instance scheduled at or after a minute of the day that goes to a
+   * destination.
+   *
+   * @param fromMinute First minute to include.
+   * @param destination Destination to look for.
+   * @return Number of the instance, or -1 if there is none.
+   */
+  int firstLiveFrom(int fromMinute, String destination) {
+    if (!source.mayMatch(destination, null)) {
+      return -1;
+    }
+    int count = source.getInstanceCount();
+    int index = detached.nextClearBit(Math.max(firstLive, source.firstIndexFrom(fromMinute)));
+    while (index < count && !source.matches(index, destination, null)) {
+      index = detached.nextClearBit(index + 1);
+    }
+    return index < count ? index : -1;
+  }
+
+  /**
+   * Makes a copy where an instance is detached from the pattern.
+   *
+   * @param index Number of the instance.
+   * @return New pattern.
+   */
+  ScheduledPattern withDetached(int index) {
+    BitSet newDetached = (BitSet) detached.clone();
+    newDetached.set(index);
+    return new ScheduledPattern(source, day, firstLive, newDetached);
+  }
+
+  /**
+   * Makes a copy where the instances scheduled before an epoch minute have left.
+   *
+   * @param epochMinute Current epoch minute.
+   * @return New pattern, or this pattern if no instance left.
+   */
+  ScheduledPattern withLeftBefore(long epochMinute) {
+    long minuteOfDay = epochMinute - (long) day * Clock.MINUTES_PER_DAY;
+    int newFirstLive = minuteOfDay > Clock.MINUTES_PER_DAY ? source.getInstanceCount()
+        : source.firstIndexFrom((int) Math.max(0, minuteOfDay));
+    if (newFirstLive <= firstLive) {
+      return this;
+    }
+    return new ScheduledPattern(source, day, newFirstLive, detached);
+  }
+}
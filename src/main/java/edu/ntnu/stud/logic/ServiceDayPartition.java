@@ -0,0 +1,338 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Holds all departures that belong to a single service day.
+ * The register keeps a few of these in a ring, so ending a day only means dropping its
+ * partition instead of removing every departure one by one.
+ *
+ * <p>The departures by trainId are kept in a {@link TrainIdIndex}, so lookups by trainId do not
+ * hash strings. Besides the departures by trainId, the partition keeps an index by departure
+ * time, by destination and by line. The departures in each index entry are sorted by departure
+ * time, so queries on the indexes give the departures in order without sorting, and time windows
+ * are found with a binary search. The indexes belong to the partition, so they are dropped
+ * together with the day.
+ *
+ * <p>The partition also holds the {@link ScheduledPattern}s of the day, which are the departure
+ * patterns and the departures loaded off the heap. Their live instances are not stored as
+ * departures, but are created and mixed into the results of the queries on the indexes when they
+ * are read. The departures by trainId only hold the stored departures.
+ */
+class ServiceDayPartition {
+  /**
+   * Order of departures within a day, by departure time and then trainId.
+   */
+  static final Comparator<TrainDeparture> DEPARTURE_ORDER =
+      Comparator.comparingInt(TrainDeparture::getDepartureMinute)
+          .thenComparing(TrainDeparture::getTrainId);
+
+  private final int day;
+  private final TrainIdIndex departures;
+  private final Map<String, TrainDeparture> departuresView;
+  private final TreeSet<TrainDeparture> byTime;
+  private final HashMap<String, TreeSet<TrainDeparture>> byDestination;
+  private final HashMap<String, TreeSet<TrainDeparture>> byLine;
+  private final List<ScheduledPattern> patterns;
+
+  /**
+   * Creates a new empty partition.
+   *
+   * @param day Service day the partition holds departures for.
+   */
+  ServiceDayPartition(int day) {
+    this.day = day;
+    this.departures = new TrainIdIndex();
+    this.departuresView = Collections.unmodifiableMap(departures);
+    this.byTime = new TreeSet<>(DEPARTURE_ORDER);
+    this.byDestination = new HashMap<>();
+    this.byLine = new HashMap<>();
+    this.patterns = new ArrayList<>();
+  }
+
+  /**
+   * Gets the service day of the partition.
+   *
+   * @return Service day.
+   */
+  int getDay() {
+    return day;
+  }
+
+  /**
+   * Gets the departures of the partition by their trainId.
+   *
+   * @return Unmodifiable map of departures.
+   */
+  Map<String, TrainDeparture> getDepartures() {
+    return departuresView;
+  }
+
+  /**
+   * Gets the number of departures in the partition.
+   *
+   * @return Number of departures.
+   */
+  int size() {
+    return departures.size();
+  }
+
+  /**
+   * Gets the departure patterns of the partition.
+   *
+   * @return Unmodifiable list of patterns.
+   */
+  List<ScheduledPattern> getPatterns() {
+    return Collections.unmodifiableList(patterns);
+  }
+
+  /**
+   * Adds a departure pattern to the partition.
+   *
+   * @param pattern Pattern to add.
+   */
+  void addPattern(ScheduledPattern pattern) {
+    patterns.add(pattern);
+  }
+
+  /**
+   * Replaces a departure pattern of the partition with a new version of it.
+   *
+   * @param index Position of the pattern.
+   * @param pattern New version of the pattern.
+   */
+  void setPattern(int index, ScheduledPattern pattern) {
+    patterns.set(index, pattern);
+  }
+
+  /**
+   * Finds the pattern that has a live instance with the given trainId.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Position of the pattern, or -1 if no pattern has the instance.
+   */
+  int patternHolding(String trainId) {
+    for (int i = 0; i < patterns.size(); i++) {
+      if (patterns.get(i).liveIndexOf(trainId) >= 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets the number of live pattern instances in the partition.
+   *
+   * @return Number of live instances.
+   */
+  int liveInstanceCount() {
+    int count = 0;
+    for (ScheduledPattern pattern : patterns) {
+      count += pattern.liveCount();
+    }
+    return count;
+  }
+
+  /**
+   * Adds a departure to the partition and its indexes.
+   *
+   * @param departure Departure to add.
+   */
+  void add(TrainDeparture departure) {
+    departures.put(departure.getTrainId(), departure);
+    byTime.add(departure);
+    byDestination.computeIfAbsent(departure.getDestination(),
+        key -> new TreeSet<>(DEPARTURE_ORDER)).add(departure);
+    byLine.computeIfAbsent(departure.getLine(),
+        key -> new TreeSet<>(DEPARTURE_ORDER)).add(departure);
+  }
+
+  /**
+   * Removes a departure from the partition and its indexes.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return The removed departure, or null if it was not in the partition.
+   */
+  TrainDeparture remove(String trainId) {
+    TrainDeparture removed = departures.remove(trainId);
+    if (removed != null) {
+      byTime.remove(removed);
+      removeFromIndex(byDestination, removed.getDestination(), removed);
+      removeFromIndex(byLine, removed.getLine(), removed);
+    }
+    return removed;
+  }
+
+  /**
+   * Gets the departures going to a destination, sorted by departure time.
+   *
+   * @param destination Destination to check for.
+   * @return Unmodifiable set of departures, empty if there are none.
+   */
+  NavigableSet<TrainDeparture> departuresTo(String destination) {
+    return withInstances(indexEntry(byDestination, destination), destination, null, 0,
+        Clock.MINUTES_PER_DAY - 1);
+  }
+
+  /**
+   * Gets the departures scheduled between two times, both included, sorted by departure time.
+   * Found in O(log n) time, and the returned set is a view that is read in O(k) time.
+   *
+   * @param from First departure time to include.
+   * @param to Last departure time to include.
+   * @return Unmodifiable set of departures, empty if from is after to.
+   */
+  NavigableSet<TrainDeparture> departuresBetween(LocalTime from, LocalTime to) {
+    int fromMinute = TimeOfDay.toMinute(from);
+    int toMinute = TimeOfDay.toMinute(to);
+    if (fromMinute > toMinute) {
+      return Collections.emptyNavigableSet();
+    }
+
+    NavigableSet<TrainDeparture> stored;
+    if (toMinute == Clock.MINUTES_PER_DAY - 1) {
+      stored = Collections.unmodifiableNavigableSet(byTime.tailSet(probe(fromMinute), true));
+    } else {
+      stored = Collections.unmodifiableNavigableSet(
+          byTime.subSet(probe(fromMinute), true, probe(toMinute + 1), false));
+    }
+    return withInstances(stored, null, null, fromMinute, toMinute);
+  }
+
+  /**
+   * Gets the first departure to a destination scheduled at or after a time.
+   *
+   * @param destination Destination to check for.
+   * @param from Earliest departure time.
+   * @return First departure, or null if there is none.
+   */
+  TrainDeparture firstDepartureTo(String destination, LocalTime from) {
+    if (destination == null) {
+      return null;
+    }
+    TreeSet<TrainDeparture> entry = byDestination.get(destination);
+    int fromMinute = TimeOfDay.toMinute(from);
+    TrainDeparture first = entry != null ? entry.ceiling(probe(fromMinute)) : null;
+
+    // Only the first live instance of each pattern can come before the stored departure.
+    for (ScheduledPattern pattern : patterns) {
+      int index = pattern.firstLiveFrom(fromMinute, destination);
+      if (index >= 0) {
+        TrainDeparture instance = pattern.getSource().createDeparture(index);
+        if (first == null || DEPARTURE_ORDER.compare(instance, first) < 0) {
+          first = instance;
+        }
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Gets the departures on a line, sorted by departure time.
+   *
+   * @param line Line to check for.
+   * @return Unmodifiable set of departures, empty if there are none.
+   */
+  NavigableSet<TrainDeparture> departuresOnLine(String line) {
+    return withInstances(indexEntry(byLine, line), null, line, 0, Clock.MINUTES_PER_DAY - 1);
+  }
+
+  /**
+   * Gets the number of distinct keys in each index of the partition.
+   *
+   * @return Number of destinations and lines.
+   */
+  int[] indexKeyCounts() {
+    return new int[] {byDestination.size(), byLine.size()};
+  }
+
+  /**
+   * Checks if the given departure object is the one stored in this partition.
+   *
+   * @param departure Departure to check.
+   * @return true if the partition holds this exact departure, false if not.
+   */
+  boolean holds(TrainDeparture departure) {
+    return departures.get(departure.getTrainId()) == departure;
+  }
+
+  /**
+   * Gets the epoch minute a departure in this partition is scheduled to leave.
+   *
+   * @param departure Departure to calculate for.
+   * @return Scheduled epoch minute of the departure.
+   */
+  long scheduledMinuteOf(TrainDeparture departure) {
+    return (long) day * Clock.MINUTES_PER_DAY + departure.getDepartureMinute();
+  }
+
+  /**
+   * Gets the epoch minute a departure in this partition leaves, including the delay.
+   * Delays that pass midnight give a minute on the next day instead of wrapping around.
+   *
+   * @param departure Departure to calculate for.
+   * @return Epoch minute of the departure.
+   */
+  long effectiveMinuteOf(TrainDeparture departure) {
+    return scheduledMinuteOf(departure) + departure.getDelayMinutes();
+  }
+
+  /**
+   * Creates a departure used to search the sorted indexes. Its trainId sorts before every
+   * real trainId, so it is placed right before the first departure at the given minute.
+   */
+  private static TrainDeparture probe(int minute) {
+    return new TrainDeparture(TimeOfDay.toLocalTime(minute), "probe", "\u0000", "probe");
+  }
+
+  /**
+   * Mixes the live pattern instances that match into a set of stored departures. The stored set
+   * is returned as it is if there are no patterns, so days without patterns pay nothing.
+   */
+  private NavigableSet<TrainDeparture> withInstances(NavigableSet<TrainDeparture> stored,
+                                                     String destination, String line,
+                                                     int fromMinute, int toMinute) {
+    if (patterns.isEmpty()) {
+      return stored;
+    }
+
+    // The empty set has no comparator, so the order is set here and not taken from the set.
+    TreeSet<TrainDeparture> merged = new TreeSet<>(DEPARTURE_ORDER);
+    merged.addAll(stored);
+    for (ScheduledPattern pattern : patterns) {
+      pattern.addLive(fromMinute, toMinute, destination, line, merged);
+    }
+    return Collections.unmodifiableNavigableSet(merged);
+  }
+
+  private static NavigableSet<TrainDeparture> indexEntry(
+      HashMap<String, TreeSet<TrainDeparture>> index, String key) {
+    TreeSet<TrainDeparture> entry = key != null ? index.get(key) : null;
+    if (entry == null) {
+      return Collections.emptyNavigableSet();
+    }
+    return Collections.unmodifiableNavigableSet(entry);
+  }
+
+  private static void removeFromIndex(HashMap<String, TreeSet<TrainDeparture>> index, String key,
+                                      TrainDeparture departure) {
+    TreeSet<TrainDeparture> entry = index.get(key);
+    if (entry != null) {
+      entry.remove(departure);
+      if (entry.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.storage.DepartureView;
+import edu.ntnu.stud.storage.OffHeapDepartureStore;
+
+/**
+ * The departures of an {@link OffHeapDepartureStore} made with
+ * {@link OffHeapDepartureStore#sortedCopy(java.util.function.Predicate)}, where each record is an
+ * instance. The instances are read straight from the records, so the departures only take up
+ * heap while they are being read.
+ *
+ * <p>The store must not be changed once it is used as a source. Every read binds a view of its
+ * own, so the instances can be read from many threads at once.
+ */
+final class StoredInstances implements InstanceSource {
+  private final OffHeapDepartureStore store;
+
+  /**
+   * Creates the instances of a store.
+   *
+   * @param store Store sorted by departure time, owned by the source.
+   */
+  StoredInstances(OffHeapDepartureStore store) {
+    this.store = store;
+  }
+
+  @Override
+  public int getInstanceCount() {
+    return store.size();
+  }
+
+  @Override
+  public int getDepartureMinute(int index) {
+    return viewOf(index).getDepartureMinute();
+  }
+
+  @Override
+  public int firstIndexFrom(int minute) {
+    DepartureView view = store.newView();
+    int low = 0;
+    int high = store.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      view.moveTo(middle);
+      if (view.getDepartureMinute() < minute) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public int indexOf(String trainId) {
+    DepartureView view = store.newView();
+    return store.find(trainId, view) ? view.getRecord() : -1;
+  }
+
+  @Override
+  public TrainDeparture createDeparture(int index) {
+    return viewOf(index).toDeparture();
+  }
+
+  @Override
+  public boolean matches(int index, String destination, String line) {
+    DepartureView view = viewOf(index);
+    return (destination == null || view.hasDestination(destination))
+        && (line == null || view.hasLine(line));
+  }
+
+  private DepartureView viewOf(int index) {
+    DepartureView view = store.newView();
+    view.moveTo(index);
+    return view;
+  }
+}
@@ -0,0 +1,170 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Difference between a new timetable for a service day and the departures of that day in a
+ * register, matched by trainId.
+ *
+ * <p>A departure of the timetable is inserted if its trainId is not in the register, and changed
+ * if its departure time, destination or line differ from the departure in the register. A changed
+ * departure is replaced by a new departure with the values of the timetable and the delay and
+ * track of the live departure, so nothing the operators have set is lost. Departures of the
+ * register that are not in the timetable are removed, and the rest are left as they are.
+ *
+ * <p>The timetable and the departures of the register are compared with the
+ * {@link ParallelScanExecutor}, so a large timetable is compared in parallel, and only the
+ * departures that differ are kept in the diff.
+ */
+public final class TimetableDiff {
+  private final int serviceDay;
+  private final List<TrainDeparture> inserts;
+  private final List<TrainDeparture> changes;
+  private final List<TrainDeparture> removes;
+  private final int unchangedCount;
+  private final List<TrainDeparture> rejected;
+
+  private TimetableDiff(int serviceDay, List<TrainDeparture> inserts,
+                        List<TrainDeparture> changes, List<TrainDeparture> removes,
+                        int unchangedCount, List<TrainDeparture> rejected) {
+    this.serviceDay = serviceDay;
+    this.inserts = Collections.unmodifiableList(inserts);
+    this.changes = Collections.unmodifiableList(changes);
+    this.removes = Collections.unmodifiableList(removes);
+    this.unchangedCount = unchangedCount;
+    this.rejected = Collections.unmodifiableList(rejected);
+  }
+
+  /**
+   * Compares a timetable with the live departures of a service day.
+   *
+   * @param timetable Departures of the new timetable. Must not be changed during the call.
+   * @param live Live departures of the day by trainId. Must not be changed during the call.
+   * @param serviceDay Service day of the timetable.
+   * @param scanExecutor Executor the comparisons are run on.
+   * @return Difference between the timetable and the live departures.
+   */
+  static TimetableDiff compute(Collection<TrainDeparture> timetable,
+                               Map<String, TrainDeparture> live, int serviceDay,
+                               ParallelScanExecutor scanExecutor) {
+    List<TrainDeparture> differing = scanExecutor.filter(timetable,
+        (TrainDeparture departure) -> departure != null
+            && !sameTimetable(departure, live.get(departure.getTrainId())));
+
+    Set<String> trainIds = new HashSet<>();
+    for (TrainDeparture departure : timetable) {
+      if (departure != null) {
+        trainIds.add(departure.getTrainId());
+      }
+    }
+    List<TrainDeparture> removes = scanExecutor.filter(live.values(),
+        (TrainDeparture departure) -> !trainIds.contains(departure.getTrainId()));
+
+    List<TrainDeparture> inserts = new ArrayList<>();
+    List<TrainDeparture> changes = new ArrayList<>();
+    for (TrainDeparture departure : differing) {
+      TrainDeparture current = live.get(departure.getTrainId());
+      if (current == null) {
+        inserts.add(departure);
+      } else {
+        changes.add(new TrainDeparture(departure.getDeparture(), departure.getDestination(),
+            departure.getTrainId(), departure.getLine(), current.getTrack(),
+            TimeOfDay.toLocalTime(current.getDelayMinutes())));
+      }
+    }
+    int unchangedCount = live.size() - removes.size() - changes.size();
+    return new TimetableDiff(serviceDay, inserts, changes, removes, unchangedCount,
+        new ArrayList<>());
+  }
+
+  /**
+   * Makes a copy of the diff with the departures the register could not add.
+   *
+   * @param rejectedDepartures Inserted or changed departures that were not added.
+   * @return New diff.
+   */
+  TimetableDiff withRejected(List<TrainDeparture> rejectedDepartures) {
+    return new TimetableDiff(serviceDay, inserts, changes, removes, unchangedCount,
+        new ArrayList<>(rejectedDepartures));
+  }
+
+  /**
+   * Gets the service day the timetable is for.
+   *
+   * @return Service day.
+   */
+  public int getServiceDay() {
+    return serviceDay;
+  }
+
+  /**
+   * Gets the departures of the timetable that are not in the register.
+   *
+   * @return Unmodifiable list of departures to insert.
+   */
+  public List<TrainDeparture> getInserts() {
+    return inserts;
+  }
+
+  /**
+   * Gets the new departures that replace changed departures, with the delay and track of the
+   * departures they replace.
+   *
+   * @return Unmodifiable list of replacing departures.
+   */
+  public List<TrainDeparture> getChanges() {
+    return changes;
+  }
+
+  /**
+   * Gets the departures of the register that are not in the timetable.
+   *
+   * @return Unmodifiable list of departures to remove.
+   */
+  public List<TrainDeparture> getRemoves() {
+    return removes;
+  }
+
+  /**
+   * Gets the number of departures that are the same in the timetable and the register.
+   *
+   * @return Number of unchanged departures.
+   */
+  public int getUnchangedCount() {
+    return unchangedCount;
+  }
+
+  /**
+   * Gets the inserted and changed departures that the register could not add, for example
+   * because their trainId is taken on another service day. They are not in the register.
+   *
+   * @return Unmodifiable list of rejected departures, empty if all were added.
+   */
+  public List<TrainDeparture> getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Checks if the diff changes anything.
+   *
+   * @return true if there is nothing to insert, change or remove, false if not.
+   */
+  public boolean isEmpty() {
+    return inserts.isEmpty() && changes.isEmpty() && removes.isEmpty();
+  }
+
+  private static boolean sameTimetable(TrainDeparture departure, TrainDeparture current) {
+    return current != null
+        && departure.getDepartureMinute() == current.getDepartureMinute()
+        && departure.getDestination().equals(current.getDestination())
+        && departure.getLine().equals(current.getLine());
+  }
+}
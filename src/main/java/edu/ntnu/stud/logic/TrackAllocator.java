@@ -0,0 +1,387 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Assigns tracks to departures so that no two departures use the same track at the same time.
+ *
+ * <p>A departure occupies its track from the dwell time before it leaves until the turnaround
+ * gap after it has left, counted from the departure time including delay. Every window therefore
+ * has the same length, so two departures only clash on a track if they start less than one
+ * window apart, which each track answers with a lookup in a sorted map of window starts.
+ *
+ * <p>Tracks set by hand are kept as they are, and the allocator works around them. Departures
+ * without a track are assigned in order of their windows, each to the free track that was left
+ * most recently, which is interval partitioning with the tightest packing. When a departure is
+ * delayed, only that departure, and the allocated departures it now clashes with, are assigned
+ * again. A departure that does not fit on any track is left without one, but the allocator
+ * remembers it and tries again when it is delayed, or when a departure whose window clashed with
+ * it leaves its track.
+ *
+ * <p>When the dwell time or the turnaround gap is changed, every departure is placed again with
+ * the new window, so the windows stay the same length. Allocated departures keep their track if
+ * it still is free, and the rest, together with the departures that got no track, are assigned
+ * again.
+ */
+class TrackAllocator {
+  /**
+   * Default number of minutes a train is at the track before it leaves.
+   */
+  static final int DEFAULT_DWELL_MINUTES = 5;
+
+  /**
+   * Default number of minutes a track must be free after a train has left.
+   */
+  static final int DEFAULT_TURNAROUND_MINUTES = 3;
+
+  /**
+   * Sets the track of a departure that the allocator has chosen.
+   */
+  interface TrackSetter {
+    void setTrack(TrainDeparture departure, int track);
+  }
+
+  private final List<NavigableMap<Long, List<TrainDeparture>>> tracks;
+  private final Map<TrainDeparture, Long> windowStarts;
+  private final Map<TrainDeparture, Boolean> allocated;
+  private final Map<TrainDeparture, Boolean> unplaced;
+  private final ToLongFunction<TrainDeparture> effectiveMinute;
+  private final TrackSetter trackSetter;
+  private int dwellMinutes;
+  private int turnaroundMinutes;
+
+  /**
+   * Creates an allocator for tracks 0 up to and including the highest track.
+   *
+   * @param highestTrack Highest track number.
+   * @param effectiveMinute Gives the epoch minute a departure leaves, including the delay.
+   * @param trackSetter Sets the tracks chosen by the allocator.
+   */
+  TrackAllocator(int highestTrack, ToLongFunction<TrainDeparture> effectiveMinute,
+                 TrackSetter trackSetter) {
+    this.tracks = new ArrayList<>(highestTrack + 1);
+    for (int track = 0; track <= highestTrack; track++) {
+      tracks.add(new TreeMap<>());
+    }
+    this.windowStarts = new IdentityHashMap<>();
+    this.allocated = new IdentityHashMap<>();
+    this.unplaced = new IdentityHashMap<>();
+    this.effectiveMinute = effectiveMinute;
+    this.trackSetter = trackSetter;
+    this.dwellMinutes = DEFAULT_DWELL_MINUTES;
+    this.turnaroundMinutes = DEFAULT_TURNAROUND_MINUTES;
+  }
+
+  /**
+   * Sets the number of minutes a train is at the track before it leaves, and places every
+   * departure again with the new value.
+   *
+   * @param dwellMinutes Dwell time in minutes, negative values are set to 0.
+   */
+  void setDwellMinutes(int dwellMinutes) {
+    int newDwellMinutes = Math.max(0, dwellMinutes);
+    if (newDwellMinutes != this.dwellMinutes) {
+      this.dwellMinutes = newDwellMinutes;
+      placeAllAgain();
+    }
+  }
+
+  /**
+   * Sets the number of minutes a track must be free after a train has left, and places every
+   * departure again with the new value.
+   *
+   * @param turnaroundMinutes Turnaround gap in minutes, negative values are set to 0.
+   */
+  void setTurnaroundMinutes(int turnaroundMinutes) {
+    int newTurnaroundMinutes = Math.max(0, turnaroundMinutes);
+    if (newTurnaroundMinutes != this.turnaroundMinutes) {
+      this.turnaroundMinutes = newTurnaroundMinutes;
+      placeAllAgain();
+    }
+  }
+
+  /**
+   * Checks if a departure got its track from the allocator.
+   *
+   * @param departure Departure to check.
+   * @return true if the allocator chose the track, false if not.
+   */
+  boolean isAllocated(TrainDeparture departure) {
+    return allocated.containsKey(departure);
+  }
+
+  /**
+   * Places the departures that already have a track, and assigns a track to the rest.
+   *
+   * @param departures Departures to allocate.
+   * @return Number of departures that got a track.
+   */
+  int allocate(Collection<TrainDeparture> departures) {
+    List<TrainDeparture> unassigned = new ArrayList<>();
+    for (TrainDeparture departure : departures) {
+      if (windowStarts.containsKey(departure)) {
+        continue;
+      }
+      if (departure.getTrack() >= 0 && departure.getTrack() < tracks.size()) {
+        place(departure, departure.getTrack());
+      } else if (departure.getTrack() == -1) {
+        unassigned.add(departure);
+      }
+    }
+    return assign(unassigned);
+  }
+
+  /**
+   * Assigns a track to a new departure if it has none, or places it on the track it has.
+   *
+   * @param departure Added departure.
+   */
+  void departureAdded(TrainDeparture departure) {
+    allocate(Collections.singletonList(departure));
+  }
+
+  /**
+   * Frees the track of a departure that has left the register, and tries again to place the
+   * departures without a track that clashed with it.
+   *
+   * @param departure Removed departure.
+   */
+  void departureRemoved(TrainDeparture departure) {
+    Long start = windowStarts.get(departure);
+    unplace(departure);
+    allocated.remove(departure);
+    unplaced.remove(departure);
+    retryUnplaced(start);
+  }
+
+  /**
+   * Keeps a track that was set by hand. Allocated departures that clash with it are moved.
+   *
+   * @param departure Departure whose track was set by hand.
+   */
+  void trackSetByHand(TrainDeparture departure) {
+    Long start = windowStarts.get(departure);
+    unplace(departure);
+    allocated.remove(departure);
+    unplaced.remove(departure);
+    if (departure.getTrack() >= 0 && departure.getTrack() < tracks.size()) {
+      assign(placeAndReleaseClashes(departure, departure.getTrack()));
+    }
+    retryUnplaced(start);
+  }
+
+  /**
+   * Moves the window of a departure after its delay has changed. The departure keeps its track
+   * if the track still is free. Otherwise an allocated departure is assigned again, and a
+   * departure with a track set by hand moves the allocated departures it now clashes with. A
+   * departure that got no track before is assigned again, and the departures without a track that
+   * clashed with the old window are tried again.
+   *
+   * @param departure Delayed departure.
+   */
+  void departureDelayed(TrainDeparture departure) {
+    if (unplaced.containsKey(departure)) {
+      assign(Collections.singletonList(departure));
+      return;
+    }
+    Long start = windowStarts.get(departure);
+    if (start == null) {
+      return;
+    }
+    int track = departure.getTrack();
+    unplace(departure);
+
+    if (!allocated.containsKey(departure)) {
+      assign(placeAndReleaseClashes(departure, track));
+    } else if (isFree(track, windowStart(departure))) {
+      place(departure, track);
+    } else {
+      assign(Collections.singletonList(departure));
+    }
+    retryUnplaced(start);
+  }
+
+  /**
+   * Forgets the departures that no longer are in the register.
+   *
+   * @param held Returns true for departures that still are in the register.
+   */
+  void retainAll(Predicate<TrainDeparture> held) {
+    List<TrainDeparture> gone = new ArrayList<>();
+    for (TrainDeparture departure : windowStarts.keySet()) {
+      if (!held.test(departure)) {
+        gone.add(departure);
+      }
+    }
+    unplaced.keySet().removeIf(departure -> !held.test(departure));
+    for (TrainDeparture departure : gone) {
+      departureRemoved(departure);
+    }
+  }
+
+  /**
+   * Assigns tracks to departures in order of their windows.
+   */
+  private int assign(List<TrainDeparture> departures) {
+    List<TrainDeparture> ordered = new ArrayList<>(departures);
+    ordered.sort(Comparator.comparingLong(this::windowStart)
+        .thenComparing(TrainDeparture::getTrainId));
+
+    int assignedCount = 0;
+    for (TrainDeparture departure : ordered) {
+      long start = windowStart(departure);
+      int bestTrack = -1;
+      long bestPrevious = Long.MIN_VALUE;
+      for (int track = 0; track < tracks.size(); track++) {
+        if (isFree(track, start)) {
+          Long previous = tracks.get(track).floorKey(start);
+          long previousStart = previous != null ? previous : Long.MIN_VALUE + 1;
+          if (bestTrack == -1 || previousStart > bestPrevious) {
+            bestTrack = track;
+            bestPrevious = previousStart;
+          }
+        }
+      }
+
+      if (bestTrack != -1) {
+        place(departure, bestTrack);
+        allocated.put(departure, Boolean.TRUE);
+        unplaced.remove(departure);
+        assignedCount += 1;
+      } else {
+        allocated.remove(departure);
+        unplaced.put(departure, Boolean.TRUE);
+      }
+      if (departure.getTrack() != bestTrack) {
+        trackSetter.setTrack(departure, bestTrack);
+      }
+    }
+    return assignedCount;
+  }
+
+  /**
+   * Places every departure again with the current window length. Tracks set by hand are placed
+   * first, then the allocated departures keep their track in order of their windows if it is
+   * free, and the rest are assigned again together with the departures that got no track.
+   */
+  private void placeAllAgain() {
+    List<TrainDeparture> placed = new ArrayList<>(windowStarts.keySet());
+    windowStarts.clear();
+    for (NavigableMap<Long, List<TrainDeparture>> track : tracks) {
+      track.clear();
+    }
+
+    List<TrainDeparture> allocatedDepartures = new ArrayList<>();
+    for (TrainDeparture departure : placed) {
+      if (allocated.containsKey(departure)) {
+        allocatedDepartures.add(departure);
+      } else {
+        place(departure, departure.getTrack());
+      }
+    }
+    allocatedDepartures.sort(Comparator.comparingLong(this::windowStart)
+        .thenComparing(TrainDeparture::getTrainId));
+    List<TrainDeparture> moved = new ArrayList<>(unplaced.keySet());
+    for (TrainDeparture departure : allocatedDepartures) {
+      if (isFree(departure.getTrack(), windowStart(departure))) {
+        place(departure, departure.getTrack());
+      } else {
+        moved.add(departure);
+      }
+    }
+    assign(moved);
+  }
+
+  /**
+   * Assigns the departures without a track whose window clashes with a window that was freed.
+   *
+   * @param freedStart Start of the freed window, or null if no window was freed.
+   */
+  private void retryUnplaced(Long freedStart) {
+    if (freedStart == null || unplaced.isEmpty()) {
+      return;
+    }
+    long length = (long) dwellMinutes + turnaroundMinutes;
+    List<TrainDeparture> clashing = new ArrayList<>();
+    for (TrainDeparture departure : unplaced.keySet()) {
+      long distance = Math.abs(windowStart(departure) - freedStart);
+      if (distance < length || distance == 0) {
+        clashing.add(departure);
+      }
+    }
+    assign(clashing);
+  }
+
+  /**
+   * Places a departure on a track, and takes the allocated departures it clashes with off
+   * their track.
+   *
+   * @return The departures that were taken off.
+   */
+  private List<TrainDeparture> placeAndReleaseClashes(TrainDeparture departure, int track) {
+    long start = windowStart(departure);
+    List<TrainDeparture> released = new ArrayList<>();
+    for (List<TrainDeparture> clashing : clashesOn(track, start).values()) {
+      for (TrainDeparture other : clashing) {
+        if (allocated.containsKey(other)) {
+          released.add(other);
+        }
+      }
+    }
+    for (TrainDeparture other : released) {
+      unplace(other);
+    }
+    place(departure, track);
+    return released;
+  }
+
+  private boolean isFree(int track, long start) {
+    return clashesOn(track, start).isEmpty();
+  }
+
+  private NavigableMap<Long, List<TrainDeparture>> clashesOn(int track, long start) {
+    long length = (long) dwellMinutes + turnaroundMinutes;
+    if (length == 0) {
+      return tracks.get(track).subMap(start, true, start, true);
+    }
+    return tracks.get(track).subMap(start - length, false, start + length, false);
+  }
+
+  private void place(TrainDeparture departure, int track) {
+    long start = windowStart(departure);
+    tracks.get(track).computeIfAbsent(start, key -> new ArrayList<>(1)).add(departure);
+    windowStarts.put(departure, start);
+  }
+
+  private void unplace(TrainDeparture departure) {
+    Long start = windowStarts.remove(departure);
+    if (start == null) {
+      return;
+    }
+    for (NavigableMap<Long, List<TrainDeparture>> track : tracks) {
+      List<TrainDeparture> atStart = track.get(start);
+      if (atStart != null && atStart.remove(departure)) {
+        if (atStart.isEmpty()) {
+          track.remove(start);
+        }
+        return;
+      }
+    }
+  }
+
+  private long windowStart(TrainDeparture departure) {
+    Long placed = windowStarts.get(departure);
+    return placed != null ? placed : effectiveMinute.applyAsLong(departure) - dwellMinutes;
+  }
+}
@@ -1,10 +1,29 @@
 package edu.ntnu.stud.logic;
 
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.ClockListener;
+import edu.ntnu.stud.entity.DeparturePattern;
+import edu.ntnu.stud.entity.DepartureState;
+import edu.ntnu.stud.entity.TimeOfDay;
 import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.monitoring.BulkLoadEvent;
+import edu.ntnu.stud.monitoring.DepartureMutationEvent;
+import edu.ntnu.stud.monitoring.ExpirySweepEvent;
+import edu.ntnu.stud.monitoring.RegisterMetrics;
+import edu.ntnu.stud.storage.DepartureView;
+import edu.ntnu.stud.storage.OffHeapDepartureStore;
+import java.nio.file.Path;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * This class is a collection of all train departures from the station.
@@ -17,11 +36,11 @@ import java.util.List;
  *     <th>Comment</th>
  *   </tr>
  *   <tr>
- *     <td>LocalTime</td>
- *     <td>departure</td>
+ *     <td>int</td>
+ *     <td>departureMinute</td>
  *     <td>
- *       LocalTime is an easy and clear datatype that already handles exceptions like if a user
- *       tries to set the hours over 23 or minutes under 0, etc.
+ *       Minutes since midnight, from 0 to 1439. An int is used so comparing and sorting
+ *       departures is plain integer arithmetic and does not create any objects.
  *     </td>
  *   </tr>
  *   <tr>
@@ -55,11 +74,11 @@ import java.util.List;
  *     </td>
  *   </tr>
  *   <tr>
- *     <td>LocalTime</td>
- *     <td>delay</td>
+ *     <td>int</td>
+ *     <td>delayMinutes</td>
  *     <td>
- *       LocalTime is used as it is an easy-to-use class that handles exceptions like wrong
- *       formatted times or times outside of the range.
+ *       Minutes the departure is delayed, from 0 to 1439. An int is used so the time a departure
+ *       actually leaves is the departure minute plus the delay.
  *     </td>
  *   </tr>
  * </table>
@@ -71,13 +90,90 @@ import java.util.List;
  * accidentally add some wrong information to the Departure.
  * In general the {@code deleteDeparture} should only be accessed by the automatic deletion if
  * the time rolls over, but it will be required for the Departure manager as well.
+ *
+ * <p>Departures are partitioned by service day and the partitions are kept in a small ring that
+ * covers the previous, the current and the next service day. The previous day is kept so that
+ * trains delayed past midnight are still in the register. When the clock moves on to a new day,
+ * partitions that are older than the previous day are dropped as a whole.
+ * All times are handled as epoch minutes, see {@link Clock#getEpochMinute()}, which means
+ * departures delayed past midnight are sorted and expired after the departures of the same day.
+ *
+ * <p>The register listens to the {@link Clock} and expires departures through a
+ * {@link DepartureTimingWheel} every time the clock is updated. Only the minutes that actually
+ * have departures due are visited, so updating the clock is close to free when no trains are due.
+ * Delays should be changed through {@link #updateDelay(String, LocalTime)} so the departure gets
+ * rescheduled in the wheel.
+ *
+ * <p>Operations can be measured with {@link RegisterMetrics} by calling {@link #enableMetrics()}.
+ * While metrics are disabled the register does not read the system timer at all.
+ * The punctuality of the departures is counted by {@link #enablePunctuality()}.
+ * Mutations, expiry sweeps and bulk loads are also emitted as JDK Flight Recorder events, which
+ * are only filled in when a recording with the events enabled is running.
+ *
+ * <p>Every change to which departures are in the register publishes a new
+ * {@link MembershipSnapshot}. Readers get the latest snapshot with {@link #getSnapshot()}, which is
+ * a single volatile read, and can use it from any thread while the register is changed. Changes
+ * to the register itself must come from one thread at a time.
+ *
+ * <p>Full scans and sorts switch to running in parallel on a dedicated fork/join pool when they
+ * cover more departures than the threshold set with {@link #setParallelThreshold(int)}.
+ *
+ * <p>The departures can be saved to a file through an {@link OffHeapDepartureStore} with
+ * {@link #saveDepartures(Path)}, and loaded back with {@link #loadDepartures(Path)}. Loaded
+ * departures that are on time and have no track stay in the store, off the heap, and are read
+ * from it in the same way as the instances of a {@link DeparturePattern}. A revised timetable is
+ * applied with {@link #reloadTimetable(Collection, int)}, which keeps the delays and tracks of the
+ * departures that stay.
+ *
+ * <p>Every change to the register is reported to the added {@link RegisterListener}s, which is
+ * what replication to other processes is built on. Delays and tracks must therefore be changed
+ * through {@link #updateDelay(String, LocalTime)} and {@link #updateTrack(String, int)}. Their
+ * versioned forms only apply a change if the departure has not been changed since the caller read
+ * its version, so an operator does not overwrite a change made by another operator unseen.
+ *
+ * <p>The register is not thread-safe. Threads that change it at the same time can send their
+ * changes through a {@link RegisterCommandPipeline}, which applies them in order on one thread.
+ *
+ * <p>Departures added and deleted one by one, and delays and tracks set through the update
+ * methods, are recorded in an {@link AuditLog}, and the latest of them can be undone with
+ * {@link #undo(int)}. Changes made by the register itself, like allocated tracks and propagated
+ * delays, are not recorded, but follow from the changes that are undone.
+ *
+ * <p>Departures that repeat at a fixed interval can be added as one {@link DeparturePattern} with
+ * {@link #addPattern(DeparturePattern)}. The register stores the pattern once, and the queries,
+ * lookups and snapshots create its instances as they are read. An instance is added as a
+ * departure of its own when its delay or track is changed through the register. Listeners are
+ * told about the instances in the same way as about the departures that are stored.
+ *
+ * <p>Tracks 0 to {@value #MAX_TRACK_NUMBER} can be assigned automatically with
+ * {@link #allocateTracks()}, see {@link TrackAllocator}.
  */
-public class TrainDepartureRegister {
+public class TrainDepartureRegister implements ClockListener {
   private static final int MAX_TRACK_NUMBER = 10;
+  private static final int SERVICE_DAYS_RETAINED = 3;
 
   LocalTime currentTime;
-  private HashMap<String, TrainDeparture> departureRegister;
-
+  private int currentDay;
+  private final ServiceDayPartition[] partitions;
+  private final DepartureTimingWheel expiryWheel;
+  private final DepartureTimingWheel.ExpiryTarget expiryTarget;
+  private RegisterMetrics metrics;
+  private PunctualityTracker punctuality;
+  private volatile MembershipSnapshot snapshot;
+  private boolean bulkLoading;
+  private boolean publishingDeferred;
+  private final Map<TrainDeparture, Long> deferredAdds;
+  private final Set<TrainDeparture> deferredRemoves;
+  private boolean deferredPatterns;
+  private boolean deferredRebuild;
+  private final DepartureQueryPlanner queryPlanner;
+  private final ParallelScanExecutor scanExecutor;
+  private final List<RegisterListener> listeners;
+  private final TrackAllocator trackAllocator;
+  private boolean trackAllocation;
+  private DelayPropagator delayPropagator;
+  private final AuditLog auditLog;
+  private boolean undoing;
 
 
   /**
@@ -85,13 +181,57 @@ public class TrainDepartureRegister {
    *
    */
   public TrainDepartureRegister() {
-    departureRegister = new HashMap<String, TrainDeparture>();
+    partitions = new ServiceDayPartition[SERVICE_DAYS_RETAINED];
+    currentTime = LocalTime.of(0, 0);
+    currentDay = 0;
+    snapshot = MembershipSnapshot.EMPTY;
+    deferredAdds = new IdentityHashMap<>();
+    deferredRemoves = Collections.newSetFromMap(new IdentityHashMap<>());
+    listeners = new ArrayList<>();
+    auditLog = new AuditLog(AuditLog.DEFAULT_CAPACITY);
+    trackAllocator = new TrackAllocator(MAX_TRACK_NUMBER,
+        (TrainDeparture departure) -> {
+          ServiceDayPartition partition = partitionHolding(departure);
+          return partition != null
+              ? partition.effectiveMinuteOf(departure) : departure.getEffectiveMinute();
+        },
+        (TrainDeparture departure, int track) -> {
+          DepartureMutationEvent event = new DepartureMutationEvent();
+          event.begin();
+          departure.setTrack(track);
+          commitMutationEvent(event, "track", departure);
+          notifyChanged(departure);
+          if (delayPropagator != null) {
+            delayPropagator.trackChanged(departure);
+          }
+        });
+    scanExecutor = new ParallelScanExecutor();
+    queryPlanner = new DepartureQueryPlanner(scanExecutor);
+    expiryWheel = new DepartureTimingWheel(Clock.MINUTES_PER_DAY, 0);
+    expiryTarget = new DepartureTimingWheel.ExpiryTarget() {
+      @Override
+      public long dueMinuteOf(TrainDeparture departure) {
+        ServiceDayPartition partition = partitionHolding(departure);
+        if (partition == null) {
+          return -1;
+        }
+        return partition.effectiveMinuteOf(departure);
+      }
 
+      @Override
+      public void expire(TrainDeparture departure) {
+        ServiceDayPartition partition = partitionHolding(departure);
+        if (partition != null) {
+          partition.remove(departure.getTrainId());
+          notifyRemoved(departure, true);
+        }
+      }
+    };
   }
 
 
   /**
-   * Adds a new departure to the register.
+   * Adds a new departure to the current service day of the register.
    * Checks if departure has an unique trainId.
    * returns true if the departure was added, false if not.
    *
@@ -99,15 +239,124 @@ public class TrainDepartureRegister {
    * @return True if the departure was added, false if not.
    */
   public boolean addDeparture(TrainDeparture departure) {
-    if (departure == null || departureRegister.containsKey(departure.getTrainId())) {
+    return addDeparture(departure, currentDay);
+  }
+
+  /**
+   * Adds a new departure to the given service day of the register.
+   * The service day must be the previous, current or next day of the register, and the trainId
+   * must be unique among all days in the register.
+   *
+   * @param departure Train departure object to be added.
+   * @param serviceDay Service day the departure belongs to.
+   * @return True if the departure was added, false if not.
+   */
+  public boolean addDeparture(TrainDeparture departure, int serviceDay) {
+    return add(departure, serviceDay, false);
+  }
+
+  /**
+   * Adds a departure pattern to the current service day of the register.
+   *
+   * @param pattern Departure pattern to add.
+   * @return true if the pattern was added, false if not.
+   */
+  public boolean addPattern(DeparturePattern pattern) {
+    return addPattern(pattern, currentDay);
+  }
+
+  /**
+   * Adds a departure pattern to the given service day of the register. The pattern is stored
+   * once, and its instances are created when they are read. An instance is only added as its own
+   * departure when it is changed through the register.
+   * The service day must be the previous, current or next day of the register, and no instance
+   * may have the trainId of a departure or an instance already in the register. Instances that
+   * already have left are left out.
+   *
+   * <p>Listeners are told about every live instance as if it had been added, and later that it
+   * left or was deleted, in the same way as for stored departures. The departures in these
+   * events are only created when there are listeners.
+   *
+   * @param pattern Departure pattern to add.
+   * @param serviceDay Service day the pattern belongs to.
+   * @return true if the pattern was added, false if not.
+   */
+  public boolean addPattern(DeparturePattern pattern, int serviceDay) {
+    if (pattern == null || !isRetainedDay(serviceDay)) {
       return false;
     }
+    for (int index = 0; index < pattern.getInstanceCount(); index++) {
+      String trainId = pattern.getTrainId(index);
+      if (partitionContaining(trainId) != null || partitionWithInstance(trainId) != null) {
+        return false;
+      }
+    }
 
-
-    departureRegister.put(departure.getTrainId(), departure);
+    ScheduledPattern scheduled =
+        new ScheduledPattern(pattern, serviceDay).withLeftBefore(epochMinuteOf(currentTime));
+    partitionForDay(serviceDay, true).addPattern(scheduled);
+    publishPatterns();
+    if (!listeners.isEmpty()) {
+      List<TrainDeparture> instances = new ArrayList<>();
+      scheduled.addLive(0, Clock.MINUTES_PER_DAY - 1, instances);
+      for (TrainDeparture instance : instances) {
+        for (RegisterListener listener : listeners) {
+          listener.departureAdded(instance, serviceDay);
+        }
+      }
+    }
     return true;
   }
 
+  /**
+   * Adds a departure to the register.
+   *
+   * @param departure Departure to add.
+   * @param serviceDay Service day the departure belongs to.
+   * @param materialized If the departure is a pattern instance that has just been detached.
+   * @return true if the departure was added, false if not.
+   */
+  private boolean add(TrainDeparture departure, int serviceDay, boolean materialized) {
+    long start = startTimer();
+    DepartureMutationEvent event = new DepartureMutationEvent();
+    event.begin();
+    boolean state = false;
+
+    if (departure != null && isRetainedDay(serviceDay)
+        && partitionContaining(departure.getTrainId()) == null
+        && partitionWithInstance(departure.getTrainId()) == null) {
+      ServiceDayPartition partition = partitionForDay(serviceDay, true);
+      partition.add(departure);
+      expiryWheel.schedule(departure, partition.effectiveMinuteOf(departure));
+      if (materialized && !publishingDeferred) {
+        // The instance leaves the patterns and joins the departures in the same snapshot.
+        snapshot = snapshot.withPatterns(patternsOf())
+            .withAdded(departure, partition.scheduledMinuteOf(departure));
+      } else if (materialized || !bulkLoading) {
+        deferredPatterns |= materialized;
+        publishAdded(departure, partition.scheduledMinuteOf(departure));
+      }
+      commitMutationEvent(event, "add", departure);
+      if (!bulkLoading && !materialized) {
+        record(AuditLog.ADD, departure, -1, serviceDay);
+      }
+      // Listeners already know a materialized instance from when its pattern was added.
+      for (int i = 0; !materialized && i < listeners.size(); i++) {
+        listeners.get(i).departureAdded(departure, serviceDay);
+      }
+      if (trackAllocation) {
+        trackAllocator.departureAdded(departure);
+      }
+      if (delayPropagator != null) {
+        delayPropagator.departureAdded(departure);
+      }
+      state = true;
+    }
+
+    stopTimer(RegisterMetrics.Operation.ADD, start);
+    return state;
+  }
+
 
   /**
    * Removes departure from register.
@@ -116,95 +365,1501 @@ public class TrainDepartureRegister {
    * @return true if departure was removed, false if not.
    */
   public boolean deleteDeparture(TrainDeparture departure) {
+    long start = startTimer();
+    DepartureMutationEvent event = new DepartureMutationEvent();
+    event.begin();
     boolean state = false;
 
     if (departure != null) {
-      departureRegister.remove(departure.getTrainId());
+      ServiceDayPartition partition = partitionContaining(departure.getTrainId());
+      if (partition != null) {
+        TrainDeparture removed = partition.remove(departure.getTrainId());
+        expiryWheel.cancel(removed);
+        publishRemoved(removed, partition.scheduledMinuteOf(removed));
+        commitMutationEvent(event, "delete", removed);
+        record(AuditLog.DELETE, removed, partition.getDay(), -1);
+        notifyRemoved(removed, false);
+      } else {
+        deleteInstance(departure);
+      }
       state = true;
     }
 
+    stopTimer(RegisterMetrics.Operation.DELETE, start);
     return state;
   }
 
   /**
    * Gets a departure from the register by the trainId.
+   * An instance of a departure pattern is returned as a new departure every time, so it must be
+   * changed through the register to keep the change.
    *
    * @param trainId Unique identifier for the train departure.
    * @return Train departure object if found, null if not found.
    */
   public TrainDeparture getDepartureFromId(String trainId) {
+    long start = startTimer();
     TrainDeparture foundDeparture = null;
     if (trainId != null && !trainId.isEmpty()) {
-      foundDeparture = departureRegister.get(trainId);
+      ServiceDayPartition partition = partitionContaining(trainId);
+      if (partition != null) {
+        foundDeparture = partition.getDepartures().get(trainId);
+      } else {
+        foundDeparture = createInstance(trainId);
+      }
     }
 
+    stopTimer(RegisterMetrics.Operation.LOOKUP, start);
     return foundDeparture;
   }
 
   /**
-   * Returns a collection of train departures that are arriving at specified destination.
+   * Returns a collection of train departures that are arriving at specified destination,
+   * sorted by service day and departure time.
    *
    * @param destination Destination to check for.
    * @return Collection of train departures.
    */
   public Collection<TrainDeparture> getDeparturesByDestination(String destination) {
-    Collection<TrainDeparture> foundDepartures;
+    long start = startTimer();
+    List<TrainDeparture> foundDepartures = new ArrayList<>();
 
-    foundDepartures = departureRegister.values().stream().filter(
-        (TrainDeparture d) -> {
-          return d.getDestination().equals(destination);
-        }
-    ).toList();
+    // Uses the destination index of each day, which is already sorted by departure time.
+    for (int day = currentDay - 1; day <= currentDay + 1; day++) {
+      ServiceDayPartition partition = partitionForDay(day, false);
+      if (partition != null) {
+        foundDepartures.addAll(partition.departuresTo(destination));
+      }
+    }
 
+    stopTimer(RegisterMetrics.Operation.DESTINATION_QUERY, start);
     return foundDepartures;
   }
 
   /**
-   * Returns a collection of all departures sorted by the departure time.
+   * Returns a collection of all departures sorted by service day and departure time.
    * Delay for the departures are not included in this sorting.
+   * The list comes from the latest snapshot, so it is not changed by later changes to the
+   * register.
    *
    * @return Collection of train departures.
    */
   public List<TrainDeparture> getAllDepartures() {
-    List<TrainDeparture> departures = null;
-
-    // Uses streams to sort the departures by departure times.
-    // The lambda expression returns a Comparator to sort the data in the stream.
-    // Converts the sorted stream into a list to be returned.
-    departures = departureRegister.values().stream().sorted(
-        (TrainDeparture d1, TrainDeparture d2) -> {
-          return d1.getDeparture().compareTo(d2.getDeparture());
-        }
-    ).toList();
+    long start = startTimer();
+    List<TrainDeparture> departures = snapshot.getDepartures();
+
+    stopTimer(RegisterMetrics.Operation.LISTING, start);
+    return departures;
+  }
+
+  /**
+   * Returns the departures of the current service day scheduled between two times, both
+   * included, sorted by departure time. If the last time is before the first time, the window
+   * goes past midnight and continues on the next service day.
+   * The departures are found with a binary search in the time index, so this runs in
+   * O(log n + k) time.
+   *
+   * @param from First departure time to include.
+   * @param to Last departure time to include.
+   * @return List of train departures, empty if a time is null.
+   */
+  public List<TrainDeparture> getDeparturesBetween(LocalTime from, LocalTime to) {
+    List<TrainDeparture> foundDepartures = new ArrayList<>();
+    if (from == null || to == null) {
+      return foundDepartures;
+    }
+    long start = startTimer();
 
+    ServiceDayPartition today = partitionForDay(currentDay, false);
+    if (!to.isBefore(from)) {
+      if (today != null) {
+        foundDepartures.addAll(today.departuresBetween(from, to));
+      }
+    } else {
+      ServiceDayPartition tomorrow = partitionForDay(currentDay + 1, false);
+      if (today != null) {
+        foundDepartures.addAll(today.departuresBetween(from, LocalTime.MAX));
+      }
+      if (tomorrow != null) {
+        foundDepartures.addAll(tomorrow.departuresBetween(LocalTime.MIN, to));
+      }
+    }
 
+    stopTimer(RegisterMetrics.Operation.RANGE_QUERY, start);
+    return foundDepartures;
+  }
 
-    return departures;
+  /**
+   * Finds the next departure to a destination scheduled at or after a time on the current
+   * service day. If there is none left that day, the first departure of the next service day is
+   * returned. Uses the destination index, so this runs in O(log n) time. The departures loaded
+   * off the heap by {@link #loadDepartures(Path)} have no such index, and are scanned from the
+   * time until one goes to the destination.
+   * Delay is not included, in the same way as the sorting of the register.
+   *
+   * @param destination Destination to check for.
+   * @param after Earliest departure time.
+   * @return Next train departure, or null if none was found.
+   */
+  public TrainDeparture nextDepartureTo(String destination, LocalTime after) {
+    if (destination == null || after == null) {
+      return null;
+    }
+    long start = startTimer();
+
+    TrainDeparture next = null;
+    ServiceDayPartition today = partitionForDay(currentDay, false);
+    if (today != null) {
+      next = today.firstDepartureTo(destination, after);
+    }
+    ServiceDayPartition tomorrow = partitionForDay(currentDay + 1, false);
+    if (next == null && tomorrow != null) {
+      next = tomorrow.firstDepartureTo(destination, LocalTime.MIN);
+    }
+
+    stopTimer(RegisterMetrics.Operation.RANGE_QUERY, start);
+    return next;
+  }
+
+  /**
+   * Runs a compound query on the departures of the register.
+   * The query starts from the index that gives the fewest candidate departures, and the plan
+   * of the result shows which index was used and how many departures were scanned.
+   *
+   * @param query Query to run.
+   * @return Matching departures sorted by service day and departure time, with the query plan.
+   */
+  public QueryResult query(DepartureQuery query) {
+    long start = startTimer();
+    List<ServiceDayPartition> days = new ArrayList<>();
+    for (int day = currentDay - 1; day <= currentDay + 1; day++) {
+      ServiceDayPartition partition = partitionForDay(day, false);
+      if (partition != null) {
+        days.add(partition);
+      }
+    }
+
+    QueryResult result = queryPlanner.run(query != null ? query : new DepartureQuery(), days,
+        snapshot);
+    stopTimer(RegisterMetrics.Operation.QUERY, start);
+    return result;
+  }
+
+  /**
+   * Gets the latest snapshot of which departures are in the register. The departures in it are
+   * the live objects, so their delays and tracks are the current ones.
+   * This is a single volatile read, so it can be called from any thread without locking.
+   *
+   * @return Latest snapshot.
+   */
+  public MembershipSnapshot getSnapshot() {
+    return snapshot;
   }
 
   /**
    * Deletes all departures that are older than the current time.
+   * The time is treated as a time on the current service day of the register.
    *
    * @param currentTime Current time.
    * @return deleteCount Number of deleted Departures.
    */
   public int deleteOldDepartures(LocalTime currentTime) {
+    if (currentTime == null) {
+      return 0;
+    }
+    long start = startTimer();
+    ExpirySweepEvent event = new ExpirySweepEvent();
+    event.begin();
+    long currentMinute = epochMinuteOf(currentTime);
 
-    List<TrainDeparture> filteredList = departureRegister.values().stream().filter(
-        (TrainDeparture d) -> {
-          return d.getDeparture()
-              .plusHours(d.getDelay().getHour())
-              .plusMinutes(d.getDelay().getMinute())
-              .isBefore(currentTime);
-        }
-    ).toList();
-
+    // Each day is scanned on its own, in parallel for large days, and the old departures are
+    // removed straight from the day they were found in.
     int deleteCount = 0;
-    for (TrainDeparture departure : filteredList) {
-      this.deleteDeparture(this.getDepartureFromId(departure.getTrainId()));
-      deleteCount += 1;
+    for (ServiceDayPartition partition : partitions) {
+      if (partition == null) {
+        continue;
+      }
+      List<TrainDeparture> filteredList = scanExecutor.filter(
+          partition.getDepartures().values(),
+          (TrainDeparture d) -> {
+            return partition.effectiveMinuteOf(d) < currentMinute;
+          }
+      );
+
+      for (TrainDeparture departure : filteredList) {
+        partition.remove(departure.getTrainId());
+        expiryWheel.cancel(departure);
+        notifyRemoved(departure, true);
+        deleteCount += 1;
+      }
+    }
+    if (deleteCount > 0) {
+      publishLiveDepartures();
     }
+    deleteCount += expireInstances(currentMinute);
 
+    commitSweepEvent(event, deleteCount);
+    stopTimer(RegisterMetrics.Operation.EXPIRY, start);
     return deleteCount;
   }
+
+  /**
+   * Adds several departures to the current service day of the register.
+   * Departures that can not be added, see {@link #addDeparture(TrainDeparture)}, are skipped.
+   *
+   * @param departures Departures to add.
+   * @return Number of departures that were added.
+   */
+  public int addDepartures(Collection<TrainDeparture> departures) {
+    return addDepartures(departures, currentDay);
+  }
+
+  /**
+   * Adds many departures to the given service day of the register at once. Works like
+   * {@link #addDepartures(Collection)}.
+   *
+   * @param departures Departures to be added.
+   * @param serviceDay Service day the departures belong to.
+   * @return Number of departures that were added.
+   */
+  public int addDepartures(Collection<TrainDeparture> departures, int serviceDay) {
+    if (departures == null) {
+      return 0;
+    }
+
+    BulkLoadEvent event = new BulkLoadEvent();
+    event.begin();
+    int addedCount = 0;
+    // The snapshot is built once after the load instead of once per departure.
+    bulkLoading = true;
+    try {
+      for (TrainDeparture departure : departures) {
+        if (addDeparture(departure, serviceDay)) {
+          addedCount += 1;
+        }
+      }
+    } finally {
+      bulkLoading = false;
+    }
+    if (addedCount > 0) {
+      publishAllDepartures();
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(departures.size(), addedCount, getDepartureCount());
+      event.commit();
+    }
+    return addedCount;
+  }
+
+  /**
+   * Sets the delay of a departure in the register and reschedules when it expires.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @param delay New delay of the departure.
+   * @return true if the delay was updated, false if no departure with the id was found.
+   */
+  public boolean updateDelay(String trainId, LocalTime delay) {
+    if (trainId == null) {
+      return false;
+    }
+    ServiceDayPartition partition = partitionForUpdate(trainId);
+    if (partition == null) {
+      return false;
+    }
+
+    TrainDeparture departure = partition.getDepartures().get(trainId);
+    int oldDelay = departure.getDelayMinutes();
+    applyDelay(partition, departure, TimeOfDay.toMinute(delay));
+    record(AuditLog.DELAY, departure, oldDelay, departure.getDelayMinutes());
+    if (delayPropagator != null) {
+      delayPropagator.delaySetByHand(departure);
+    }
+    return true;
+  }
+
+  /**
+   * Sets the delay of a departure in the register if the departure still has the version the
+   * caller last saw. If it has been changed since, nothing is updated and the current state of
+   * the departure is returned, so the caller can decide again.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @param expectedVersion Version the departure had when the delay was decided.
+   * @param delay New delay of the departure.
+   * @return State of the departure after the attempt, null if no departure with the id was found.
+   */
+  public DepartureState updateDelay(String trainId, int expectedVersion, LocalTime delay) {
+    if (trainId == null) {
+      return null;
+    }
+    ServiceDayPartition partition = partitionForUpdate(trainId);
+    if (partition == null) {
+      return null;
+    }
+
+    TrainDeparture departure = partition.getDepartures().get(trainId);
+    int oldDelay = departure.getDelayMinutes();
+    DepartureMutationEvent event = new DepartureMutationEvent();
+    event.begin();
+    DepartureState state = departure.compareAndSetDelay(expectedVersion,
+        TimeOfDay.toMinute(delay));
+    if (state.isApplied()) {
+      delayApplied(partition, departure, event);
+      record(AuditLog.DELAY, departure, oldDelay, state.getDelayMinutes());
+      if (delayPropagator != null) {
+        delayPropagator.delaySetByHand(departure);
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Sets the track of a departure in the register.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @param track New track of the departure, negative values mean no track is assigned.
+   * @return true if the track was updated, false if no departure with the id was found.
+   */
+  public boolean updateTrack(String trainId, int track) {
+    if (trainId == null) {
+      return false;
+    }
+    ServiceDayPartition partition = partitionForUpdate(trainId);
+    if (partition == null) {
+      return false;
+    }
+
+    DepartureMutationEvent event = new DepartureMutationEvent();
+    event.begin();
+    TrainDeparture departure = partition.getDepartures().get(trainId);
+    int oldTrack = departure.getTrack();
+    departure.setTrack(track);
+    record(AuditLog.TRACK, departure, oldTrack, departure.getTrack());
+    trackApplied(departure, event);
+    return true;
+  }
+
+  /**
+   * Sets the track of a departure in the register if the departure still has the version the
+   * caller last saw. If it has been changed since, nothing is updated and the current state of
+   * the departure is returned, so the caller can decide again.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @param expectedVersion Version the departure had when the track was decided.
+   * @param track New track of the departure, negative values mean no track is assigned.
+   * @return State of the departure after the attempt, null if no departure with the id was found.
+   */
+  public DepartureState updateTrack(String trainId, int expectedVersion, int track) {
+    if (trainId == null) {
+      return null;
+    }
+    ServiceDayPartition partition = partitionForUpdate(trainId);
+    if (partition == null) {
+      return null;
+    }
+
+    DepartureMutationEvent event = new DepartureMutationEvent();
+    event.begin();
+    TrainDeparture departure = partition.getDepartures().get(trainId);
+    int oldTrack = departure.getTrack();
+    DepartureState state = departure.compareAndSetTrack(expectedVersion, track);
+    if (state.isApplied()) {
+      record(AuditLog.TRACK, departure, oldTrack, state.getTrack());
+      trackApplied(departure, event);
+    }
+    return state;
+  }
+
+  /**
+   * Expires all departures whose departure time plus delay is before the given time.
+   * The time is treated as a time on the current service day of the register.
+   *
+   * @param currentTime Current time.
+   * @return Number of expired departures.
+   */
+  public int expireDepartures(LocalTime currentTime) {
+    if (currentTime == null) {
+      return 0;
+    }
+
+    return expireDepartures(epochMinuteOf(currentTime));
+  }
+
+  /**
+   * Expires all departures whose departure time plus delay is before the given epoch minute.
+   * If the minute is on a later day than the current service day, the register moves on to that
+   * day and drops the partitions that are no longer retained.
+   * Only the minutes between the last expiry and the given minute are visited.
+   *
+   * @param epochMinute Current epoch minute.
+   * @return Number of expired departures.
+   */
+  public int expireDepartures(long epochMinute) {
+    if (epochMinute < 0) {
+      return 0;
+    }
+
+    long start = startTimer();
+    ExpirySweepEvent event = new ExpirySweepEvent();
+    event.begin();
+    int day = (int) (epochMinute / Clock.MINUTES_PER_DAY);
+    if (day > currentDay) {
+      startServiceDay(day);
+    }
+    this.currentTime = LocalTime.ofSecondOfDay((epochMinute % Clock.MINUTES_PER_DAY) * 60);
+
+    int expiredCount = expiryWheel.advanceTo(epochMinute, expiryTarget);
+    if (expiredCount > 0) {
+      publishLiveDepartures();
+    }
+    expiredCount += expireInstances(epochMinute);
+    commitSweepEvent(event, expiredCount);
+    stopTimer(RegisterMetrics.Operation.EXPIRY, start);
+    return expiredCount;
+  }
+
+  /**
+   * Expires old departures every time the clock is updated.
+   *
+   * @param previousMinute Epoch minute the clock had before the update.
+   * @param currentMinute New epoch minute of the clock.
+   */
+  @Override
+  public void onTimeChanged(long previousMinute, long currentMinute) {
+    expireDepartures(currentMinute);
+  }
+
+  /**
+   * Moves the register on to a new service day.
+   * Every partition older than the day before the new day is dropped in one operation, since
+   * no departure can be delayed for more than a full day.
+   *
+   * @param day New service day.
+   */
+  public void startServiceDay(int day) {
+    if (day <= currentDay) {
+      return;
+    }
+
+    currentDay = day;
+    for (RegisterListener listener : listeners) {
+      listener.serviceDayStarted(day);
+    }
+    boolean dropped = false;
+    boolean patternsDropped = false;
+    for (int i = 0; i < partitions.length; i++) {
+      if (partitions[i] != null && !isRetainedDay(partitions[i].getDay())) {
+        dropped |= !partitions[i].getDepartures().isEmpty();
+        patternsDropped |= !partitions[i].getPatterns().isEmpty();
+        partitions[i] = null;
+      }
+    }
+    if (patternsDropped) {
+      publishPatterns();
+    }
+    if (dropped) {
+      trackAllocator.retainAll((TrainDeparture departure) -> partitionHolding(departure) != null);
+      if (delayPropagator != null) {
+        delayPropagator.retainAll(
+            (TrainDeparture departure) -> partitionHolding(departure) != null);
+      }
+      publishLiveDepartures();
+    }
+  }
+
+  /**
+   * Gets the current service day of the register.
+   *
+   * @return Current service day.
+   */
+  public int getCurrentDay() {
+    return currentDay;
+  }
+
+  /**
+   * Reloads the timetable of the current service day, see
+   * {@link #reloadTimetable(Collection, int)}.
+   *
+   * @param timetable Departures of the new timetable.
+   * @return Changes that were made, or null if the timetable is missing.
+   */
+  public TimetableDiff reloadTimetable(Collection<TrainDeparture> timetable) {
+    return reloadTimetable(timetable, currentDay);
+  }
+
+  /**
+   * Replaces the departures of a service day with a new timetable, without losing the delays
+   * and tracks of the departures that are in both.
+   * Only the departures that are new, changed or gone are touched, see {@link TimetableDiff}.
+   * The timetable is compared with the register in parallel when it is large, and the changes
+   * are applied together and published as one new snapshot, so readers of the snapshot see
+   * either the old or the new timetable and never wait for the reload.
+   * The changes are reported to the listeners, but not recorded in the audit log.
+   * Instances of the departure patterns of the day are compared like the stored departures, so a
+   * changed instance is stored as its own departure and a missing one is deleted from its pattern.
+   * A departure whose trainId is taken on another day can not be added, and is returned in
+   * {@link TimetableDiff#getRejected()} instead.
+   *
+   * @param timetable Departures of the new timetable. Must not be changed during the call.
+   * @param serviceDay Service day the timetable is for.
+   * @return Changes that were made, or null if the timetable is missing or the register does not
+   *         hold the day.
+   */
+  public TimetableDiff reloadTimetable(Collection<TrainDeparture> timetable, int serviceDay) {
+    if (timetable == null || !isRetainedDay(serviceDay)) {
+      return null;
+    }
+
+    BulkLoadEvent event = new BulkLoadEvent();
+    event.begin();
+    ServiceDayPartition partition = partitionForDay(serviceDay, false);
+    Map<String, TrainDeparture> live = Collections.emptyMap();
+    if (partition != null && partition.getPatterns().isEmpty()) {
+      live = partition.getDepartures();
+    } else if (partition != null) {
+      // The instances are compared as well, so they are changed and removed like the rest.
+      live = new HashMap<>(partition.getDepartures());
+      List<TrainDeparture> instances = new ArrayList<>();
+      for (ScheduledPattern pattern : partition.getPatterns()) {
+        pattern.addLive(0, Clock.MINUTES_PER_DAY - 1, instances);
+      }
+      for (TrainDeparture instance : instances) {
+        live.put(instance.getTrainId(), instance);
+      }
+    }
+    TimetableDiff diff = TimetableDiff.compute(timetable, live, serviceDay, scanExecutor);
+
+    int addedCount = 0;
+    List<TrainDeparture> rejected = new ArrayList<>();
+    if (!diff.isEmpty()) {
+      boolean patternsChanged = false;
+      bulkLoading = true;
+      try {
+        for (TrainDeparture removed : diff.getRemoves()) {
+          patternsChanged |= removeForReload(partition, removed);
+        }
+        for (TrainDeparture replacement : diff.getChanges()) {
+          patternsChanged |= removeForReload(partition, live.get(replacement.getTrainId()));
+          if (add(replacement, serviceDay, false)) {
+            addedCount += 1;
+          } else {
+            rejected.add(replacement);
+          }
+        }
+        for (TrainDeparture inserted : diff.getInserts()) {
+          if (add(inserted, serviceDay, false)) {
+            addedCount += 1;
+          } else {
+            rejected.add(inserted);
+          }
+        }
+      } finally {
+        bulkLoading = false;
+      }
+      if (patternsChanged) {
+        publishPatterns();
+      }
+      publishAllDepartures();
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(timetable.size(), addedCount, getDepartureCount());
+      event.commit();
+    }
+    return rejected.isEmpty() ? diff : diff.withRejected(rejected);
+  }
+
+  /**
+   * Reloads the timetables saved with {@link #saveDepartures(Path)}. Each service day found in
+   * the file is reloaded with {@link #reloadTimetable(Collection, int)}, and days that are not in
+   * the file are left as they are. The whole file is loaded into an {@link OffHeapDepartureStore}
+   * first, and the departures of the reloaded days are added as objects on the heap, as a
+   * revised timetable is compared departure by departure.
+   *
+   * @param file File to read.
+   * @return Changes made to each day, empty if the file could not be read.
+   */
+  public List<TimetableDiff> reloadDepartures(Path file) {
+    OffHeapDepartureStore store = file != null ? OffHeapDepartureStore.load(file) : null;
+    List<TimetableDiff> diffs = new ArrayList<>();
+    if (store == null) {
+      return diffs;
+    }
+
+    TreeMap<Integer, List<TrainDeparture>> days = new TreeMap<>();
+    store.forEach((DepartureView view) -> days.computeIfAbsent(
+        currentDay + view.getServiceDay(), (Integer day) -> new ArrayList<>())
+        .add(view.toDeparture()));
+    for (Map.Entry<Integer, List<TrainDeparture>> day : days.entrySet()) {
+      TimetableDiff diff = reloadTimetable(day.getValue(), day.getKey());
+      if (diff != null) {
+        diffs.add(diff);
+      }
+    }
+    return diffs;
+  }
+
+  /**
+   * Gets the number of departures a scan or sort must cover before it is run in parallel.
+   *
+   * @return Size threshold.
+   */
+  public int getParallelThreshold() {
+    return scanExecutor.getThreshold();
+  }
+
+  /**
+   * Sets the number of departures a scan or sort must cover before it is run in parallel.
+   * A threshold of 0 runs every scan in parallel, {@link Integer#MAX_VALUE} runs none.
+   * Scans are never run in parallel on a machine with a single processor.
+   *
+   * @param threshold Size threshold, negative values are set to 0.
+   */
+  public void setParallelThreshold(int threshold) {
+    scanExecutor.setThreshold(threshold);
+  }
+
+  /**
+   * Saves all departures in the register to a file. The service day of each departure is saved
+   * relative to the current day, so the file can be loaded into a register on another day.
+   *
+   * @param file File to write to, it is replaced if it exists.
+   * @return true if all departures were saved, false if not. The departures that could be added
+   *         to the store are written to the file either way.
+   */
+  public boolean saveDepartures(Path file) {
+    if (file == null) {
+      return false;
+    }
+
+    int instanceCount = 0;
+    for (ServiceDayPartition partition : partitions) {
+      instanceCount += partition != null ? partition.liveInstanceCount() : 0;
+    }
+    OffHeapDepartureStore store = new OffHeapDepartureStore(getDepartureCount() + instanceCount);
+    boolean state = true;
+    for (ServiceDayPartition partition : partitions) {
+      if (partition == null) {
+        continue;
+      }
+      // Pattern instances are saved as departures of their own.
+      List<TrainDeparture> departures = new ArrayList<>(partition.getDepartures().values());
+      for (ScheduledPattern pattern : partition.getPatterns()) {
+        pattern.addLive(0, Clock.MINUTES_PER_DAY - 1, departures);
+      }
+      for (TrainDeparture departure : departures) {
+        state &= store.add(departure, partition.getDay() - currentDay);
+      }
+    }
+    return store.save(file) && state;
+  }
+
+  /**
+   * Loads departures saved with {@link #saveDepartures(Path)} into the register.
+   * Departures whose trainId already is in the register are skipped.
+   *
+   * <p>The departures that are on time and have no track are kept off the heap. Those of each day
+   * are copied into an {@link OffHeapDepartureStore} of their own, sorted by departure time, which
+   * the day holds like a {@link DeparturePattern}. The queries, lookups and snapshots read them
+   * straight from the store, and a departure is only added as an object of its own when it is
+   * changed through the register. The departures that already have a delay or a track are added
+   * as objects at once.
+   *
+   * @param file File to read.
+   * @return Number of departures added, 0 if the file could not be read.
+   */
+  public int loadDepartures(Path file) {
+    OffHeapDepartureStore store = file != null ? OffHeapDepartureStore.load(file) : null;
+    if (store == null) {
+      return 0;
+    }
+
+    BulkLoadEvent event = new BulkLoadEvent();
+    event.begin();
+    int[] addedCount = {0};
+    List<ScheduledPattern> blocks = new ArrayList<>();
+    for (int day = Math.max(0, currentDay - 1); day <= currentDay + 1; day++) {
+      int serviceDay = day - currentDay;
+      OffHeapDepartureStore block = store.sortedCopy((DepartureView view) ->
+          view.getServiceDay() == serviceDay && isUnchanged(view)
+          && partitionContaining(view.getTrainId()) == null
+          && partitionWithInstance(view.getTrainId()) == null);
+      if (block.size() > 0) {
+        ScheduledPattern scheduled = new ScheduledPattern(new StoredInstances(block), day)
+            .withLeftBefore(epochMinuteOf(currentTime));
+        partitionForDay(day, true).addPattern(scheduled);
+        blocks.add(scheduled);
+        addedCount[0] += scheduled.liveCount();
+      }
+    }
+    if (!blocks.isEmpty()) {
+      publishPatterns();
+    }
+
+    bulkLoading = true;
+    try {
+      store.forEach((DepartureView view) -> {
+        if (!isUnchanged(view)
+            && addDeparture(view.toDeparture(), currentDay + view.getServiceDay())) {
+          addedCount[0] += 1;
+        }
+      });
+    } finally {
+      bulkLoading = false;
+    }
+    if (addedCount[0] > 0) {
+      publishAllDepartures();
+    }
+    for (int i = 0; !listeners.isEmpty() && i < blocks.size(); i++) {
+      List<TrainDeparture> instances = new ArrayList<>();
+      blocks.get(i).addLive(0, Clock.MINUTES_PER_DAY - 1, instances);
+      for (TrainDeparture instance : instances) {
+        for (RegisterListener listener : listeners) {
+          listener.departureAdded(instance, blocks.get(i).getDay());
+        }
+      }
+    }
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(store.size(), addedCount[0], getDepartureCount());
+      event.commit();
+    }
+    return addedCount[0];
+  }
+
+  /**
+   * Assigns a track to every departure in the register that has none, and keeps doing so for
+   * departures that are added later. Tracks that are already set are kept.
+   * A track is occupied from a few minutes before a departure leaves until the turnaround gap
+   * after it has left, see {@link #setTrackTurnaround(int)}. When a departure is delayed only
+   * the departures it now clashes with are moved. Departures that fit on no track are left
+   * without one.
+   *
+   * @return Number of departures that were assigned a track.
+   */
+  public int allocateTracks() {
+    trackAllocation = true;
+    List<TrainDeparture> departures = new ArrayList<>();
+    for (ServiceDayPartition partition : partitions) {
+      if (partition != null) {
+        departures.addAll(partition.getDepartures().values());
+      }
+    }
+    return trackAllocator.allocate(departures);
+  }
+
+  /**
+   * Sets the number of minutes a track must be free after a departure has left before another
+   * departure is allocated to it. The departures that already have a place are placed again with
+   * the new gap.
+   *
+   * @param minutes Turnaround gap in minutes, negative values are set to 0.
+   */
+  public void setTrackTurnaround(int minutes) {
+    trackAllocator.setTurnaroundMinutes(minutes);
+  }
+
+  /**
+   * Sets the number of minutes a departure occupies its track before it leaves.
+   * The departures that already have a place are placed again with the new dwell time.
+   *
+   * @param minutes Dwell time in minutes, negative values are set to 0.
+   */
+  public void setTrackDwell(int minutes) {
+    trackAllocator.setDwellMinutes(minutes);
+  }
+
+  /**
+   * Starts pushing delays on to dependent departures with the default gaps, see
+   * {@link #enableDelayPropagation(int, int)}.
+   */
+  public void enableDelayPropagation() {
+    enableDelayPropagation(DelayPropagator.DEFAULT_TRACK_HEADWAY_MINUTES,
+        DelayPropagator.DEFAULT_LINE_TURNAROUND_MINUTES);
+  }
+
+  /**
+   * Starts pushing delays on to dependent departures. A departure can not leave before the
+   * departure before it on the same track has been gone for the track headway, or before the
+   * departure before it on the same line has been gone for the line turnaround, as it uses
+   * the same rolling stock. When a delay is set with {@link #updateDelay(String, LocalTime)},
+   * the departures after it get the delays they need, up to the first departure with enough
+   * slack. Delays set by hand are never lowered by the propagation.
+   *
+   * <p>The propagator only forgets departures dropped with their service day when the next day
+   * starts, so a departure it still holds may have left the register. Such a departure keeps its
+   * delay and is skipped.
+   *
+   * @param trackHeadwayMinutes Minutes between two departures on the same track.
+   * @param lineTurnaroundMinutes Minutes between two departures on the same line.
+   */
+  public void enableDelayPropagation(int trackHeadwayMinutes, int lineTurnaroundMinutes) {
+    delayPropagator = new DelayPropagator(
+        (TrainDeparture departure) -> {
+          ServiceDayPartition partition = partitionHolding(departure);
+          return partition != null ? partition.scheduledMinuteOf(departure)
+              : (long) currentDay * Clock.MINUTES_PER_DAY + departure.getDepartureMinute();
+        },
+        (TrainDeparture departure, int delayMinutes) -> {
+          ServiceDayPartition partition = partitionHolding(departure);
+          if (partition != null) {
+            applyDelay(partition, departure, delayMinutes);
+          }
+        },
+        trackHeadwayMinutes, lineTurnaroundMinutes);
+    for (ServiceDayPartition partition : partitions) {
+      if (partition != null) {
+        delayPropagator.index(partition.getDepartures().values());
+      }
+    }
+  }
+
+  /**
+   * Stops pushing delays on to dependent departures. Delays that were pushed on are kept.
+   */
+  public void disableDelayPropagation() {
+    delayPropagator = null;
+  }
+
+  /**
+   * Gets the number of departures checked by the last delay propagation.
+   * Used to check that a delay only touches the departures it moves.
+   *
+   * @return Number of checked departures, 0 if propagation is not enabled.
+   */
+  int getLastPropagationSize() {
+    return delayPropagator != null ? delayPropagator.getLastCheckedCount() : 0;
+  }
+
+  /**
+   * Gets the service day a departure in the register belongs to.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Service day of the departure, -1 if no departure with the id was found.
+   */
+  public int getServiceDayOf(String trainId) {
+    if (trainId == null) {
+      return -1;
+    }
+    ServiceDayPartition partition = partitionContaining(trainId);
+    if (partition == null) {
+      partition = partitionWithInstance(trainId);
+    }
+    return partition != null ? partition.getDay() : -1;
+  }
+
+  /**
+   * Adds a listener that is notified of every change to the register.
+   *
+   * @param listener Listener to add.
+   * @return true if the listener was added, false if it is null or already added.
+   */
+  public boolean addListener(RegisterListener listener) {
+    if (listener == null || listeners.contains(listener)) {
+      return false;
+    }
+
+    return listeners.add(listener);
+  }
+
+  /**
+   * Removes a listener from the register.
+   *
+   * @param listener Listener to remove.
+   * @return true if the listener was removed, false if it was not added.
+   */
+  public boolean removeListener(RegisterListener listener) {
+    return listeners.remove(listener);
+  }
+
+  /**
+   * Gets the log of the changes made to the register by hand.
+   *
+   * @return Audit log of the register.
+   */
+  public AuditLog getAuditLog() {
+    return auditLog;
+  }
+
+  /**
+   * Undoes the latest changes made by hand, newest first. Changes to departures that have left
+   * the register since, and deletes of departures whose trainId is taken again, cannot be undone
+   * and are skipped. Undoing a change is not recorded in the log.
+   *
+   * @param count Number of changes to undo.
+   * @return Number of changes that were undone.
+   */
+  public int undo(int count) {
+    int undoneCount = 0;
+    undoing = true;
+    try {
+      for (int i = 0; i < count && auditLog.size() > 0; i++) {
+        if (undoLast()) {
+          undoneCount += 1;
+        }
+      }
+    } finally {
+      undoing = false;
+    }
+    return undoneCount;
+  }
+
+  /**
+   * Gets the number of departures stored in the register. Instances of departure patterns are
+   * only counted once they have been changed and are stored as departures of their own.
+   *
+   * @return Number of departures.
+   */
+  public int getDepartureCount() {
+    int count = 0;
+    for (ServiceDayPartition partition : partitions) {
+      if (partition != null) {
+        count += partition.size();
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Starts measuring the operations of the register.
+   * Does nothing if metrics already are enabled.
+   *
+   * @return Metrics of the register.
+   */
+  public RegisterMetrics enableMetrics() {
+    if (metrics == null) {
+      metrics = new RegisterMetrics(this::getDepartureCount, this::getIndexSizes);
+    }
+    return metrics;
+  }
+
+  /**
+   * Stops measuring the operations of the register and removes the metrics MBean if it was
+   * registered.
+   */
+  public void disableMetrics() {
+    if (metrics != null) {
+      metrics.unregisterMBean();
+      metrics = null;
+    }
+  }
+
+  /**
+   * Gets the metrics of the register.
+   *
+   * @return Metrics of the register, or null if metrics are disabled.
+   */
+  public RegisterMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Starts keeping punctuality statistics of the departures, per service day, destination and
+   * line. The departures already in the register are counted at once.
+   * Does nothing if the statistics already are kept.
+   *
+   * @return Punctuality statistics of the register.
+   */
+  public PunctualityTracker enablePunctuality() {
+    if (punctuality == null) {
+      punctuality = new PunctualityTracker();
+      for (ServiceDayPartition partition : partitions) {
+        if (partition != null) {
+          List<TrainDeparture> departures = new ArrayList<>(partition.getDepartures().values());
+          for (ScheduledPattern pattern : partition.getPatterns()) {
+            pattern.addLive(0, Clock.MINUTES_PER_DAY - 1, departures);
+          }
+          for (TrainDeparture departure : departures) {
+            punctuality.departureAdded(departure, partition.getDay());
+          }
+        }
+      }
+      addListener(punctuality);
+    }
+    return punctuality;
+  }
+
+  /**
+   * Gets the punctuality statistics of the register.
+   *
+   * @return Punctuality statistics, or null if they are not kept.
+   */
+  public PunctualityTracker getPunctuality() {
+    return punctuality;
+  }
+
+  /**
+   * Gets the number of entries in each of the indexes of the register.
+   *
+   * @return Index sizes keyed by index name.
+   */
+  Map<String, Integer> getIndexSizes() {
+    Map<String, Integer> sizes = new LinkedHashMap<>();
+    for (int day = currentDay - 1; day <= currentDay + 1; day++) {
+      ServiceDayPartition partition = partitionForDay(day, false);
+      if (partition != null) {
+        int[] keyCounts = partition.indexKeyCounts();
+        sizes.put("day " + day, partition.size());
+        sizes.put("day " + day + " destinations", keyCounts[0]);
+        sizes.put("day " + day + " lines", keyCounts[1]);
+      }
+    }
+    sizes.put("expiryWheel", expiryWheel.size());
+    return sizes;
+  }
+
+  private void applyDelay(ServiceDayPartition partition, TrainDeparture departure,
+                          int delayMinutes) {
+    DepartureMutationEvent event = new DepartureMutationEvent();
+    event.begin();
+    departure.setDelayMinutes(delayMinutes);
+    delayApplied(partition, departure, event);
+  }
+
+  private void delayApplied(ServiceDayPartition partition, TrainDeparture departure,
+                            DepartureMutationEvent event) {
+    expiryWheel.schedule(departure, partition.effectiveMinuteOf(departure));
+    commitMutationEvent(event, "delay", departure);
+    notifyChanged(departure);
+    if (trackAllocation) {
+      trackAllocator.departureDelayed(departure);
+    }
+  }
+
+  private void trackApplied(TrainDeparture departure, DepartureMutationEvent event) {
+    commitMutationEvent(event, "track", departure);
+    notifyChanged(departure);
+    if (trackAllocation) {
+      trackAllocator.trackSetByHand(departure);
+    }
+    if (delayPropagator != null) {
+      delayPropagator.trackChanged(departure);
+    }
+  }
+
+  private void record(byte operation, TrainDeparture departure, int oldValue, int newValue) {
+    if (!undoing) {
+      auditLog.record(operation, departure, oldValue, newValue);
+    }
+  }
+
+  private boolean undoLast() {
+    byte operation = auditLog.lastOperation();
+    String trainId = auditLog.lastTrainId();
+    TrainDeparture deleted = auditLog.lastDeletedDeparture();
+    int oldValue = auditLog.lastOldValue();
+    auditLog.removeLast();
+
+    // The log keeps no departures, so the departure is looked up by its trainId.
+    ServiceDayPartition partition = partitionContaining(trainId);
+    TrainDeparture departure = partition != null ? partition.getDepartures().get(trainId) : null;
+    boolean undone = false;
+    if (operation == AuditLog.ADD && departure != null) {
+      undone = deleteDeparture(departure);
+    } else if (operation == AuditLog.DELETE) {
+      undone = addDeparture(deleted, oldValue);
+    } else if (operation == AuditLog.DELAY) {
+      undone = updateDelay(trainId, TimeOfDay.toLocalTime(oldValue));
+    } else if (operation == AuditLog.TRACK) {
+      undone = updateTrack(trainId, oldValue);
+    }
+    return undone;
+  }
+
+  private void notifyRemoved(TrainDeparture departure, boolean departed) {
+    trackAllocator.departureRemoved(departure);
+    if (delayPropagator != null) {
+      delayPropagator.departureRemoved(departure, departed);
+    }
+    for (RegisterListener listener : listeners) {
+      if (departed) {
+        listener.departureLeft(departure);
+      } else {
+        listener.departureRemoved(departure);
+      }
+    }
+  }
+
+  private void notifyChanged(TrainDeparture departure) {
+    for (RegisterListener listener : listeners) {
+      listener.departureChanged(departure);
+    }
+  }
+
+  private void commitMutationEvent(DepartureMutationEvent event, String operation,
+                                   TrainDeparture departure) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(operation, departure.getTrainId(), departure.getDestination(),
+          getDepartureCount());
+      event.commit();
+    }
+  }
+
+  private void commitSweepEvent(ExpirySweepEvent event, int removedCount) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(removedCount, getDepartureCount());
+      event.commit();
+    }
+  }
+
+  private long startTimer() {
+    return metrics != null ? System.nanoTime() : 0L;
+  }
+
+  private void stopTimer(RegisterMetrics.Operation operation, long start) {
+    if (metrics != null && start != 0L) {
+      metrics.record(operation, start);
+    }
+  }
+
+  /**
+   * Publishes a snapshot with only the departures that still are in the register.
+   * Used after many departures are removed at once.
+   */
+  private void publishLiveDepartures() {
+    if (publishingDeferred) {
+      deferredRebuild = true;
+    } else {
+      snapshot = snapshot.retainAll(departure -> partitionHolding(departure) != null);
+    }
+  }
+
+  /**
+   * Publishes a snapshot built from all departures in the register.
+   */
+  private void publishAllDepartures() {
+    if (publishingDeferred) {
+      deferredRebuild = true;
+    } else {
+      snapshot = withAllDepartures(snapshot);
+    }
+  }
+
+  /**
+   * Makes the next version of a snapshot from all departures in the register.
+   * Every day is sorted on its own and the days are put after each other in order.
+   */
+  private MembershipSnapshot withAllDepartures(MembershipSnapshot base) {
+    TrainDeparture[] departures = new TrainDeparture[getDepartureCount()];
+    long[] keys = new long[departures.length];
+    int size = 0;
+
+    for (int day = currentDay - 1; day <= currentDay + 1; day++) {
+      ServiceDayPartition partition = partitionForDay(day, false);
+      if (partition == null) {
+        continue;
+      }
+
+      TrainDeparture[] dayDepartures = partition.getDepartures().values()
+          .toArray(new TrainDeparture[0]);
+      scanExecutor.sort(dayDepartures, ServiceDayPartition.DEPARTURE_ORDER);
+      for (TrainDeparture departure : dayDepartures) {
+        departures[size] = departure;
+        keys[size] = partition.scheduledMinuteOf(departure);
+        size += 1;
+      }
+    }
+
+    return base.withDepartures(departures, keys);
+  }
+
+  private void publishAdded(TrainDeparture departure, long key) {
+    if (publishingDeferred) {
+      deferredAdds.put(departure, key);
+    } else {
+      snapshot = snapshot.withAdded(departure, key);
+    }
+  }
+
+  private void publishRemoved(TrainDeparture departure, long key) {
+    if (!publishingDeferred) {
+      snapshot = snapshot.withRemoved(departure, key);
+    } else if (deferredAdds.remove(departure) == null) {
+      deferredRemoves.add(departure);
+    }
+  }
+
+  /**
+   * Holds back the snapshots of the changes that follow until {@link #publishDeferred()} is
+   * called, which publishes them as one snapshot. Used by the {@link RegisterCommandPipeline}
+   * for each batch, so a batch of single changes does not copy the departures once per change.
+   * Lookups by trainId read the register itself and see the changes at once.
+   */
+  void deferPublishing() {
+    publishingDeferred = true;
+  }
+
+  /**
+   * Publishes the changes made since {@link #deferPublishing()} as one snapshot, and publishes
+   * every change at once again afterwards.
+   */
+  void publishDeferred() {
+    publishingDeferred = false;
+    MembershipSnapshot next = snapshot;
+    if (deferredPatterns) {
+      next = next.withPatterns(patternsOf());
+    }
+    if (deferredRebuild) {
+      next = withAllDepartures(next);
+    } else if (!deferredAdds.isEmpty() || !deferredRemoves.isEmpty()) {
+      next = next.withChanges(deferredAdds, deferredRemoves);
+    }
+    snapshot = next;
+    deferredAdds.clear();
+    deferredRemoves.clear();
+    deferredPatterns = false;
+    deferredRebuild = false;
+  }
+
+  /**
+   * Removes a stored departure without recording it or publishing a snapshot, for changes that
+   * publish one snapshot when they are done.
+   */
+  private void removeStored(ServiceDayPartition partition, TrainDeparture departure) {
+    TrainDeparture removed = partition.remove(departure.getTrainId());
+    if (removed != null) {
+      expiryWheel.cancel(removed);
+      notifyRemoved(removed, false);
+    }
+  }
+
+  /**
+   * Removes a departure that is not in a reloaded timetable, or that the timetable changes.
+   *
+   * @return true if it was a pattern instance, so the patterns must be published, false if not.
+   */
+  private boolean removeForReload(ServiceDayPartition partition, TrainDeparture departure) {
+    if (partition.getDepartures().get(departure.getTrainId()) == departure) {
+      removeStored(partition, departure);
+      return false;
+    }
+    return detachInstance(departure.getTrainId()) != null;
+  }
+
+  /**
+   * Lets the pattern instances scheduled before the given minute leave.
+   *
+   * @param epochMinute Current epoch minute.
+   * @return Number of instances that left.
+   */
+  private int expireInstances(long epochMinute) {
+    int leftCount = 0;
+    List<TrainDeparture> left = listeners.isEmpty() ? null : new ArrayList<>();
+    for (ServiceDayPartition partition : partitions) {
+      if (partition == null) {
+        continue;
+      }
+      List<ScheduledPattern> patterns = partition.getPatterns();
+      for (int i = 0; i < patterns.size(); i++) {
+        ScheduledPattern pattern = patterns.get(i);
+        ScheduledPattern later = pattern.withLeftBefore(epochMinute);
+        if (later != pattern) {
+          leftCount += pattern.liveCount() - later.liveCount();
+          partition.setPattern(i, later);
+          if (left != null) {
+            pattern.addLeftIn(later, left);
+          }
+        }
+      }
+    }
+    if (leftCount > 0) {
+      publishPatterns();
+    }
+    for (int i = 0; left != null && i < left.size(); i++) {
+      for (RegisterListener listener : listeners) {
+        listener.departureLeft(left.get(i));
+      }
+    }
+    return leftCount;
+  }
+
+  /**
+   * Creates a departure for the live pattern instance with the given trainId.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return New departure, or null if no pattern has the instance.
+   */
+  private TrainDeparture createInstance(String trainId) {
+    ServiceDayPartition partition = partitionWithInstance(trainId);
+    if (partition == null) {
+      return null;
+    }
+    ScheduledPattern pattern = partition.getPatterns().get(partition.patternHolding(trainId));
+    return pattern.getSource().createDeparture(pattern.liveIndexOf(trainId));
+  }
+
+  /**
+   * Finds the partition holding the departure with the given trainId, and adds a live pattern
+   * instance with the trainId as its own departure first, so it can be changed.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Partition holding the departure, or null if not found.
+   */
+  private ServiceDayPartition partitionForUpdate(String trainId) {
+    ServiceDayPartition partition = partitionContaining(trainId);
+    if (partition != null) {
+      return partition;
+    }
+    partition = partitionWithInstance(trainId);
+    if (partition == null) {
+      return null;
+    }
+
+    int patternIndex = partition.patternHolding(trainId);
+    ScheduledPattern pattern = partition.getPatterns().get(patternIndex);
+    int index = pattern.liveIndexOf(trainId);
+    partition.setPattern(patternIndex, pattern.withDetached(index));
+    add(pattern.getSource().createDeparture(index), partition.getDay(), true);
+    return partition;
+  }
+
+  /**
+   * Deletes a live pattern instance, so it is no longer created.
+   *
+   * @param departure Departure with the trainId of the instance.
+   */
+  private void deleteInstance(TrainDeparture departure) {
+    ServiceDayPartition partition = detachInstance(departure.getTrainId());
+    if (partition != null) {
+      publishPatterns();
+      record(AuditLog.DELETE, departure, partition.getDay(), -1);
+    }
+  }
+
+  /**
+   * Detaches a live pattern instance and tells the listeners it was removed, without recording
+   * it or publishing a snapshot.
+   *
+   * @param trainId TrainId of the instance.
+   * @return Partition that held the instance, or null if there is no such instance.
+   */
+  private ServiceDayPartition detachInstance(String trainId) {
+    ServiceDayPartition partition = partitionWithInstance(trainId);
+    if (partition == null) {
+      return null;
+    }
+
+    int patternIndex = partition.patternHolding(trainId);
+    ScheduledPattern pattern = partition.getPatterns().get(patternIndex);
+    int index = pattern.liveIndexOf(trainId);
+    partition.setPattern(patternIndex, pattern.withDetached(index));
+    if (!listeners.isEmpty()) {
+      TrainDeparture instance = pattern.getSource().createDeparture(index);
+      for (RegisterListener listener : listeners) {
+        listener.departureRemoved(instance);
+      }
+    }
+    return partition;
+  }
+
+  /**
+   * Checks if a saved departure has neither a delay nor a track, so it can be kept off the heap.
+   */
+  private static boolean isUnchanged(DepartureView view) {
+    return view.getDelayMinutes() == 0 && view.getTrack() == -1;
+  }
+
+  /**
+   * Publishes a snapshot with the current departure patterns of the register.
+   */
+  private void publishPatterns() {
+    if (publishingDeferred) {
+      deferredPatterns = true;
+    } else {
+      snapshot = snapshot.withPatterns(patternsOf());
+    }
+  }
+
+  private ScheduledPattern[] patternsOf() {
+    List<ScheduledPattern> patterns = new ArrayList<>();
+    for (ServiceDayPartition partition : partitions) {
+      if (partition != null) {
+        patterns.addAll(partition.getPatterns());
+      }
+    }
+    return patterns.toArray(new ScheduledPattern[0]);
+  }
+
+  private boolean isRetainedDay(int day) {
+    return day >= 0 && day >= currentDay - 1 && day <= currentDay + 1;
+  }
+
+  private long epochMinuteOf(LocalTime time) {
+    return (long) currentDay * Clock.MINUTES_PER_DAY + TimeOfDay.toMinute(time);
+  }
+
+  /**
+   * Gets the partition of a service day.
+   *
+   * @param day Service day of the partition.
+   * @param create If a missing partition should be created.
+   * @return Partition of the day, or null if it does not exist and should not be created.
+   */
+  private ServiceDayPartition partitionForDay(int day, boolean create) {
+    if (day < 0) {
+      return null;
+    }
+
+    int slot = day % partitions.length;
+    ServiceDayPartition partition = partitions[slot];
+    if (partition != null && partition.getDay() == day) {
+      return partition;
+    }
+    if (!create) {
+      return null;
+    }
+
+    partition = new ServiceDayPartition(day);
+    partitions[slot] = partition;
+    return partition;
+  }
+
+  /**
+   * Finds the partition that holds the departure with the given trainId.
+   * The current day is checked first, as that is where most departures are.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Partition holding the departure, or null if not found.
+   */
+  private ServiceDayPartition partitionContaining(String trainId) {
+    ServiceDayPartition partition = partitionForDay(currentDay, false);
+    if (partition != null && partition.getDepartures().containsKey(trainId)) {
+      return partition;
+    }
+
+    for (ServiceDayPartition other : partitions) {
+      if (other != null && other != partition && other.getDepartures().containsKey(trainId)) {
+        return other;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Finds the partition with a departure pattern that has a live instance with the given trainId.
+   *
+   * @param trainId Unique identifier for the train departure.
+   * @return Partition with the instance, or null if not found.
+   */
+  private ServiceDayPartition partitionWithInstance(String trainId) {
+    for (ServiceDayPartition partition : partitions) {
+      if (partition != null && partition.patternHolding(trainId) >= 0) {
+        return partition;
+      }
+    }
+    return null;
+  }
+
+  private ServiceDayPartition partitionHolding(TrainDeparture departure) {
+    ServiceDayPartition partition = partitionContaining(departure.getTrainId());
+    if (partition == null || !partition.holds(departure)) {
+      return null;
+    }
+    return partition;
+  }
 }
@@ -0,0 +1,276 @@
+package edu.ntnu.stud.logic;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.entity.TrainIdCodec;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Departures by trainId, where the ids are kept as longs packed by {@link TrainIdCodec}.
+ *
+ * <p>Packed ids are stored in an open addressing table of longs with linear probing, and the
+ * departures in a second array at the same positions. A lookup packs the id and probes the table,
+ * so it does not hash the string or follow entry objects. Ids that can not be packed are kept in
+ * an ordinary {@link HashMap} next to the table.
+ *
+ * <p>The index is a {@link java.util.Map}, so it can be used wherever the departures by trainId
+ * were used before. Lookups, adding and removing by trainId and the values are fast; the entry
+ * set creates an entry for every departure and is only meant for rare use. The index is not
+ * thread-safe.
+ */
+class TrainIdIndex extends AbstractMap<String, TrainDeparture> {
+  private static final int MIN_CAPACITY = 16;
+  // Key of a free slot. Packed ids are always positive.
+  private static final long FREE = 0;
+
+  private long[] keys;
+  private TrainDeparture[] values;
+  private int packedCount;
+  private final HashMap<String, TrainDeparture> unpacked;
+
+  /**
+   * Creates an empty index.
+   */
+  TrainIdIndex() {
+    this.keys = new long[MIN_CAPACITY];
+    this.values = new TrainDeparture[MIN_CAPACITY];
+    this.unpacked = new HashMap<>();
+  }
+
+  /**
+   * Gets the departure with a trainId.
+   *
+   * @param trainId TrainId to look for.
+   * @return Departure, or null if there is no departure with the trainId.
+   */
+  @Override
+  public TrainDeparture get(Object trainId) {
+    if (!(trainId instanceof String)) {
+      return null;
+    }
+    long code = TrainIdCodec.encode((String) trainId);
+    if (code == TrainIdCodec.UNPACKABLE) {
+      return unpacked.get(trainId);
+    }
+    int slot = find(code);
+    return keys[slot] == code ? values[slot] : null;
+  }
+
+  /**
+   * Checks if there is a departure with a trainId.
+   *
+   * @param trainId TrainId to look for.
+   * @return true if there is a departure with the trainId, false if not.
+   */
+  @Override
+  public boolean containsKey(Object trainId) {
+    return get(trainId) != null;
+  }
+
+  /**
+   * Adds a departure, or replaces the departure with the same trainId.
+   *
+   * @param trainId TrainId of the departure.
+   * @param departure Departure to add. Must not be null.
+   * @return Replaced departure, or null if there was none.
+   */
+  @Override
+  public TrainDeparture put(String trainId, TrainDeparture departure) {
+    long code = TrainIdCodec.encode(trainId);
+    if (code == TrainIdCodec.UNPACKABLE) {
+      return unpacked.put(trainId, departure);
+    }
+
+    int slot = find(code);
+    TrainDeparture previous = values[slot];
+    if (keys[slot] != code) {
+      if ((packedCount + 1) * 2 > keys.length) {
+        resize(keys.length * 2);
+        slot = find(code);
+      }
+      keys[slot] = code;
+      packedCount += 1;
+    }
+    values[slot] = departure;
+    return previous;
+  }
+
+  /**
+   * Removes the departure with a trainId.
+   *
+   * @param trainId TrainId of the departure.
+   * @return Removed departure, or null if there was none.
+   */
+  @Override
+  public TrainDeparture remove(Object trainId) {
+    if (!(trainId instanceof String)) {
+      return null;
+    }
+    long code = TrainIdCodec.encode((String) trainId);
+    if (code == TrainIdCodec.UNPACKABLE) {
+      return unpacked.remove(trainId);
+    }
+
+    int slot = find(code);
+    if (keys[slot] != code) {
+      return null;
+    }
+    TrainDeparture removed = values[slot];
+    removeSlot(slot);
+    packedCount -= 1;
+    return removed;
+  }
+
+  @Override
+  public int size() {
+    return packedCount + unpacked.size();
+  }
+
+  @Override
+  public void clear() {
+    keys = new long[MIN_CAPACITY];
+    values = new TrainDeparture[MIN_CAPACITY];
+    packedCount = 0;
+    unpacked.clear();
+  }
+
+  /**
+   * Gets the departures of the index, without creating an entry for each of them.
+   *
+   * @return Departures, in no particular order.
+   */
+  @Override
+  public Collection<TrainDeparture> values() {
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<TrainDeparture> iterator() {
+        return new ValueIterator();
+      }
+
+      @Override
+      public int size() {
+        return TrainIdIndex.this.size();
+      }
+    };
+  }
+
+  @Override
+  public Set<Entry<String, TrainDeparture>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, TrainDeparture>> iterator() {
+        Iterator<TrainDeparture> departures = new ValueIterator();
+        return new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return departures.hasNext();
+          }
+
+          @Override
+          public Entry<String, TrainDeparture> next() {
+            TrainDeparture departure = departures.next();
+            return new SimpleImmutableEntry<>(departure.getTrainId(), departure);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return TrainIdIndex.this.size();
+      }
+    };
+  }
+
+  /**
+   * Finds the slot of a code, or the free slot where it would be added.
+   */
+  private int find(long code) {
+    int mask = keys.length - 1;
+    int slot = slotOf(code, mask);
+    while (keys[slot] != FREE && keys[slot] != code) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Frees a slot, and moves the following codes of the same probe run back so none of them is
+   * left behind a free slot.
+   */
+  private void removeSlot(int slot) {
+    int mask = keys.length - 1;
+    int free = slot;
+    int next = (free + 1) & mask;
+    while (keys[next] != FREE) {
+      int home = slotOf(keys[next], mask);
+      // The code can move to the free slot if its home slot is not between the two.
+      if (((next - home) & mask) >= ((next - free) & mask)) {
+        keys[free] = keys[next];
+        values[free] = values[next];
+        free = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[free] = FREE;
+    values[free] = null;
+  }
+
+  private void resize(int capacity) {
+    long[] oldKeys = keys;
+    TrainDeparture[] oldValues = values;
+    keys = new long[capacity];
+    values = new TrainDeparture[capacity];
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = find(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private static int slotOf(long code, int mask) {
+    long mixed = code * 0x9E3779B97F4A7C15L;
+    return (int) (mixed >>> 32) & mask;
+  }
+
+  /**
+   * Goes through the packed departures and then the ones that could not be packed.
+   */
+  private final class ValueIterator implements Iterator<TrainDeparture> {
+    private final Iterator<TrainDeparture> unpackedDepartures = unpacked.values().iterator();
+    private int slot = nextUsed(0);
+
+    private int nextUsed(int from) {
+      int next = from;
+      while (next < keys.length && keys[next] == FREE) {
+        next += 1;
+      }
+      return next;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return slot < keys.length || unpackedDepartures.hasNext();
+    }
+
+    @Override
+    public TrainDeparture next() {
+      if (slot < keys.length) {
+        TrainDeparture departure = values[slot];
+        slot = nextUsed(slot + 1);
+        return departure;
+      }
+      if (!unpackedDepartures.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return unpackedDepartures.next();
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package edu.ntnu.stud.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for rendering departures to a board or the terminal.
+ * The duration of the event is the time the render took.
+ */
+@Name("edu.ntnu.stud.BoardRender")
+@Label("Board Render")
+@Category({"Train Dispatch", "User Interface"})
+@Description("Departures were rendered to a board")
+public class BoardRenderEvent extends Event {
+
+  @Label("Board")
+  private String board;
+
+  @Label("Rows")
+  private int rows;
+
+  /**
+   * Sets the fields of the event.
+   *
+   * @param board Name of the board that was rendered.
+   * @param rows Number of departure rows that were rendered.
+   */
+  public void set(String board, int rows) {
+    this.board = board;
+    this.rows = rows;
+  }
+}
@@ -0,0 +1,40 @@
+package edu.ntnu.stud.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for loading many departures into the register at once.
+ * The duration of the event is the time the load took.
+ */
+@Name("edu.ntnu.stud.BulkLoad")
+@Label("Bulk Load")
+@Category({"Train Dispatch", "Register"})
+@Description("Several departures were loaded into the register")
+public class BulkLoadEvent extends Event {
+
+  @Label("Offered Count")
+  private int offeredCount;
+
+  @Label("Added Count")
+  private int addedCount;
+
+  @Label("Register Size")
+  private int registerSize;
+
+  /**
+   * Sets the fields of the event.
+   *
+   * @param offeredCount Number of departures that were offered to the register.
+   * @param addedCount Number of departures that were added.
+   * @param registerSize Number of departures in the register after the load.
+   */
+  public void set(int offeredCount, int addedCount, int registerSize) {
+    this.offeredCount = offeredCount;
+    this.addedCount = addedCount;
+    this.registerSize = registerSize;
+  }
+}
@@ -0,0 +1,44 @@
+package edu.ntnu.stud.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a change to a departure in the register.
+ */
+@Name("edu.ntnu.stud.DepartureMutation")
+@Label("Departure Mutation")
+@Category({"Train Dispatch", "Register"})
+@Description("A departure was added to, deleted from or changed in the register")
+public class DepartureMutationEvent extends Event {
+
+  @Label("Operation")
+  private String operation;
+
+  @Label("Train Id")
+  private String trainId;
+
+  @Label("Destination")
+  private String destination;
+
+  @Label("Register Size")
+  private int registerSize;
+
+  /**
+   * Sets the fields of the event.
+   *
+   * @param operation Name of the operation, for example "add".
+   * @param trainId Unique identifier for the train departure.
+   * @param destination Destination of the departure.
+   * @param registerSize Number of departures in the register after the operation.
+   */
+  public void set(String operation, String trainId, String destination, int registerSize) {
+    this.operation = operation;
+    this.trainId = trainId;
+    this.destination = destination;
+    this.registerSize = registerSize;
+  }
+}
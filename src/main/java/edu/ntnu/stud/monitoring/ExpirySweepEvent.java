@@ -0,0 +1,35 @@
+package edu.ntnu.stud.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event for a sweep that removes departures that have left.
+ * The duration of the event is the time the sweep took.
+ */
+@Name("edu.ntnu.stud.ExpirySweep")
+@Label("Expiry Sweep")
+@Category({"Train Dispatch", "Register"})
+@Description("Departures that have left were removed from the register")
+public class ExpirySweepEvent extends Event {
+
+  @Label("Removed Count")
+  private int removedCount;
+
+  @Label("Register Size")
+  private int registerSize;
+
+  /**
+   * Sets the fields of the event.
+   *
+   * @param removedCount Number of departures removed by the sweep.
+   * @param registerSize Number of departures in the register after the sweep.
+   */
+  public void set(int removedCount, int registerSize) {
+    this.removedCount = removedCount;
+    this.registerSize = registerSize;
+  }
+}
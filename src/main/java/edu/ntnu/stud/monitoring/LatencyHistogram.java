@@ -0,0 +1,197 @@
+package edu.ntnu.stud.monitoring;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of non-negative values, for example latencies in nanoseconds.
+ *
+ * <p>The buckets are log-linear in the same way as an HDR histogram. Every power of two is split
+ * into {@value #SUB_BUCKETS} linear sub-buckets, which gives a relative error of about 6% for
+ * any value while keeping the histogram a fixed size. Recording a value is a few bit operations
+ * and an atomic increment, so it is safe to record from several threads at once.
+ * Histograms with the same layout can be merged by adding the bucket counts together.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts;
+  private final LongAdder totalCount;
+  private final LongAdder sum;
+  private final AtomicLong max;
+
+  /**
+   * Creates a new empty histogram.
+   */
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(BUCKET_COUNT);
+    totalCount = new LongAdder();
+    sum = new LongAdder();
+    max = new AtomicLong();
+  }
+
+  /**
+   * Records a value in the histogram. Negative values are recorded as 0.
+   *
+   * @param value Value to record.
+   */
+  public void record(long value) {
+    recordCount(value, 1);
+  }
+
+  /**
+   * Records a value several times in the histogram. Negative values are recorded as 0.
+   * A negative count removes values that have been recorded before, which does not lower the
+   * highest recorded value.
+   *
+   * @param value Value to record.
+   * @param count Number of times to record the value.
+   */
+  public void recordCount(long value, long count) {
+    if (count == 0) {
+      return;
+    }
+    long clamped = Math.max(0, value);
+
+    counts.addAndGet(indexOf(clamped), count);
+    totalCount.add(count);
+    sum.add(clamped * count);
+    if (count > 0) {
+      max.accumulateAndGet(clamped, Math::max);
+    }
+  }
+
+  /**
+   * Adds all values of another histogram to this histogram.
+   *
+   * @param other Histogram to merge in.
+   */
+  public void merge(LatencyHistogram other) {
+    if (other == null || other == this) {
+      return;
+    }
+
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+    totalCount.add(other.getCount());
+    sum.add(other.sum.sum());
+    max.accumulateAndGet(other.getMax(), Math::max);
+  }
+
+  /**
+   * Gets the number of recorded values.
+   *
+   * @return Number of values.
+   */
+  public long getCount() {
+    return totalCount.sum();
+  }
+
+  /**
+   * Gets the highest recorded value.
+   *
+   * @return Highest value, or 0 if nothing is recorded.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Gets the mean of the recorded values.
+   *
+   * @return Mean value, or 0 if nothing is recorded.
+   */
+  public double getMean() {
+    long count = getCount();
+    if (count <= 0) {
+      return 0;
+    }
+    return (double) sum.sum() / count;
+  }
+
+  /**
+   * Gets the value at the given percentile.
+   * The value is the upper bound of the bucket holding the percentile, but never more than the
+   * highest recorded value.
+   *
+   * @param percentile Percentile between 0 and 100.
+   * @return Value at the percentile, or 0 if nothing is recorded.
+   */
+  public long getPercentile(double percentile) {
+    long count = getCount();
+    if (count <= 0) {
+      return 0;
+    }
+
+    double clamped = Math.min(100, Math.max(0, percentile));
+    long rank = Math.max(1, (long) Math.ceil(clamped / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), getMax());
+      }
+    }
+    return getMax();
+  }
+
+  /**
+   * Gets the share of the recorded values that are less than or equal to the given value.
+   *
+   * @param value Value to compare with.
+   * @return Share between 0 and 1, or 0 if nothing is recorded.
+   */
+  public double getShareAtOrBelow(long value) {
+    long count = getCount();
+    if (count <= 0) {
+      return 0;
+    }
+
+    int lastIndex = indexOf(Math.max(0, value));
+    long seen = 0;
+    for (int i = 0; i <= lastIndex; i++) {
+      seen += counts.get(i);
+    }
+    return (double) seen / count;
+  }
+
+  /**
+   * Removes all recorded values.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts.set(i, 0);
+    }
+    totalCount.reset();
+    sum.reset();
+    max.set(0);
+  }
+
+  private static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long upperBoundOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,105 @@
+package edu.ntnu.stud.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Punctuality of a group of departures, for example all departures to one destination.
+ *
+ * <p>The delays are kept in a {@link LatencyHistogram}, which gives the mean at once and any
+ * percentile from a fixed number of buckets, and the departures that are on time are counted
+ * separately, so every statistic costs the same to read however many departures there are.
+ * Delays can be removed again, so the statistics can follow a delay as it changes. Two groups
+ * with the same on-time limit can be merged, for example the same line at two stations.
+ */
+public class Punctuality {
+  private final int onTimeMinutes;
+  private final LatencyHistogram delays;
+  private final LongAdder onTimeCount;
+
+  /**
+   * Creates an empty group.
+   *
+   * @param onTimeMinutes Highest delay in minutes that counts as on time.
+   */
+  public Punctuality(int onTimeMinutes) {
+    this.onTimeMinutes = Math.max(0, onTimeMinutes);
+    this.delays = new LatencyHistogram();
+    this.onTimeCount = new LongAdder();
+  }
+
+  /**
+   * Adds or removes a delay.
+   *
+   * @param delayMinutes Delay in minutes.
+   * @param count 1 to add the delay, -1 to remove a delay that was added before.
+   */
+  public void record(int delayMinutes, long count) {
+    delays.recordCount(delayMinutes, count);
+    if (delayMinutes <= onTimeMinutes) {
+      onTimeCount.add(count);
+    }
+  }
+
+  /**
+   * Adds the delays of another group to this group.
+   *
+   * @param other Group to merge in.
+   * @return true if the groups were merged, false if the other group is missing or has
+   *         another on-time limit.
+   */
+  public boolean merge(Punctuality other) {
+    if (other == null || other == this || other.onTimeMinutes != onTimeMinutes) {
+      return false;
+    }
+    delays.merge(other.delays);
+    onTimeCount.add(other.onTimeCount.sum());
+    return true;
+  }
+
+  /**
+   * Gets the highest delay in minutes that counts as on time.
+   *
+   * @return On-time limit in minutes.
+   */
+  public int getOnTimeMinutes() {
+    return onTimeMinutes;
+  }
+
+  /**
+   * Gets the number of departures in the group.
+   *
+   * @return Number of departures.
+   */
+  public long getCount() {
+    return delays.getCount();
+  }
+
+  /**
+   * Gets the mean delay of the group.
+   *
+   * @return Mean delay in minutes, 0 if the group is empty.
+   */
+  public double getMeanDelay() {
+    return delays.getMean();
+  }
+
+  /**
+   * Gets the delay at the given percentile, within the precision of the histogram.
+   *
+   * @param percentile Percentile between 0 and 100.
+   * @return Delay in minutes, 0 if the group is empty.
+   */
+  public long getDelayPercentile(double percentile) {
+    return delays.getPercentile(percentile);
+  }
+
+  /**
+   * Gets the share of the departures that are on time.
+   *
+   * @return Share between 0 and 1, 0 if the group is empty.
+   */
+  public double getOnTimeShare() {
+    long count = getCount();
+    return count > 0 ? (double) onTimeCount.sum() / count : 0;
+  }
+}
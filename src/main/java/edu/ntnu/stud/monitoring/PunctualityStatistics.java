@@ -0,0 +1,137 @@
+package edu.ntnu.stud.monitoring;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Punctuality of the departures of a day, in total and per destination and line.
+ * The statistics can be read while they are updated, and merged with the statistics of the same
+ * day at other stations.
+ */
+public class PunctualityStatistics {
+  /**
+   * Default highest delay in minutes that counts as on time.
+   */
+  public static final int DEFAULT_ON_TIME_MINUTES = 3;
+
+  private final int onTimeMinutes;
+  private final Punctuality overall;
+  private final Map<String, Punctuality> byDestination;
+  private final Map<String, Punctuality> byLine;
+
+  /**
+   * Creates empty statistics with the default on-time limit.
+   */
+  public PunctualityStatistics() {
+    this(DEFAULT_ON_TIME_MINUTES);
+  }
+
+  /**
+   * Creates empty statistics.
+   *
+   * @param onTimeMinutes Highest delay in minutes that counts as on time.
+   */
+  public PunctualityStatistics(int onTimeMinutes) {
+    this.onTimeMinutes = Math.max(0, onTimeMinutes);
+    this.overall = new Punctuality(this.onTimeMinutes);
+    this.byDestination = new ConcurrentHashMap<>();
+    this.byLine = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Adds or removes the delay of a departure.
+   *
+   * @param destination Destination of the departure.
+   * @param line Line of the departure.
+   * @param delayMinutes Delay in minutes.
+   * @param count 1 to add the delay, -1 to remove a delay that was added before.
+   */
+  public void record(String destination, String line, int delayMinutes, long count) {
+    overall.record(delayMinutes, count);
+    byDestination.computeIfAbsent(destination, key -> new Punctuality(onTimeMinutes))
+        .record(delayMinutes, count);
+    byLine.computeIfAbsent(line, key -> new Punctuality(onTimeMinutes))
+        .record(delayMinutes, count);
+  }
+
+  /**
+   * Adds the statistics of another station or register to these statistics.
+   *
+   * @param other Statistics to merge in.
+   * @return true if the statistics were merged, false if they are missing or have another
+   *         on-time limit.
+   */
+  public boolean merge(PunctualityStatistics other) {
+    if (other == null || other == this || other.onTimeMinutes != onTimeMinutes) {
+      return false;
+    }
+    overall.merge(other.overall);
+    for (Map.Entry<String, Punctuality> entry : other.byDestination.entrySet()) {
+      byDestination.computeIfAbsent(entry.getKey(), key -> new Punctuality(onTimeMinutes))
+          .merge(entry.getValue());
+    }
+    for (Map.Entry<String, Punctuality> entry : other.byLine.entrySet()) {
+      byLine.computeIfAbsent(entry.getKey(), key -> new Punctuality(onTimeMinutes))
+          .merge(entry.getValue());
+    }
+    return true;
+  }
+
+  /**
+   * Gets the highest delay in minutes that counts as on time.
+   *
+   * @return On-time limit in minutes.
+   */
+  public int getOnTimeMinutes() {
+    return onTimeMinutes;
+  }
+
+  /**
+   * Gets the punctuality of all departures.
+   *
+   * @return Punctuality of all departures.
+   */
+  public Punctuality getOverall() {
+    return overall;
+  }
+
+  /**
+   * Gets the punctuality of the departures to a destination.
+   *
+   * @param destination Destination to get the punctuality of.
+   * @return Punctuality of the destination, null if no departure to it has been recorded.
+   */
+  public Punctuality getDestination(String destination) {
+    return destination != null ? byDestination.get(destination) : null;
+  }
+
+  /**
+   * Gets the punctuality of the departures on a line.
+   *
+   * @param line Line to get the punctuality of.
+   * @return Punctuality of the line, null if no departure on it has been recorded.
+   */
+  public Punctuality getLine(String line) {
+    return line != null ? byLine.get(line) : null;
+  }
+
+  /**
+   * Gets the destinations that have been recorded.
+   *
+   * @return Destinations.
+   */
+  public Set<String> getDestinations() {
+    return Collections.unmodifiableSet(byDestination.keySet());
+  }
+
+  /**
+   * Gets the lines that have been recorded.
+   *
+   * @return Lines.
+   */
+  public Set<String> getLines() {
+    return Collections.unmodifiableSet(byLine.keySet());
+  }
+}
@@ -0,0 +1,169 @@
+package edu.ntnu.stud.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts and latency histograms for the operations of a train departure register.
+ *
+ * <p>The register only holds a reference to this class while metrics are enabled, so a disabled
+ * register pays for a single null check per operation and never reads the system timer.
+ * The metrics can be registered as a platform MBean so they can be read with JConsole or any
+ * other JMX client.
+ */
+public class RegisterMetrics implements RegisterMetricsMXBean {
+
+  /**
+   * The operations of the register that are measured.
+   */
+  public enum Operation {
+    ADD,
+    DELETE,
+    LOOKUP,
+    DESTINATION_QUERY,
+    QUERY,
+    RANGE_QUERY,
+    LISTING,
+    EXPIRY
+  }
+
+  private static final String DOMAIN = "edu.ntnu.stud";
+  private static final double NANOS_PER_MICRO = 1000.0;
+
+  private final EnumMap<Operation, LatencyHistogram> latencies;
+  private final IntSupplier departureCount;
+  private final Supplier<Map<String, Integer>> indexSizes;
+  private ObjectName objectName;
+
+  /**
+   * Creates new metrics for a register.
+   *
+   * @param departureCount Gauge for the number of departures in the register.
+   * @param indexSizes Gauge for the sizes of the indexes in the register.
+   */
+  public RegisterMetrics(IntSupplier departureCount, Supplier<Map<String, Integer>> indexSizes) {
+    this.latencies = new EnumMap<>(Operation.class);
+    for (Operation operation : Operation.values()) {
+      latencies.put(operation, new LatencyHistogram());
+    }
+    this.departureCount = departureCount != null ? departureCount : () -> 0;
+    this.indexSizes = indexSizes != null ? indexSizes : Map::of;
+  }
+
+  /**
+   * Records that an operation has finished.
+   *
+   * @param operation Operation that was run.
+   * @param startNanos Value of {@link System#nanoTime()} when the operation started.
+   */
+  public void record(Operation operation, long startNanos) {
+    latencies.get(operation).record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Gets the latency histogram of an operation.
+   *
+   * @param operation Operation to get the histogram for.
+   * @return Latency histogram in nanoseconds.
+   */
+  public LatencyHistogram getLatency(Operation operation) {
+    return latencies.get(operation);
+  }
+
+  /**
+   * Registers the metrics as a platform MBean with the given name.
+   *
+   * @param name Name of the register.
+   * @return true if the MBean was registered, false if not.
+   */
+  public boolean registerMBean(String name) {
+    if (objectName != null) {
+      return false;
+    }
+
+    try {
+      ObjectName newName = new ObjectName(DOMAIN + ":type=TrainDepartureRegister,name="
+          + ObjectName.quote(name != null ? name : "default"));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+      objectName = newName;
+      return true;
+    } catch (JMException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Removes the MBean from the platform MBean server if it is registered.
+   *
+   * @return true if the MBean was removed, false if not.
+   */
+  public boolean unregisterMBean() {
+    if (objectName == null) {
+      return false;
+    }
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      server.unregisterMBean(objectName);
+      return true;
+    } catch (JMException e) {
+      return false;
+    } finally {
+      objectName = null;
+    }
+  }
+
+  @Override
+  public int getDepartureCount() {
+    return departureCount.getAsInt();
+  }
+
+  @Override
+  public Map<String, Integer> getIndexSizes() {
+    return indexSizes.get();
+  }
+
+  @Override
+  public Map<String, Long> getOperationCounts() {
+    Map<String, Long> result = new LinkedHashMap<>();
+    latencies.forEach((operation, histogram) -> result.put(operation.name(),
+        histogram.getCount()));
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> getMeanLatencyMicros() {
+    Map<String, Double> result = new LinkedHashMap<>();
+    latencies.forEach((operation, histogram) -> result.put(operation.name(),
+        histogram.getMean() / NANOS_PER_MICRO));
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> getP99LatencyMicros() {
+    Map<String, Double> result = new LinkedHashMap<>();
+    latencies.forEach((operation, histogram) -> result.put(operation.name(),
+        histogram.getPercentile(99) / NANOS_PER_MICRO));
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> getMaxLatencyMicros() {
+    Map<String, Double> result = new LinkedHashMap<>();
+    latencies.forEach((operation, histogram) -> result.put(operation.name(),
+        histogram.getMax() / NANOS_PER_MICRO));
+    return result;
+  }
+
+  @Override
+  public void reset() {
+    latencies.values().forEach(LatencyHistogram::reset);
+  }
+}
@@ -0,0 +1,57 @@
+package edu.ntnu.stud.monitoring;
+
+import java.util.Map;
+
+/**
+ * Management interface for the metrics of a train departure register.
+ * Operation maps are keyed by the name of the {@link RegisterMetrics.Operation}.
+ */
+public interface RegisterMetricsMXBean {
+
+  /**
+   * Gets the number of departures in the register.
+   *
+   * @return Number of departures.
+   */
+  int getDepartureCount();
+
+  /**
+   * Gets the number of entries in each of the indexes of the register.
+   *
+   * @return Index sizes keyed by index name.
+   */
+  Map<String, Integer> getIndexSizes();
+
+  /**
+   * Gets the number of times each operation has been run.
+   *
+   * @return Operation counts.
+   */
+  Map<String, Long> getOperationCounts();
+
+  /**
+   * Gets the mean latency of each operation.
+   *
+   * @return Mean latency in microseconds.
+   */
+  Map<String, Double> getMeanLatencyMicros();
+
+  /**
+   * Gets the 99th percentile latency of each operation.
+   *
+   * @return 99th percentile latency in microseconds.
+   */
+  Map<String, Double> getP99LatencyMicros();
+
+  /**
+   * Gets the highest latency of each operation.
+   *
+   * @return Highest latency in microseconds.
+   */
+  Map<String, Double> getMaxLatencyMicros();
+
+  /**
+   * Removes all recorded counts and latencies.
+   */
+  void reset();
+}
@@ -0,0 +1,235 @@
+package edu.ntnu.stud.replication;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps a read-only copy of a register that is served by a {@link ReplicationLeader}.
+ *
+ * <p>After connecting, the follower builds a new register from the snapshot sent by the leader,
+ * and then applies every batch of changes in order on a thread of its own. That thread is the
+ * only one that changes the copy, so other threads must read it through
+ * {@link TrainDepartureRegister#getSnapshot()}. If a batch does not follow the last applied
+ * sequence number, changes have been lost and the follower disconnects. Connecting again gives
+ * a new snapshot.
+ */
+public class ReplicationFollower implements Closeable {
+  private volatile TrainDepartureRegister register;
+  private volatile long appliedSequence;
+  private volatile boolean connected;
+  private Socket socket;
+
+  /**
+   * Creates a follower with an empty register that is not connected.
+   */
+  public ReplicationFollower() {
+    this.register = new TrainDepartureRegister();
+    this.appliedSequence = -1;
+  }
+
+  /**
+   * Connects to a leader and starts following it.
+   *
+   * @param host Host of the leader.
+   * @param port Port of the leader.
+   * @return true if the follower connected, false if it already is connected or the leader
+   *         could not be reached.
+   */
+  public synchronized boolean connect(String host, int port) {
+    if (connected) {
+      return false;
+    }
+    DataInputStream in;
+    try {
+      socket = new Socket(host, port);
+      socket.setTcpNoDelay(true);
+      in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    } catch (IOException e) {
+      return false;
+    }
+
+    connected = true;
+    Thread reader = new Thread(() -> follow(in), "replication-follower");
+    reader.setDaemon(true);
+    reader.start();
+    return true;
+  }
+
+  /**
+   * Gets the copy of the register. The copy is replaced when a new snapshot is received, so it
+   * should be fetched again for every read.
+   *
+   * @return Register copy.
+   */
+  public TrainDepartureRegister getRegister() {
+    return register;
+  }
+
+  /**
+   * Gets the sequence number of the last change applied to the copy.
+   *
+   * @return Sequence number, -1 if no snapshot has been received.
+   */
+  public long getAppliedSequence() {
+    return appliedSequence;
+  }
+
+  /**
+   * Checks if the follower is connected to a leader.
+   *
+   * @return true if connected, false if not.
+   */
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * Waits until the change with the given sequence number has been applied.
+   *
+   * @param sequence Sequence number to wait for.
+   * @param timeoutMillis Longest time to wait in milliseconds.
+   * @return true if the change was applied in time, false if not.
+   * @throws InterruptedException If the thread is interrupted while waiting.
+   */
+  public synchronized boolean awaitSequence(long sequence, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining = timeoutMillis;
+    while (appliedSequence < sequence && connected && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return appliedSequence >= sequence;
+  }
+
+  /**
+   * Disconnects from the leader. The copy keeps the departures it had.
+   */
+  @Override
+  public synchronized void close() {
+    connected = false;
+    try {
+      if (socket != null) {
+        socket.close();
+      }
+    } catch (IOException e) {
+      // The socket is closed anyway.
+    }
+    notifyAll();
+  }
+
+  /**
+   * Follows a leader and prints the departures of the copy every time it changes.
+   *
+   * @param args Host and port of the leader.
+   * @throws InterruptedException If the thread is interrupted while waiting.
+   */
+  public static void main(String[] args) throws InterruptedException {
+    if (args.length != 2) {
+      System.out.println("Usage: ReplicationFollower HOST PORT");
+      return;
+    }
+    ReplicationFollower follower = new ReplicationFollower();
+    try {
+      if (!follower.connect(args[0], Integer.parseInt(args[1]))) {
+        System.out.println("Could not connect to " + args[0] + ":" + args[1]);
+        return;
+      }
+    } catch (NumberFormatException e) {
+      System.out.println("Invalid port " + args[1]);
+      return;
+    }
+
+    long shownSequence = -1;
+    while (follower.isConnected()) {
+      follower.awaitSequence(shownSequence + 1, 1000);
+      if (follower.getAppliedSequence() > shownSequence) {
+        shownSequence = follower.getAppliedSequence();
+        System.out.println("--- Sequence " + shownSequence + " ---");
+        for (TrainDeparture departure : follower.getRegister().getSnapshot().getDepartures()) {
+          System.out.println(departure.getDeparture() + " " + departure.getTrainId() + " "
+              + departure.getLine() + " " + departure.getDestination());
+        }
+      }
+    }
+    System.out.println("Lost the connection to the leader.");
+  }
+
+  private void follow(DataInputStream in) {
+    try {
+      while (connected) {
+        byte type = in.readByte();
+        if (type == ReplicationProtocol.SNAPSHOT) {
+          readSnapshot(in);
+        } else if (type != ReplicationProtocol.BATCH || !readBatch(in)) {
+          break;
+        }
+        synchronized (this) {
+          notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      // The leader is gone, the copy keeps its departures.
+    }
+    close();
+  }
+
+  private void readSnapshot(DataInputStream in) throws IOException {
+    long sequence = in.readLong();
+    int currentDay = in.readInt();
+    int count = in.readInt();
+    Map<Integer, List<TrainDeparture>> byDay = new TreeMap<>();
+    for (int i = 0; i < count; i++) {
+      int serviceDay = in.readInt();
+      byDay.computeIfAbsent(serviceDay, day -> new ArrayList<>())
+          .add(ReplicationProtocol.readDeparture(in));
+    }
+
+    TrainDepartureRegister copy = new TrainDepartureRegister();
+    copy.startServiceDay(currentDay);
+    for (Map.Entry<Integer, List<TrainDeparture>> day : byDay.entrySet()) {
+      copy.addDepartures(day.getValue(), day.getKey());
+    }
+    register = copy;
+    appliedSequence = sequence;
+  }
+
+  private boolean readBatch(DataInputStream in) throws IOException {
+    long firstSequence = in.readLong();
+    int count = in.readInt();
+    if (appliedSequence == -1 || firstSequence != appliedSequence + 1) {
+      return false;
+    }
+
+    TrainDepartureRegister copy = register;
+    for (int i = 0; i < count; i++) {
+      byte operation = in.readByte();
+      if (operation == ReplicationProtocol.ADD) {
+        int serviceDay = in.readInt();
+        copy.addDeparture(ReplicationProtocol.readDeparture(in), serviceDay);
+      } else if (operation == ReplicationProtocol.REMOVE) {
+        copy.deleteDeparture(copy.getDepartureFromId(in.readUTF()));
+      } else if (operation == ReplicationProtocol.CHANGE) {
+        String trainId = in.readUTF();
+        copy.updateDelay(trainId, TimeOfDay.toLocalTime(in.readInt()));
+        copy.updateTrack(trainId, in.readInt());
+      } else if (operation == ReplicationProtocol.DAY) {
+        copy.startServiceDay(in.readInt());
+      } else {
+        return false;
+      }
+    }
+    appliedSequence = firstSequence + count - 1;
+    return true;
+  }
+}
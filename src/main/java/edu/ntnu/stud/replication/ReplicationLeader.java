@@ -0,0 +1,404 @@
+package edu.ntnu.stud.replication;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.RegisterListener;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the changes of a register to {@link ReplicationFollower}s in other processes over TCP.
+ *
+ * <p>The leader listens to the register, gives every change a sequence number, and collects the
+ * changes in a batch. The batch is sent to all followers when it is full or when the flush
+ * interval has passed, whichever comes first, so a burst of changes costs a few writes instead of
+ * one per change.
+ *
+ * <p>The leader keeps its own copy of the departures. A follower that connects first gets a
+ * snapshot of that copy together with its sequence number, and then every batch after it, so it
+ * can join at any time. Each follower has its own queue and sender thread, so a slow follower
+ * does not hold up the register. A follower that falls more than
+ * {@value #FOLLOWER_QUEUE_FRAMES} frames behind is disconnected, and has to connect again to get
+ * a new snapshot.
+ *
+ * <p>The leader must be created and closed on the thread that changes the register.
+ */
+public class ReplicationLeader implements RegisterListener, Closeable {
+  /**
+   * Default number of changes in a batch before it is sent.
+   */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+  /**
+   * Default number of milliseconds before a batch that is not full is sent.
+   */
+  public static final int DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+  private static final int FOLLOWER_QUEUE_FRAMES = 1024;
+
+  private final TrainDepartureRegister register;
+  private final Map<String, TrainDeparture> departures;
+  private final Map<String, Integer> serviceDays;
+  private final List<FollowerConnection> followers;
+  private final ByteArrayOutputStream batchBytes;
+  private final DataOutputStream batch;
+  private final int maxBatchSize;
+  private int batchCount;
+  private long sequence;
+  private int currentDay;
+  private ServerSocket serverSocket;
+  private Thread acceptor;
+  private ScheduledExecutorService flusher;
+
+  /**
+   * Creates a leader for a register with the default batch size.
+   *
+   * @param register Register to replicate.
+   */
+  public ReplicationLeader(TrainDepartureRegister register) {
+    this(register, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * Creates a leader for a register and starts listening to its changes.
+   *
+   * @param register Register to replicate.
+   * @param maxBatchSize Number of changes in a batch before it is sent, at least 1.
+   */
+  public ReplicationLeader(TrainDepartureRegister register, int maxBatchSize) {
+    this.register = register;
+    this.maxBatchSize = Math.max(1, maxBatchSize);
+    this.departures = new LinkedHashMap<>();
+    this.serviceDays = new LinkedHashMap<>();
+    this.followers = new ArrayList<>();
+    this.batchBytes = new ByteArrayOutputStream();
+    this.batch = new DataOutputStream(batchBytes);
+
+    currentDay = register.getCurrentDay();
+    for (TrainDeparture departure : register.getAllDepartures()) {
+      departures.put(departure.getTrainId(), ReplicationProtocol.copyOf(departure));
+      serviceDays.put(departure.getTrainId(), register.getServiceDayOf(departure.getTrainId()));
+    }
+    register.addListener(this);
+  }
+
+  /**
+   * Starts accepting followers on the loopback interface.
+   *
+   * @param port Port to listen on, 0 picks a free port.
+   * @return true if the leader was started, false if it already was started or the port could
+   *         not be used.
+   */
+  public synchronized boolean start(int port) {
+    return start(port, InetAddress.getLoopbackAddress());
+  }
+
+  /**
+   * Starts accepting followers on the given address.
+   *
+   * @param port Port to listen on, 0 picks a free port.
+   * @param address Address to listen on.
+   * @return true if the leader was started, false if it already was started or the port could
+   *         not be used.
+   */
+  public synchronized boolean start(int port, InetAddress address) {
+    if (serverSocket != null) {
+      return false;
+    }
+    try {
+      serverSocket = new ServerSocket(port, 50, address);
+    } catch (IOException e) {
+      return false;
+    }
+
+    acceptor = new Thread(this::acceptFollowers, "replication-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "replication-flusher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    flusher.scheduleWithFixedDelay(this::flush, DEFAULT_FLUSH_INTERVAL_MILLIS,
+        DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    return true;
+  }
+
+  /**
+   * Gets the port the leader listens on.
+   *
+   * @return Port, -1 if the leader is not started.
+   */
+  public synchronized int getPort() {
+    return serverSocket != null ? serverSocket.getLocalPort() : -1;
+  }
+
+  /**
+   * Gets the sequence number of the last change.
+   *
+   * @return Sequence number, 0 if nothing has changed yet.
+   */
+  public synchronized long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Gets the number of connected followers.
+   *
+   * @return Number of followers.
+   */
+  public synchronized int getFollowerCount() {
+    followers.removeIf(FollowerConnection::isClosed);
+    return followers.size();
+  }
+
+  @Override
+  public synchronized void departureAdded(TrainDeparture departure, int serviceDay) {
+    departures.put(departure.getTrainId(), ReplicationProtocol.copyOf(departure));
+    serviceDays.put(departure.getTrainId(), serviceDay);
+    try {
+      batch.writeByte(ReplicationProtocol.ADD);
+      batch.writeInt(serviceDay);
+      ReplicationProtocol.writeDeparture(batch, departure);
+    } catch (IOException e) {
+      // Writing to a byte array does not fail.
+    }
+    addedToBatch();
+  }
+
+  @Override
+  public synchronized void departureRemoved(TrainDeparture departure) {
+    departures.remove(departure.getTrainId());
+    serviceDays.remove(departure.getTrainId());
+    try {
+      batch.writeByte(ReplicationProtocol.REMOVE);
+      batch.writeUTF(departure.getTrainId());
+    } catch (IOException e) {
+      // Writing to a byte array does not fail.
+    }
+    addedToBatch();
+  }
+
+  @Override
+  public synchronized void departureChanged(TrainDeparture departure) {
+    TrainDeparture copy = departures.get(departure.getTrainId());
+    if (copy != null) {
+      copy.setDelayMinutes(departure.getDelayMinutes());
+      copy.setTrack(departure.getTrack());
+    }
+    try {
+      batch.writeByte(ReplicationProtocol.CHANGE);
+      batch.writeUTF(departure.getTrainId());
+      batch.writeInt(departure.getDelayMinutes());
+      batch.writeInt(departure.getTrack());
+    } catch (IOException e) {
+      // Writing to a byte array does not fail.
+    }
+    addedToBatch();
+  }
+
+  @Override
+  public synchronized void serviceDayStarted(int day) {
+    currentDay = day;
+    // The followers drop the old days themselves when they start the new day.
+    serviceDays.entrySet().removeIf(entry -> entry.getValue() < day - 1);
+    departures.keySet().retainAll(serviceDays.keySet());
+    try {
+      batch.writeByte(ReplicationProtocol.DAY);
+      batch.writeInt(day);
+    } catch (IOException e) {
+      // Writing to a byte array does not fail.
+    }
+    addedToBatch();
+  }
+
+  /**
+   * Sends the changes collected so far to every follower.
+   */
+  public synchronized void flush() {
+    if (batchCount == 0) {
+      return;
+    }
+
+    ByteArrayOutputStream frameBytes = new ByteArrayOutputStream(batchBytes.size() + 13);
+    try (DataOutputStream frame = new DataOutputStream(frameBytes)) {
+      frame.writeByte(ReplicationProtocol.BATCH);
+      frame.writeLong(sequence - batchCount + 1);
+      frame.writeInt(batchCount);
+      batchBytes.writeTo(frame);
+    } catch (IOException e) {
+      // Writing to a byte array does not fail.
+    }
+    batchBytes.reset();
+    batchCount = 0;
+
+    byte[] bytes = frameBytes.toByteArray();
+    Iterator<FollowerConnection> iterator = followers.iterator();
+    while (iterator.hasNext()) {
+      FollowerConnection follower = iterator.next();
+      if (!follower.offer(bytes)) {
+        follower.close();
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Stops the leader, disconnects all followers and stops listening to the register.
+   * Returns when the leader no longer accepts followers.
+   */
+  @Override
+  public void close() {
+    register.removeListener(this);
+    Thread stoppedAcceptor;
+    synchronized (this) {
+      stoppedAcceptor = acceptor;
+      acceptor = null;
+      if (flusher != null) {
+        flusher.shutdownNow();
+      }
+      try {
+        if (serverSocket != null) {
+          serverSocket.close();
+        }
+      } catch (IOException e) {
+        // The socket is closed anyway.
+      }
+      for (FollowerConnection follower : followers) {
+        follower.close();
+      }
+      followers.clear();
+    }
+    // A socket closed while a thread waits in accept is only released when that thread returns.
+    if (stoppedAcceptor != null) {
+      try {
+        stoppedAcceptor.join(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void addedToBatch() {
+    sequence += 1;
+    batchCount += 1;
+    if (batchCount >= maxBatchSize) {
+      flush();
+    }
+  }
+
+  private void acceptFollowers() {
+    while (true) {
+      Socket socket;
+      try {
+        socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+      } catch (IOException e) {
+        return;
+      }
+
+      FollowerConnection follower;
+      try {
+        follower = new FollowerConnection(socket);
+      } catch (IOException e) {
+        continue;
+      }
+      synchronized (this) {
+        // Sending the open batch first makes the snapshot line up with the sequence number.
+        flush();
+        follower.offer(snapshotFrame());
+        followers.add(follower);
+      }
+      follower.start();
+    }
+  }
+
+  private byte[] snapshotFrame() {
+    ByteArrayOutputStream frameBytes = new ByteArrayOutputStream();
+    try (DataOutputStream frame = new DataOutputStream(frameBytes)) {
+      frame.writeByte(ReplicationProtocol.SNAPSHOT);
+      frame.writeLong(sequence);
+      frame.writeInt(currentDay);
+      frame.writeInt(departures.size());
+      for (TrainDeparture departure : departures.values()) {
+        frame.writeInt(serviceDays.get(departure.getTrainId()));
+        ReplicationProtocol.writeDeparture(frame, departure);
+      }
+    } catch (IOException e) {
+      // Writing to a byte array does not fail.
+    }
+    return frameBytes.toByteArray();
+  }
+
+  /**
+   * Connection to one follower, with a queue of frames that a thread of its own sends.
+   */
+  private static class FollowerConnection {
+    private final Socket socket;
+    private final OutputStream out;
+    private final BlockingQueue<byte[]> frames;
+    private volatile boolean closed;
+
+    FollowerConnection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.out = new BufferedOutputStream(socket.getOutputStream());
+      this.frames = new ArrayBlockingQueue<>(FOLLOWER_QUEUE_FRAMES);
+    }
+
+    void start() {
+      Thread sender = new Thread(this::send, "replication-sender-" + socket.getPort());
+      sender.setDaemon(true);
+      sender.start();
+    }
+
+    boolean offer(byte[] frame) {
+      return !closed && frames.offer(frame);
+    }
+
+    boolean isClosed() {
+      return closed;
+    }
+
+    void close() {
+      closed = true;
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // The socket is closed anyway.
+      }
+    }
+
+    private void send() {
+      try {
+        while (!closed) {
+          byte[] frame = frames.take();
+          out.write(frame);
+          // Only flush the socket once the frames that are ready have been written.
+          if (frames.isEmpty()) {
+            out.flush();
+          }
+        }
+      } catch (IOException | InterruptedException e) {
+        close();
+      }
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package edu.ntnu.stud.replication;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Frames and operations sent from a {@link ReplicationLeader} to its followers.
+ *
+ * <p>A follower first gets a snapshot frame, and then batch frames with the changes made after
+ * the snapshot. Every change has a sequence number one higher than the change before it, so a
+ * follower can tell if it has missed a batch.
+ * <pre>
+ *   snapshot: byte 1, long sequence, int currentDay, int count,
+ *             count times (int serviceDay, departure)
+ *   batch:    byte 2, long firstSequence, int count, count times an operation
+ *
+ *   add:      byte 1, int serviceDay, departure
+ *   remove:   byte 2, utf trainId
+ *   change:   byte 3, utf trainId, int delayMinutes, int track
+ *   day:      byte 4, int day
+ *
+ *   departure: utf trainId, utf destination, utf line, int departureMinute,
+ *              int delayMinutes, int track
+ * </pre>
+ */
+final class ReplicationProtocol {
+  static final byte SNAPSHOT = 1;
+  static final byte BATCH = 2;
+
+  static final byte ADD = 1;
+  static final byte REMOVE = 2;
+  static final byte CHANGE = 3;
+  static final byte DAY = 4;
+
+  private ReplicationProtocol() {
+  }
+
+  static void writeDeparture(DataOutput out, TrainDeparture departure) throws IOException {
+    out.writeUTF(departure.getTrainId());
+    out.writeUTF(departure.getDestination());
+    out.writeUTF(departure.getLine());
+    out.writeInt(departure.getDepartureMinute());
+    out.writeInt(departure.getDelayMinutes());
+    out.writeInt(departure.getTrack());
+  }
+
+  static TrainDeparture readDeparture(DataInput in) throws IOException {
+    String trainId = in.readUTF();
+    String destination = in.readUTF();
+    String line = in.readUTF();
+    int departureMinute = in.readInt();
+    int delayMinutes = in.readInt();
+    int track = in.readInt();
+    return new TrainDeparture(TimeOfDay.toLocalTime(departureMinute), destination, trainId, line,
+        track, TimeOfDay.toLocalTime(delayMinutes));
+  }
+
+  static TrainDeparture copyOf(TrainDeparture departure) {
+    return new TrainDeparture(departure.getDeparture(), departure.getDestination(),
+        departure.getTrainId(), departure.getLine(), departure.getTrack(), departure.getDelay());
+  }
+}
@@ -0,0 +1,160 @@
+package edu.ntnu.stud.storage;
+
+import edu.ntnu.stud.entity.TimeOfDay;
+import edu.ntnu.stud.entity.TrainDeparture;
+
+/**
+ * Reads one departure record of an {@link OffHeapDepartureStore}.
+ *
+ * <p>A view holds no data of its own, only the number of the record it is bound to, and every
+ * getter reads straight from the store. The same view can be rebound to other records, so
+ * reading many departures only needs a single view. A view bound to a departure that is later
+ * removed from the store must not be read.
+ */
+public final class DepartureView {
+  private final OffHeapDepartureStore store;
+  private int record;
+
+  DepartureView(OffHeapDepartureStore store) {
+    this.store = store;
+    this.record = -1;
+  }
+
+  void bind(int record) {
+    this.record = record;
+  }
+
+  OffHeapDepartureStore getStore() {
+    return store;
+  }
+
+  /**
+   * Checks if the view is bound to a departure.
+   *
+   * @return true if the view can be read, false if not.
+   */
+  public boolean isBound() {
+    return record != -1;
+  }
+
+  /**
+   * Binds the view to a record of the store. The records of a store made with
+   * {@link OffHeapDepartureStore#sortedCopy(java.util.function.Predicate)} are numbered from 0 in
+   * order of departure time.
+   *
+   * @param record Number of the record.
+   * @return true if the record holds a departure, false if not. The view is unbound if not.
+   */
+  public boolean moveTo(int record) {
+    this.record = store.isRecord(record) ? record : -1;
+    return this.record != -1;
+  }
+
+  /**
+   * Gets the number of the record the view is bound to.
+   *
+   * @return Number of the record, -1 if the view is not bound.
+   */
+  public int getRecord() {
+    return record;
+  }
+
+  /**
+   * Gets the departure time in minutes since midnight.
+   *
+   * @return Departure time in minutes.
+   */
+  public int getDepartureMinute() {
+    return store.readInt(record, OffHeapDepartureStore.DEPARTURE_OFFSET);
+  }
+
+  /**
+   * Gets the delay in minutes.
+   *
+   * @return Delay in minutes.
+   */
+  public int getDelayMinutes() {
+    return store.readInt(record, OffHeapDepartureStore.DELAY_OFFSET);
+  }
+
+  /**
+   * Gets the assigned track.
+   *
+   * @return Track, -1 if no track is assigned.
+   */
+  public int getTrack() {
+    return store.readInt(record, OffHeapDepartureStore.TRACK_OFFSET);
+  }
+
+  /**
+   * Gets the service day the departure belongs to.
+   *
+   * @return Service day.
+   */
+  public int getServiceDay() {
+    return store.readInt(record, OffHeapDepartureStore.SERVICE_DAY_OFFSET);
+  }
+
+  /**
+   * Gets the trainId. A new string is created on every call.
+   *
+   * @return Train id.
+   */
+  public String getTrainId() {
+    return store.readText(record, OffHeapDepartureStore.TRAIN_ID_OFFSET);
+  }
+
+  /**
+   * Gets the line. A new string is created on every call.
+   *
+   * @return Line.
+   */
+  public String getLine() {
+    return store.readText(record, OffHeapDepartureStore.LINE_OFFSET);
+  }
+
+  /**
+   * Gets the destination. A new string is created on every call.
+   *
+   * @return Destination.
+   */
+  public String getDestination() {
+    return store.readText(record, OffHeapDepartureStore.DESTINATION_OFFSET);
+  }
+
+  /**
+   * Checks if the departure goes to a destination, without creating a string.
+   *
+   * @param destination Destination to check for.
+   * @return true if the departure goes to the destination, false if not.
+   */
+  public boolean hasDestination(String destination) {
+    return store.textEquals(record, OffHeapDepartureStore.DESTINATION_OFFSET, destination);
+  }
+
+  /**
+   * Checks if the departure runs on a line, without creating a string.
+   *
+   * @param line Line to check for.
+   * @return true if the departure runs on the line, false if not.
+   */
+  public boolean hasLine(String line) {
+    return store.textEquals(record, OffHeapDepartureStore.LINE_OFFSET, line);
+  }
+
+  /**
+   * Creates a departure object with the values of the record.
+   *
+   * @return New train departure.
+   */
+  public TrainDeparture toDeparture() {
+    return new TrainDeparture(
+        TimeOfDay.toLocalTime(getDepartureMinute()),
+        getDestination(),
+        getTrainId(),
+        getLine(),
+        getTrack(),
+        TimeOfDay.toLocalTime(getDelayMinutes())
+    );
+  }
+}
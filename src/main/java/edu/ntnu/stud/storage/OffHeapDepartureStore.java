@@ -0,0 +1,669 @@
+package edu.ntnu.stud.storage;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Stores train departures outside of the Java heap, as fixed-width records in direct memory.
+ *
+ * <p>With millions of departures, the garbage collector spends most of its time marking
+ * departure objects that never change. This store keeps the same data as plain bytes, so the
+ * departures in it are not objects the collector has to mark. Every record is
+ * {@value #RECORD_SIZE} bytes wide:
+ * <pre>
+ *   offset  size  field
+ *        0     4  departure, minutes since midnight
+ *        4     4  delay in minutes
+ *        8     4  track, -1 if none is assigned
+ *       12     4  service day, {@link Integer#MIN_VALUE} if the record is free
+ *       16    24  trainId, one length byte and up to 23 bytes of UTF-8
+ *       40    16  line, one length byte and up to 15 bytes of UTF-8
+ *       56    40  destination, one length byte and up to 39 bytes of UTF-8
+ * </pre>
+ * Free records are linked together through their departure field and are reused by later adds.
+ *
+ * <p>A text that is too long for its field is kept in an overflow area of direct memory. The
+ * field then holds the length byte {@value #OVERFLOW}, followed by the position and the length of
+ * the text in the overflow area. The overflow of a removed record is not reused.
+ *
+ * <p>Departures are found by trainId through an open-addressing hash table of record numbers,
+ * which is kept off the heap as well. Reads go through a {@link DepartureView}, which reads
+ * the fields of one record straight from the buffer, so no departure objects are created
+ * unless {@link DepartureView#toDeparture()} is called.
+ *
+ * <p>{@link #save(Path)} writes the records, the index and the overflow area to a file exactly as
+ * they are laid out in memory, and {@link #load(Path)} copies such a file back into direct
+ * buffers without parsing or rehashing it. The store is not thread safe while it is changed, but
+ * a store that is no longer changed can be read from many threads with a view each.
+ *
+ * <p>Buffers are indexed by int, so a store holds at most {@value #MAX_RECORDS} departures.
+ *
+ * <p>The {@code TrainDepartureRegister} saves its departures to a store. When they are loaded,
+ * the departures without delay or track are kept in a {@link #sortedCopy(Predicate)} per service
+ * day and read from there, and only the departures that are changed become objects on the heap.
+ */
+public class OffHeapDepartureStore {
+  /**
+   * Number of bytes in a record.
+   */
+  public static final int RECORD_SIZE = 96;
+
+  /**
+   * Largest number of departures a store can hold, as the record buffer can not be larger than
+   * {@link Integer#MAX_VALUE} bytes.
+   */
+  public static final int MAX_RECORDS = Integer.MAX_VALUE / RECORD_SIZE;
+
+  static final int DEPARTURE_OFFSET = 0;
+  static final int DELAY_OFFSET = 4;
+  static final int TRACK_OFFSET = 8;
+  static final int SERVICE_DAY_OFFSET = 12;
+  static final int TRAIN_ID_OFFSET = 16;
+  static final int LINE_OFFSET = 40;
+  static final int DESTINATION_OFFSET = 56;
+
+  private static final int TRAIN_ID_BYTES = 24;
+  private static final int LINE_BYTES = 16;
+  private static final int DESTINATION_BYTES = 40;
+  private static final int FREE_RECORD = Integer.MIN_VALUE;
+  // Length byte of a text kept in the overflow area.
+  private static final int OVERFLOW = 0xFF;
+
+  private static final int MAGIC = 0x54444550;
+  private static final int FORMAT_VERSION = 2;
+  private static final int HEADER_SIZE = 32;
+  private static final int EMPTY_SLOT = 0;
+  private static final int DELETED_SLOT = -1;
+  private static final int MIN_CAPACITY = 16;
+  // Index slots are a power of two whose bytes fit in a buffer.
+  private static final int MAX_INDEX_SLOTS = 1 << 28;
+
+  private ByteBuffer records;
+  private ByteBuffer index;
+  private ByteBuffer overflow;
+  private int overflowSize;
+  private int capacity;
+  private int highWater;
+  private int size;
+  private int freeHead;
+  private int indexSlots;
+  private int deletedSlots;
+
+  /**
+   * Creates an empty store with room for a few departures. The store grows as needed.
+   */
+  public OffHeapDepartureStore() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * Creates an empty store with room for the given number of departures before it has to grow.
+   *
+   * @param initialCapacity Expected number of departures, at most {@value #MAX_RECORDS} are used.
+   */
+  public OffHeapDepartureStore(int initialCapacity) {
+    capacity = Math.min(MAX_RECORDS, Math.max(MIN_CAPACITY, initialCapacity));
+    records = ByteBuffer.allocateDirect(offsetOf(capacity));
+    indexSlots = tableSizeFor(capacity * 2);
+    index = ByteBuffer.allocateDirect(indexSlots * Integer.BYTES);
+    overflow = ByteBuffer.allocateDirect(0);
+    freeHead = -1;
+  }
+
+  private OffHeapDepartureStore(ByteBuffer records, ByteBuffer index, ByteBuffer overflow,
+                                int highWater, int size, int freeHead, int indexSlots,
+                                int deletedSlots) {
+    this.records = records;
+    this.index = index;
+    this.overflow = overflow;
+    this.overflowSize = overflow.capacity();
+    this.capacity = highWater;
+    this.highWater = highWater;
+    this.size = size;
+    this.freeHead = freeHead;
+    this.indexSlots = indexSlots;
+    this.deletedSlots = deletedSlots;
+  }
+
+  /**
+   * Gets the number of departures in the store.
+   *
+   * @return Number of departures.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of bytes the store uses outside of the heap.
+   *
+   * @return Size of the record, index and overflow buffers in bytes.
+   */
+  public long getOffHeapBytes() {
+    return (long) records.capacity() + index.capacity() + overflow.capacity();
+  }
+
+  /**
+   * Creates a view that can be bound to a departure with {@link #find(String, DepartureView)}.
+   *
+   * @return New unbound view.
+   */
+  public DepartureView newView() {
+    return new DepartureView(this);
+  }
+
+  /**
+   * Adds a departure to the store.
+   *
+   * @param departure Departure to add.
+   * @param serviceDay Service day the departure belongs to.
+   * @return true if the departure was added, false if it is null, its trainId is already in
+   *         the store, or the store or its overflow area is full.
+   */
+  public boolean add(TrainDeparture departure, int serviceDay) {
+    if (departure == null || serviceDay == FREE_RECORD) {
+      return false;
+    }
+    return add(departure.getDepartureMinute(), departure.getDelayMinutes(), departure.getTrack(),
+        serviceDay, departure.getTrainId().getBytes(StandardCharsets.UTF_8),
+        departure.getLine().getBytes(StandardCharsets.UTF_8),
+        departure.getDestination().getBytes(StandardCharsets.UTF_8));
+  }
+
+  private boolean add(int departureMinute, int delayMinutes, int track, int serviceDay,
+                      byte[] trainId, byte[] line, byte[] destination) {
+    long overflowNeeded = overflowBytes(trainId, TRAIN_ID_BYTES) + overflowBytes(line, LINE_BYTES)
+        + overflowBytes(destination, DESTINATION_BYTES);
+    if (findRecord(trainId) != -1 || !reserveOverflow(overflowNeeded)) {
+      return false;
+    }
+
+    int record = allocateRecord();
+    if (record == -1) {
+      return false;
+    }
+    int base = offsetOf(record);
+    records.putInt(base + DEPARTURE_OFFSET, departureMinute);
+    records.putInt(base + DELAY_OFFSET, delayMinutes);
+    records.putInt(base + TRACK_OFFSET, track);
+    records.putInt(base + SERVICE_DAY_OFFSET, serviceDay);
+    writeText(base + TRAIN_ID_OFFSET, TRAIN_ID_BYTES, trainId);
+    writeText(base + LINE_OFFSET, LINE_BYTES, line);
+    writeText(base + DESTINATION_OFFSET, DESTINATION_BYTES, destination);
+
+    if ((size + 1 + deletedSlots) * 2 > indexSlots) {
+      rehash(tableSizeFor((size + 1) * 4));
+    }
+    insertIntoIndex(record, hash(trainId, trainId.length));
+    size += 1;
+    return true;
+  }
+
+  /**
+   * Removes a departure from the store. Views bound to it must not be used afterwards.
+   *
+   * @param trainId Unique identifier of the departure.
+   * @return true if the departure was removed, false if it was not found.
+   */
+  public boolean remove(String trainId) {
+    int slot = findSlot(trainId);
+    if (slot == -1) {
+      return false;
+    }
+
+    int record = index.getInt(slot * Integer.BYTES) - 1;
+    index.putInt(slot * Integer.BYTES, DELETED_SLOT);
+    deletedSlots += 1;
+
+    int base = offsetOf(record);
+    records.putInt(base + SERVICE_DAY_OFFSET, FREE_RECORD);
+    records.putInt(base + DEPARTURE_OFFSET, freeHead);
+    freeHead = record;
+    size -= 1;
+    return true;
+  }
+
+  /**
+   * Sets the delay of a departure in the store.
+   *
+   * @param trainId Unique identifier of the departure.
+   * @param delayMinutes New delay in minutes, negative values are set to 0.
+   * @return true if the delay was set, false if the departure was not found.
+   */
+  public boolean updateDelay(String trainId, int delayMinutes) {
+    int record = findRecord(trainId);
+    if (record == -1) {
+      return false;
+    }
+    records.putInt(offsetOf(record) + DELAY_OFFSET, Math.max(0, delayMinutes));
+    return true;
+  }
+
+  /**
+   * Sets the track of a departure in the store.
+   *
+   * @param trainId Unique identifier of the departure.
+   * @param track New track, negative values are set to -1.
+   * @return true if the track was set, false if the departure was not found.
+   */
+  public boolean updateTrack(String trainId, int track) {
+    int record = findRecord(trainId);
+    if (record == -1) {
+      return false;
+    }
+    records.putInt(offsetOf(record) + TRACK_OFFSET, track >= 0 ? track : -1);
+    return true;
+  }
+
+  /**
+   * Binds a view to the departure with the given trainId.
+   *
+   * @param trainId Unique identifier of the departure.
+   * @param view View to bind.
+   * @return true if the departure was found, false if not. The view is unbound if not.
+   */
+  public boolean find(String trainId, DepartureView view) {
+    if (view == null || view.getStore() != this) {
+      return false;
+    }
+    int record = findRecord(trainId);
+    view.bind(record);
+    return record != -1;
+  }
+
+  /**
+   * Calls an action for every departure in the store, in record order.
+   * The same view is rebound for every departure, so it must not be kept after the call.
+   *
+   * @param action Action to call.
+   */
+  public void forEach(Consumer<DepartureView> action) {
+    DepartureView view = newView();
+    for (int record = 0; record < highWater; record++) {
+      if (isRecord(record)) {
+        view.bind(record);
+        action.accept(view);
+      }
+    }
+  }
+
+  /**
+   * Copies the departures that pass a filter into a new store, sorted by departure time. The
+   * records of the copy are numbered from 0 in this order with no free records between them, so
+   * they can be read in order with {@link DepartureView#moveTo(int)}, and the first departure
+   * after a time is found with a binary search.
+   *
+   * @param filter Filter the departures must pass. The view passed to it must not be kept.
+   * @return New store with the departures that passed.
+   */
+  public OffHeapDepartureStore sortedCopy(Predicate<DepartureView> filter) {
+    DepartureView view = newView();
+    long[] selected = new long[size];
+    int count = 0;
+    for (int record = 0; record < highWater; record++) {
+      if (isRecord(record)) {
+        view.bind(record);
+        if (filter.test(view)) {
+          // The departure minute sorts first, and the record number keeps the order stable.
+          selected[count++] = (long) readInt(record, DEPARTURE_OFFSET) << 32 | record;
+        }
+      }
+    }
+    Arrays.sort(selected, 0, count);
+
+    OffHeapDepartureStore copy = new OffHeapDepartureStore(count);
+    for (int i = 0; i < count; i++) {
+      int record = (int) selected[i];
+      int base = offsetOf(record);
+      copy.add(readInt(record, DEPARTURE_OFFSET), readInt(record, DELAY_OFFSET),
+          readInt(record, TRACK_OFFSET), readInt(record, SERVICE_DAY_OFFSET),
+          readTextBytes(base + TRAIN_ID_OFFSET), readTextBytes(base + LINE_OFFSET),
+          readTextBytes(base + DESTINATION_OFFSET));
+    }
+    return copy;
+  }
+
+  /**
+   * Writes the store to a file, with the records, the index and the overflow area as they are
+   * laid out in memory.
+   *
+   * @param file File to write to, it is replaced if it exists.
+   * @return true if the file was written, false if writing failed.
+   */
+  public boolean save(Path file) {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(highWater).putInt(size)
+        .putInt(freeHead).putInt(indexSlots).putInt(deletedSlots).putInt(overflowSize).flip();
+    ByteBuffer usedRecords = records.duplicate().position(0).limit(offsetOf(highWater));
+    ByteBuffer wholeIndex = index.duplicate().position(0).limit(indexSlots * Integer.BYTES);
+    ByteBuffer usedOverflow = overflow.duplicate().position(0).limit(overflowSize);
+
+    boolean state = true;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer[] buffers = {header, usedRecords, wholeIndex, usedOverflow};
+      while (wholeIndex.hasRemaining() || usedOverflow.hasRemaining()) {
+        channel.write(buffers);
+      }
+    } catch (IOException e) {
+      state = false;
+    }
+    return state;
+  }
+
+  /**
+   * Reads a file written by {@link #save(Path)} into a new store. The file is mapped read-only
+   * and the records and the index are copied from it as they are, without parsing or rehashing.
+   * Changes to the store are not written back to the file.
+   *
+   * @param file File to read.
+   * @return Loaded store, or null if the file could not be read or is not a saved store.
+   */
+  public static OffHeapDepartureStore load(Path file) {
+    OffHeapDepartureStore store = null;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() >= HEADER_SIZE) {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        int magic = header.getInt(0);
+        int version = header.getInt(4);
+        int highWater = header.getInt(8);
+        int indexSlots = header.getInt(20);
+        int overflowBytes = header.getInt(28);
+        long expectedSize = HEADER_SIZE + (long) highWater * RECORD_SIZE
+            + (long) indexSlots * Integer.BYTES + overflowBytes;
+
+        if (magic == MAGIC && version == FORMAT_VERSION && highWater >= 0
+            && highWater <= MAX_RECORDS && indexSlots > 0 && indexSlots <= MAX_INDEX_SLOTS
+            && Integer.bitCount(indexSlots) == 1 && overflowBytes >= 0
+            && expectedSize == channel.size()) {
+          int recordBytes = offsetOf(highWater);
+          int indexBytes = indexSlots * Integer.BYTES;
+          ByteBuffer records = ByteBuffer.allocateDirect(recordBytes);
+          ByteBuffer index = ByteBuffer.allocateDirect(indexBytes);
+          ByteBuffer overflow = ByteBuffer.allocateDirect(overflowBytes);
+          records.put(0, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordBytes),
+              0, recordBytes);
+          index.put(0, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + recordBytes,
+              indexBytes), 0, indexBytes);
+          overflow.put(0, channel.map(FileChannel.MapMode.READ_ONLY,
+              HEADER_SIZE + (long) recordBytes + indexBytes, overflowBytes), 0, overflowBytes);
+          store = new OffHeapDepartureStore(records, index, overflow, highWater,
+              header.getInt(12), header.getInt(16), indexSlots, header.getInt(24));
+        }
+      }
+    } catch (IOException e) {
+      store = null;
+    }
+    return store;
+  }
+
+  int readInt(int record, int offset) {
+    return records.getInt(offsetOf(record) + offset);
+  }
+
+  String readText(int record, int offset) {
+    return new String(readTextBytes(offsetOf(record) + offset), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Checks if a text field holds the given text, without creating a string from the field.
+   * The text is encoded as it would be by {@link String#getBytes}, one character at a time.
+   */
+  boolean textEquals(int record, int offset, String text) {
+    if (text == null) {
+      return false;
+    }
+    int position = offsetOf(record) + offset;
+    int length = textLength(position);
+    int i = 0;
+    for (int c = 0; c < text.length(); c++) {
+      int codePoint = text.charAt(c);
+      if (Character.isHighSurrogate(text.charAt(c)) && c + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(c + 1))) {
+        codePoint = Character.toCodePoint(text.charAt(c), text.charAt(c + 1));
+        c += 1;
+      } else if (Character.isSurrogate(text.charAt(c))) {
+        codePoint = '?';
+      }
+
+      int count = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+      if (i + count > length) {
+        return false;
+      }
+      int lead = count == 1 ? 0 : (0xFF00 >> count) & 0xFF;
+      if (textByte(position, i++) != (byte) (lead | codePoint >> 6 * (count - 1))) {
+        return false;
+      }
+      for (int shift = 6 * (count - 2); shift >= 0; shift -= 6) {
+        if (textByte(position, i++) != (byte) (0x80 | (codePoint >> shift) & 0x3F)) {
+          return false;
+        }
+      }
+    }
+    return i == length;
+  }
+
+  /**
+   * Checks if a record number holds a departure.
+   */
+  boolean isRecord(int record) {
+    return record >= 0 && record < highWater
+        && records.getInt(offsetOf(record) + SERVICE_DAY_OFFSET) != FREE_RECORD;
+  }
+
+  private byte[] readTextBytes(int position) {
+    byte[] bytes = new byte[textLength(position)];
+    if ((records.get(position) & 0xFF) == OVERFLOW) {
+      overflow.get(records.getInt(position + 1), bytes);
+    } else {
+      records.get(position + 1, bytes);
+    }
+    return bytes;
+  }
+
+  private void writeText(int position, int fieldBytes, byte[] text) {
+    if (text.length < fieldBytes) {
+      records.put(position, (byte) text.length);
+      records.put(position + 1, text);
+    } else {
+      records.put(position, (byte) OVERFLOW);
+      records.putInt(position + 1, overflowSize);
+      records.putInt(position + 1 + Integer.BYTES, text.length);
+      overflow.put(overflowSize, text);
+      overflowSize += text.length;
+    }
+  }
+
+  private int textLength(int position) {
+    int length = records.get(position) & 0xFF;
+    return length == OVERFLOW ? records.getInt(position + 1 + Integer.BYTES) : length;
+  }
+
+  /**
+   * Gets a byte of a text, from the record or from the overflow area.
+   */
+  private byte textByte(int position, int i) {
+    if ((records.get(position) & 0xFF) == OVERFLOW) {
+      return overflow.get(records.getInt(position + 1) + i);
+    }
+    return records.get(position + 1 + i);
+  }
+
+  private static int overflowBytes(byte[] text, int fieldBytes) {
+    return text.length < fieldBytes ? 0 : text.length;
+  }
+
+  /**
+   * Makes room for more bytes in the overflow area.
+   *
+   * @return true if there is room, false if the area can not grow that large.
+   */
+  private boolean reserveOverflow(long needed) {
+    long required = overflowSize + needed;
+    if (required > Integer.MAX_VALUE) {
+      return false;
+    }
+    if (required > overflow.capacity()) {
+      int newCapacity = (int) Math.min(Integer.MAX_VALUE,
+          Math.max(required, Math.max(256, overflow.capacity() * 2L)));
+      ByteBuffer grown = ByteBuffer.allocateDirect(newCapacity);
+      grown.put(0, overflow, 0, overflowSize);
+      overflow = grown;
+    }
+    return true;
+  }
+
+  private int allocateRecord() {
+    int record;
+    if (freeHead != -1) {
+      record = freeHead;
+      freeHead = records.getInt(offsetOf(record) + DEPARTURE_OFFSET);
+    } else {
+      if (highWater == MAX_RECORDS) {
+        return -1;
+      }
+      if (highWater == capacity) {
+        grow();
+      }
+      record = highWater;
+      highWater += 1;
+    }
+    return record;
+  }
+
+  private void grow() {
+    int newCapacity = (int) Math.min(MAX_RECORDS, Math.max(MIN_CAPACITY, capacity * 2L));
+    ByteBuffer grown = ByteBuffer.allocateDirect(offsetOf(newCapacity));
+    grown.put(0, records, 0, offsetOf(highWater));
+    records = grown;
+    capacity = newCapacity;
+  }
+
+  private void rehash(int newSlots) {
+    ByteBuffer oldIndex = index;
+    int oldSlots = indexSlots;
+    index = ByteBuffer.allocateDirect(newSlots * Integer.BYTES);
+    indexSlots = newSlots;
+    deletedSlots = 0;
+
+    for (int slot = 0; slot < oldSlots; slot++) {
+      int value = oldIndex.getInt(slot * Integer.BYTES);
+      if (value > 0) {
+        insertIntoIndex(value - 1, storedHash(value - 1));
+      }
+    }
+  }
+
+  private void insertIntoIndex(int record, int hash) {
+    int mask = indexSlots - 1;
+    int slot = hash & mask;
+    while (index.getInt(slot * Integer.BYTES) > 0) {
+      slot = (slot + 1) & mask;
+    }
+    if (index.getInt(slot * Integer.BYTES) == DELETED_SLOT) {
+      deletedSlots -= 1;
+    }
+    index.putInt(slot * Integer.BYTES, record + 1);
+  }
+
+  private int findRecord(String trainId) {
+    int slot = findSlot(trainId);
+    return slot != -1 ? index.getInt(slot * Integer.BYTES) - 1 : -1;
+  }
+
+  private int findRecord(byte[] trainId) {
+    int slot = findSlot(trainId);
+    return slot != -1 ? index.getInt(slot * Integer.BYTES) - 1 : -1;
+  }
+
+  private int findSlot(String trainId) {
+    if (trainId == null) {
+      return -1;
+    }
+    return findSlot(trainId.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Finds the index slot holding a trainId by linear probing from its hash.
+   * Deleted slots are skipped, and the search stops at the first empty slot.
+   */
+  private int findSlot(byte[] trainId) {
+    int mask = indexSlots - 1;
+    int slot = hash(trainId, trainId.length) & mask;
+    for (int probes = 0; probes < indexSlots; probes++) {
+      int value = index.getInt(slot * Integer.BYTES);
+      if (value == EMPTY_SLOT) {
+        return -1;
+      }
+      if (value > 0 && storedIdEquals(value - 1, trainId)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private boolean storedIdEquals(int record, byte[] trainId) {
+    int position = offsetOf(record) + TRAIN_ID_OFFSET;
+    if (textLength(position) != trainId.length) {
+      return false;
+    }
+    for (int i = 0; i < trainId.length; i++) {
+      if (textByte(position, i) != trainId[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int storedHash(int record) {
+    int position = offsetOf(record) + TRAIN_ID_OFFSET;
+    int length = textLength(position);
+    int hash = 0x811C9DC5;
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ (textByte(position, i) & 0xFF)) * 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * FNV-1a hash of the UTF-8 bytes of a trainId. It is computed from the bytes so that the
+   * index can be rebuilt from the stored records without creating strings.
+   */
+  private static int hash(byte[] trainId, int length) {
+    int hash = 0x811C9DC5;
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ (trainId[i] & 0xFF)) * 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Gets the byte offset of a record in the record buffer. The offset is computed as a long, so
+   * a record number past {@link #MAX_RECORDS} is caught instead of wrapping around.
+   */
+  private static int offsetOf(int record) {
+    long offset = (long) record * RECORD_SIZE;
+    if (record < 0 || offset > (long) MAX_RECORDS * RECORD_SIZE) {
+      throw new IndexOutOfBoundsException("Record " + record + " is outside the store");
+    }
+    return (int) offset;
+  }
+
+  private static int tableSizeFor(int minimum) {
+    int slots = MIN_CAPACITY;
+    while (slots < minimum) {
+      slots *= 2;
+    }
+    return slots;
+  }
+}
@@ -0,0 +1,330 @@
+package edu.ntnu.stud.tools;
+
+import edu.ntnu.stud.logic.RegisterCommandPipeline;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Drives a train departure register with a workload trace and reports throughput and latency.
+ *
+ * <p>Operations are run from several threads at a target rate. Each operation has an intended
+ * start time given by the rate, and its latency is measured from that time. This means a stall
+ * in the register also counts against the operations that had to wait for it, instead of
+ * hiding them. Changes to the register must come from one thread at a time, so lookups and
+ * queries share a read lock and writes take the write lock. Listings read the published snapshot
+ * of the register without locking.
+ *
+ * <p>With {@code --pipeline}, writes are instead submitted to a {@link RegisterCommandPipeline}
+ * and waited for, and all reads use the published snapshot, so no thread takes a lock. Comparing
+ * the two runs shows what the lock costs under contention.
+ *
+ * <p>The tool can be run from the command line with these options:
+ * <pre>
+ *   --threads=N               Number of threads, default 4.
+ *   --rate=N                  Target operations per second, 0 runs as fast as possible.
+ *   --departures-per-hour=N   Departures per hour in the generated day.
+ *   --reads-per-minute=N      Reads per minute in the generated day.
+ *   --seed=N                  Seed of the generated day.
+ *   --record=FILE             Writes the generated trace to a file.
+ *   --replay=FILE             Runs a recorded trace instead of generating one.
+ *   --pipeline                Sends writes through a command pipeline instead of a lock.
+ * </pre>
+ */
+public class LoadGenerator {
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final long SPIN_THRESHOLD_NANOS = 20_000L;
+
+  private final TrainDepartureRegister register;
+  private final ReadWriteLock lock;
+  private final boolean pipelined;
+  private RegisterCommandPipeline pipeline;
+
+  /**
+   * Creates a load generator for a register that locks it for writes.
+   *
+   * @param register Register to drive.
+   */
+  public LoadGenerator(TrainDepartureRegister register) {
+    this(register, false);
+  }
+
+  /**
+   * Creates a load generator for a register.
+   *
+   * @param register Register to drive.
+   * @param pipelined true to send writes through a command pipeline, false to lock the register.
+   */
+  public LoadGenerator(TrainDepartureRegister register, boolean pipelined) {
+    this.register = register != null ? register : new TrainDepartureRegister();
+    this.lock = new ReentrantReadWriteLock();
+    this.pipelined = pipelined;
+  }
+
+  /**
+   * Runs a trace against the register and waits for it to finish.
+   *
+   * @param trace Operations to run.
+   * @param threadCount Number of threads to run the operations from.
+   * @param operationsPerSecond Target rate, 0 or less runs the operations as fast as possible.
+   * @return Report of the run.
+   */
+  public LoadReport run(List<TraceOperation> trace, int threadCount, int operationsPerSecond) {
+    LoadReport report = new LoadReport();
+    if (trace == null || trace.isEmpty()) {
+      return report;
+    }
+
+    int threads = Math.max(1, threadCount);
+    double nanosPerOperation = operationsPerSecond > 0
+        ? (double) NANOS_PER_SECOND / operationsPerSecond : 0;
+    AtomicInteger nextOperation = new AtomicInteger();
+    if (pipelined) {
+      pipeline = new RegisterCommandPipeline(register);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    long startNanos = System.nanoTime();
+
+    for (int i = 0; i < threads; i++) {
+      executor.execute(() -> {
+        int index;
+        while ((index = nextOperation.getAndIncrement()) < trace.size()) {
+          long intendedStart = nanosPerOperation > 0
+              ? startNanos + (long) (index * nanosPerOperation) : System.nanoTime();
+          waitUntil(intendedStart);
+
+          TraceOperation operation = trace.get(index);
+          apply(operation);
+          report.record(operation.getType(), System.nanoTime() - intendedStart);
+        }
+      });
+    }
+
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    if (pipeline != null) {
+      pipeline.close();
+      pipeline = null;
+    }
+
+    report.setElapsedNanos(System.nanoTime() - startNanos);
+    return report;
+  }
+
+  /**
+   * Runs a single operation against the register.
+   *
+   * @param operation Operation to run.
+   */
+  private void apply(TraceOperation operation) {
+    if (pipeline != null) {
+      applyThroughPipeline(operation);
+      return;
+    }
+    switch (operation.getType()) {
+      case ADD:
+        write(() -> register.addDeparture(operation.toDeparture()));
+        break;
+      case DELETE:
+        write(() -> register.deleteDeparture(register.getDepartureFromId(operation.getTrainId())));
+        break;
+      case DELAY:
+        write(() -> register.updateDelay(operation.getTrainId(),
+            LocalTime.ofSecondOfDay(Math.min(operation.getMinute(), 1439) * 60L)));
+        break;
+      case CLOCK_TICK:
+        write(() -> register.expireDepartures((long) operation.getMinute()));
+        break;
+      case LOOKUP:
+        read(() -> register.getDepartureFromId(operation.getTrainId()));
+        break;
+      case DESTINATION_QUERY:
+        read(() -> register.getDeparturesByDestination(operation.getDestination()));
+        break;
+      case LISTING:
+        // Listings read the published snapshot, which needs no lock.
+        register.getSnapshot().getDepartures().size();
+        break;
+      default:
+        break;
+    }
+  }
+
+  /**
+   * Runs a single operation through the pipeline, and waits for writes to be applied.
+   *
+   * @param operation Operation to run.
+   */
+  private void applyThroughPipeline(TraceOperation operation) {
+    switch (operation.getType()) {
+      case ADD:
+        pipeline.submitAdd(operation.toDeparture()).join();
+        break;
+      case DELETE:
+        pipeline.submitDelete(operation.getTrainId()).join();
+        break;
+      case DELAY:
+        pipeline.submitDelay(operation.getTrainId(),
+            LocalTime.ofSecondOfDay(Math.min(operation.getMinute(), 1439) * 60L)).join();
+        break;
+      case CLOCK_TICK:
+        pipeline.submitClockTick(operation.getMinute()).join();
+        break;
+      case LOOKUP:
+        register.getSnapshot().getDepartureFromId(operation.getTrainId());
+        break;
+      case DESTINATION_QUERY:
+        register.getSnapshot().getDeparturesByDestination(operation.getDestination());
+        break;
+      case LISTING:
+        register.getSnapshot().getDepartures().size();
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void write(Runnable action) {
+    lock.writeLock().lock();
+    try {
+      action.run();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void read(Runnable action) {
+    lock.readLock().lock();
+    try {
+      action.run();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static void waitUntil(long deadlineNanos) {
+    long remaining;
+    while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+      if (remaining > SPIN_THRESHOLD_NANOS) {
+        LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+      } else {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  /**
+   * Writes a trace to a file with one operation per line.
+   *
+   * @param trace Operations to write.
+   * @param file File to write to.
+   * @return true if the trace was written, false if not.
+   */
+  public static boolean writeTrace(List<TraceOperation> trace, Path file) {
+    if (trace == null || file == null) {
+      return false;
+    }
+
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (TraceOperation operation : trace) {
+        writer.write(operation.toTraceLine());
+        writer.newLine();
+      }
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads a trace from a file. Lines that are not valid operations are skipped.
+   *
+   * @param file File to read from.
+   * @return Operations of the trace, or an empty list if the file could not be read.
+   */
+  public static List<TraceOperation> readTrace(Path file) {
+    List<TraceOperation> trace = new ArrayList<>();
+    if (file == null) {
+      return trace;
+    }
+
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        TraceOperation operation = TraceOperation.fromTraceLine(line);
+        if (operation != null) {
+          trace.add(operation);
+        }
+      }
+    } catch (IOException e) {
+      trace.clear();
+    }
+    return trace;
+  }
+
+  /**
+   * Generates or replays a workload and prints the report.
+   *
+   * @param args Options, see the class description.
+   */
+  public static void main(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (arg.startsWith("--") && arg.contains("=")) {
+        options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+      } else if (arg.startsWith("--")) {
+        options.put(arg.substring(2), "true");
+      }
+    }
+
+    List<TraceOperation> trace;
+    if (options.containsKey("replay")) {
+      trace = readTrace(Path.of(options.get("replay")));
+    } else {
+      StationDayGenerator generator = new StationDayGenerator();
+      generator.setDeparturesPerHour(intOption(options, "departures-per-hour", 20));
+      generator.setReadsPerMinute(intOption(options, "reads-per-minute", 50));
+      generator.setSeed(intOption(options, "seed", 1));
+      trace = generator.generateDay();
+    }
+
+    if (options.containsKey("record") && !writeTrace(trace, Path.of(options.get("record")))) {
+      System.out.println("Could not write the trace to " + options.get("record"));
+    }
+
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    LoadReport report = new LoadGenerator(register, options.containsKey("pipeline")).run(trace,
+        intOption(options, "threads", 4), intOption(options, "rate", 0));
+
+    System.out.print(report);
+  }
+
+  private static int intOption(Map<String, String> options, String name, int defaultValue) {
+    try {
+      return Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
@@ -0,0 +1,122 @@
+package edu.ntnu.stud.tools;
+
+import edu.ntnu.stud.monitoring.LatencyHistogram;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Result of running a workload against the register.
+ * Holds the throughput and a latency histogram for every kind of operation.
+ */
+public class LoadReport {
+  private static final double NANOS_PER_MICRO = 1000.0;
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final EnumMap<TraceOperation.Type, LatencyHistogram> latencies;
+  private final LatencyHistogram totalLatency;
+  private long elapsedNanos;
+
+  /**
+   * Creates an empty report.
+   */
+  public LoadReport() {
+    latencies = new EnumMap<>(TraceOperation.Type.class);
+    for (TraceOperation.Type type : TraceOperation.Type.values()) {
+      latencies.put(type, new LatencyHistogram());
+    }
+    totalLatency = new LatencyHistogram();
+  }
+
+  /**
+   * Records the latency of a finished operation. Safe to call from several threads.
+   *
+   * @param type Kind of operation.
+   * @param latencyNanos Latency of the operation in nanoseconds.
+   */
+  void record(TraceOperation.Type type, long latencyNanos) {
+    latencies.get(type).record(latencyNanos);
+    totalLatency.record(latencyNanos);
+  }
+
+  /**
+   * Sets how long the whole run took.
+   *
+   * @param elapsedNanos Wall clock time of the run in nanoseconds.
+   */
+  void setElapsedNanos(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Get the number of operations that were run.
+   *
+   * @return Number of operations.
+   */
+  public long getOperationCount() {
+    return totalLatency.getCount();
+  }
+
+  /**
+   * Get the number of operations run per second.
+   *
+   * @return Throughput in operations per second.
+   */
+  public double getThroughput() {
+    if (elapsedNanos <= 0) {
+      return 0;
+    }
+    return getOperationCount() * NANOS_PER_SECOND / elapsedNanos;
+  }
+
+  /**
+   * Get the latency histogram of all operations.
+   *
+   * @return Latency histogram in nanoseconds.
+   */
+  public LatencyHistogram getTotalLatency() {
+    return totalLatency;
+  }
+
+  /**
+   * Get the latency histogram of one kind of operation.
+   *
+   * @param type Kind of operation.
+   * @return Latency histogram in nanoseconds.
+   */
+  public LatencyHistogram getLatency(TraceOperation.Type type) {
+    return latencies.get(type);
+  }
+
+  /**
+   * Formats the report as a table with the latency percentiles of every kind of operation.
+   *
+   * @return Formatted report.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format("Operations: %d in %.2f s, throughput %.0f ops/s%n",
+        getOperationCount(), elapsedNanos / NANOS_PER_SECOND, getThroughput()));
+    builder.append(String.format("%-18s %10s %10s %10s %10s %10s%n",
+        "Operation", "Count", "p50 us", "p99 us", "p99.9 us", "Max us"));
+
+    for (Map.Entry<TraceOperation.Type, LatencyHistogram> entry : latencies.entrySet()) {
+      appendRow(builder, entry.getKey().name(), entry.getValue());
+    }
+    appendRow(builder, "TOTAL", totalLatency);
+    return builder.toString();
+  }
+
+  private static void appendRow(StringBuilder builder, String name, LatencyHistogram histogram) {
+    if (histogram.getCount() == 0) {
+      return;
+    }
+    builder.append(String.format("%-18s %10d %10.1f %10.1f %10.1f %10.1f%n",
+        name,
+        histogram.getCount(),
+        histogram.getPercentile(50) / NANOS_PER_MICRO,
+        histogram.getPercentile(99) / NANOS_PER_MICRO,
+        histogram.getPercentile(99.9) / NANOS_PER_MICRO,
+        histogram.getMax() / NANOS_PER_MICRO));
+  }
+}
@@ -0,0 +1,113 @@
+package edu.ntnu.stud.tools;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.DepartureQuery;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures where running full register scans in parallel starts to pay off.
+ *
+ * <p>For each register size a register is filled with departures spread over the day, and a
+ * query that has to scan every departure is timed with the scan forced to run sequentially and
+ * forced to run in parallel. The median of several runs is printed for both, together with the
+ * smallest size where the parallel scan was faster. That size is a good value for
+ * {@link TrainDepartureRegister#setParallelThreshold(int)} on the machine it was run on.
+ *
+ * <p>The sizes can be given as arguments, for example {@code 1000 10000 100000}.
+ */
+public class ParallelScanBenchmark {
+  private static final int[] DEFAULT_SIZES = {1_000, 5_000, 20_000, 100_000, 500_000, 1_000_000};
+  private static final int WARMUP_RUNS = 5;
+  private static final int MEASURED_RUNS = 11;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args Register sizes to measure, the default sizes are used if none are given.
+   */
+  public static void main(String[] args) {
+    List<Integer> sizes = new ArrayList<>();
+    for (String arg : args) {
+      try {
+        sizes.add(Integer.parseInt(arg));
+      } catch (NumberFormatException e) {
+        System.out.println("Skipping invalid size " + arg);
+      }
+    }
+    if (sizes.isEmpty()) {
+      for (int size : DEFAULT_SIZES) {
+        sizes.add(size);
+      }
+    }
+
+    System.out.println("Processors: " + Runtime.getRuntime().availableProcessors());
+    if (Runtime.getRuntime().availableProcessors() < 2) {
+      System.out.println("Scans always run sequentially with a single processor.");
+      return;
+    }
+    System.out.printf("%12s %16s %16s%n", "departures", "sequential (us)", "parallel (us)");
+
+    int crossover = -1;
+    for (int size : sizes) {
+      TrainDepartureRegister register = createRegister(size);
+      long sequential = medianScanMicros(register, Integer.MAX_VALUE);
+      long parallel = medianScanMicros(register, 0);
+      System.out.printf("%12d %16d %16d%n", size, sequential, parallel);
+
+      if (crossover == -1 && parallel < sequential) {
+        crossover = size;
+      }
+    }
+
+    if (crossover == -1) {
+      System.out.println("Parallel scans were never faster on this machine.");
+    } else {
+      System.out.println("Parallel scans were faster from " + crossover + " departures.");
+    }
+  }
+
+  private static TrainDepartureRegister createRegister(int size) {
+    Random random = new Random(size);
+    List<TrainDeparture> departures = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      TrainDeparture departure = new TrainDeparture(
+          LocalTime.of(random.nextInt(24), random.nextInt(60)),
+          "Destination " + random.nextInt(40),
+          "T" + i,
+          "L" + random.nextInt(12)
+      );
+      if (random.nextInt(10) < 3) {
+        departure.setDelay(LocalTime.of(0, 1 + random.nextInt(30)));
+      }
+      departures.add(departure);
+    }
+
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDepartures(departures);
+    return register;
+  }
+
+  private static long medianScanMicros(TrainDepartureRegister register, int threshold) {
+    register.setParallelThreshold(threshold);
+    // Only the delayed flag is set, so no index can be used and every departure is scanned.
+    DepartureQuery query = new DepartureQuery().delayedOnly();
+
+    for (int i = 0; i < WARMUP_RUNS; i++) {
+      register.query(query);
+    }
+
+    long[] runs = new long[MEASURED_RUNS];
+    for (int i = 0; i < MEASURED_RUNS; i++) {
+      long start = System.nanoTime();
+      register.query(query);
+      runs[i] = (System.nanoTime() - start) / 1_000;
+    }
+    Arrays.sort(runs);
+    return runs[MEASURED_RUNS / 2];
+  }
+}
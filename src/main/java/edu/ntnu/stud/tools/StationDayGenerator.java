@@ -0,0 +1,211 @@
+package edu.ntnu.stud.tools;
+
+import edu.ntnu.stud.entity.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates a reproducible trace of a day at a station.
+ *
+ * <p>The trace starts by loading the timetable of the whole day. After that every minute of the
+ * day has a number of reads (lookups, destination queries and listings), the delays that happen
+ * in that minute and finally a clock tick. Delays come in bursts: every hour has a chance of a
+ * burst where a share of the departures in that hour get delayed.
+ * The same seed and settings always give the same trace.
+ */
+public class StationDayGenerator {
+  private int departuresPerHour;
+  private int readsPerMinute;
+  private double burstProbability;
+  private double burstShare;
+  private int maxBurstDelay;
+  private long seed;
+  private final Map<String, Integer> destinationWeights;
+  private final Map<String, Integer> lineWeights;
+
+  /**
+   * Creates a generator with a default workload of a medium-sized station.
+   */
+  public StationDayGenerator() {
+    departuresPerHour = 20;
+    readsPerMinute = 50;
+    burstProbability = 0.2;
+    burstShare = 0.5;
+    maxBurstDelay = 30;
+    seed = 1;
+    destinationWeights = new LinkedHashMap<>();
+    destinationWeights.put("Oslo", 5);
+    destinationWeights.put("Trondheim", 3);
+    destinationWeights.put("Bergen", 2);
+    destinationWeights.put("Bodø", 1);
+    lineWeights = new LinkedHashMap<>();
+    lineWeights.put("L1", 4);
+    lineWeights.put("R10", 3);
+    lineWeights.put("J8", 2);
+    lineWeights.put("F6", 1);
+  }
+
+  /**
+   * Sets the number of departures in each hour of the day.
+   *
+   * @param departuresPerHour Departures per hour, negative values are set to 0.
+   */
+  public void setDeparturesPerHour(int departuresPerHour) {
+    this.departuresPerHour = Math.max(0, departuresPerHour);
+  }
+
+  /**
+   * Sets the number of read operations in each minute of the day.
+   *
+   * @param readsPerMinute Reads per minute, negative values are set to 0.
+   */
+  public void setReadsPerMinute(int readsPerMinute) {
+    this.readsPerMinute = Math.max(0, readsPerMinute);
+  }
+
+  /**
+   * Sets how delay bursts happen.
+   *
+   * @param burstProbability Chance between 0 and 1 that an hour has a delay burst.
+   * @param burstShare Share between 0 and 1 of the departures in the hour that get delayed.
+   * @param maxBurstDelay Highest delay in minutes given in a burst.
+   */
+  public void setDelayBursts(double burstProbability, double burstShare, int maxBurstDelay) {
+    this.burstProbability = Math.min(1, Math.max(0, burstProbability));
+    this.burstShare = Math.min(1, Math.max(0, burstShare));
+    this.maxBurstDelay = Math.max(1, maxBurstDelay);
+  }
+
+  /**
+   * Sets the seed of the random numbers, so different but reproducible days can be generated.
+   *
+   * @param seed Seed for the random numbers.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Replaces the distribution of destinations.
+   *
+   * @param weights Relative weight of each destination. Ignored if null or empty.
+   */
+  public void setDestinationWeights(Map<String, Integer> weights) {
+    replaceWeights(destinationWeights, weights);
+  }
+
+  /**
+   * Replaces the distribution of lines.
+   *
+   * @param weights Relative weight of each line. Ignored if null or empty.
+   */
+  public void setLineWeights(Map<String, Integer> weights) {
+    replaceWeights(lineWeights, weights);
+  }
+
+  /**
+   * Generates the trace of a full day.
+   *
+   * @return Operations of the day in the order they happen.
+   */
+  public List<TraceOperation> generateDay() {
+    Random random = new Random(seed);
+    List<TraceOperation> operations = new ArrayList<>();
+    List<List<TraceOperation>> departuresByHour = new ArrayList<>();
+
+    // The timetable of the whole day is loaded first.
+    int sequence = 0;
+    for (int hour = 0; hour < 24; hour++) {
+      List<TraceOperation> hourDepartures = new ArrayList<>();
+      for (int i = 0; i < departuresPerHour; i++) {
+        sequence += 1;
+        TraceOperation add = new TraceOperation(TraceOperation.Type.ADD,
+            "T" + sequence,
+            pick(destinationWeights, random),
+            pick(lineWeights, random),
+            hour * 60 + random.nextInt(60));
+        hourDepartures.add(add);
+        operations.add(add);
+      }
+      departuresByHour.add(hourDepartures);
+    }
+
+    // Delays are announced a few minutes before the departure, in bursts per hour.
+    List<List<TraceOperation>> delaysByMinute = new ArrayList<>();
+    for (int minute = 0; minute < Clock.MINUTES_PER_DAY; minute++) {
+      delaysByMinute.add(new ArrayList<>());
+    }
+    for (List<TraceOperation> hourDepartures : departuresByHour) {
+      if (random.nextDouble() >= burstProbability) {
+        continue;
+      }
+      for (TraceOperation departure : hourDepartures) {
+        if (random.nextDouble() < burstShare) {
+          int announced = Math.max(0, departure.getMinute() - random.nextInt(10));
+          delaysByMinute.get(announced).add(new TraceOperation(TraceOperation.Type.DELAY,
+              departure.getTrainId(), "", "", 1 + random.nextInt(maxBurstDelay)));
+        }
+      }
+    }
+
+    List<String> destinations = new ArrayList<>(destinationWeights.keySet());
+    for (int minute = 0; minute < Clock.MINUTES_PER_DAY; minute++) {
+      for (int i = 0; i < readsPerMinute; i++) {
+        operations.add(randomRead(random, sequence, destinations));
+      }
+      operations.addAll(delaysByMinute.get(minute));
+      operations.add(new TraceOperation(TraceOperation.Type.CLOCK_TICK, "", "", "", minute + 1));
+    }
+
+    return operations;
+  }
+
+  private TraceOperation randomRead(Random random, int departureCount, List<String> destinations) {
+    int kind = random.nextInt(100);
+    if (kind < 80 && departureCount > 0) {
+      return new TraceOperation(TraceOperation.Type.LOOKUP,
+          "T" + (1 + random.nextInt(departureCount)), "", "", 0);
+    }
+    if (kind < 98) {
+      return new TraceOperation(TraceOperation.Type.DESTINATION_QUERY, "",
+          destinations.get(random.nextInt(destinations.size())), "", 0);
+    }
+    return new TraceOperation(TraceOperation.Type.LISTING, "", "", "", 0);
+  }
+
+  private static String pick(Map<String, Integer> weights, Random random) {
+    int total = 0;
+    for (int weight : weights.values()) {
+      total += weight;
+    }
+
+    int target = random.nextInt(total);
+    for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+      target -= entry.getValue();
+      if (target < 0) {
+        return entry.getKey();
+      }
+    }
+    return weights.keySet().iterator().next();
+  }
+
+  private static void replaceWeights(Map<String, Integer> target, Map<String, Integer> weights) {
+    if (weights == null || weights.isEmpty()) {
+      return;
+    }
+
+    Map<String, Integer> valid = new LinkedHashMap<>();
+    weights.forEach((key, weight) -> {
+      if (key != null && !key.isEmpty() && weight != null && weight > 0) {
+        valid.put(key, weight);
+      }
+    });
+    if (!valid.isEmpty()) {
+      target.clear();
+      target.putAll(valid);
+    }
+  }
+}
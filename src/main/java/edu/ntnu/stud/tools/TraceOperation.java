@@ -0,0 +1,139 @@
+package edu.ntnu.stud.tools;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+
+/**
+ * A single operation against the train departure register in a workload trace.
+ * Operations are written to trace files as one comma separated line each, so a workload can be
+ * recorded once and replayed on different hardware.
+ */
+public final class TraceOperation {
+
+  /**
+   * The kinds of operations in a trace.
+   */
+  public enum Type {
+    ADD,
+    DELETE,
+    DELAY,
+    LOOKUP,
+    DESTINATION_QUERY,
+    LISTING,
+    CLOCK_TICK
+  }
+
+  private static final String SEPARATOR = ",";
+
+  private final Type type;
+  private final String trainId;
+  private final String destination;
+  private final String line;
+  private final int minute;
+
+  /**
+   * Creates a new trace operation.
+   *
+   * @param type Kind of operation.
+   * @param trainId Train id the operation is for, or "" if not used.
+   * @param destination Destination the operation is for, or "" if not used.
+   * @param line Line of an added departure, or "" if not used.
+   * @param minute Departure minute of an added departure, delay in minutes of a delay or
+   *               epoch minute of a clock tick.
+   */
+  public TraceOperation(Type type, String trainId, String destination, String line, int minute) {
+    this.type = type;
+    this.trainId = trainId != null ? trainId : "";
+    this.destination = destination != null ? destination : "";
+    this.line = line != null ? line : "";
+    this.minute = minute;
+  }
+
+  /**
+   * Get the kind of operation.
+   *
+   * @return Operation type.
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Get the train id the operation is for.
+   *
+   * @return Train id.
+   */
+  public String getTrainId() {
+    return trainId;
+  }
+
+  /**
+   * Get the destination the operation is for.
+   *
+   * @return Destination.
+   */
+  public String getDestination() {
+    return destination;
+  }
+
+  /**
+   * Get the line of an added departure.
+   *
+   * @return Line.
+   */
+  public String getLine() {
+    return line;
+  }
+
+  /**
+   * Get the minute value of the operation.
+   *
+   * @return Departure minute, delay in minutes or epoch minute depending on the type.
+   */
+  public int getMinute() {
+    return minute;
+  }
+
+  /**
+   * Creates the departure of an add operation.
+   *
+   * @return New train departure.
+   */
+  public TrainDeparture toDeparture() {
+    return new TrainDeparture(LocalTime.ofSecondOfDay(minute * 60L), destination, trainId, line);
+  }
+
+  /**
+   * Formats the operation as a line in a trace file.
+   *
+   * @return Trace line.
+   */
+  public String toTraceLine() {
+    return type + SEPARATOR + trainId + SEPARATOR + destination + SEPARATOR + line
+        + SEPARATOR + minute;
+  }
+
+  /**
+   * Parses a line of a trace file.
+   *
+   * @param traceLine Line to parse.
+   * @return Parsed operation, or null if the line is not a valid operation.
+   */
+  public static TraceOperation fromTraceLine(String traceLine) {
+    if (traceLine == null || traceLine.isBlank()) {
+      return null;
+    }
+
+    String[] parts = traceLine.split(SEPARATOR, -1);
+    if (parts.length != 5) {
+      return null;
+    }
+
+    try {
+      return new TraceOperation(Type.valueOf(parts[0]), parts[1], parts[2], parts[3],
+          Integer.parseInt(parts[4]));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package edu.ntnu.stud.ui;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.RegisterListener;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keeps the formatted board row of every departure, so a board only formats the rows that have
+ * changed since it was last shown.
+ *
+ * <p>Rows are kept by trainId together with the departure and its version. The delay and track
+ * are the only values of a departure that can change, and both change the version, so a row is
+ * reused as long as the departure and its version are the same. The instances of a departure
+ * pattern are new departure objects every time they are read, so for another departure with the
+ * same trainId the row is reused if the values it shows are the same. Rows are kept as encoded
+ * bytes that can be written straight to the output.
+ *
+ * <p>The cache listens to the register to drop the rows of departures that are removed, and is
+ * emptied when a new service day starts, as the register drops the old days without removing
+ * the departures one by one.
+ */
+public class DepartureRowCache implements RegisterListener {
+  private final Function<TrainDeparture, String> formatter;
+  private final Charset charset;
+  private final Map<String, Row> rows;
+  private long hits;
+  private long misses;
+
+  /**
+   * Creates an empty cache that encodes rows with the default charset.
+   *
+   * @param formatter Formats a departure as a row, without a line separator.
+   */
+  public DepartureRowCache(Function<TrainDeparture, String> formatter) {
+    this.formatter = formatter;
+    this.charset = Charset.defaultCharset();
+    this.rows = new HashMap<>();
+  }
+
+  /**
+   * Gets the row of a departure, ending with a line separator. The row is formatted if it is
+   * not in the cache or the departure has changed since it was formatted.
+   *
+   * @param departure Departure to get the row of.
+   * @return Encoded row, must not be changed.
+   */
+  public byte[] getRow(TrainDeparture departure) {
+    Row row = rows.get(departure.getTrainId());
+    if (row != null && row.shows(departure)) {
+      hits += 1;
+      return row.bytes;
+    }
+
+    misses += 1;
+    byte[] bytes = (formatter.apply(departure) + System.lineSeparator()).getBytes(charset);
+    rows.put(departure.getTrainId(), new Row(departure, bytes));
+    return bytes;
+  }
+
+  /**
+   * Gets the number of rows in the cache.
+   *
+   * @return Number of rows.
+   */
+  public int size() {
+    return rows.size();
+  }
+
+  /**
+   * Gets the number of rows that were reused.
+   *
+   * @return Number of cache hits.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of rows that had to be formatted.
+   *
+   * @return Number of cache misses.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public void departureAdded(TrainDeparture departure, int serviceDay) {
+    // Rows are formatted when they are first shown.
+  }
+
+  @Override
+  public void departureRemoved(TrainDeparture departure) {
+    rows.remove(departure.getTrainId());
+  }
+
+  @Override
+  public void departureChanged(TrainDeparture departure) {
+    // The version of the departure has changed, so the row is formatted again when shown.
+  }
+
+  @Override
+  public void serviceDayStarted(int day) {
+    rows.clear();
+  }
+
+  /**
+   * Formatted row of a departure at a given version.
+   */
+  private static class Row {
+    private final TrainDeparture departure;
+    private final int version;
+    private final int delayMinutes;
+    private final int track;
+    private final byte[] bytes;
+
+    Row(TrainDeparture departure, byte[] bytes) {
+      this.departure = departure;
+      this.version = departure.getVersion();
+      this.delayMinutes = departure.getDelayMinutes();
+      this.track = departure.getTrack();
+      this.bytes = bytes;
+    }
+
+    /**
+     * Checks if the row shows the current values of a departure with the same trainId.
+     */
+    boolean shows(TrainDeparture other) {
+      if (other == departure) {
+        return other.getVersion() == version;
+      }
+      return other.getDepartureMinute() == departure.getDepartureMinute()
+          && other.getDelayMinutes() == delayMinutes && other.getTrack() == track
+          && other.getDestination().equals(departure.getDestination())
+          && other.getLine().equals(departure.getLine());
+    }
+  }
+}
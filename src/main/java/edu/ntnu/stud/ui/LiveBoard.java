@@ -0,0 +1,281 @@
+package edu.ntnu.stud.ui;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import edu.ntnu.stud.monitoring.BoardRenderEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-screen departure board for a terminal that is redrawn at a fixed frame rate.
+ *
+ * <p>Every frame is drawn into a grid of characters the size of the terminal and compared with
+ * the grid that was drawn before. Only the cells that have changed are written, each run of them
+ * after an ANSI escape sequence that moves the cursor there. Unchanged cells between two changed
+ * cells are written again when that is shorter than a new cursor move. A frame where nothing
+ * has changed writes nothing, so a board over a slow serial or SSH link only sends the delays,
+ * tracks and departures that change.
+ *
+ * <p>The board reads the departures from the snapshots of the register, so it can be drawn on its
+ * own thread while the register is changed.
+ */
+public class LiveBoard implements Closeable {
+  /**
+   * Default time between two frames.
+   */
+  public static final int DEFAULT_FRAME_INTERVAL_MILLIS = 500;
+
+  private static final String ESCAPE = "\u001b[";
+  private static final int HEADER_ROWS = 3;
+  private static final int MIN_WIDTH = 40;
+  // A cursor move takes up to 8 bytes, so shorter gaps are cheaper to write again.
+  private static final int MAX_REWRITTEN_GAP = 8;
+
+  private final TrainDepartureRegister register;
+  private final Clock clock;
+  private final String title;
+  private final OutputStream out;
+  private final Charset charset;
+  private final int width;
+  private final int height;
+  private final char[][] shown;
+  private final char[][] next;
+  private boolean cleared;
+  private long frameCount;
+  private long bytesWritten;
+  private ScheduledExecutorService painter;
+
+  /**
+   * Creates a board. Sizes below 40 columns or 4 rows are set to that.
+   *
+   * @param register Register to show the departures of.
+   * @param clock Clock to show the time of.
+   * @param title Title on the top row of the board.
+   * @param out Terminal output to draw on.
+   * @param width Number of columns of the terminal.
+   * @param height Number of rows of the terminal.
+   */
+  public LiveBoard(TrainDepartureRegister register, Clock clock, String title, OutputStream out,
+                   int width, int height) {
+    this.register = register;
+    this.clock = clock;
+    this.title = title != null ? title : "";
+    this.out = out;
+    this.charset = Charset.defaultCharset();
+    this.width = Math.max(MIN_WIDTH, width);
+    this.height = Math.max(HEADER_ROWS + 1, height);
+    this.shown = new char[this.height][this.width];
+    this.next = new char[this.height][this.width];
+    for (char[] row : shown) {
+      Arrays.fill(row, ' ');
+    }
+  }
+
+  /**
+   * Starts redrawing the board at a fixed rate on its own thread.
+   *
+   * @param frameIntervalMillis Time between two frames, at least 10 milliseconds.
+   * @return true if the board was started, false if it already is running.
+   */
+  public synchronized boolean start(int frameIntervalMillis) {
+    if (painter != null) {
+      return false;
+    }
+    painter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "live-board");
+      thread.setDaemon(true);
+      return thread;
+    });
+    painter.scheduleAtFixedRate(this::paintFrame, 0, Math.max(10, frameIntervalMillis),
+        TimeUnit.MILLISECONDS);
+    return true;
+  }
+
+  /**
+   * Draws the next frame and writes the cells that changed since the last frame.
+   * The first frame clears the terminal and hides the cursor.
+   *
+   * @return Number of bytes written, 0 if nothing has changed or writing failed.
+   */
+  public synchronized int paintFrame() {
+    BoardRenderEvent event = new BoardRenderEvent();
+    event.begin();
+    int rows = drawFrame();
+
+    StringBuilder output = new StringBuilder();
+    if (!cleared) {
+      output.append(ESCAPE).append("?25l").append(ESCAPE).append("2J");
+      cleared = true;
+    }
+    for (int row = 0; row < height; row++) {
+      appendChanges(row, output);
+    }
+
+    int written = 0;
+    if (output.length() > 0) {
+      byte[] bytes = output.toString().getBytes(charset);
+      try {
+        out.write(bytes);
+        out.flush();
+        written = bytes.length;
+      } catch (IOException e) {
+        // The cells are drawn again when the output works, as they were not marked as shown.
+        cleared = false;
+        for (char[] row : shown) {
+          Arrays.fill(row, ' ');
+        }
+      }
+    }
+    frameCount += 1;
+    bytesWritten += written;
+
+    event.end();
+    if (event.shouldCommit()) {
+      event.set("live", rows);
+      event.commit();
+    }
+    return written;
+  }
+
+  /**
+   * Gets the number of frames drawn.
+   *
+   * @return Number of frames.
+   */
+  public synchronized long getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Gets the number of bytes written to the terminal.
+   *
+   * @return Number of bytes.
+   */
+  public synchronized long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Stops redrawing the board, and moves the cursor below the board and shows it again.
+   */
+  @Override
+  public void close() {
+    ScheduledExecutorService stopped;
+    synchronized (this) {
+      stopped = painter;
+      painter = null;
+    }
+    if (stopped != null) {
+      stopped.shutdown();
+      try {
+        stopped.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (this) {
+      if (cleared) {
+        try {
+          out.write((ESCAPE + (height + 1) + ";1H" + ESCAPE + "?25h").getBytes(charset));
+          out.flush();
+        } catch (IOException e) {
+          // Nothing more can be done for a terminal that is gone.
+        }
+      }
+    }
+  }
+
+  /**
+   * Draws the board into the next grid.
+   *
+   * @return Number of departure rows drawn.
+   */
+  private int drawFrame() {
+    for (char[] row : next) {
+      Arrays.fill(row, ' ');
+    }
+    put(0, 1, title, width - 14);
+    put(0, width - 12, clock.getCurrentTime() + " day " + clock.getDay(), 12);
+    put(1, 1, "Time", 5);
+    put(1, 7, "Line", 6);
+    put(1, 14, "Train", 10);
+    put(1, 25, "Destination", width - 40);
+    put(1, width - 14, "Delay", 5);
+    put(1, width - 7, "Track", 5);
+    Arrays.fill(next[2], '-');
+
+    List<TrainDeparture> departures = register.getSnapshot().getDepartures();
+    int space = height - HEADER_ROWS;
+    int shownCount = departures.size() <= space ? departures.size() : space - 1;
+    for (int i = 0; i < shownCount; i++) {
+      TrainDeparture departure = departures.get(i);
+      int row = HEADER_ROWS + i;
+      put(row, 1, departure.getDeparture().toString(), 5);
+      put(row, 7, departure.getLine(), 6);
+      put(row, 14, departure.getTrainId(), 10);
+      put(row, 25, departure.getDestination(), width - 40);
+      if (departure.getDelayMinutes() > 0) {
+        put(row, width - 14, departure.getDelay().toString(), 5);
+      }
+      if (departure.getTrack() != -1) {
+        put(row, width - 7, Integer.toString(departure.getTrack()), 5);
+      }
+    }
+    if (shownCount < departures.size()) {
+      put(height - 1, 1, "... " + (departures.size() - shownCount) + " more departures",
+          width - 2);
+    }
+    return shownCount;
+  }
+
+  /**
+   * Appends the changed cells of a row to the output, and marks them as shown.
+   */
+  private void appendChanges(int row, StringBuilder output) {
+    char[] before = shown[row];
+    char[] after = next[row];
+    int column = 0;
+    while (column < width) {
+      if (before[column] == after[column]) {
+        column += 1;
+        continue;
+      }
+
+      int start = column;
+      int end = column;
+      int gap = 0;
+      for (column += 1; column < width && gap <= MAX_REWRITTEN_GAP; column++) {
+        if (before[column] != after[column]) {
+          end = column;
+          gap = 0;
+        } else {
+          gap += 1;
+        }
+      }
+      output.append(ESCAPE).append(row + 1).append(';').append(start + 1).append('H')
+          .append(after, start, end - start + 1);
+      System.arraycopy(after, start, before, start, end - start + 1);
+      column = end + 1;
+    }
+  }
+
+  /**
+   * Writes a text into the next grid, cut to the given length and the width of the board.
+   */
+  private void put(int row, int column, String text, int maxLength) {
+    if (text == null || column < 0 || column >= width) {
+      return;
+    }
+    int length = Math.min(text.length(), Math.min(maxLength, width - column));
+    text.getChars(0, Math.max(0, length), next[row], column);
+  }
+}
@@ -2,7 +2,12 @@ package edu.ntnu.stud.ui;
 
 import edu.ntnu.stud.entity.Clock;
 import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.feed.FeedPublisher;
 import edu.ntnu.stud.logic.TrainDepartureRegister;
+import edu.ntnu.stud.monitoring.BoardRenderEvent;
+import edu.ntnu.stud.replication.ReplicationLeader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.time.LocalTime;
 import java.time.format.DateTimeParseException;
 import java.util.Scanner;
@@ -17,8 +22,13 @@ public class UserInterface {
 
   TrainDepartureRegister departureRegister;
   Clock systemClock;
+  DepartureRowCache rowCache;
 
   private static final String VERSION = "1.3-SNAPSHOT";
+  private static final String METRICS_PROPERTY = "traindispatch.metrics";
+  private static final String REPLICATION_PORT_PROPERTY = "traindispatch.replication.port";
+  private static final String FEED_PORT_PROPERTY = "traindispatch.feed.port";
+  private static final String DELAY_PROPAGATION_PROPERTY = "traindispatch.delaypropagation";
 
   private static final int ADD_NEW_DEPARTURE = 1;
   private static final int ADD_DELAY_TO_DEPARTURE = 2;
@@ -28,8 +38,13 @@ public class UserInterface {
   private static final int SHOW_DEPARTURE_BY_ID = 6;
   private static final int DELETE_DEPARTURE_BY_ID = 7;
   private static final int UPDATE_CLOCK = 8;
-  private static final int EXIT = 9;
-  private static final int MAX_MENU_CHOICE = 9;
+  private static final int ALLOCATE_TRACKS = 9;
+  private static final int UNDO_CHANGES = 10;
+  private static final int SHOW_LIVE_BOARD = 11;
+  private static final int EXIT = 12;
+  private static final int MAX_MENU_CHOICE = 12;
+  private static final int DEFAULT_TERMINAL_WIDTH = 80;
+  private static final int DEFAULT_TERMINAL_HEIGHT = 24;
 
 
 
@@ -43,6 +58,32 @@ public class UserInterface {
     systemClock = new Clock();
 
     this.departureRegister = new TrainDepartureRegister();
+    systemClock.addListener(departureRegister);
+    // Delays entered by the operator are only pushed on to the departures that depend on them
+    // on request, as it changes delays the operator did not enter.
+    if (Boolean.getBoolean(DELAY_PROPAGATION_PROPERTY)) {
+      departureRegister.enableDelayPropagation();
+    }
+    // Rows are only formatted again when the departure has changed since it was last shown.
+    this.rowCache = new DepartureRowCache(UserInterface::formatDepartureInfo);
+    departureRegister.addListener(rowCache);
+
+    // Metrics are only enabled on request as they read the system timer on every operation.
+    if (Boolean.getBoolean(METRICS_PROPERTY)) {
+      departureRegister.enableMetrics().registerMBean("main");
+    }
+
+    Integer replicationPort = Integer.getInteger(REPLICATION_PORT_PROPERTY);
+    if (replicationPort != null
+        && !new ReplicationLeader(departureRegister).start(replicationPort)) {
+      System.out.println("Could not start replication on port " + replicationPort);
+    }
+
+    Integer feedPort = Integer.getInteger(FEED_PORT_PROPERTY);
+    if (feedPort != null && !new FeedPublisher(departureRegister).start(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), feedPort))) {
+      System.out.println("Could not start the display feed to port " + feedPort);
+    }
 
     this.departureRegister.addDeparture(new TrainDeparture(
         LocalTime.of(1, 45),
@@ -148,6 +189,15 @@ public class UserInterface {
       case UPDATE_CLOCK:
         this.updateClockAndDeleteOldDepartures();
         break;
+      case ALLOCATE_TRACKS:
+        this.allocateTracks();
+        break;
+      case UNDO_CHANGES:
+        this.undoChanges();
+        break;
+      case SHOW_LIVE_BOARD:
+        this.showLiveBoard();
+        break;
       case EXIT:
         result = false;
         break;
@@ -165,7 +215,8 @@ public class UserInterface {
    */
   private void displayMenu() {
     // TODO: Consider changing to Enums instead of menu choices
-    System.out.println("Current system time: " + systemClock.getCurrentTime());
+    System.out.println("Current system time: " + systemClock.getCurrentTime()
+        + " (day " + systemClock.getDay() + ")");
     System.out.printf("\n"
         + ADD_NEW_DEPARTURE + ". Add new departure\n"
         + ADD_DELAY_TO_DEPARTURE + ". Add delay to departure\n"
@@ -175,6 +226,9 @@ public class UserInterface {
         + SHOW_DEPARTURE_BY_ID + ". Show specific departure by Id\n"
         + DELETE_DEPARTURE_BY_ID + ". Delete specific departure by Id\n"
         + UPDATE_CLOCK + ". Updates the system clock\n"
+        + ALLOCATE_TRACKS + ". Assign tracks to all departures automatically\n"
+        + UNDO_CHANGES + ". Undo the latest changes\n"
+        + SHOW_LIVE_BOARD + ". Show live departure board\n"
         + EXIT + ". Exit application\n"
     );
   }
@@ -185,11 +239,23 @@ public class UserInterface {
     System.out.println("Please provide the system time with format \"hh:mm\"");
     try {
       LocalTime currentTime = LocalTime.parse(inputScanner.nextLine());
-      systemClock.setCurrentTime(currentTime);
+
+      // The register listens to the clock and expires old departures when it is updated.
+      int departureCount = departureRegister.getDepartureCount();
+      if (!systemClock.setCurrentTime(currentTime)) {
+        System.out.println("The time is before the current time " + systemClock.getCurrentTime()
+            + ". Move the clock past midnight to the next day? (y/n)");
+        if (!inputScanner.nextLine().trim().equalsIgnoreCase("y")) {
+          System.out.println("The system time was not changed.");
+          holdProgramForKey();
+          return;
+        }
+        systemClock.advanceDay(currentTime);
+      }
       System.out.println("Successfully updated system time. New system time is: "
-          + systemClock.getCurrentTime());
+          + systemClock.getCurrentTime() + " (day " + systemClock.getDay() + ")");
 
-      int deleteCount = departureRegister.deleteOldDepartures(systemClock.getCurrentTime());
+      int deleteCount = departureCount - departureRegister.getDepartureCount();
 
       System.out.println("Number of departures deleted from register: " + deleteCount);
 
@@ -255,9 +321,14 @@ public class UserInterface {
     System.out.println("Please provide a destination");
     String destination = inputScanner.nextLine();
 
+    BoardRenderEvent event = new BoardRenderEvent();
+    event.begin();
+    int rows = 0;
     for (TrainDeparture departure : departureRegister.getDeparturesByDestination(destination)) {
       printDepartureInfo(departure);
+      rows += 1;
     }
+    commitRenderEvent(event, "destination", rows);
 
 
     holdProgramForKey();
@@ -268,7 +339,6 @@ public class UserInterface {
     System.out.println("--------------------Assign track to departure--------------------");
 
     Scanner inputScanner = new Scanner(System.in);
-    TrainDeparture foundDeparture;
 
     System.out.println("Please provide the ID of the departure you wish to assign a track to");
     String trainId = inputScanner.nextLine().toUpperCase();
@@ -279,10 +349,42 @@ public class UserInterface {
     }
 
 
-    foundDeparture = departureRegister.getDepartureFromId(trainId);
     System.out.println("Please provide the track to assign the departure");
     int track = inputScanner.nextInt();
-    foundDeparture.setTrack(track);
+    departureRegister.updateTrack(trainId, track);
+
+    holdProgramForKey();
+  }
+
+  /**
+   * Assigns tracks to all departures without one, and keeps doing so for new departures.
+   */
+  private void allocateTracks() {
+    System.out.println("--------------------Assign tracks automatically--------------------");
+    int assignedCount = departureRegister.allocateTracks();
+    System.out.println(assignedCount + " departures were assigned a track. Tracks of new and "
+        + "delayed departures are assigned automatically from now on.");
+
+    holdProgramForKey();
+  }
+
+  /**
+   * Shows the latest changes and undoes the number of them the user asks for.
+   */
+  private void undoChanges() {
+    System.out.println("--------------------Undo changes--------------------");
+    for (String entry : departureRegister.getAuditLog().getEntries()) {
+      System.out.println(entry);
+    }
+
+    Scanner inputScanner = new Scanner(System.in);
+    System.out.println("Please provide the number of changes to undo, newest first");
+    if (inputScanner.hasNextInt()) {
+      int undoneCount = departureRegister.undo(inputScanner.nextInt());
+      System.out.println(undoneCount + " changes were undone.");
+    } else {
+      System.out.println("Invalid number.");
+    }
 
     holdProgramForKey();
   }
@@ -294,7 +396,6 @@ public class UserInterface {
     System.out.println("--------------------Add delay to departure--------------------");
 
     Scanner inputScanner = new Scanner(System.in);
-    TrainDeparture foundDeparture;
 
     System.out.println("Please provide the ID of the departure you wish to add a delay to");
     String trainId = inputScanner.nextLine().toUpperCase();
@@ -305,13 +406,12 @@ public class UserInterface {
     }
 
 
-    foundDeparture = departureRegister.getDepartureFromId(trainId);
     System.out.println("Please provide the delay you wish to apply with format \"hh:mm\"");
 
 
     try {
       LocalTime delay = LocalTime.parse(inputScanner.nextLine());
-      foundDeparture.setDelay(delay);
+      departureRegister.updateDelay(trainId, delay);
     } catch (DateTimeParseException e) {
       System.out.println("Provided delay was not formatted correctly.");
     }
@@ -344,13 +444,56 @@ public class UserInterface {
    */
   private void showAllDepartures() {
     System.out.println("--------------------All departures--------------------");
+    BoardRenderEvent event = new BoardRenderEvent();
+    event.begin();
+    int rows = 0;
     for (TrainDeparture departure : departureRegister.getAllDepartures()) {
       printDepartureInfo(departure);
+      rows += 1;
     }
+    commitRenderEvent(event, "all", rows);
 
     holdProgramForKey();
   }
 
+  /**
+   * Shows a full-screen departure board that is kept up to date until enter is pressed.
+   * The size of the terminal is read from the COLUMNS and LINES environment variables.
+   */
+  private void showLiveBoard() {
+    int width = terminalSize("COLUMNS", DEFAULT_TERMINAL_WIDTH);
+    int height = terminalSize("LINES", DEFAULT_TERMINAL_HEIGHT);
+    try (LiveBoard board = new LiveBoard(departureRegister, systemClock,
+        "Departures - press enter to return to menu", System.out, width, height)) {
+      board.start(LiveBoard.DEFAULT_FRAME_INTERVAL_MILLIS);
+      new Scanner(System.in).nextLine();
+    }
+  }
+
+  private static int terminalSize(String variable, int defaultSize) {
+    try {
+      String value = System.getenv(variable);
+      return value != null ? Integer.parseInt(value.trim()) : defaultSize;
+    } catch (NumberFormatException e) {
+      return defaultSize;
+    }
+  }
+
+  /**
+   * Commits a Flight Recorder event for a rendered list of departures if it is recorded.
+   *
+   * @param event Event that was started before the render.
+   * @param board Name of the rendered board.
+   * @param rows Number of rendered departures.
+   */
+  private static void commitRenderEvent(BoardRenderEvent event, String board, int rows) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.set(board, rows);
+      event.commit();
+    }
+  }
+
   private static void holdProgramForKey() {
     // As the menu is quite large I wait for a user input before returning to menu
     boolean next = true;
@@ -423,25 +566,38 @@ public class UserInterface {
 
   /**
    * Prints out all the information of a specific departure.
-   * Omits delay if delay is 0.
-   * Omits Track if id is -1.
+   * The row is taken from the row cache if the departure has not changed.
    *
    * @param trainDeparture Departure to print info from.
    */
   private void printDepartureInfo(TrainDeparture trainDeparture) {
+    byte[] row = rowCache.getRow(trainDeparture);
+    System.out.write(row, 0, row.length);
+    System.out.flush();
+  }
+
+  /**
+   * Formats all the information of a specific departure as one row.
+   * Omits delay if delay is 0.
+   * Omits Track if id is -1.
+   *
+   * @param trainDeparture Departure to format.
+   * @return The row, without a line separator.
+   */
+  static String formatDepartureInfo(TrainDeparture trainDeparture) {
     String printString = " | Departure time: " + trainDeparture.getDeparture()
         + " | Line: " + trainDeparture.getLine()
         + " | Train Number: " + trainDeparture.getTrainId()
         + " | Destination: " + trainDeparture.getDestination();
 
-    if (trainDeparture.getDelay() != LocalTime.of(0, 0)) {
+    if (trainDeparture.getDelayMinutes() > 0) {
       printString += " | Delay: " + trainDeparture.getDelay();
     }
     if (trainDeparture.getTrack() != -1) {
       printString += " | Track: " + trainDeparture.getTrack();
     }
 
-    System.out.println(printString);
+    return printString;
   }
 
 }
@@ -0,0 +1,86 @@
+package edu.ntnu.stud.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the clock class.
+ * The following must be tested:
+ * <ul>
+ *   <li> Positive test: Test that setting a later time keeps the day. </li>
+ *   <li> Positive test: Test that advancing the day moves the clock past midnight. </li>
+ *   <li> Negative test: Test that setting null does not change the clock. </li>
+ *   <li> Negative test: Test that setting an earlier time is rejected. </li>
+ * </ul>
+ */
+class ClockTest {
+
+  /**
+   * Positive test that the epoch minute follows the time during the same day.
+   */
+  @Test
+  void testSetLaterTimeKeepsDay() {
+    Clock clock = new Clock();
+
+    clock.setCurrentTime(LocalTime.of(8, 30));
+
+    assertEquals(0, clock.getDay());
+    assertEquals(8 * 60 + 30, clock.getEpochMinute());
+  }
+
+  /**
+   * Positive test that advancing the day moves the clock to the next day and notifies listeners.
+   */
+  @Test
+  void testAdvanceDayMovesToNextDay() {
+    Clock clock = new Clock();
+    long[] notified = new long[2];
+    clock.addListener((previousMinute, currentMinute) -> {
+      notified[0] = previousMinute;
+      notified[1] = currentMinute;
+    });
+
+    assertTrue(clock.setCurrentTime(LocalTime.of(23, 50)));
+    assertTrue(clock.advanceDay(LocalTime.of(0, 10)));
+
+    assertEquals(1, clock.getDay());
+    assertEquals(23 * 60 + 50, notified[0]);
+    assertEquals(Clock.MINUTES_PER_DAY + 10, notified[1]);
+  }
+
+  /**
+   * Negative test that null is ignored.
+   */
+  @Test
+  void testSetNullTime() {
+    Clock clock = new Clock();
+    clock.setCurrentTime(LocalTime.of(5, 0));
+
+    assertFalse(clock.setCurrentTime(null));
+    assertFalse(clock.advanceDay(null));
+
+    assertEquals(LocalTime.of(5, 0), clock.getCurrentTime());
+    assertEquals(0, clock.getDay());
+  }
+
+  /**
+   * Negative test that a time before the current time, like a corrected typo, is rejected
+   * without moving the clock to the next day or notifying listeners.
+   */
+  @Test
+  void testSetEarlierTimeIsRejected() {
+    Clock clock = new Clock();
+    int[] notifications = new int[1];
+    clock.addListener((previousMinute, currentMinute) -> notifications[0] += 1);
+    clock.setCurrentTime(LocalTime.of(12, 5));
+
+    assertFalse(clock.setCurrentTime(LocalTime.of(12, 0)));
+
+    assertEquals(LocalTime.of(12, 5), clock.getCurrentTime());
+    assertEquals(0, clock.getDay());
+    assertEquals(1, notifications[0]);
+    assertTrue(clock.setCurrentTime(LocalTime.of(12, 5)));
+  }
+}
@@ -0,0 +1,73 @@
+package edu.ntnu.stud.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the departure pattern class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that the instances get the right times and trainIds, and are found by trainId.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that trainIds that are not instances are not found, and that invalid input gives a
+ *     valid pattern.
+ *   </li>
+ * </ul>
+ */
+class DeparturePatternTest {
+
+  /**
+   * Positive test that a pattern every 15 minutes from 06:00 to 22:00 has 65 instances with
+   * trainIds made from the departure time.
+   */
+  @Test
+  void testInstances() {
+    DeparturePattern pattern = new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(22, 0), 15);
+
+    assertEquals(65, pattern.getInstanceCount());
+    assertEquals("J8-0600", pattern.getTrainId(0));
+    assertEquals("J8-2200", pattern.getTrainId(64));
+    assertEquals(6 * 60 + 45, pattern.getDepartureMinute(3));
+    assertEquals(3, pattern.indexOf("J8-0645"));
+    assertEquals(4, pattern.firstIndexFrom(6 * 60 + 46));
+    assertEquals(65, pattern.firstIndexFrom(23 * 60));
+
+    TrainDeparture departure = pattern.createDeparture(3);
+    assertEquals("J8-0645", departure.getTrainId());
+    assertEquals("Trondheim", departure.getDestination());
+    assertEquals(LocalTime.of(6, 45), departure.getDeparture());
+    assertEquals(0, departure.getDelayMinutes());
+    assertEquals(-1, departure.getTrack());
+  }
+
+  /**
+   * Negative test that other trainIds are not taken as instances, and that missing or invalid
+   * input is set to valid values.
+   */
+  @Test
+  void testInvalidInput() {
+    DeparturePattern pattern = new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(22, 0), 15);
+    assertEquals(-1, pattern.indexOf("J8-0610"));
+    assertEquals(-1, pattern.indexOf("J8-2215"));
+    assertEquals(-1, pattern.indexOf("J8-06a0"));
+    assertEquals(-1, pattern.indexOf("J80-0600"));
+    assertEquals(-1, pattern.indexOf(null));
+    assertNull(pattern.getTrainId(65));
+    assertNull(pattern.createDeparture(-1));
+
+    DeparturePattern invalid = new DeparturePattern(null, "", null,
+        LocalTime.of(8, 0), LocalTime.of(7, 0), 0);
+    assertEquals(1, invalid.getInstanceCount());
+    assertEquals(1, invalid.getIntervalMinutes());
+    assertEquals("INVALID ID-0800", invalid.getTrainId(0));
+    assertEquals("INVALID DESTINATION", invalid.createDeparture(0).getDestination());
+  }
+}
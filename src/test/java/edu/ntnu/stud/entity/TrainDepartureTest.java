@@ -3,6 +3,7 @@ package edu.ntnu.stud.entity;
 import static org.junit.jupiter.api.Assertions.*;
 
 import edu.ntnu.stud.entity.TrainDeparture;
+import java.lang.management.ManagementFactory;
 import java.time.LocalTime;
 import org.junit.jupiter.api.Test;
 
@@ -14,6 +15,11 @@ import org.junit.jupiter.api.Test;
  *   <li> Negative test: Test creation of object with invalid parameters. </li>
  *   <li> Positive test: Test Setter methods for the Object with valid parameters.</li>
  *   <li> Negative test: Test Setter methods for the Object with invalid parameters.</li>
+ *   <li> Positive test: Test that times are stored as minutes and read as shared instances.</li>
+ *   <li> Positive test: Test that delay updates and time checks do not allocate.</li>
+ *   <li> Positive test: Test that the version changes with the delay and the track.</li>
+ *   <li> Positive test: Test that concurrent versioned updates are never lost.</li>
+ *   <li> Negative test: Test that a versioned update with an old version is rejected.</li>
  * </ul>
  */
 class TrainDepartureTest {
@@ -111,4 +117,151 @@ class TrainDepartureTest {
     assertEquals(-1,testDeparture.getTrack());
     assertEquals(LocalTime.of(0,0),testDeparture.getDelay());
   }
-}
\ No newline at end of file
+
+  /**
+   * Positive test for the minute based getters and the shared time instances.
+   *
+   */
+  @Test
+  void testTimesAreStoredAsMinutes() {
+    TrainDeparture testDeparture = new TrainDeparture(
+        LocalTime.of(23, 50),
+        "Oslo",
+        "R010",
+        "L1"
+    );
+    assertSame(LocalTime.of(0, 0), testDeparture.getDelay());
+    assertEquals(23 * 60 + 50, testDeparture.getDepartureMinute());
+
+    testDeparture.setDelay(LocalTime.of(0, 25));
+    assertEquals(25, testDeparture.getDelayMinutes());
+    assertEquals(24 * 60 + 15, testDeparture.getEffectiveMinute());
+    assertSame(testDeparture.getDelay(), testDeparture.getDelay());
+
+    testDeparture.setDelayMinutes(-4);
+    assertEquals(0, testDeparture.getDelayMinutes());
+  }
+
+  /**
+   * Positive test that updating the delay and reading the times does not create new objects.
+   *
+   */
+  @Test
+  void testDelayUpdatesDoNotAllocate() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+
+    TrainDeparture testDeparture = new TrainDeparture(
+        LocalTime.of(12, 0),
+        "Oslo",
+        "R011",
+        "L1"
+    );
+    LocalTime delay = LocalTime.of(0, 5);
+    long sum = 0;
+    threadBean.getThreadAllocatedBytes(threadId);
+
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100_000; i++) {
+      testDeparture.setDelay(delay);
+      testDeparture.setDelayMinutes(i % 60);
+      sum += testDeparture.getEffectiveMinute() + testDeparture.getDelay().getMinute();
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertTrue(sum > 0);
+    // A single LocalTime per iteration would be well over a megabyte.
+    assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes");
+  }
+
+  /**
+   * Positive test that setting the delay or the track gives the departure a new version.
+   *
+   */
+  @Test
+  void testVersionChangesOnUpdates() {
+    TrainDeparture testDeparture = new TrainDeparture(
+        LocalTime.of(12, 0),
+        "Oslo",
+        "R012",
+        "L1"
+    );
+    int version = testDeparture.getVersion();
+    testDeparture.getDeparture();
+    testDeparture.getDelay();
+    assertEquals(version, testDeparture.getVersion());
+
+    testDeparture.setDelay(LocalTime.of(0, 5));
+    assertNotEquals(version, testDeparture.getVersion());
+    version = testDeparture.getVersion();
+
+    testDeparture.setTrack(3);
+    assertNotEquals(version, testDeparture.getVersion());
+  }
+
+  /**
+   * Positive test that threads retrying versioned updates never lose an update.
+   *
+   */
+  @Test
+  void testConcurrentVersionedUpdates() throws InterruptedException {
+    TrainDeparture testDeparture = new TrainDeparture(
+        LocalTime.of(12, 0),
+        "Oslo",
+        "R013",
+        "L1"
+    );
+    Runnable addMinutes = () -> {
+      for (int i = 0; i < 500; i++) {
+        DepartureState state = testDeparture.getState();
+        do {
+          state = testDeparture.compareAndSetDelay(state.getVersion(),
+              state.getDelayMinutes() + 1);
+        } while (!state.isApplied());
+      }
+    };
+    Thread first = new Thread(addMinutes);
+    Thread second = new Thread(addMinutes);
+    first.start();
+    second.start();
+    first.join();
+    second.join();
+
+    assertEquals(1000, testDeparture.getDelayMinutes());
+    assertEquals(-1, testDeparture.getTrack());
+  }
+
+  /**
+   * Negative test that a versioned update made from an old version changes nothing and gives
+   * back the current state.
+   *
+   */
+  @Test
+  void testVersionedUpdateConflict() {
+    TrainDeparture testDeparture = new TrainDeparture(
+        LocalTime.of(12, 0),
+        "Oslo",
+        "R014",
+        "L1"
+    );
+    int seenVersion = testDeparture.getVersion();
+    testDeparture.setTrack(2);
+
+    DepartureState state = testDeparture.compareAndSetDelay(seenVersion, 10);
+    assertFalse(state.isApplied());
+    assertEquals(0, state.getDelayMinutes());
+    assertEquals(2, state.getTrack());
+    assertEquals(testDeparture.getVersion(), state.getVersion());
+    assertFalse(testDeparture.compareAndSetTrack(seenVersion, 4).isApplied());
+    assertEquals(2, testDeparture.getTrack());
+
+    state = testDeparture.compareAndSetTrack(state.getVersion(), -7);
+    assertTrue(state.isApplied());
+    assertEquals(-1, testDeparture.getTrack());
+    assertEquals(state.getVersion(), testDeparture.getVersion());
+  }
+}
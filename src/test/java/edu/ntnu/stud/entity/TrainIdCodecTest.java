@@ -0,0 +1,58 @@
+package edu.ntnu.stud.entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the trainId codec class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that ids are packed into different codes that give the ids back.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test ids that can not be packed and codes that are not packed ids.
+ *   </li>
+ * </ul>
+ */
+class TrainIdCodecTest {
+
+  /**
+   * Positive test that packed ids are different and can be turned back into the ids.
+   */
+  @Test
+  void testEncodeAndDecode() {
+    String[] trainIds = {"N002", "N02", "N0020", "0", "J8-0615", "ZZZZZZZZZZZZ", "------------",
+        "A", "B", "AB", "BA"};
+    Set<Long> codes = new HashSet<>();
+    for (String trainId : trainIds) {
+      long code = TrainIdCodec.encode(trainId);
+      assertTrue(code > 0);
+      assertTrue(codes.add(code));
+      assertEquals(trainId, TrainIdCodec.decode(code));
+    }
+  }
+
+  /**
+   * Negative test that ids with other characters or too many characters are not packed, and that
+   * codes that are not packed ids are not decoded.
+   */
+  @Test
+  void testUnpackable() {
+    assertEquals(TrainIdCodec.UNPACKABLE, TrainIdCodec.encode(null));
+    assertEquals(TrainIdCodec.UNPACKABLE, TrainIdCodec.encode(""));
+    assertEquals(TrainIdCodec.UNPACKABLE, TrainIdCodec.encode("n002"));
+    assertEquals(TrainIdCodec.UNPACKABLE, TrainIdCodec.encode("N 002"));
+    assertEquals(TrainIdCodec.UNPACKABLE, TrainIdCodec.encode("ABCDEFGHIJKLM"));
+
+    assertNull(TrainIdCodec.decode(0));
+    assertNull(TrainIdCodec.decode(-5));
+    // A single symbol in the last position has an end marker before it.
+    assertNull(TrainIdCodec.decode(1));
+  }
+}
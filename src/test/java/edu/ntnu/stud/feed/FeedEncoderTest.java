@@ -0,0 +1,239 @@
+package edu.ntnu.stud.feed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the feed encoder and decoder classes.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that a full frame gives the decoder the same departures in a few bytes each.
+ *     Test that delta frames carry only what has changed.
+ *     Test that a new object for a departure that was sent is sent as a change.
+ *     Test that a full frame holds the changes its departures do not have yet.
+ *     Test that a full frame is split into frames of a maximum size.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that a delta frame after a missed frame is not applied.
+ *     Test that a cut off frame is not applied.
+ *     Test that a display that misses part of a split full frame waits for the next one.
+ *   </li>
+ * </ul>
+ */
+class FeedEncoderTest {
+  List<TrainDeparture> board;
+  FeedEncoder encoder;
+  FeedDecoder decoder;
+
+  /**
+   * Creates a board of a hundred departures to four destinations.
+   */
+  @BeforeEach
+  void setupTestEnvironment() {
+    board = new ArrayList<>();
+    String[] destinations = {"Oslo", "Bergen", "Trondheim", "Bodø"};
+    for (int i = 0; i < 100; i++) {
+      board.add(new TrainDeparture(LocalTime.of(6 + i / 10, i % 10 * 6),
+          destinations[i % destinations.length], "R" + i, "L" + i % 5));
+    }
+    encoder = new FeedEncoder();
+    decoder = new FeedDecoder();
+  }
+
+  /**
+   * Positive test that a full frame is decoded into the same board with only a few bytes per
+   * departure.
+   */
+  @Test
+  void testFullFrame() {
+    board.get(3).setDelayMinutes(12);
+    board.get(4).setTrack(7);
+    byte[] frame = encoder.encodeFull(board);
+
+    assertTrue(decoder.apply(frame, frame.length));
+    assertTrue(frame.length < board.size() * 13, frame.length + " bytes");
+    List<TrainDeparture> decoded = decoder.getDepartures();
+    assertEquals(board.size(), decoded.size());
+    for (int i = 0; i < board.size(); i++) {
+      TrainDeparture expected = board.get(i);
+      TrainDeparture actual = decoded.get(i);
+      assertEquals(expected.getTrainId(), actual.getTrainId());
+      assertEquals(expected.getDeparture(), actual.getDeparture());
+      assertEquals(expected.getDestination(), actual.getDestination());
+      assertEquals(expected.getLine(), actual.getLine());
+      assertEquals(expected.getDelayMinutes(), actual.getDelayMinutes());
+      assertEquals(expected.getTrack(), actual.getTrack());
+    }
+  }
+
+  /**
+   * Positive test that delta frames only carry the changed fields and reuse the slots of removed
+   * departures.
+   */
+  @Test
+  void testDeltaFrames() {
+    byte[] full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    assertNull(encoder.encodeDelta());
+
+    board.get(10).setDelayMinutes(5);
+    encoder.changed(board.get(10));
+    byte[] delay = encoder.encodeDelta();
+    assertTrue(delay.length <= 7, delay.length + " bytes");
+    assertTrue(decoder.apply(delay, delay.length));
+
+    encoder.removed(board.get(20));
+    TrainDeparture added = new TrainDeparture(LocalTime.of(22, 0), "Moss", "M1", "L9", 2,
+        LocalTime.of(0, 0));
+    encoder.added(added);
+    board.get(30).setTrack(4);
+    board.get(30).setTrack(-1);
+    encoder.changed(board.get(30));
+    byte[] delta = encoder.encodeDelta();
+    assertTrue(decoder.apply(delta, delta.length));
+    assertEquals(encoder.getSequence(), decoder.getSequence());
+
+    List<TrainDeparture> decoded = decoder.getDepartures();
+    assertEquals(board.size(), decoded.size());
+    assertEquals(5, decoded.stream().filter(departure -> departure.getTrainId().equals("R10"))
+        .findFirst().orElseThrow().getDelayMinutes());
+    assertTrue(decoded.stream().noneMatch(departure -> departure.getTrainId().equals("R20")));
+    TrainDeparture last = decoded.get(decoded.size() - 1);
+    assertEquals("M1", last.getTrainId());
+    assertEquals("Moss", last.getDestination());
+    assertEquals(2, last.getTrack());
+  }
+
+  /**
+   * Positive test that a departure sent in a full frame and then reported as added with a new
+   * object, like a pattern instance stored when it is first changed, is sent as a change and not
+   * as a second departure.
+   */
+  @Test
+  void testSameTrainIdIsNotSentTwice() {
+    byte[] full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+
+    TrainDeparture stored = new TrainDeparture(board.get(10).getDeparture(),
+        board.get(10).getDestination(), "R10", board.get(10).getLine());
+    encoder.added(stored);
+    stored.setDelayMinutes(4);
+    encoder.changed(stored);
+    byte[] delta = encoder.encodeDelta();
+    assertTrue(decoder.apply(delta, delta.length));
+
+    List<TrainDeparture> decoded = decoder.getDepartures();
+    assertEquals(board.size(), decoded.size());
+    assertEquals(4, decoded.stream().filter(departure -> departure.getTrainId().equals("R10"))
+        .findFirst().orElseThrow().getDelayMinutes());
+  }
+
+  /**
+   * Positive test that a full frame made from departures that do not yet have the latest added
+   * and removed departures, like a snapshot the register has not published yet, still has them.
+   */
+  @Test
+  void testFullFrameWithUnpublishedChanges() {
+    byte[] full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    TrainDeparture added = new TrainDeparture(LocalTime.of(22, 0), "Moss", "M1", "L9");
+    encoder.added(added);
+    encoder.removed(board.get(0));
+
+    full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    List<TrainDeparture> decoded = decoder.getDepartures();
+    assertEquals(board.size(), decoded.size());
+    assertTrue(decoded.stream().noneMatch(departure -> departure.getTrainId().equals("R0")));
+    assertEquals("M1", decoded.get(decoded.size() - 1).getTrainId());
+
+    // Once the departures agree, they are used as they are.
+    board.remove(0);
+    board.add(added);
+    full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    assertEquals(board.size(), decoder.getDepartures().size());
+    board.remove(added);
+    full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    assertEquals(board.size(), decoder.getDepartures().size());
+  }
+
+  /**
+   * Positive test that a full frame is split into a full frame and delta frames that are no
+   * larger than the maximum, and together give the whole board.
+   */
+  @Test
+  void testSplitFullFrame() {
+    List<byte[]> frames = encoder.encodeFull(board, 200);
+
+    assertTrue(frames.size() > 1);
+    for (byte[] frame : frames) {
+      assertTrue(frame.length <= 200, frame.length + " bytes");
+      assertTrue(decoder.apply(frame, frame.length));
+    }
+    assertEquals(board.size(), decoder.getDepartures().size());
+    assertEquals(encoder.getSequence(), decoder.getSequence());
+  }
+
+  /**
+   * Negative test that a decoder that misses a part of a split full frame is out of sync until
+   * the next full frame.
+   */
+  @Test
+  void testMissedPartOfSplitFullFrame() {
+    List<byte[]> frames = encoder.encodeFull(board, 200);
+    assertTrue(decoder.apply(frames.get(0), frames.get(0).length));
+    byte[] last = frames.get(frames.size() - 1);
+
+    assertFalse(decoder.apply(last, last.length));
+    assertTrue(decoder.getDepartures().size() < board.size());
+    for (byte[] frame : encoder.encodeFull(board, 200)) {
+      assertTrue(decoder.apply(frame, frame.length));
+    }
+    assertEquals(board.size(), decoder.getDepartures().size());
+  }
+
+  /**
+   * Negative test that a decoder that has missed a delta frame waits for the next full frame.
+   */
+  @Test
+  void testMissedFrame() {
+    byte[] full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    board.get(0).setDelayMinutes(1);
+    encoder.changed(board.get(0));
+    encoder.encodeDelta();
+    board.get(1).setDelayMinutes(2);
+    encoder.changed(board.get(1));
+    byte[] delta = encoder.encodeDelta();
+
+    assertFalse(decoder.apply(delta, delta.length));
+    assertEquals(0, decoder.getDepartures().get(0).getDelayMinutes());
+    full = encoder.encodeFull(board);
+    assertTrue(decoder.apply(full, full.length));
+    assertEquals(1, decoder.getDepartures().get(0).getDelayMinutes());
+  }
+
+  /**
+   * Negative test that a frame that is cut off puts the decoder out of sync.
+   */
+  @Test
+  void testCutOffFrame() {
+    byte[] full = encoder.encodeFull(board);
+
+    assertFalse(decoder.apply(full, full.length / 2));
+    assertFalse(decoder.isSynced());
+    assertFalse(decoder.apply(new byte[0], 0));
+    assertFalse(decoder.apply(new byte[] {9, 0, 0}, 3));
+  }
+}
@@ -0,0 +1,89 @@
+package edu.ntnu.stud.feed;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the feed publisher class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that a display gets a full frame and then the changes of the register.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test starting a publisher twice.
+ *     Test that a frame larger than a datagram is counted as dropped.
+ *   </li>
+ * </ul>
+ */
+class FeedPublisherTest {
+  private static final int TIMEOUT_MILLIS = 5_000;
+
+  /**
+   * Positive test that a display listening on a UDP port follows the register.
+   */
+  @Test
+  void testDisplayFollowsRegister() throws Exception {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1", "R10"));
+    FeedDecoder decoder = new FeedDecoder();
+
+    try (DatagramSocket display = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+         FeedPublisher publisher = new FeedPublisher(register)) {
+      display.setSoTimeout(TIMEOUT_MILLIS);
+      assertTrue(publisher.start(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+          display.getLocalPort())));
+      assertFalse(publisher.start(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+          display.getLocalPort())));
+      byte[] buffer = new byte[1024];
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+      display.receive(packet);
+      assertTrue(decoder.apply(packet.getData(), packet.getLength()));
+
+      register.updateDelay("R1", LocalTime.of(0, 4));
+      register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Moss", "R2", "R10"));
+      while (decoder.getDepartures().size() < 2) {
+        packet = new DatagramPacket(buffer, buffer.length);
+        display.receive(packet);
+        decoder.apply(packet.getData(), packet.getLength());
+      }
+      assertTrue(publisher.getSentFrames() >= 2);
+    }
+
+    assertEquals(4, decoder.getDepartures().get(0).getDelayMinutes());
+    assertEquals("Moss", decoder.getDepartures().get(1).getDestination());
+  }
+
+  /**
+   * Negative test that a departure too large for a datagram drops the full frame, and that a
+   * full frame is tried again on the next flush.
+   */
+  @Test
+  void testFrameLargerThanDatagramIsDropped() throws Exception {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "O".repeat(70_000), "R1",
+        "R10"));
+
+    try (DatagramSocket display = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+         FeedPublisher publisher = new FeedPublisher(register)) {
+      assertTrue(publisher.start(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+          display.getLocalPort())));
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      while (publisher.getDroppedFrames() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertTrue(publisher.getDroppedFrames() >= 2);
+      assertEquals(0, publisher.getSentFrames());
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the audit log class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that entries pushed out of a full ring are written to the spill file.
+ *     Test that recording changes to known departures does not allocate.
+ *     Test that trainIds are freed when their entries leave the ring.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that entries are dropped when no spill file is set.
+ *   </li>
+ * </ul>
+ */
+class AuditLogTest {
+
+  /**
+   * Positive test that the oldest entries are spilled in order once the ring is full.
+   */
+  @Test
+  void testFullRingSpillsToFile() throws Exception {
+    Path file = Files.createTempFile("audit", ".log");
+    AuditLog auditLog = new AuditLog(2);
+    assertTrue(auditLog.spillTo(file));
+    TrainDeparture first = new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1-\u00C6\uD83D\uDE86",
+        "R10");
+    TrainDeparture second = new TrainDeparture(LocalTime.of(8, 0), "Moss", "R2", "R10");
+
+    auditLog.record(AuditLog.ADD, first, -1, 0);
+    auditLog.record(AuditLog.DELAY, first, 0, 5);
+    auditLog.record(AuditLog.TRACK, second, -1, 3);
+    auditLog.record(AuditLog.DELETE, second, 0, -1);
+    auditLog.close();
+
+    assertEquals(2, auditLog.size());
+    assertEquals(2, auditLog.getSpilledCount());
+    assertEquals(AuditLog.DELETE, auditLog.lastOperation());
+    assertEquals("R2", auditLog.lastTrainId());
+    TrainDeparture deleted = auditLog.lastDeletedDeparture();
+    assertNotSame(second, deleted);
+    assertEquals("Moss", deleted.getDestination());
+    assertEquals(LocalTime.of(8, 0), deleted.getDeparture());
+    List<String> spilled = AuditLog.readSpillFile(file);
+    Files.deleteIfExists(file);
+    assertEquals(2, spilled.size());
+    // The trainId of the first departure is not ASCII, and is written without a byte array.
+    assertTrue(spilled.get(0).endsWith("ADD R1-\u00C6\uD83D\uDE86 -1 -> 0"));
+    assertTrue(spilled.get(1).endsWith("DELAY R1-\u00C6\uD83D\uDE86 0 -> 5"));
+    assertTrue(auditLog.getEntries().get(0).endsWith("TRACK R2 -1 -> 3"));
+  }
+
+  /**
+   * Positive test that recording changes does not allocate, also when the trainIds are more than
+   * the entries and their codes are recycled, and when the pushed out entries are spilled.
+   */
+  @Test
+  void testRecordingDoesNotAllocate() throws Exception {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+
+    AuditLog auditLog = new AuditLog(64);
+    TrainDeparture departure = new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1", "R10");
+    auditLog.record(AuditLog.DELAY, departure, 0, 0);
+    threadBean.getThreadAllocatedBytes(threadId);
+
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100_000; i++) {
+      auditLog.record(AuditLog.DELAY, departure, i % 60, (i + 1) % 60);
+    }
+    long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertEquals(64, auditLog.size());
+    assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes");
+
+    // More trainIds than entries, so codes are freed and given out again all the time.
+    TrainDeparture[] departures = new TrainDeparture[200];
+    for (int i = 0; i < departures.length; i++) {
+      departures[i] = new TrainDeparture(LocalTime.of(7, 0), "Oslo", "T" + i, "R10");
+    }
+    before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100_000; i++) {
+      auditLog.record(AuditLog.DELAY, departures[i % departures.length], 0, 1);
+    }
+    allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+    assertEquals(64, auditLog.getTrainIdCount());
+    assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes with recycled codes");
+
+    // Spilling writes the name of every recycled code again.
+    Path file = Files.createTempFile("audit", ".log");
+    assertTrue(auditLog.spillTo(file));
+    before = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 100_000; i++) {
+      auditLog.record(AuditLog.DELAY, departures[i % departures.length], 0, 1);
+    }
+    allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+    auditLog.close();
+    Files.deleteIfExists(file);
+
+    assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes while spilling");
+  }
+
+  /**
+   * Positive test that the log holds no more trainIds than entries, and that the names of
+   * trainIds that get a freed code are spilled again.
+   */
+  @Test
+  void testTrainIdsAreRecycled() throws Exception {
+    Path file = Files.createTempFile("audit", ".log");
+    AuditLog auditLog = new AuditLog(4);
+    assertTrue(auditLog.spillTo(file));
+    for (int i = 0; i < 100; i++) {
+      TrainDeparture departure = new TrainDeparture(LocalTime.of(7, 0), "Oslo", "T" + i, "R10");
+      auditLog.record(AuditLog.DELAY, departure, 0, i);
+    }
+    assertEquals(4, auditLog.getTrainIdCount());
+    auditLog.removeLast();
+    assertEquals(3, auditLog.getTrainIdCount());
+    auditLog.close();
+
+    List<String> spilled = AuditLog.readSpillFile(file);
+    Files.deleteIfExists(file);
+    assertEquals(96, spilled.size());
+    for (int i = 0; i < spilled.size(); i++) {
+      assertTrue(spilled.get(i).endsWith("DELAY T" + i + " 0 -> " + i), spilled.get(i));
+    }
+    assertTrue(auditLog.getEntries().get(0).endsWith("DELAY T96 0 -> 96"));
+  }
+
+  /**
+   * Negative test that a full ring without a spill file drops the oldest entries.
+   */
+  @Test
+  void testFullRingWithoutSpillFile() {
+    AuditLog auditLog = new AuditLog(0);
+    TrainDeparture departure = new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1", "R10");
+    auditLog.record(AuditLog.DELAY, departure, 0, 5);
+    auditLog.record(AuditLog.DELAY, departure, 5, 9);
+
+    assertEquals(1, auditLog.getCapacity());
+    assertEquals(1, auditLog.size());
+    assertEquals(0, auditLog.getSpilledCount());
+    assertEquals(5, auditLog.lastOldValue());
+    auditLog.removeLast();
+    auditLog.removeLast();
+    assertEquals(0, auditLog.size());
+    assertNull(auditLog.lastTrainId());
+    assertNull(auditLog.lastDeletedDeparture());
+    assertFalse(auditLog.spillTo(null));
+  }
+}
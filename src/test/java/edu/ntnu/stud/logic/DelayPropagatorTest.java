@@ -0,0 +1,120 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the delay propagator class through the register.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that a delay is pushed on along a track until slack absorbs it.
+ *     Test that a delay is pushed on along a line, and rolled back when it is reduced.
+ *     Test that delays set by hand are not lowered.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that nothing is pushed on without propagation, and that deleting a departure lets
+ *     the departures after it recover.
+ *   </li>
+ * </ul>
+ */
+class DelayPropagatorTest {
+
+  TrainDepartureRegister register;
+
+  /**
+   * Creates a register with four departures on track 1, all on different lines.
+   */
+  @BeforeEach
+  void setupTestEnvironment() {
+    register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "A", "L1", 1,
+        LocalTime.of(0, 0)));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 5), "Oslo", "B", "L2", 1,
+        LocalTime.of(0, 0)));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 20), "Oslo", "C", "L3", 1,
+        LocalTime.of(0, 0)));
+    register.addDeparture(new TrainDeparture(LocalTime.of(12, 0), "Oslo", "D", "L4", 1,
+        LocalTime.of(0, 0)));
+  }
+
+  /**
+   * Positive test that a delay moves the next departure on the track, and stops at the first
+   * departure with enough slack.
+   */
+  @Test
+  void testDelayStopsAtSlack() {
+    register.enableDelayPropagation(3, 2);
+    register.updateDelay("A", LocalTime.of(0, 10));
+
+    assertEquals(8, register.getDepartureFromId("B").getDelayMinutes());
+    assertEquals(0, register.getDepartureFromId("C").getDelayMinutes());
+    assertEquals(0, register.getDepartureFromId("D").getDelayMinutes());
+    assertEquals(3, register.getLastPropagationSize());
+
+    register.updateDelay("A", LocalTime.of(0, 0));
+    assertEquals(0, register.getDepartureFromId("B").getDelayMinutes());
+  }
+
+  /**
+   * Positive test that a delay is pushed on to the next departure on the same line, and that
+   * a track change brings in the departures on the new track.
+   */
+  @Test
+  void testDelayFollowsLineAndTrack() {
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 3), "Moss", "E", "L1"));
+    register.enableDelayPropagation(3, 2);
+
+    register.updateDelay("A", LocalTime.of(0, 4));
+    assertEquals(3, register.getDepartureFromId("E").getDelayMinutes());
+    assertEquals(2, register.getDepartureFromId("B").getDelayMinutes());
+
+    register.updateTrack("D", 2);
+    register.updateTrack("E", 2);
+    register.updateDelay("E", LocalTime.of(0, 0));
+    assertEquals(3, register.getDepartureFromId("E").getDelayMinutes());
+  }
+
+  /**
+   * Positive test that a delay set by hand is kept when it is larger than the pushed on delay,
+   * and not lowered when the delay before it is reduced.
+   */
+  @Test
+  void testDelaySetByHandIsKept() {
+    register.enableDelayPropagation();
+    register.updateDelay("B", LocalTime.of(0, 15));
+    register.updateDelay("A", LocalTime.of(0, 10));
+    assertEquals(15, register.getDepartureFromId("B").getDelayMinutes());
+
+    register.updateDelay("A", LocalTime.of(0, 30));
+    assertEquals(28, register.getDepartureFromId("B").getDelayMinutes());
+    register.updateDelay("A", LocalTime.of(0, 0));
+    assertEquals(15, register.getDepartureFromId("B").getDelayMinutes());
+  }
+
+  /**
+   * Negative test that delays are not pushed on unless propagation is enabled, and that a
+   * deleted departure no longer holds back the departures after it.
+   */
+  @Test
+  void testWithoutPropagationAndAfterDelete() {
+    register.updateDelay("A", LocalTime.of(0, 10));
+    assertEquals(0, register.getDepartureFromId("B").getDelayMinutes());
+
+    register.enableDelayPropagation();
+    register.updateDelay("A", LocalTime.of(0, 10));
+    assertEquals(8, register.getDepartureFromId("B").getDelayMinutes());
+    register.deleteDeparture(register.getDepartureFromId("A"));
+    assertEquals(0, register.getDepartureFromId("B").getDelayMinutes());
+
+    register.disableDelayPropagation();
+    register.updateDelay("B", LocalTime.of(0, 30));
+    assertEquals(0, register.getDepartureFromId("C").getDelayMinutes());
+  }
+}
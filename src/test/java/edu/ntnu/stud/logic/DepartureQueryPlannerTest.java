@@ -0,0 +1,109 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests compound queries and the query planner through the register.
+ * The following must be tested:
+ * <ul>
+ *   <li> Positive test: Test that a compound query returns only matching departures. </li>
+ *   <li> Positive test: Test that the planner starts from the most selective index. </li>
+ *   <li> Positive test: Test that a time window is found through the time index. </li>
+ *   <li> Positive test: Test that a query without indexed conditions scans everything. </li>
+ *   <li> Negative test: Test that a query with no matches returns an empty result. </li>
+ * </ul>
+ */
+class DepartureQueryPlannerTest {
+
+  TrainDepartureRegister register;
+
+  /**
+   * Fills a register with departures where most go to Trondheim, but only a few are on J8.
+   */
+  @BeforeEach
+  void setupTestEnvironment() {
+    register = new TrainDepartureRegister();
+    for (int i = 0; i < 20; i++) {
+      register.addDeparture(new TrainDeparture(LocalTime.of(6 + i / 2, (i % 2) * 30),
+          "Trondheim", "R" + i, "R10"));
+    }
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 15), "Trondheim", "J1", "J8"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 15), "Trondheim", "J2", "J8",
+        4, LocalTime.of(0, 0)));
+    register.addDeparture(new TrainDeparture(LocalTime.of(11, 15), "Trondheim", "J3", "J8"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 45), "Bodø", "J4", "J8"));
+  }
+
+  /**
+   * Positive test that line, destination and track conditions are all applied, and that the
+   * line index is used as it is smaller than the destination index.
+   */
+  @Test
+  void testCompoundQueryUsesMostSelectiveIndex() {
+    QueryResult result = register.query(new DepartureQuery()
+        .line("J8")
+        .destination("Trondheim")
+        .withoutTrack());
+
+    assertEquals(2, result.getDepartures().size());
+    assertEquals("J1", result.getDepartures().get(0).getTrainId());
+    assertEquals("J3", result.getDepartures().get(1).getTrainId());
+    assertEquals(QueryPlan.AccessPath.LINE_INDEX, result.getPlan().getAccessPath());
+    assertEquals(4, result.getPlan().getEstimatedRowsScanned());
+    assertEquals(4, result.getPlan().getRowsScanned());
+    assertEquals(2, result.getPlan().getRowsMatched());
+  }
+
+  /**
+   * Positive test that a narrow time window is run on the time index, and that the plan shows
+   * the estimate next to the actual number of rows, as most departures are in the morning.
+   */
+  @Test
+  void testTimeWindowUsesTimeIndex() {
+    QueryResult result = register.query(new DepartureQuery()
+        .line("J8")
+        .destination("Trondheim")
+        .between(LocalTime.of(8, 0), LocalTime.of(10, 0))
+        .withoutTrack());
+
+    assertEquals(1, result.getDepartures().size());
+    assertEquals("J1", result.getDepartures().get(0).getTrainId());
+    assertEquals(QueryPlan.AccessPath.TIME_INDEX, result.getPlan().getAccessPath());
+    assertEquals(3, result.getPlan().getEstimatedRowsScanned());
+    assertEquals(8, result.getPlan().getRowsScanned());
+  }
+
+  /**
+   * Positive test that delayed departures are found by a full scan as there is no index for
+   * delays, and that the result is sorted by departure time.
+   */
+  @Test
+  void testQueryWithoutIndexScansAll() {
+    register.updateDelay("R5", LocalTime.of(0, 10));
+    register.updateDelay("R1", LocalTime.of(0, 5));
+
+    QueryResult result = register.query(new DepartureQuery().delayedOnly());
+
+    assertEquals(QueryPlan.AccessPath.FULL_SCAN, result.getPlan().getAccessPath());
+    assertEquals(24, result.getPlan().getRowsScanned());
+    assertEquals("R1", result.getDepartures().get(0).getTrainId());
+    assertEquals("R5", result.getDepartures().get(1).getTrainId());
+  }
+
+  /**
+   * Negative test that a query on an unknown destination scans nothing and returns no rows.
+   */
+  @Test
+  void testQueryWithoutMatches() {
+    QueryResult result = register.query(new DepartureQuery().destination("Narvik"));
+
+    assertTrue(result.getDepartures().isEmpty());
+    assertEquals(QueryPlan.AccessPath.DESTINATION_INDEX, result.getPlan().getAccessPath());
+    assertEquals(0, result.getPlan().getRowsScanned());
+  }
+}
@@ -0,0 +1,172 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the departure timing wheel class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that departures expire when the wheel passes their minute, and not before.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test cancelling and moving departures that share a slot.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that a departure can be cancelled while its slot is firing.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test cancelling departures that are not scheduled and moving the wheel backwards.
+ *   </li>
+ * </ul>
+ */
+class DepartureTimingWheelTest {
+
+  /**
+   * Target that expires the departures in a map of due minutes.
+   */
+  private static class MapTarget implements DepartureTimingWheel.ExpiryTarget {
+    private final Map<TrainDeparture, Long> due = new IdentityHashMap<>();
+    private final List<TrainDeparture> expired = new ArrayList<>();
+
+    @Override
+    public long dueMinuteOf(TrainDeparture departure) {
+      return due.getOrDefault(departure, -1L);
+    }
+
+    @Override
+    public void expire(TrainDeparture departure) {
+      due.remove(departure);
+      expired.add(departure);
+    }
+  }
+
+  private static TrainDeparture departure(String trainId) {
+    return new TrainDeparture(LocalTime.of(8, 0), "Oslo", trainId, "L1");
+  }
+
+  /**
+   * Positive test that departures expire once the wheel has passed their minute.
+   */
+  @Test
+  void testAdvanceExpiresDueDepartures() {
+    DepartureTimingWheel wheel = new DepartureTimingWheel(60, 0);
+    MapTarget target = new MapTarget();
+    TrainDeparture early = departure("A1");
+    TrainDeparture late = departure("A2");
+    target.due.put(early, 10L);
+    target.due.put(late, 70L);
+    wheel.schedule(early, 10);
+    wheel.schedule(late, 70);
+
+    assertEquals(0, wheel.advanceTo(10, target));
+    assertEquals(1, wheel.advanceTo(11, target));
+    assertEquals(List.of(early), target.expired);
+    // The late departure shares a slot with minute 10, but is not due until the next round.
+    assertEquals(1, wheel.size());
+    assertEquals(1, wheel.advanceTo(71, target));
+    assertEquals(List.of(early, late), target.expired);
+    assertEquals(0, wheel.size());
+  }
+
+  /**
+   * Positive test that departures in the same slot can be cancelled and moved one by one.
+   */
+  @Test
+  void testCancelAndMoveInSameSlot() {
+    DepartureTimingWheel wheel = new DepartureTimingWheel(60, 0);
+    MapTarget target = new MapTarget();
+    List<TrainDeparture> departures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      TrainDeparture departure = departure("B" + i);
+      departures.add(departure);
+      target.due.put(departure, 5L);
+      wheel.schedule(departure, 5);
+    }
+
+    assertTrue(wheel.cancel(departures.get(0)));
+    assertTrue(wheel.cancel(departures.get(2)));
+    assertTrue(wheel.cancel(departures.get(4)));
+    target.due.put(departures.get(3), 20L);
+    wheel.schedule(departures.get(3), 20);
+    assertEquals(2, wheel.size());
+
+    assertEquals(1, wheel.advanceTo(6, target));
+    assertEquals(List.of(departures.get(1)), target.expired);
+    assertEquals(1, wheel.advanceTo(21, target));
+    assertEquals(List.of(departures.get(1), departures.get(3)), target.expired);
+  }
+
+  /**
+   * Positive test that expiring one departure can cancel another from the same slot, which is
+   * then not expired.
+   */
+  @Test
+  void testCancelWhileFiring() {
+    DepartureTimingWheel wheel = new DepartureTimingWheel(60, 0);
+    List<TrainDeparture> expired = new ArrayList<>();
+    List<TrainDeparture> departures = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      TrainDeparture departure = departure("C" + i);
+      departures.add(departure);
+      wheel.schedule(departure, 5);
+    }
+    DepartureTimingWheel.ExpiryTarget target = new DepartureTimingWheel.ExpiryTarget() {
+      @Override
+      public long dueMinuteOf(TrainDeparture departure) {
+        return 5;
+      }
+
+      @Override
+      public void expire(TrainDeparture departure) {
+        expired.add(departure);
+        for (TrainDeparture other : departures) {
+          wheel.cancel(other);
+        }
+      }
+    };
+
+    assertEquals(1, wheel.advanceTo(6, target));
+    assertEquals(1, expired.size());
+    assertEquals(0, wheel.size());
+  }
+
+  /**
+   * Negative test that departures that are not scheduled can not be cancelled, and that moving
+   * the wheel backwards does not expire anything.
+   */
+  @Test
+  void testCancelUnscheduledAndMoveBack() {
+    DepartureTimingWheel wheel = new DepartureTimingWheel(60, 30);
+    MapTarget target = new MapTarget();
+    TrainDeparture departure = departure("D1");
+
+    assertFalse(wheel.cancel(departure));
+    assertFalse(wheel.cancel(null));
+    wheel.schedule(null, 40);
+    assertEquals(0, wheel.size());
+
+    target.due.put(departure, 40L);
+    wheel.schedule(departure, 40);
+    assertTrue(wheel.cancel(departure));
+    assertFalse(wheel.cancel(departure));
+    assertEquals(0, wheel.advanceTo(50, target));
+
+    wheel.schedule(departure, 55);
+    assertEquals(0, wheel.advanceTo(20, target));
+    assertEquals(20, wheel.getCursor());
+    assertTrue(target.expired.isEmpty());
+  }
+}
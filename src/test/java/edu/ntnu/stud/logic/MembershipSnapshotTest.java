@@ -0,0 +1,151 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the membership snapshot class.
+ * The following must be tested:
+ * <ul>
+ *   <li> Positive test: Test that a snapshot does not change when the register changes. </li>
+ *   <li> Positive test: Test that departures are inserted and removed in sorted position. </li>
+ *   <li> Positive test: Test that deferred changes are published as one sorted snapshot. </li>
+ *   <li> Positive test: Test that readers can iterate snapshots while a writer changes the
+ *   register. </li>
+ *   <li> Negative test: Test that the snapshot list can not be changed. </li>
+ * </ul>
+ */
+class MembershipSnapshotTest {
+
+  /**
+   * Positive test that an old snapshot keeps its departures and version.
+   */
+  @Test
+  void testSnapshotIsImmutable() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "N001", "L1"));
+    MembershipSnapshot before = register.getSnapshot();
+
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N002", "L1"));
+    register.deleteDeparture(register.getDepartureFromId("N001"));
+
+    assertEquals(1, before.size());
+    assertEquals("N001", before.getDepartures().get(0).getTrainId());
+    assertNotNull(before.getDepartureFromId("N001"));
+    assertTrue(register.getSnapshot().getVersion() > before.getVersion());
+    assertNull(register.getSnapshot().getDepartureFromId("N001"));
+  }
+
+  /**
+   * Positive test that the snapshot stays sorted as departures are added and removed.
+   */
+  @Test
+  void testSortedInsertAndRemove() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(10, 0), "Oslo", "N003", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "N001", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Bergen", "N002", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N000", "L1"));
+
+    List<TrainDeparture> departures = register.getSnapshot().getDepartures();
+    assertEquals("N001", departures.get(0).getTrainId());
+    assertEquals("N000", departures.get(1).getTrainId());
+    assertEquals("N002", departures.get(2).getTrainId());
+    assertEquals("N003", departures.get(3).getTrainId());
+
+    register.deleteDeparture(register.getDepartureFromId("N002"));
+    register.expireDepartures(LocalTime.of(8, 30));
+
+    departures = register.getSnapshot().getDepartures();
+    assertEquals(2, departures.size());
+    assertEquals("N000", departures.get(0).getTrainId());
+    assertEquals(2, register.getSnapshot().getDeparturesByDestination("Oslo").size());
+  }
+
+  /**
+   * Positive test that changes made while publishing is deferred are merged into one snapshot,
+   * in sorted position, and that lookups see them at once.
+   */
+  @Test
+  void testDeferredChangesArePublishedTogether() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "N001", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(10, 0), "Oslo", "N003", "L1"));
+    MembershipSnapshot before = register.getSnapshot();
+
+    register.deferPublishing();
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N002", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(11, 0), "Oslo", "N004", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "Oslo", "N000", "L1"));
+    register.deleteDeparture(register.getDepartureFromId("N001"));
+    register.deleteDeparture(register.getDepartureFromId("N004"));
+    assertSame(before, register.getSnapshot());
+    assertNotNull(register.getDepartureFromId("N002"));
+    register.publishDeferred();
+
+    assertEquals(before.getVersion() + 1, register.getSnapshot().getVersion());
+    assertEquals(List.of("N000", "N002", "N003"), register.getSnapshot().getDepartures().stream()
+        .map(TrainDeparture::getTrainId).toList());
+    register.addDeparture(new TrainDeparture(LocalTime.of(12, 0), "Oslo", "N005", "L1"));
+    assertEquals(4, register.getSnapshot().size());
+  }
+
+  /**
+   * Positive test that a reader iterating snapshots never fails while a writer adds and removes
+   * departures.
+   */
+  @Test
+  void testReadersDuringWrites() throws InterruptedException {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    AtomicBoolean running = new AtomicBoolean(true);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Thread reader = new Thread(() -> {
+      try {
+        while (running.get()) {
+          int count = 0;
+          for (TrainDeparture departure : register.getSnapshot().getDepartures()) {
+            count += departure.getTrainId().length();
+          }
+          assertTrue(count >= 0);
+        }
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    reader.start();
+
+    for (int i = 0; i < 2000; i++) {
+      register.addDeparture(new TrainDeparture(LocalTime.of(i % 24, i % 60), "Oslo",
+          "T" + i, "L1"));
+      if (i % 3 == 0) {
+        register.deleteDeparture(register.getDepartureFromId("T" + (i / 2)));
+      }
+    }
+    running.set(false);
+    reader.join();
+
+    assertNull(failure.get());
+    assertEquals(register.getDepartureCount(), register.getSnapshot().size());
+  }
+
+  /**
+   * Negative test that the list of a snapshot can not be changed by a reader.
+   */
+  @Test
+  void testSnapshotListIsUnmodifiable() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "N001", "L1"));
+
+    List<TrainDeparture> departures = register.getSnapshot().getDepartures();
+
+    assertThrows(UnsupportedOperationException.class, () -> departures.remove(0));
+    assertThrows(UnsupportedOperationException.class, () -> departures.add(null));
+  }
+}
@@ -0,0 +1,86 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the parallel scan executor class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that a parallel filter gives the same elements in the same order as a sequential one.
+ *     Test that a parallel sort gives the same order as a sequential one.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that scans never run in parallel with a single processor or below the threshold.
+ *   </li>
+ * </ul>
+ */
+class ParallelScanExecutorTest {
+
+  /**
+   * Positive test for filtering a large list in parallel and sequentially.
+   */
+  @Test
+  void testParallelFilterKeepsOrder() {
+    List<Integer> numbers = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      numbers.add(i);
+    }
+
+    ParallelScanExecutor sequential = new ParallelScanExecutor(4);
+    sequential.setThreshold(Integer.MAX_VALUE);
+    ParallelScanExecutor parallel = new ParallelScanExecutor(4);
+    parallel.setThreshold(0);
+
+    List<Integer> expected = sequential.filter(numbers, n -> n % 7 == 3);
+    assertEquals(7_143, expected.size());
+    assertEquals(expected, parallel.filter(numbers, n -> n % 7 == 3));
+  }
+
+  /**
+   * Positive test for sorting a large array in parallel and sequentially.
+   */
+  @Test
+  void testParallelSort() {
+    Random random = new Random(7);
+    Integer[] sequentialArray = new Integer[30_000];
+    for (int i = 0; i < sequentialArray.length; i++) {
+      sequentialArray[i] = random.nextInt(1_000);
+    }
+    Integer[] parallelArray = sequentialArray.clone();
+
+    ParallelScanExecutor sequential = new ParallelScanExecutor(4);
+    sequential.setThreshold(Integer.MAX_VALUE);
+    sequential.sort(sequentialArray, Comparator.naturalOrder());
+    ParallelScanExecutor parallel = new ParallelScanExecutor(4);
+    parallel.setThreshold(0);
+    parallel.sort(parallelArray, Comparator.naturalOrder());
+
+    assertArrayEquals(sequentialArray, parallelArray);
+  }
+
+  /**
+   * Negative test for the cases where a scan must stay on the calling thread.
+   */
+  @Test
+  void testWhenScansAreParallel() {
+    ParallelScanExecutor singleProcessor = new ParallelScanExecutor(1);
+    singleProcessor.setThreshold(0);
+    assertFalse(singleProcessor.isParallel(1_000_000));
+
+    ParallelScanExecutor executor = new ParallelScanExecutor(4);
+    assertFalse(executor.isParallel(ParallelScanExecutor.DEFAULT_THRESHOLD - 1));
+    assertTrue(executor.isParallel(ParallelScanExecutor.DEFAULT_THRESHOLD));
+
+    executor.setThreshold(-5);
+    assertEquals(0, executor.getThreshold());
+  }
+}
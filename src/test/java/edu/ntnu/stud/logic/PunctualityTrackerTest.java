@@ -0,0 +1,111 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.DeparturePattern;
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.monitoring.PunctualityStatistics;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the punctuality tracker class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that the statistics follow the delays set through the register.
+ *     Test that departures that leave stay in the statistics of their day.
+ *     Test that the instances of a departure pattern are counted and followed.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that deleted departures are taken out of the statistics and that days without
+ *     departures give empty statistics.
+ *   </li>
+ * </ul>
+ */
+class PunctualityTrackerTest {
+
+  /**
+   * Positive test that departures already in the register are counted, and that a new delay
+   * replaces the old one in the statistics.
+   */
+  @Test
+  void testDelaysAreFollowed() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1"));
+    PunctualityTracker tracker = register.enablePunctuality();
+    assertSame(tracker, register.enablePunctuality());
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "R2", "L1"));
+
+    PunctualityStatistics today = tracker.getDay(0);
+    assertEquals(2, today.getDestination("Oslo").getCount());
+    assertEquals(1.0, today.getDestination("Oslo").getOnTimeShare(), 0.001);
+
+    register.updateDelay("R2", LocalTime.of(0, 10));
+    register.updateDelay("R2", LocalTime.of(0, 12));
+    assertEquals(2, today.getLine("L1").getCount());
+    assertEquals(6.0, today.getLine("L1").getMeanDelay(), 0.001);
+    assertEquals(0.5, today.getLine("L1").getOnTimeShare(), 0.001);
+  }
+
+  /**
+   * Positive test that a departure that leaves keeps its delay in the statistics, and that
+   * later changes to it are not counted.
+   */
+  @Test
+  void testLeftDepartureIsKept() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    PunctualityTracker tracker = register.enablePunctuality();
+    TrainDeparture departure = new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1");
+    register.addDeparture(departure);
+    register.updateDelay("R1", LocalTime.of(0, 5));
+
+    assertEquals(1, register.expireDepartures(LocalTime.of(9, 0)));
+    tracker.departureChanged(departure);
+    assertEquals(1, tracker.getDay(0).getOverall().getCount());
+    assertEquals(5.0, tracker.getDay(0).getOverall().getMeanDelay(), 0.001);
+
+    tracker.forgetDaysBefore(1);
+    assertEquals(0, tracker.getDay(0).getOverall().getCount());
+  }
+
+  /**
+   * Positive test that the instances of a departure pattern are counted, that a delay set on an
+   * instance replaces its count, and that a deleted instance is taken out again.
+   */
+  @Test
+  void testPatternInstancesAreCounted() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    PunctualityTracker tracker = register.enablePunctuality();
+    register.addPattern(new DeparturePattern("J8", "Trondheim", "J8", LocalTime.of(6, 0),
+        LocalTime.of(7, 0), 15));
+    assertEquals(5, tracker.getDay(0).getLine("J8").getCount());
+
+    register.updateDelay("J8-0630", LocalTime.of(0, 10));
+    assertEquals(5, tracker.getDay(0).getLine("J8").getCount());
+    assertEquals(2.0, tracker.getDay(0).getLine("J8").getMeanDelay(), 0.001);
+
+    register.deleteDeparture(register.getDepartureFromId("J8-0645"));
+    assertEquals(4, tracker.getDay(0).getLine("J8").getCount());
+  }
+
+  /**
+   * Negative test that a deleted departure is taken out of the statistics, and that a day
+   * without departures gives empty statistics.
+   */
+  @Test
+  void testDeletedDepartureIsRemoved() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    PunctualityTracker tracker = register.enablePunctuality();
+    TrainDeparture departure = new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1");
+    register.addDeparture(departure);
+    register.updateDelay("R1", LocalTime.of(0, 20));
+
+    assertTrue(register.deleteDeparture(departure));
+    assertEquals(0, tracker.getDay(0).getOverall().getCount());
+    assertEquals(0, tracker.getDay(0).getDestination("Oslo").getMeanDelay());
+    assertNull(tracker.getDay(3).getDestination("Oslo"));
+  }
+}
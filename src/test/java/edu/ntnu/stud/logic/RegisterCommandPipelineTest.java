@@ -0,0 +1,145 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the register command pipeline class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that commands from several producers are all applied, in order for each producer.
+ *     Test that every kind of command completes its future with the result of the register.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that commands submitted after closing are not applied.
+ *     Test that every command submitted while the pipeline closes is either applied or rejected.
+ *   </li>
+ * </ul>
+ */
+class RegisterCommandPipelineTest {
+
+  /**
+   * Positive test that adds and delays from several threads through a small ring all reach the
+   * register, and that each thread's delay is applied after its add.
+   */
+  @Test
+  void testManyProducers() throws InterruptedException {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    RegisterCommandPipeline pipeline = new RegisterCommandPipeline(register, 8,
+        RegisterCommandPipeline.WaitStrategy.YIELDING);
+    assertEquals(8, pipeline.getCapacity());
+
+    List<Thread> producers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String prefix = "T" + t + "-";
+      producers.add(new Thread(() -> {
+        for (int i = 0; i < 250; i++) {
+          pipeline.submitAdd(new TrainDeparture(LocalTime.of(i % 24, i % 60), "Oslo",
+              prefix + i, "L1"));
+          pipeline.submitDelay(prefix + i, LocalTime.of(0, 1 + i % 30));
+        }
+      }));
+    }
+    for (Thread producer : producers) {
+      producer.start();
+    }
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    pipeline.close();
+
+    assertEquals(2000, pipeline.getAppliedCount());
+    assertTrue(pipeline.getBatchCount() <= pipeline.getAppliedCount());
+    assertEquals(1000, register.getSnapshot().size());
+    assertEquals(8, register.getSnapshot().getDepartureFromId("T3-7").getDelayMinutes());
+  }
+
+  /**
+   * Positive test that the futures of the commands give the results of the register.
+   */
+  @Test
+  void testCommandResults() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    try (RegisterCommandPipeline pipeline = new RegisterCommandPipeline(register)) {
+      TrainDeparture departure = new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1");
+      assertTrue(pipeline.submitAdd(departure).join());
+      assertFalse(pipeline.submitAdd(departure, 1).join());
+      assertTrue(pipeline.submitTrack("R1", 4).join());
+      assertFalse(pipeline.submitDelay("X1", LocalTime.of(0, 3)).join());
+      assertTrue(pipeline.submitAdd(new TrainDeparture(LocalTime.of(9, 0), "Moss", "R2", "L1"),
+          1).join());
+      assertEquals(1, pipeline.submitClockTick(8 * 60 + 1).join());
+      assertTrue(pipeline.submitDelete("R2").join());
+      assertEquals(4, departure.getTrack());
+      assertEquals(0, register.getSnapshot().size());
+    }
+  }
+
+  /**
+   * Negative test that a closed pipeline does not apply new commands.
+   */
+  @Test
+  void testSubmitAfterClose() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    RegisterCommandPipeline pipeline = new RegisterCommandPipeline(register, 0, null);
+    pipeline.close();
+
+    CompletableFuture<Boolean> added = pipeline.submitAdd(
+        new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1"));
+    assertTrue(added.isDone());
+    assertFalse(added.join());
+    assertEquals(0, pipeline.submitClockTick(10).join());
+    assertEquals(0, register.getSnapshot().size());
+    assertEquals(2, pipeline.getCapacity());
+  }
+
+  /**
+   * Negative test that closing while producers wait on a full ring leaves no future unfinished,
+   * and that only the commands that were applied report so.
+   */
+  @Test
+  void testCloseWhileSubmitting() throws Exception {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    RegisterCommandPipeline pipeline = new RegisterCommandPipeline(register, 2,
+        RegisterCommandPipeline.WaitStrategy.YIELDING);
+    List<CompletableFuture<Boolean>> futures = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> producers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      String prefix = "T" + t + "-";
+      producers.add(new Thread(() -> {
+        for (int i = 0; i < 2_000; i++) {
+          futures.add(pipeline.submitAdd(new TrainDeparture(LocalTime.of(8, 0), "Oslo",
+              prefix + i, "L1")));
+        }
+      }));
+    }
+    for (Thread producer : producers) {
+      producer.start();
+    }
+    Thread.sleep(5);
+    pipeline.close();
+    for (Thread producer : producers) {
+      producer.join(5_000);
+      assertFalse(producer.isAlive());
+    }
+
+    int addedCount = 0;
+    for (CompletableFuture<Boolean> future : futures) {
+      addedCount += future.get(5, TimeUnit.SECONDS) ? 1 : 0;
+    }
+    assertEquals(8_000, futures.size());
+    assertEquals(pipeline.getAppliedCount(), addedCount);
+    assertEquals(addedCount, register.getDepartureCount());
+  }
+}
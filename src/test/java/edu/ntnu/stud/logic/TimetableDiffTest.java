@@ -0,0 +1,103 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the timetable diff class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that inserts, changes and removes are found, and that changes keep the live delay
+ *     and track.
+ *     Test that a large timetable compared in parallel gives the same diff.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that an identical timetable gives an empty diff.
+ *   </li>
+ * </ul>
+ */
+class TimetableDiffTest {
+
+  /**
+   * Positive test that each kind of difference is found, and that a changed departure keeps
+   * the delay and track of the live departure.
+   */
+  @Test
+  void testDifferences() {
+    Map<String, TrainDeparture> live = new HashMap<>();
+    live.put("R1", new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1"));
+    live.put("R2", new TrainDeparture(LocalTime.of(9, 0), "Oslo", "R2", "L1", 4,
+        LocalTime.of(0, 12)));
+    live.put("R3", new TrainDeparture(LocalTime.of(10, 0), "Moss", "R3", "L2"));
+    List<TrainDeparture> timetable = List.of(
+        new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1", 7, LocalTime.of(0, 0)),
+        new TrainDeparture(LocalTime.of(9, 5), "Oslo", "R2", "L1"),
+        new TrainDeparture(LocalTime.of(11, 0), "Hamar", "R4", "L3"));
+
+    TimetableDiff diff = TimetableDiff.compute(timetable, live, 0, new ParallelScanExecutor(1));
+
+    assertEquals(1, diff.getUnchangedCount());
+    assertEquals("R4", diff.getInserts().get(0).getTrainId());
+    assertEquals("R3", diff.getRemoves().get(0).getTrainId());
+    TrainDeparture changed = diff.getChanges().get(0);
+    assertEquals(LocalTime.of(9, 5), changed.getDeparture());
+    assertEquals(4, changed.getTrack());
+    assertEquals(12, changed.getDelayMinutes());
+    assertEquals(1, diff.getChanges().size());
+  }
+
+  /**
+   * Positive test that a large timetable compared in parallel finds the same changes as when it
+   * is compared on one thread.
+   */
+  @Test
+  void testParallelDiff() {
+    Map<String, TrainDeparture> live = new HashMap<>();
+    List<TrainDeparture> timetable = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      String trainId = "R" + i;
+      live.put(trainId, new TrainDeparture(LocalTime.of(i / 60 % 24, i % 60), "Oslo", trainId,
+          "L1"));
+      if (i % 10 != 0) {
+        int minute = i % 100 == 1 ? (i + 1) % 60 : i % 60;
+        timetable.add(new TrainDeparture(LocalTime.of(i / 60 % 24, minute), "Oslo", trainId,
+            "L1"));
+      }
+    }
+    ParallelScanExecutor parallel = new ParallelScanExecutor(4);
+    parallel.setThreshold(0);
+
+    TimetableDiff diff = TimetableDiff.compute(timetable, live, 0, parallel);
+
+    assertEquals(5_000, diff.getRemoves().size());
+    assertEquals(500, diff.getChanges().size());
+    assertEquals(0, diff.getInserts().size());
+    assertEquals(44_500, diff.getUnchangedCount());
+  }
+
+  /**
+   * Negative test that comparing a timetable with itself gives an empty diff.
+   */
+  @Test
+  void testIdenticalTimetable() {
+    Map<String, TrainDeparture> live = new HashMap<>();
+    live.put("R1", new TrainDeparture(LocalTime.of(8, 0), "Oslo", "R1", "L1"));
+
+    TimetableDiff diff = TimetableDiff.compute(new ArrayList<>(live.values()), live, 2,
+        new ParallelScanExecutor(1));
+
+    assertTrue(diff.isEmpty());
+    assertEquals(1, diff.getUnchangedCount());
+    assertEquals(2, diff.getServiceDay());
+  }
+}
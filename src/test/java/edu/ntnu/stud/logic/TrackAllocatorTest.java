@@ -0,0 +1,179 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the track allocator class through the register.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that departures at the same time get different tracks, and that tracks set by hand
+ *     are kept.
+ *     Test that a track is reused once the turnaround gap has passed, and that a new gap applies
+ *     to the departures already placed.
+ *     Test that a delay only moves the departures that now clash.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that departures are left without a track when all tracks are taken, and get one
+ *     when a track is freed or they are delayed.
+ *   </li>
+ * </ul>
+ */
+class TrackAllocatorTest {
+
+  TrainDepartureRegister register;
+
+  /**
+   * Creates an empty register.
+   */
+  @BeforeEach
+  void setupTestEnvironment() {
+    register = new TrainDepartureRegister();
+  }
+
+  /**
+   * Positive test that departures at the same time get different tracks and that a track set by
+   * hand is kept.
+   */
+  @Test
+  void testSimultaneousDeparturesGetDifferentTracks() {
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "A1", "L1", 0,
+        LocalTime.of(0, 0)));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "A2", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 1), "Bergen", "A3", "L2"));
+
+    assertEquals(2, register.allocateTracks());
+    Set<Integer> tracks = new HashSet<>();
+    for (String trainId : new String[] {"A1", "A2", "A3"}) {
+      tracks.add(register.getDepartureFromId(trainId).getTrack());
+    }
+    assertEquals(3, tracks.size());
+    assertEquals(0, register.getDepartureFromId("A1").getTrack());
+
+    // Departures added afterwards are allocated right away.
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Moss", "A4", "L3"));
+    assertTrue(register.getDepartureFromId("A4").getTrack() >= 0);
+    assertFalse(tracks.contains(register.getDepartureFromId("A4").getTrack()));
+  }
+
+  /**
+   * Positive test that a track is reused once the dwell time and turnaround gap have passed, and
+   * that changing the gap places the departures again.
+   */
+  @Test
+  void testTrackIsReusedAfterTurnaround() {
+    register.setTrackDwell(5);
+    register.setTrackTurnaround(3);
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "B1", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 8), "Oslo", "B2", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 7), "Oslo", "B3", "L1"));
+
+    assertEquals(3, register.allocateTracks());
+    assertEquals(register.getDepartureFromId("B1").getTrack(),
+        register.getDepartureFromId("B2").getTrack());
+    assertNotEquals(register.getDepartureFromId("B1").getTrack(),
+        register.getDepartureFromId("B3").getTrack());
+
+    // A longer gap applies to the departures already placed, so the track can not be shared.
+    int firstTrack = register.getDepartureFromId("B1").getTrack();
+    register.setTrackTurnaround(6);
+    assertEquals(firstTrack, register.getDepartureFromId("B1").getTrack());
+    assertNotEquals(firstTrack, register.getDepartureFromId("B2").getTrack());
+    assertTrue(register.getDepartureFromId("B2").getTrack() >= 0);
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 10), "Oslo", "B4", "L1"));
+    assertNotEquals(firstTrack, register.getDepartureFromId("B4").getTrack());
+  }
+
+  /**
+   * Positive test that a delay moves the delayed departure only, and that a track set by hand
+   * moves the allocated departure it clashes with.
+   */
+  @Test
+  void testDelayMovesOnlyClashingDepartures() {
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Oslo", "C1", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 8), "Oslo", "C2", "L1"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(12, 0), "Oslo", "C3", "L1"));
+    register.allocateTracks();
+    int sharedTrack = register.getDepartureFromId("C1").getTrack();
+    assertEquals(sharedTrack, register.getDepartureFromId("C2").getTrack());
+    int laterTrack = register.getDepartureFromId("C3").getTrack();
+
+    register.updateDelay("C1", LocalTime.of(0, 2));
+    assertNotEquals(sharedTrack, register.getDepartureFromId("C1").getTrack());
+    assertEquals(sharedTrack, register.getDepartureFromId("C2").getTrack());
+    assertEquals(laterTrack, register.getDepartureFromId("C3").getTrack());
+
+    register.updateTrack("C3", 7);
+    register.addDeparture(new TrainDeparture(LocalTime.of(12, 1), "Oslo", "C4", "L1"));
+    assertNotEquals(7, register.getDepartureFromId("C4").getTrack());
+    int allocatedTrack = register.getDepartureFromId("C4").getTrack();
+    register.updateTrack("C3", allocatedTrack);
+    assertEquals(allocatedTrack, register.getDepartureFromId("C3").getTrack());
+    assertNotEquals(allocatedTrack, register.getDepartureFromId("C4").getTrack());
+    assertTrue(register.getDepartureFromId("C4").getTrack() >= 0);
+  }
+
+  /**
+   * Negative test that departures that fit on no track are left without one.
+   */
+  @Test
+  void testDeparturesWithoutFreeTrack() {
+    for (int i = 0; i < 14; i++) {
+      register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "D" + i, "L1"));
+    }
+
+    assertEquals(11, register.allocateTracks());
+    int withoutTrack = 0;
+    for (TrainDeparture departure : register.getAllDepartures()) {
+      if (departure.getTrack() == -1) {
+        withoutTrack += 1;
+      }
+    }
+    assertEquals(3, withoutTrack);
+
+    // Removing a departure frees its track for one of the departures that got none.
+    int freedTrack = register.getDepartureFromId("D0").getTrack();
+    register.deleteDeparture(register.getDepartureFromId("D0"));
+    int onFreedTrack = 0;
+    withoutTrack = 0;
+    for (TrainDeparture departure : register.getAllDepartures()) {
+      if (departure.getTrack() == -1) {
+        withoutTrack += 1;
+      } else if (departure.getTrack() == freedTrack) {
+        onFreedTrack += 1;
+      }
+    }
+    assertEquals(2, withoutTrack);
+    assertEquals(1, onFreedTrack);
+
+    // A new departure waits behind the ones that got no track before it.
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "E1", "L1"));
+    assertEquals(-1, register.getDepartureFromId("E1").getTrack());
+  }
+
+  /**
+   * Negative test that a departure left without a track gets one when it is delayed to a time
+   * with a free track.
+   */
+  @Test
+  void testDelayedDepartureWithoutTrackIsPlaced() {
+    for (int i = 0; i < 11; i++) {
+      register.addDeparture(new TrainDeparture(LocalTime.of(10, 0), "Oslo", "F" + i, "L1"));
+    }
+    register.addDeparture(new TrainDeparture(LocalTime.of(10, 0), "Oslo", "TL", "L1"));
+    register.allocateTracks();
+    assertEquals(-1, register.getDepartureFromId("TL").getTrack());
+
+    assertTrue(register.updateDelay("TL", LocalTime.of(1, 0)));
+    assertTrue(register.getDepartureFromId("TL").getTrack() >= 0);
+  }
+}
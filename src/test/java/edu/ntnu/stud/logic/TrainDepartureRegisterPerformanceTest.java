@@ -0,0 +1,233 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the allocation and time budgets of the hot paths of the train departure register.
+ * These tests are slow and depend on the machine, so they only run with the performance
+ * profile: {@code mvn test -P performance}.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that lookups, delay updates and listing stay within their allocation budgets.
+ *     Test that lookups and idle expiry do not get slower when the register doubles in size.
+ *     Test that listing and expiry grow at most linearly with the size of the register.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that lookups of unknown trainIds do not allocate either.
+ *   </li>
+ * </ul>
+ */
+@Tag("performance")
+class TrainDepartureRegisterPerformanceTest {
+  private static final int SMALL_SIZE = 20_000;
+  private static final int OPERATIONS = 100_000;
+  private static final int REPEATS = 7;
+
+  /**
+   * Positive test that lookups allocate nothing, that a delay update only allocates its expiry
+   * entry and flight recorder event, and that listing only allocates a view of the snapshot.
+   */
+  @Test
+  void testAllocationBudgets() {
+    TrainDepartureRegister register = registerOfSize(SMALL_SIZE);
+    String[] trainIds = trainIds(SMALL_SIZE);
+    LocalTime[] delays = new LocalTime[60];
+    for (int i = 0; i < delays.length; i++) {
+      delays[i] = LocalTime.of(0, i);
+    }
+
+    long lookupBytes = allocatedBytes(() -> {
+      for (int i = 0; i < OPERATIONS; i++) {
+        register.getDepartureFromId(trainIds[i % trainIds.length]);
+      }
+    });
+    long delayBytes = allocatedBytes(() -> {
+      for (int i = 0; i < OPERATIONS; i++) {
+        register.updateDelay(trainIds[i % trainIds.length], delays[i % delays.length]);
+      }
+    });
+    long listingBytes = allocatedBytes(() -> {
+      for (int i = 0; i < 1000; i++) {
+        register.getAllDepartures();
+      }
+    });
+
+    if (lookupBytes >= 0) {
+      assertTrue(lookupBytes < 10_000, "Lookups allocated " + lookupBytes + " bytes");
+      assertTrue(delayBytes / OPERATIONS < 128,
+          "Delay updates allocated " + delayBytes / OPERATIONS + " bytes each");
+      assertTrue(listingBytes / 1000 < 256,
+          "Listing allocated " + listingBytes / 1000 + " bytes each");
+    }
+  }
+
+  /**
+   * Positive test that a lookup in a register twice the size takes less than twice as long.
+   * It gets somewhat slower, as less of the register fits in the processor caches.
+   */
+  @Test
+  void testLookupScaling() {
+    long small = lookupNanos(SMALL_SIZE);
+    long large = lookupNanos(SMALL_SIZE * 2);
+
+    assertTrue(large < small * 2, "Lookups went from " + small + " to " + large + " ns");
+  }
+
+  /**
+   * Positive test that listing grows at most linearly with the size of the register.
+   */
+  @Test
+  void testListingScaling() {
+    long small = listingNanos(SMALL_SIZE);
+    long large = listingNanos(SMALL_SIZE * 2);
+
+    assertTrue(large < small * 3, "Listing went from " + small + " to " + large + " ns");
+  }
+
+  /**
+   * Positive test that clock ticks without anything to expire cost the same in a register twice
+   * the size, and that expiring departures grows at most linearly with the size.
+   */
+  @Test
+  void testExpiryScaling() {
+    long smallIdle = idleTickNanos(SMALL_SIZE);
+    long largeIdle = idleTickNanos(SMALL_SIZE * 2);
+    long smallExpiry = expiryNanos(SMALL_SIZE);
+    long largeExpiry = expiryNanos(SMALL_SIZE * 2);
+
+    assertTrue(largeIdle < smallIdle * 2 + 1_000,
+        "Idle ticks went from " + smallIdle + " to " + largeIdle + " ns");
+    assertTrue(largeExpiry < smallExpiry * 3,
+        "Expiry went from " + smallExpiry + " to " + largeExpiry + " ns");
+  }
+
+  /**
+   * Negative test that looking up trainIds that are not in the register does not allocate.
+   */
+  @Test
+  void testUnknownLookupDoesNotAllocate() {
+    TrainDepartureRegister register = registerOfSize(SMALL_SIZE);
+    String[] unknown = new String[100];
+    for (int i = 0; i < unknown.length; i++) {
+      unknown[i] = "X" + i;
+    }
+
+    long bytes = allocatedBytes(() -> {
+      for (int i = 0; i < OPERATIONS; i++) {
+        assertNull(register.getDepartureFromId(unknown[i % unknown.length]));
+      }
+    });
+
+    if (bytes >= 0) {
+      assertTrue(bytes < 10_000, "Unknown lookups allocated " + bytes + " bytes");
+    }
+  }
+
+  private static long lookupNanos(int size) {
+    TrainDepartureRegister register = registerOfSize(size);
+    String[] trainIds = trainIds(size);
+    return bestNanos(() -> {
+      for (int i = 0; i < OPERATIONS; i++) {
+        register.getDepartureFromId(trainIds[(int) ((i * 7919L) % size)]);
+      }
+    }) / OPERATIONS;
+  }
+
+  private static long listingNanos(int size) {
+    TrainDepartureRegister register = registerOfSize(size);
+    return bestNanos(() -> {
+      int count = 0;
+      for (TrainDeparture departure : register.getAllDepartures()) {
+        count += departure.getTrainId() != null ? 1 : 0;
+      }
+      assertEquals(size, count);
+    });
+  }
+
+  private static long idleTickNanos(int size) {
+    TrainDepartureRegister register = registerOfSize(size);
+    register.expireDepartures(0);
+    return bestNanos(() -> {
+      for (int i = 0; i < 1000; i++) {
+        register.expireDepartures(0);
+      }
+    }) / 1000;
+  }
+
+  private static long expiryNanos(int size) {
+    long best = Long.MAX_VALUE;
+    for (int repeat = 0; repeat < REPEATS; repeat++) {
+      TrainDepartureRegister register = registerOfSize(size);
+      long start = System.nanoTime();
+      for (int minute = 1; minute <= 60; minute++) {
+        register.expireDepartures(minute);
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  private static TrainDepartureRegister registerOfSize(int size) {
+    List<TrainDeparture> departures = new ArrayList<>(size);
+    String[] trainIds = trainIds(size);
+    for (int i = 0; i < size; i++) {
+      departures.add(new TrainDeparture(LocalTime.of(i / 60 % 24, i % 60), "Oslo" + i % 50,
+          trainIds[i], "L" + i % 20));
+    }
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    assertEquals(size, register.addDepartures(departures));
+    return register;
+  }
+
+  private static String[] trainIds(int size) {
+    String[] trainIds = new String[size];
+    for (int i = 0; i < size; i++) {
+      trainIds[i] = "R" + i;
+    }
+    return trainIds;
+  }
+
+  /**
+   * Runs the task a few times and gets the shortest time, which is the least disturbed by
+   * garbage collection and other work on the machine.
+   */
+  private static long bestNanos(Runnable task) {
+    task.run();
+    long best = Long.MAX_VALUE;
+    for (int repeat = 0; repeat < REPEATS; repeat++) {
+      long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  /**
+   * Gets the bytes the current thread allocates while running the task, after a warm-up run.
+   * Returns -1 if the JVM cannot measure allocations.
+   */
+  private static long allocatedBytes(Runnable task) {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+
+    task.run();
+    long before = threadBean.getThreadAllocatedBytes(threadId);
+    task.run();
+    return threadBean.getThreadAllocatedBytes(threadId) - before;
+  }
+}
@@ -2,12 +2,21 @@ package edu.ntnu.stud.logic;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.DeparturePattern;
+import edu.ntnu.stud.entity.DepartureState;
 import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.monitoring.RegisterMetrics;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -39,6 +48,72 @@ import org.junit.jupiter.api.Test;
  *     Negative test:
  *     Test that getDeparturesByDestinations doesnt crash the program if destination doesnt exist.
  *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that updating the clock expires departures that have left.
+ *     Test that a delay set through the register postpones the expiry.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that a deleted departure is not expired again.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that a departure delayed past midnight is kept until it leaves the next day.
+ *     Test that old service days are dropped when the clock moves on.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test adding a departure to a service day the register does not hold.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that enabled metrics count the operations of the register.
+ *     Test that bulk loading adds all new departures and emits Flight Recorder events.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that departures between two times are found, also past midnight.
+ *     Test that the next departure to a destination is found.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that range queries with missing input return nothing.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that saved departures are loaded into a new register with their service days.
+ *     Test that a departure with a destination too long for the store field is saved.
+ *     Test that loaded departures without delay or track are kept in the loaded store until
+ *     they are changed.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that a versioned delay update from an old version does not change the departure.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that delays, tracks, adds and deletes made by hand can be undone.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that pattern instances show up in lookups, queries and the snapshot.
+ *     Test that a changed instance is stored as its own departure.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that patterns whose trainIds are taken are not added, and that deleted instances
+ *     are gone.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that reloading a timetable keeps the delays and tracks of the departures that stay.
+ *     Test that pattern instances are changed and removed by a reloaded timetable.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that a timetable for a day the register does not hold is not reloaded.
+ *   </li>
  * </ul>
  */
 class TrainDepartureRegisterTest {
@@ -216,4 +291,559 @@ class TrainDepartureRegisterTest {
     assertEquals(Collections.emptyList(),foundRegister);
   }
 
-}
\ No newline at end of file
+  /**
+   * Positive test:
+   * Test that updating the clock expires every departure that has left including delay.
+   */
+  @Test
+  void testClockUpdateExpiresOldDepartures() {
+    Clock clock = new Clock();
+    clock.addListener(testRegister);
+
+    clock.setCurrentTime(LocalTime.of(4, 0));
+
+    // N002 left 01:45, N003 leaves 04:37 with delay and N004 leaves 09:00 with delay.
+    assertNull(testRegister.getDepartureFromId("N002"));
+    assertNotNull(testRegister.getDepartureFromId("N003"));
+    assertEquals(2, testRegister.getDepartureCount());
+
+    clock.setCurrentTime(LocalTime.of(8, 59));
+
+    assertNull(testRegister.getDepartureFromId("N003"));
+    assertNotNull(testRegister.getDepartureFromId("N004"));
+  }
+
+  /**
+   * Positive test:
+   * Test that changing the delay through the register moves the expiry of the departure.
+   */
+  @Test
+  void testUpdateDelayPostponesExpiry() {
+    assertTrue(testRegister.updateDelay("N002", LocalTime.of(3, 0)));
+
+    assertEquals(0, testRegister.expireDepartures(LocalTime.of(4, 0)));
+    assertNotNull(testRegister.getDepartureFromId("N002"));
+
+    assertEquals(2, testRegister.expireDepartures(LocalTime.of(5, 0)));
+    assertNull(testRegister.getDepartureFromId("N002"));
+    assertFalse(testRegister.updateDelay("N002", LocalTime.of(0, 5)));
+  }
+
+  /**
+   * Negative test:
+   * Test that a departure that is deleted manually is not counted when the clock passes it.
+   */
+  @Test
+  void testDeletedDepartureIsNotExpired() {
+    testRegister.deleteDeparture(testRegister.getDepartureFromId("N002"));
+
+    assertEquals(0, testRegister.expireDepartures(LocalTime.of(2, 0)));
+    assertEquals(2, testRegister.getDepartureCount());
+  }
+
+  /**
+   * Positive test:
+   * Test that a late departure delayed past midnight is not expired before it has left.
+   */
+  @Test
+  void testDelayPastMidnightIsNotExpiredEarly() {
+    Clock clock = new Clock();
+    clock.addListener(testRegister);
+    testRegister.addDeparture(new TrainDeparture(
+        LocalTime.of(23, 50),
+        "Oslo",
+        "N010",
+        "R10",
+        1,
+        LocalTime.of(0, 30)
+    ));
+
+    clock.setCurrentTime(LocalTime.of(23, 55));
+    assertNotNull(testRegister.getDepartureFromId("N010"));
+    assertEquals(1, testRegister.getDepartureCount());
+
+    clock.advanceDay(LocalTime.of(0, 10));
+    assertNotNull(testRegister.getDepartureFromId("N010"));
+
+    clock.setCurrentTime(LocalTime.of(0, 30));
+    assertNull(testRegister.getDepartureFromId("N010"));
+  }
+
+  /**
+   * Positive test:
+   * Test that departures of the next day are sorted after the current day, and that the
+   * partitions older than the previous day are dropped.
+   */
+  @Test
+  void testServiceDayPartitions() {
+    TrainDeparture tomorrow = new TrainDeparture(LocalTime.of(0, 5), "Oslo", "N011", "R10");
+    assertTrue(testRegister.addDeparture(tomorrow, 1));
+
+    List<TrainDeparture> departures = testRegister.getAllDepartures();
+    assertEquals(tomorrow, departures.get(departures.size() - 1));
+
+    testRegister.startServiceDay(2);
+    assertEquals(1, testRegister.getDepartureCount());
+    assertNull(testRegister.getDepartureFromId("N002"));
+    assertEquals(tomorrow, testRegister.getDepartureFromId("N011"));
+  }
+
+  /**
+   * Negative test:
+   * Test that departures can not be added to days outside the retained days.
+   */
+  @Test
+  void testAddDepartureToInvalidServiceDay() {
+    TrainDeparture departure = new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N012", "R10");
+
+    assertFalse(testRegister.addDeparture(departure, 5));
+    assertFalse(testRegister.addDeparture(departure, -1));
+    assertEquals(3, testRegister.getDepartureCount());
+  }
+
+  /**
+   * Positive test:
+   * Test that operations are only counted while metrics are enabled.
+   */
+  @Test
+  void testMetricsCountOperations() {
+    testRegister.getDepartureFromId("N002");
+    RegisterMetrics metrics = testRegister.enableMetrics();
+
+    testRegister.getDepartureFromId("N002");
+    testRegister.getDepartureFromId("N404");
+    testRegister.getAllDepartures();
+
+    assertEquals(2, metrics.getLatency(RegisterMetrics.Operation.LOOKUP).getCount());
+    assertEquals(1, metrics.getLatency(RegisterMetrics.Operation.LISTING).getCount());
+    assertEquals(3, metrics.getDepartureCount());
+    assertEquals(3, metrics.getIndexSizes().get("expiryWheel"));
+
+    testRegister.disableMetrics();
+    assertNull(testRegister.getMetrics());
+  }
+
+  /**
+   * Positive test:
+   * Test that a bulk load skips existing ids and that the load and its mutations are recorded
+   * as Flight Recorder events.
+   */
+  @Test
+  void testBulkLoadEmitsFlightRecorderEvents() throws Exception {
+    List<TrainDeparture> departures = List.of(
+        new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N020", "R10"),
+        new TrainDeparture(LocalTime.of(9, 30), "Oslo", "N021", "R10"),
+        new TrainDeparture(LocalTime.of(10, 0), "Oslo", "N002", "R10")
+    );
+    Path recordingFile = Files.createTempFile("register", ".jfr");
+
+    try (Recording recording = new Recording()) {
+      recording.enable("edu.ntnu.stud.BulkLoad");
+      recording.enable("edu.ntnu.stud.DepartureMutation");
+      recording.start();
+
+      assertEquals(2, testRegister.addDepartures(departures));
+      assertEquals(5, testRegister.getSnapshot().size());
+      assertEquals("N021", testRegister.getAllDepartures().get(4).getTrainId());
+
+      recording.stop();
+      recording.dump(recordingFile);
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+    Files.deleteIfExists(recordingFile);
+
+    RecordedEvent bulkLoad = events.stream()
+        .filter(e -> e.getEventType().getName().equals("edu.ntnu.stud.BulkLoad"))
+        .findFirst().orElseThrow();
+    assertEquals(3, bulkLoad.getInt("offeredCount"));
+    assertEquals(2, bulkLoad.getInt("addedCount"));
+    assertEquals(5, bulkLoad.getInt("registerSize"));
+    assertEquals(2, events.stream()
+        .filter(e -> e.getEventType().getName().equals("edu.ntnu.stud.DepartureMutation"))
+        .count());
+  }
+
+  /**
+   * Positive test:
+   * Test that a time window returns the departures in order, and that a window that ends
+   * before it starts continues on the next service day.
+   */
+  @Test
+  void testGetDeparturesBetween() {
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(3, 23), "Oslo", "N005", "L1"));
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(23, 30), "Oslo", "N006", "L1"));
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(0, 30), "Oslo", "N007", "L1"), 1);
+
+    List<TrainDeparture> found = testRegister.getDeparturesBetween(LocalTime.of(1, 45),
+        LocalTime.of(3, 23));
+    assertEquals(3, found.size());
+    assertEquals("N002", found.get(0).getTrainId());
+    assertEquals("N003", found.get(1).getTrainId());
+    assertEquals("N005", found.get(2).getTrainId());
+
+    found = testRegister.getDeparturesBetween(LocalTime.of(23, 0), LocalTime.of(1, 0));
+    assertEquals(2, found.size());
+    assertEquals("N006", found.get(0).getTrainId());
+    assertEquals("N007", found.get(1).getTrainId());
+  }
+
+  /**
+   * Positive test:
+   * Test that the next departure to a destination is the first one at or after the time, and
+   * that the next service day is used when there are no more departures today.
+   */
+  @Test
+  void testNextDepartureTo() {
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(1, 0), "Bodø", "N008", "J9"), 1);
+
+    assertEquals("N002", testRegister.nextDepartureTo("Trondheim", LocalTime.of(1, 45))
+        .getTrainId());
+    assertEquals("N004", testRegister.nextDepartureTo("Trondheim", LocalTime.of(1, 46))
+        .getTrainId());
+    assertEquals("N008", testRegister.nextDepartureTo("Bodø", LocalTime.of(4, 0))
+        .getTrainId());
+  }
+
+  /**
+   * Negative test:
+   * Test that range queries with null input or unknown destinations return nothing.
+   */
+  @Test
+  void testRangeQueriesWithInvalidInput() {
+    assertTrue(testRegister.getDeparturesBetween(null, LocalTime.of(3, 0)).isEmpty());
+    assertNull(testRegister.nextDepartureTo("Narvik", LocalTime.of(0, 0)));
+    assertNull(testRegister.nextDepartureTo(null, LocalTime.of(0, 0)));
+    assertNull(testRegister.nextDepartureTo("Trondheim", LocalTime.of(9, 0)));
+  }
+
+  /**
+   * Positive test that departures saved to a file are loaded back with the same values and
+   * service days relative to the current day.
+   */
+  @Test
+  void testSaveAndLoadDepartures() throws Exception {
+    testRegister.updateDelay("N002", LocalTime.of(0, 20));
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(6, 10), "Oslo", "F1", "F3"), 1);
+    Path file = Files.createTempFile("register", ".dep");
+
+    assertTrue(testRegister.saveDepartures(file));
+    TrainDepartureRegister loaded = new TrainDepartureRegister();
+    loaded.startServiceDay(4);
+    assertEquals(testRegister.getDepartureCount(), loaded.loadDepartures(file));
+    assertEquals(0, loaded.loadDepartures(file));
+    Files.deleteIfExists(file);
+
+    assertEquals(LocalTime.of(0, 20), loaded.getDepartureFromId("N002").getDelay());
+    assertEquals(8, loaded.getDepartureFromId("N003").getTrack());
+    assertEquals(testRegister.getAllDepartures().size(), loaded.getAllDepartures().size());
+    // F1 has no delay or track, so it is read from the loaded store and not stored.
+    assertEquals(3, loaded.getDepartureCount());
+    assertEquals("F1", loaded.getDeparturesByDestination("Oslo").iterator().next().getTrainId());
+    loaded.expireDepartures(5L * 1440 + 6 * 60 + 11);
+    assertNull(loaded.getDepartureFromId("F1"));
+  }
+
+  /**
+   * Positive test that loaded departures without delay or track are read from the loaded store,
+   * show up in lookups, queries and the snapshot, and are stored on their own once changed.
+   */
+  @Test
+  void testLoadedDeparturesStayOffHeap() throws Exception {
+    TrainDepartureRegister saved = new TrainDepartureRegister();
+    for (int i = 0; i < 200; i++) {
+      saved.addDeparture(new TrainDeparture(LocalTime.of(6 + i / 60, i % 60),
+          i % 2 == 0 ? "Bergen" : "Stavanger", "L" + i, "R" + i % 3));
+    }
+    Path file = Files.createTempFile("register", ".dep");
+    assertTrue(saved.saveDepartures(file));
+    List<TrainDeparture> added = new ArrayList<>();
+    testRegister.addListener(new RegisterListener() {
+      @Override
+      public void departureAdded(TrainDeparture departure, int serviceDay) {
+        added.add(departure);
+      }
+
+      @Override
+      public void departureRemoved(TrainDeparture departure) {
+      }
+
+      @Override
+      public void departureChanged(TrainDeparture departure) {
+      }
+
+      @Override
+      public void serviceDayStarted(int day) {
+      }
+    });
+
+    assertEquals(200, testRegister.loadDepartures(file));
+    Files.deleteIfExists(file);
+    assertEquals(200, added.size());
+    assertEquals(3, testRegister.getDepartureCount());
+    assertEquals(203, testRegister.getSnapshot().size());
+    assertEquals(100, testRegister.getDeparturesByDestination("Bergen").size());
+    assertEquals("L3", testRegister.nextDepartureTo("Stavanger", LocalTime.of(6, 2))
+        .getTrainId());
+    assertEquals(LocalTime.of(7, 5), testRegister.getDepartureFromId("L65").getDeparture());
+    assertNotSame(testRegister.getDepartureFromId("L65"), testRegister.getDepartureFromId("L65"));
+
+    assertTrue(testRegister.updateDelay("L65", LocalTime.of(0, 3)));
+    TrainDeparture stored = testRegister.getDepartureFromId("L65");
+    assertSame(stored, testRegister.getDepartureFromId("L65"));
+    assertEquals(4, testRegister.getDepartureCount());
+    assertEquals(203, testRegister.getSnapshot().size());
+    assertTrue(testRegister.deleteDeparture(testRegister.getDepartureFromId("L66")));
+    assertNull(testRegister.getDepartureFromId("L66"));
+    assertEquals(5, testRegister.expireDepartures(LocalTime.of(6, 3)));
+    assertNull(testRegister.getDepartureFromId("L0"));
+    assertEquals(197, testRegister.getAllDepartures().size());
+  }
+
+  /**
+   * Positive test that a departure with a destination too long for its field is saved and loaded
+   * along with the others.
+   */
+  @Test
+  void testSaveLongDestination() throws Exception {
+    String destination = "Oslo lufthavn Gardermoen via Lillestrøm";
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(6, 10), destination, "F1", "F3"));
+    Path file = Files.createTempFile("register", ".dep");
+
+    assertTrue(testRegister.saveDepartures(file));
+    TrainDepartureRegister loaded = new TrainDepartureRegister();
+    assertEquals(testRegister.getDepartureCount(), loaded.loadDepartures(file));
+    Files.deleteIfExists(file);
+    assertEquals(destination, loaded.getDepartureFromId("F1").getDestination());
+  }
+
+  /**
+   * Negative test that a versioned update is rejected after another change, and that the retry
+   * with the returned version is applied and moves the expiry.
+   */
+  @Test
+  void testVersionedUpdateRejectsStaleVersion() {
+    int seenVersion = testRegister.getDepartureFromId("N002").getVersion();
+    testRegister.updateTrack("N002", 5);
+
+    DepartureState state = testRegister.updateDelay("N002", seenVersion, LocalTime.of(0, 30));
+    assertFalse(state.isApplied());
+    assertEquals(5, state.getTrack());
+    assertEquals(0, testRegister.getDepartureFromId("N002").getDelayMinutes());
+    assertNull(testRegister.updateDelay("X999", seenVersion, LocalTime.of(0, 30)));
+
+    state = testRegister.updateDelay("N002", state.getVersion(), LocalTime.of(0, 30));
+    assertTrue(state.isApplied());
+    assertFalse(testRegister.updateTrack("N002", seenVersion, 1).isApplied());
+    testRegister.expireDepartures(LocalTime.of(2, 0));
+    assertNotNull(testRegister.getDepartureFromId("N002"));
+  }
+
+  /**
+   * Positive test that the latest changes are undone newest first, that a deleted departure is
+   * added again with its delay and track, and that undoing is not recorded itself.
+   */
+  @Test
+  void testUndoChanges() {
+    TrainDeparture deleted = testRegister.getDepartureFromId("N003");
+    testRegister.updateDelay("N002", LocalTime.of(0, 15));
+    testRegister.updateTrack("N002", 6);
+    testRegister.deleteDeparture(deleted);
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N010", "J1"), 1);
+    assertEquals(7, testRegister.getAuditLog().size());
+
+    assertEquals(2, testRegister.undo(2));
+    assertNull(testRegister.getDepartureFromId("N010"));
+    TrainDeparture restored = testRegister.getDepartureFromId("N003");
+    assertEquals(deleted.getDeparture(), restored.getDeparture());
+    assertEquals("Bodø", restored.getDestination());
+    assertEquals(8, restored.getTrack());
+    assertEquals(74, restored.getDelayMinutes());
+    assertEquals(5, testRegister.getAuditLog().size());
+
+    assertEquals(2, testRegister.undo(2));
+    assertEquals(2, testRegister.getDepartureFromId("N002").getTrack());
+    assertEquals(0, testRegister.getDepartureFromId("N002").getDelayMinutes());
+    assertEquals(3, testRegister.getAuditLog().size());
+    assertEquals(0, testRegister.undo(0));
+  }
+
+  /**
+   * Positive test that the instances of a pattern are found by every query without being
+   * stored, in order with the stored departures.
+   */
+  @Test
+  void testPatternInstancesInQueries() {
+    assertTrue(testRegister.addPattern(new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(22, 0), 15)));
+
+    assertEquals(3, testRegister.getDepartureCount());
+    assertEquals(68, testRegister.getSnapshot().size());
+    List<TrainDeparture> all = testRegister.getAllDepartures();
+    assertEquals(68, all.size());
+    assertEquals("J8-0600", all.get(2).getTrainId());
+    assertEquals("N004", all.get(12).getTrainId());
+    for (int i = 1; i < all.size(); i++) {
+      assertTrue(all.get(i - 1).getDepartureMinute() <= all.get(i).getDepartureMinute());
+    }
+
+    assertEquals(67, testRegister.getDeparturesByDestination("Trondheim").size());
+    List<TrainDeparture> between = testRegister.getDeparturesBetween(LocalTime.of(8, 0),
+        LocalTime.of(8, 30));
+    assertEquals(List.of("J8-0800", "J8-0815", "N004", "J8-0830"),
+        between.stream().map(TrainDeparture::getTrainId).toList());
+    assertEquals("N004",
+        testRegister.nextDepartureTo("Trondheim", LocalTime.of(8, 16)).getTrainId());
+    assertEquals(66, testRegister.query(new DepartureQuery().line("J8")).getDepartures().size());
+    assertEquals(LocalTime.of(6, 15), testRegister.getDepartureFromId("J8-0615").getDeparture());
+    assertEquals(0, testRegister.getServiceDayOf("J8-2200"));
+    assertNull(testRegister.getDepartureFromId("J8-0610"));
+  }
+
+  /**
+   * Positive test that an instance is stored as its own departure when it is delayed, and that
+   * instances leave with the clock.
+   */
+  @Test
+  void testChangedInstanceIsMaterialized() {
+    testRegister.addPattern(new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(22, 0), 15));
+    assertNotSame(testRegister.getDepartureFromId("J8-0615"),
+        testRegister.getDepartureFromId("J8-0615"));
+
+    assertTrue(testRegister.updateDelay("J8-0615", LocalTime.of(0, 5)));
+    TrainDeparture stored = testRegister.getDepartureFromId("J8-0615");
+    assertSame(stored, testRegister.getDepartureFromId("J8-0615"));
+    assertEquals(5, stored.getDelayMinutes());
+    assertEquals(4, testRegister.getDepartureCount());
+    assertEquals(68, testRegister.getSnapshot().size());
+    assertSame(stored, testRegister.getSnapshot().getDepartureFromId("J8-0615"));
+
+    assertEquals(3, testRegister.expireDepartures(LocalTime.of(6, 16)));
+    assertEquals(65, testRegister.getSnapshot().size());
+    assertNull(testRegister.getDepartureFromId("J8-0600"));
+    assertSame(stored, testRegister.getAllDepartures().get(0));
+  }
+
+  /**
+   * Negative test that a pattern with a trainId already in the register is not added, that a
+   * departure can not take the trainId of an instance, and that a deleted instance is gone
+   * until the delete is undone.
+   */
+  @Test
+  void testPatternConflictsAndDeletes() {
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "Oslo", "J8-0700", "J8"));
+    DeparturePattern pattern = new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(22, 0), 15);
+    assertFalse(testRegister.addPattern(pattern));
+    assertFalse(testRegister.addPattern(null));
+    assertFalse(testRegister.addPattern(new DeparturePattern("R1", "Moss", "R1",
+        LocalTime.of(6, 0), LocalTime.of(7, 0), 30), 5));
+    assertEquals(4, testRegister.getSnapshot().size());
+
+    assertTrue(testRegister.addPattern(new DeparturePattern("R1", "Moss", "R1",
+        LocalTime.of(6, 0), LocalTime.of(7, 0), 30)));
+    assertFalse(testRegister.addDeparture(
+        new TrainDeparture(LocalTime.of(6, 30), "Moss", "R1-0630", "R1")));
+    assertTrue(testRegister.deleteDeparture(testRegister.getDepartureFromId("R1-0630")));
+    assertNull(testRegister.getDepartureFromId("R1-0630"));
+    assertEquals(6, testRegister.getSnapshot().size());
+
+    assertEquals(1, testRegister.undo(1));
+    assertNotNull(testRegister.getDepartureFromId("R1-0630"));
+    assertEquals(5, testRegister.getDepartureCount());
+    assertEquals(7, testRegister.getSnapshot().size());
+  }
+
+  /**
+   * Positive test that a reloaded timetable inserts, changes and removes departures, keeps the
+   * live delay and track of a changed departure, and is published as one snapshot. A saved
+   * timetable can be reloaded from file.
+   */
+  @Test
+  void testReloadTimetable() throws Exception {
+    long version = testRegister.getSnapshot().getVersion();
+    List<TrainDeparture> timetable = List.of(
+        new TrainDeparture(LocalTime.of(1, 45), "Trondheim", "N002", "J8"),
+        new TrainDeparture(LocalTime.of(3, 30), "Bodø", "N003", "J9"),
+        new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N005", "J2"));
+
+    TimetableDiff diff = testRegister.reloadTimetable(timetable);
+
+    assertEquals(1, diff.getInserts().size());
+    assertEquals(1, diff.getChanges().size());
+    assertEquals(1, diff.getRemoves().size());
+    assertEquals(version + 1, testRegister.getSnapshot().getVersion());
+    assertNull(testRegister.getDepartureFromId("N004"));
+    assertEquals(2, testRegister.getDepartureFromId("N002").getTrack());
+    TrainDeparture changed = testRegister.getDepartureFromId("N003");
+    assertEquals(LocalTime.of(3, 30), changed.getDeparture());
+    assertEquals(8, changed.getTrack());
+    assertEquals(74, changed.getDelayMinutes());
+    assertEquals(List.of("N002", "N003", "N005"), testRegister.getSnapshot().getDepartures()
+        .stream().map(TrainDeparture::getTrainId).toList());
+    assertEquals(3, testRegister.getAuditLog().size());
+
+    TrainDepartureRegister revised = new TrainDepartureRegister();
+    revised.addDeparture(new TrainDeparture(LocalTime.of(3, 30), "Bodø", "N003", "J9"));
+    Path file = Files.createTempFile("timetable", ".bin");
+    try {
+      assertTrue(revised.saveDepartures(file));
+      List<TimetableDiff> diffs = testRegister.reloadDepartures(file);
+      assertEquals(1, diffs.size());
+      assertEquals(2, diffs.get(0).getRemoves().size());
+      assertEquals(74, testRegister.getDepartureFromId("N003").getDelayMinutes());
+      assertEquals(1, testRegister.getSnapshot().size());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Positive test that a reloaded timetable changes and removes pattern instances like stored
+   * departures, and that a departure whose trainId is taken on another day is rejected.
+   */
+  @Test
+  void testReloadTimetableWithPattern() {
+    testRegister.addPattern(new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(7, 0), 15));
+    testRegister.addDeparture(new TrainDeparture(LocalTime.of(5, 0), "Oslo", "N010", "L1"), 1);
+    List<TrainDeparture> timetable = List.of(
+        new TrainDeparture(LocalTime.of(1, 45), "Trondheim", "N002", "J8"),
+        new TrainDeparture(LocalTime.of(3, 23), "Bodø", "N003", "J9"),
+        new TrainDeparture(LocalTime.of(8, 23), "Trondheim", "N004", "J1"),
+        new TrainDeparture(LocalTime.of(6, 0), "Bergen", "J8-0600", "J8"),
+        new TrainDeparture(LocalTime.of(6, 15), "Trondheim", "J8-0615", "J8"),
+        new TrainDeparture(LocalTime.of(6, 45), "Trondheim", "J8-0645", "J8"),
+        new TrainDeparture(LocalTime.of(7, 0), "Trondheim", "J8-0700", "J8"),
+        new TrainDeparture(LocalTime.of(9, 0), "Oslo", "N010", "L1"));
+
+    TimetableDiff diff = testRegister.reloadTimetable(timetable);
+
+    assertEquals(1, diff.getChanges().size());
+    assertEquals(1, diff.getRemoves().size());
+    assertEquals(1, diff.getInserts().size());
+    assertEquals(List.of("N010"),
+        diff.getRejected().stream().map(TrainDeparture::getTrainId).toList());
+    assertEquals(6, diff.getUnchangedCount());
+    assertEquals("Bergen", testRegister.getDepartureFromId("J8-0600").getDestination());
+    assertNull(testRegister.getDepartureFromId("J8-0630"));
+    assertEquals(1, testRegister.getServiceDayOf("N010"));
+    assertEquals(8, testRegister.getSnapshot().size());
+    assertEquals(List.of("N002", "N003", "J8-0600", "J8-0615", "J8-0645", "J8-0700", "N004"),
+        testRegister.getDeparturesBetween(LocalTime.of(0, 0), LocalTime.of(23, 59)).stream()
+            .map(TrainDeparture::getTrainId).toList());
+  }
+
+  /**
+   * Negative test that a missing timetable, or one for a day the register does not hold, is
+   * not reloaded.
+   */
+  @Test
+  void testReloadTimetableInvalid() {
+    assertNull(testRegister.reloadTimetable(null));
+    assertNull(testRegister.reloadTimetable(List.of(), 5));
+    assertTrue(testRegister.reloadDepartures(null).isEmpty());
+    assertEquals(3, testRegister.getSnapshot().size());
+  }
+}
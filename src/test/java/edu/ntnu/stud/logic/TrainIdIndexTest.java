@@ -0,0 +1,107 @@
+package edu.ntnu.stud.logic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the trainId index class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test adding, finding and removing departures with packed and unpacked ids.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that the index gives the same results as a hash map for many random changes.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test looking up and removing ids that are not in the index.
+ *   </li>
+ * </ul>
+ */
+class TrainIdIndexTest {
+
+  private static TrainDeparture departure(String trainId) {
+    return new TrainDeparture(LocalTime.of(8, 0), "Oslo", trainId, "L1");
+  }
+
+  /**
+   * Positive test that departures can be added, found, replaced and removed.
+   */
+  @Test
+  void testPutGetRemove() {
+    TrainIdIndex index = new TrainIdIndex();
+    TrainDeparture packed = departure("N002");
+    TrainDeparture unpacked = departure("n002");
+    assertNull(index.put("N002", packed));
+    assertNull(index.put("n002", unpacked));
+
+    assertEquals(2, index.size());
+    assertSame(packed, index.get("N002"));
+    assertSame(unpacked, index.get("n002"));
+    assertTrue(index.containsKey("n002"));
+    assertEquals(new HashSet<>(List.of(packed, unpacked)), new HashSet<>(index.values()));
+    assertEquals(2, index.entrySet().size());
+
+    TrainDeparture replacement = departure("N002");
+    assertSame(packed, index.put("N002", replacement));
+    assertEquals(2, index.size());
+    assertSame(replacement, index.remove("N002"));
+    assertSame(unpacked, index.remove("n002"));
+    assertTrue(index.isEmpty());
+  }
+
+  /**
+   * Positive test that the index follows a hash map through many adds and removes, which also
+   * grows the table and moves codes back when a slot is freed.
+   */
+  @Test
+  void testMatchesHashMap() {
+    TrainIdIndex index = new TrainIdIndex();
+    Map<String, TrainDeparture> expected = new HashMap<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      String trainId = "T" + random.nextInt(2_000);
+      if (random.nextInt(3) == 0) {
+        assertSame(expected.remove(trainId), index.remove(trainId));
+      } else {
+        TrainDeparture departure = departure(trainId);
+        assertSame(expected.put(trainId, departure), index.put(trainId, departure));
+      }
+    }
+
+    assertEquals(expected.size(), index.size());
+    for (int i = 0; i < 2_000; i++) {
+      assertSame(expected.get("T" + i), index.get("T" + i));
+    }
+    assertEquals(new HashSet<>(expected.values()), new HashSet<>(index.values()));
+  }
+
+  /**
+   * Negative test that missing ids, null and keys that are not strings are not found.
+   */
+  @Test
+  void testMissingIds() {
+    TrainIdIndex index = new TrainIdIndex();
+    index.put("A1", departure("A1"));
+
+    assertNull(index.get("A2"));
+    assertNull(index.get("a1"));
+    assertNull(index.get(null));
+    assertNull(index.get(42));
+    assertNull(index.remove("A2"));
+    assertNull(index.remove(null));
+    assertFalse(index.containsKey("A2"));
+    assertEquals(1, index.size());
+  }
+}
@@ -0,0 +1,69 @@
+package edu.ntnu.stud.monitoring;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the latency histogram class.
+ * The following must be tested:
+ * <ul>
+ *   <li> Positive test: Test that percentiles are within the precision of the buckets. </li>
+ *   <li> Positive test: Test that merged histograms hold the values of both. </li>
+ *   <li> Negative test: Test that an empty histogram returns 0 instead of crashing. </li>
+ * </ul>
+ */
+class LatencyHistogramTest {
+
+  /**
+   * Positive test that the percentiles of 1 to 1000 are within about 6% of the exact value.
+   */
+  @Test
+  void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int value = 1; value <= 1000; value++) {
+      histogram.record(value);
+    }
+
+    assertEquals(1000, histogram.getCount());
+    assertEquals(1000, histogram.getMax());
+    assertEquals(500.5, histogram.getMean(), 0.001);
+    assertEquals(500, histogram.getPercentile(50), 500 * 0.07);
+    assertEquals(990, histogram.getPercentile(99), 990 * 0.07);
+    assertEquals(1000, histogram.getPercentile(100));
+  }
+
+  /**
+   * Positive test that merging two histograms gives the same result as recording all values
+   * in one histogram.
+   */
+  @Test
+  void testMerge() {
+    LatencyHistogram first = new LatencyHistogram();
+    LatencyHistogram second = new LatencyHistogram();
+    first.record(10);
+    second.record(20000);
+
+    first.merge(second);
+
+    assertEquals(2, first.getCount());
+    assertEquals(20000, first.getMax());
+    assertEquals(10, first.getPercentile(50));
+  }
+
+  /**
+   * Negative test that an empty or reset histogram returns 0 for all values.
+   */
+  @Test
+  void testEmptyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(99));
+    assertEquals(0, histogram.getMean());
+
+    histogram.record(-5);
+    histogram.reset();
+
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+}
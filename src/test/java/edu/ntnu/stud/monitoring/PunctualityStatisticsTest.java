@@ -0,0 +1,89 @@
+package edu.ntnu.stud.monitoring;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the punctuality statistics class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that the statistics per destination and line follow added and removed delays.
+ *     Test that the statistics of two stations can be merged.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that unknown destinations give null and that statistics with another on-time limit
+ *     are not merged.
+ *   </li>
+ * </ul>
+ */
+class PunctualityStatisticsTest {
+
+  /**
+   * Positive test that the mean, p95 and on-time share follow the recorded delays.
+   */
+  @Test
+  void testRecordDelays() {
+    PunctualityStatistics statistics = new PunctualityStatistics();
+    for (int i = 0; i < 20; i++) {
+      statistics.record("Oslo", "L1", i < 18 ? 0 : 10, 1);
+    }
+    statistics.record("Moss", "L2", 5, 1);
+
+    Punctuality oslo = statistics.getDestination("Oslo");
+    assertEquals(20, oslo.getCount());
+    assertEquals(1.0, oslo.getMeanDelay(), 0.001);
+    assertEquals(10, oslo.getDelayPercentile(95));
+    assertEquals(0.9, oslo.getOnTimeShare(), 0.001);
+    assertEquals(21, statistics.getOverall().getCount());
+    assertEquals(0.0, statistics.getLine("L2").getOnTimeShare(), 0.001);
+
+    statistics.record("Oslo", "L1", 10, -1);
+    statistics.record("Oslo", "L1", 2, 1);
+    assertEquals(20, oslo.getCount());
+    assertEquals(0.95, oslo.getOnTimeShare(), 0.001);
+    assertEquals(2, statistics.getLines().size());
+  }
+
+  /**
+   * Positive test that merging the statistics of two stations adds up their departures.
+   */
+  @Test
+  void testMergeStations() {
+    PunctualityStatistics first = new PunctualityStatistics();
+    first.record("Oslo", "L1", 0, 1);
+    first.record("Oslo", "L1", 6, 1);
+    PunctualityStatistics second = new PunctualityStatistics();
+    second.record("Oslo", "L1", 4, 1);
+    second.record("Hamar", "L3", 1, 1);
+
+    assertTrue(first.merge(second));
+    assertEquals(3, first.getDestination("Oslo").getCount());
+    assertEquals(1, first.getDestination("Hamar").getCount());
+    assertEquals(4, first.getOverall().getCount());
+    assertEquals(2.75, first.getOverall().getMeanDelay(), 0.001);
+    assertEquals(0.5, first.getOverall().getOnTimeShare(), 0.001);
+  }
+
+  /**
+   * Negative test that unknown groups give null and that statistics with another on-time limit
+   * are not merged.
+   */
+  @Test
+  void testUnknownAndMismatched() {
+    PunctualityStatistics statistics = new PunctualityStatistics();
+    assertNull(statistics.getDestination("Oslo"));
+    assertNull(statistics.getLine(null));
+    assertEquals(0, statistics.getOverall().getOnTimeShare());
+    assertEquals(0, statistics.getOverall().getDelayPercentile(95));
+
+    PunctualityStatistics strict = new PunctualityStatistics(0);
+    strict.record("Oslo", "L1", 1, 1);
+    assertFalse(statistics.merge(strict));
+    assertFalse(statistics.merge(null));
+    assertEquals(0, statistics.getOverall().getCount());
+  }
+}
@@ -0,0 +1,160 @@
+package edu.ntnu.stud.replication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.DeparturePattern;
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.time.LocalTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the replication leader and follower classes.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that a follower gets a snapshot and then every change made on the leader.
+ *     Test that a follower that connects late catches up from the snapshot.
+ *     Test that the instances of a departure pattern are replicated, changed and expired.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test connecting to a leader that is not running.
+ *   </li>
+ * </ul>
+ */
+class ReplicationLeaderTest {
+  private static final long TIMEOUT_MILLIS = 5_000;
+
+  TrainDepartureRegister register;
+  ReplicationLeader leader;
+
+  /**
+   * Creates a register with a departure and a leader for it.
+   */
+  @BeforeEach
+  void setupTestEnvironment() {
+    register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1", "R10"));
+    leader = new ReplicationLeader(register, 4);
+    assertTrue(leader.start(0));
+  }
+
+  /**
+   * Stops the leader.
+   */
+  @AfterEach
+  void stopLeader() {
+    leader.close();
+  }
+
+  /**
+   * Positive test that changes on the leader reach a connected follower in order.
+   */
+  @Test
+  void testFollowerAppliesChanges() throws Exception {
+    ReplicationFollower follower = new ReplicationFollower();
+    assertTrue(follower.connect("localhost", leader.getPort()));
+    assertTrue(follower.awaitSequence(0, TIMEOUT_MILLIS));
+    assertEquals(1, follower.getRegister().getSnapshot().size());
+
+    for (int i = 2; i <= 10; i++) {
+      register.addDeparture(new TrainDeparture(LocalTime.of(8, i), "Bergen", "R" + i, "R20"));
+    }
+    register.updateDelay("R2", LocalTime.of(0, 12));
+    register.updateTrack("R3", 4);
+    register.deleteDeparture(register.getDepartureFromId("R4"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(6, 0), "Moss", "M1", "R30"), 1);
+    leader.flush();
+
+    assertTrue(follower.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+    TrainDepartureRegister copy = follower.getRegister();
+    assertEquals(register.getDepartureCount(), copy.getSnapshot().size());
+    assertEquals(LocalTime.of(0, 12), copy.getSnapshot().getDepartureFromId("R2").getDelay());
+    assertEquals(4, copy.getSnapshot().getDepartureFromId("R3").getTrack());
+    assertNull(copy.getSnapshot().getDepartureFromId("R4"));
+    assertEquals(1, copy.getServiceDayOf("M1"));
+    follower.close();
+  }
+
+  /**
+   * Positive test that a follower connecting after changes, expiry and a new service day gets
+   * the same departures as the leader.
+   */
+  @Test
+  void testLateFollowerCatchesUp() throws Exception {
+    register.addDeparture(new TrainDeparture(LocalTime.of(9, 0), "Bodø", "N1", "N8"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(1, 0), "Bodø", "N2", "N8"), 1);
+    register.updateDelay("N1", LocalTime.of(0, 3));
+    register.expireDepartures(LocalTime.of(8, 0));
+    register.startServiceDay(1);
+    assertEquals(5, leader.getSequence());
+
+    ReplicationFollower follower = new ReplicationFollower();
+    assertTrue(follower.connect("localhost", leader.getPort()));
+    assertTrue(follower.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+    assertEquals(leader.getFollowerCount(), 1);
+
+    register.addDeparture(new TrainDeparture(LocalTime.of(5, 0), "Bodø", "N3", "N8"));
+    leader.flush();
+    assertTrue(follower.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+
+    TrainDepartureRegister copy = follower.getRegister();
+    assertEquals(1, copy.getCurrentDay());
+    assertEquals(register.getAllDepartures().size(), copy.getSnapshot().size());
+    assertNull(copy.getSnapshot().getDepartureFromId("R1"));
+    assertEquals(3, copy.getSnapshot().getDepartureFromId("N1").getDelay().getMinute());
+    assertNotNull(copy.getSnapshot().getDepartureFromId("N3"));
+    follower.close();
+  }
+
+  /**
+   * Positive test that a follower gets every instance of a departure pattern, a change to one
+   * instance, and the instances that leave.
+   */
+  @Test
+  void testPatternIsReplicated() throws Exception {
+    ReplicationFollower follower = new ReplicationFollower();
+    assertTrue(follower.connect("localhost", leader.getPort()));
+    assertTrue(follower.awaitSequence(0, TIMEOUT_MILLIS));
+
+    // Every 15 minutes from 06:00 to 22:00 gives 65 instances.
+    assertTrue(register.addPattern(new DeparturePattern("J8", "Trondheim", "J8",
+        LocalTime.of(6, 0), LocalTime.of(22, 0), 15)));
+    assertTrue(register.updateDelay("J8-0615", LocalTime.of(0, 7)));
+    leader.flush();
+    assertTrue(follower.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+    assertEquals(66, register.getSnapshot().size());
+    assertEquals(66, follower.getRegister().getSnapshot().size());
+    assertEquals(7, follower.getRegister().getSnapshot().getDepartureFromId("J8-0615")
+        .getDelayMinutes());
+
+    // R1 and the instances from 06:00 to 07:45 leave, but J8-0615 is delayed to 06:22.
+    register.expireDepartures(LocalTime.of(8, 0));
+    leader.flush();
+    assertTrue(follower.awaitSequence(leader.getSequence(), TIMEOUT_MILLIS));
+    assertEquals(register.getSnapshot().size(), follower.getRegister().getSnapshot().size());
+    assertEquals(57, follower.getRegister().getSnapshot().size());
+    assertNull(follower.getRegister().getSnapshot().getDepartureFromId("J8-0745"));
+    assertNotNull(follower.getRegister().getSnapshot().getDepartureFromId("J8-0800"));
+    follower.close();
+  }
+
+  /**
+   * Negative test for connecting to a port where no leader is running.
+   */
+  @Test
+  void testConnectWithoutLeader() {
+    int port = leader.getPort();
+    leader.close();
+
+    ReplicationFollower follower = new ReplicationFollower();
+    assertFalse(follower.connect("localhost", port));
+    assertFalse(follower.isConnected());
+    assertEquals(-1, follower.getAppliedSequence());
+    assertFalse(leader.start(0));
+  }
+}
@@ -0,0 +1,213 @@
+package edu.ntnu.stud.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the off-heap departure store class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test adding, finding, updating and removing departures while the store grows.
+ *     Test that a saved store is loaded with the same departures and can still be changed.
+ *     Test that texts too long for their fields are stored, saved and loaded.
+ *     Test that a sorted copy holds the departures that pass the filter in order of time.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test adding duplicates and null.
+ *     Test loading a file that is not a saved store.
+ *   </li>
+ * </ul>
+ */
+class OffHeapDepartureStoreTest {
+
+  /**
+   * Positive test for adding many departures, so both the records and the index grow, and
+   * reading, changing and removing them again.
+   */
+  @Test
+  void testAddFindAndRemove() {
+    OffHeapDepartureStore store = new OffHeapDepartureStore();
+    for (int i = 0; i < 1_000; i++) {
+      assertTrue(store.add(new TrainDeparture(LocalTime.of(i / 60 % 24, i % 60), "Trondheim",
+          "T" + i, "L" + i % 7), i % 3 - 1));
+    }
+    assertEquals(1_000, store.size());
+
+    DepartureView view = store.newView();
+    assertTrue(store.find("T123", view));
+    assertEquals(123, view.getDepartureMinute());
+    assertEquals("L4", view.getLine());
+    assertEquals(-1, view.getServiceDay());
+
+    assertTrue(store.updateDelay("T123", 15));
+    assertTrue(store.updateTrack("T123", 3));
+    TrainDeparture departure = view.toDeparture();
+    assertEquals(LocalTime.of(0, 15), departure.getDelay());
+    assertEquals(3, departure.getTrack());
+    assertEquals("Trondheim", departure.getDestination());
+
+    for (int i = 0; i < 1_000; i += 2) {
+      assertTrue(store.remove("T" + i));
+    }
+    assertEquals(500, store.size());
+    assertFalse(store.find("T10", view));
+    assertFalse(view.isBound());
+    assertTrue(store.find("T11", view));
+    assertEquals("T11", view.getTrainId());
+
+    // Freed records are reused by new departures.
+    long bytes = store.getOffHeapBytes();
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(9, 0), "Bodø", "T10", "R1"), 0));
+    assertEquals(bytes, store.getOffHeapBytes());
+    assertTrue(store.find("T10", view));
+    assertEquals("Bodø", view.getDestination());
+
+    int[] count = {0};
+    store.forEach(v -> count[0] += 1);
+    assertEquals(501, count[0]);
+  }
+
+  /**
+   * Positive test that a saved store is mapped back with its departures and index.
+   */
+  @Test
+  void testSaveAndLoad() throws Exception {
+    OffHeapDepartureStore store = new OffHeapDepartureStore();
+    store.add(new TrainDeparture(LocalTime.of(7, 5), "Oslo", "R1", "R10", 2,
+        LocalTime.of(0, 4)), 0);
+    store.add(new TrainDeparture(LocalTime.of(8, 5), "Bergen", "R2", "R20"), 1);
+    store.add(new TrainDeparture(LocalTime.of(9, 5), "Moss", "R3", "R30"), 1);
+    store.remove("R2");
+    Path file = Files.createTempFile("departures", ".dep");
+
+    assertTrue(store.save(file));
+    OffHeapDepartureStore loaded = OffHeapDepartureStore.load(file);
+    assertNotNull(loaded);
+    assertEquals(2, loaded.size());
+
+    DepartureView view = loaded.newView();
+    assertTrue(loaded.find("R1", view));
+    assertEquals(4, view.getDelayMinutes());
+    assertEquals(2, view.getTrack());
+    assertFalse(loaded.find("R2", view));
+
+    assertTrue(loaded.add(new TrainDeparture(LocalTime.of(10, 0), "Hamar", "R4", "R40"), 0));
+    assertTrue(loaded.add(new TrainDeparture(LocalTime.of(11, 0), "Lillehammer", "R5", "R50"), 0));
+    assertTrue(loaded.find("R5", view));
+    assertEquals("Lillehammer", view.getDestination());
+    assertTrue(loaded.find("R3", view));
+    assertEquals(1, view.getServiceDay());
+
+    // Changes to the loaded store are not written back to the file, which only has to be
+    // readable.
+    assertTrue(file.toFile().setReadOnly());
+    assertEquals(2, OffHeapDepartureStore.load(file).size());
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Positive test for texts that do not fit in their fields, which are kept in the overflow area
+   * and can be found, saved and loaded like the short ones.
+   */
+  @Test
+  void testLongTexts() throws Exception {
+    OffHeapDepartureStore store = new OffHeapDepartureStore();
+    String trainId = "Flytoget-ekstra-avgang-ÆØÅ-1";
+    String destination = "Oslo lufthavn Gardermoen via Lillestrøm";
+    String line = "Flytoget-ekspress-2";
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(6, 40), destination, trainId, line), 0));
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(6, 50), "Oslo", "F2", "FLY"), 0));
+    assertFalse(store.add(new TrainDeparture(LocalTime.of(7, 0), "Oslo", trainId, "FLY"), 0));
+    assertTrue(store.updateDelay(trainId, 4));
+
+    Path file = Files.createTempFile("departures", ".dep");
+    assertTrue(store.save(file));
+    OffHeapDepartureStore loaded = OffHeapDepartureStore.load(file);
+    assertNotNull(loaded);
+    assertEquals(2, loaded.size());
+    DepartureView view = loaded.newView();
+    assertTrue(loaded.find(trainId, view));
+    assertEquals(destination, view.getDestination());
+    assertEquals(line, view.getLine());
+    assertEquals(trainId, view.getTrainId());
+    assertEquals(4, view.getDelayMinutes());
+    assertTrue(loaded.find("F2", view));
+    assertEquals("Oslo", view.getDestination());
+
+    assertTrue(loaded.remove(trainId));
+    assertFalse(loaded.find(trainId, view));
+    assertTrue(loaded.add(new TrainDeparture(LocalTime.of(7, 0), destination, trainId, "FLY"), 1));
+    assertTrue(loaded.find(trainId, view));
+    assertEquals(1, view.getServiceDay());
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Positive test for copying the departures that pass a filter in order of departure time, and
+   * reading the copy record by record.
+   */
+  @Test
+  void testSortedCopy() {
+    OffHeapDepartureStore store = new OffHeapDepartureStore();
+    String destination = "Oslo lufthavn Gardermoen via Lillestrøm";
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(9, 0), "Bodø", "R1", "R10"), 0));
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(7, 0), destination, "R2", "R10"), 0));
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(8, 0), "Bodø", "R3", "R10"), 1));
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(6, 0), "Bod🚆", "R4", "L"), 0));
+    assertTrue(store.remove("R1"));
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(5, 0), "Bodø", "R5", "R10"), 0));
+
+    OffHeapDepartureStore copy = store.sortedCopy((DepartureView view) ->
+        view.getServiceDay() == 0);
+    assertEquals(3, copy.size());
+    DepartureView view = copy.newView();
+    assertTrue(view.moveTo(0));
+    assertEquals("R5", view.getTrainId());
+    assertTrue(view.hasDestination("Bodø"));
+    assertFalse(view.hasDestination("Bod"));
+    assertFalse(view.hasDestination("Bodøya"));
+    assertTrue(view.moveTo(1));
+    assertTrue(view.hasDestination("Bod🚆"));
+    assertTrue(view.hasLine("L"));
+    assertFalse(view.hasLine("R10"));
+    assertTrue(view.moveTo(2));
+    assertEquals("R2", view.getTrainId());
+    assertTrue(view.hasDestination(destination));
+    assertFalse(view.hasDestination(null));
+    assertTrue(copy.find("R2", view));
+    assertEquals(2, view.getRecord());
+    assertFalse(view.moveTo(3));
+    assertFalse(view.isBound());
+    assertEquals(4, store.size());
+  }
+
+  /**
+   * Negative test for departures that cannot be stored and files that cannot be loaded.
+   */
+  @Test
+  void testInvalidInput() throws Exception {
+    OffHeapDepartureStore store = new OffHeapDepartureStore();
+    assertTrue(store.add(new TrainDeparture(LocalTime.of(7, 5), "Oslo", "R1", "R10"), 0));
+    assertFalse(store.add(new TrainDeparture(LocalTime.of(8, 5), "Oslo", "R1", "R10"), 0));
+    assertFalse(store.add(null, 0));
+    assertFalse(store.remove(null));
+    assertFalse(store.updateDelay("R9", 3));
+    assertEquals(1, store.size());
+    assertEquals(16, new OffHeapDepartureStore(-5).getOffHeapBytes()
+        / (OffHeapDepartureStore.RECORD_SIZE + 2 * Integer.BYTES));
+
+    Path file = Files.createTempFile("departures", ".dep");
+    Files.writeString(file, "not a departure store");
+    assertNull(OffHeapDepartureStore.load(file));
+    Files.deleteIfExists(file);
+    assertNull(OffHeapDepartureStore.load(file));
+  }
+}
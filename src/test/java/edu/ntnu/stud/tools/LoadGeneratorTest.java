@@ -0,0 +1,113 @@
+package edu.ntnu.stud.tools;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the load generator together with the station day generator.
+ * The following must be tested:
+ * <ul>
+ *   <li> Positive test: Test that the same seed generates the same day. </li>
+ *   <li> Positive test: Test that a recorded trace is replayed with the same operations. </li>
+ *   <li> Positive test: Test that running a day reports every operation. </li>
+ *   <li> Positive test: Test that a day run through the pipeline gives the same register. </li>
+ *   <li> Negative test: Test that invalid trace lines are skipped. </li>
+ * </ul>
+ */
+class LoadGeneratorTest {
+
+  /**
+   * Positive test that a generated day is reproducible and has the expected departures.
+   */
+  @Test
+  void testGeneratedDayIsReproducible() {
+    StationDayGenerator generator = new StationDayGenerator();
+    generator.setDeparturesPerHour(10);
+    generator.setReadsPerMinute(2);
+
+    List<TraceOperation> first = generator.generateDay();
+    List<TraceOperation> second = generator.generateDay();
+
+    assertEquals(first.size(), second.size());
+    for (int i = 0; i < first.size(); i++) {
+      assertEquals(first.get(i).toTraceLine(), second.get(i).toTraceLine());
+    }
+    assertEquals(240, first.stream()
+        .filter(o -> o.getType() == TraceOperation.Type.ADD).count());
+    assertEquals(24 * 60, first.stream()
+        .filter(o -> o.getType() == TraceOperation.Type.CLOCK_TICK).count());
+  }
+
+  /**
+   * Positive test that a trace written to a file is read back unchanged.
+   */
+  @Test
+  void testRecordAndReplayTrace() throws Exception {
+    StationDayGenerator generator = new StationDayGenerator();
+    generator.setDeparturesPerHour(2);
+    generator.setReadsPerMinute(1);
+    List<TraceOperation> trace = generator.generateDay();
+    Path file = Files.createTempFile("trace", ".csv");
+
+    assertTrue(LoadGenerator.writeTrace(trace, file));
+    List<TraceOperation> replayed = LoadGenerator.readTrace(file);
+    Files.deleteIfExists(file);
+
+    assertEquals(trace.size(), replayed.size());
+    assertEquals(trace.get(0).toTraceLine(), replayed.get(0).toTraceLine());
+  }
+
+  /**
+   * Positive test that every operation of a day is run and reported.
+   */
+  @Test
+  void testRunReportsAllOperations() {
+    StationDayGenerator generator = new StationDayGenerator();
+    generator.setDeparturesPerHour(5);
+    generator.setReadsPerMinute(2);
+    List<TraceOperation> trace = generator.generateDay();
+    TrainDepartureRegister register = new TrainDepartureRegister();
+
+    LoadReport report = new LoadGenerator(register).run(trace, 1, 0);
+
+    assertEquals(trace.size(), report.getOperationCount());
+    assertEquals(120, report.getLatency(TraceOperation.Type.ADD).getCount());
+    assertTrue(report.getThroughput() > 0);
+  }
+
+  /**
+   * Negative test that lines that are not valid operations are not parsed.
+   */
+  @Test
+  void testInvalidTraceLines() {
+    assertNull(TraceOperation.fromTraceLine(""));
+    assertNull(TraceOperation.fromTraceLine("ADD,T1"));
+    assertNull(TraceOperation.fromTraceLine("JUMP,T1,Oslo,L1,5"));
+    assertNull(TraceOperation.fromTraceLine("ADD,T1,Oslo,L1,five"));
+  }
+
+  /**
+   * Positive test that running a day through the command pipeline leaves the register as
+   * running it with the lock does.
+   */
+  @Test
+  void testRunThroughPipeline() {
+    StationDayGenerator generator = new StationDayGenerator();
+    generator.setDeparturesPerHour(5);
+    generator.setReadsPerMinute(2);
+    List<TraceOperation> trace = generator.generateDay();
+    TrainDepartureRegister locked = new TrainDepartureRegister();
+    TrainDepartureRegister pipelined = new TrainDepartureRegister();
+
+    new LoadGenerator(locked).run(trace, 1, 0);
+    LoadReport report = new LoadGenerator(pipelined, true).run(trace, 1, 0);
+
+    assertEquals(trace.size(), report.getOperationCount());
+    assertEquals(locked.getSnapshot().size(), pipelined.getSnapshot().size());
+  }
+}
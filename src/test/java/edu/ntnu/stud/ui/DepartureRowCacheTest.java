@@ -0,0 +1,93 @@
+package edu.ntnu.stud.ui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.nio.charset.Charset;
+import java.time.LocalTime;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the departure row cache class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that an unchanged departure reuses its row.
+ *     Test that a delayed departure gets a new row.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test that rows of removed departures and old service days are dropped.
+ *   </li>
+ * </ul>
+ */
+class DepartureRowCacheTest {
+  TrainDepartureRegister register;
+  DepartureRowCache rowCache;
+
+  /**
+   * Creates a register with two departures and a cache that listens to it.
+   */
+  @BeforeEach
+  void setupTestEnvironment() {
+    register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1", "R10"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 30), "Bergen", "R2", "R20"));
+    rowCache = new DepartureRowCache(UserInterface::formatDepartureInfo);
+    register.addListener(rowCache);
+  }
+
+  /**
+   * Positive test that showing an unchanged departure again reuses the same row.
+   */
+  @Test
+  void testUnchangedDepartureIsReused() {
+    TrainDeparture departure = register.getDepartureFromId("R1");
+    byte[] first = rowCache.getRow(departure);
+    byte[] second = rowCache.getRow(departure);
+
+    assertSame(first, second);
+    assertEquals(1, rowCache.getHits());
+    assertEquals(1, rowCache.getMisses());
+    assertEquals(UserInterface.formatDepartureInfo(departure) + System.lineSeparator(),
+        new String(first, Charset.defaultCharset()));
+  }
+
+  /**
+   * Positive test that a departure gets a new row after its delay and track have changed.
+   */
+  @Test
+  void testChangedDepartureIsFormattedAgain() {
+    TrainDeparture departure = register.getDepartureFromId("R1");
+    byte[] first = rowCache.getRow(departure);
+
+    register.updateDelay("R1", LocalTime.of(0, 5));
+    byte[] delayed = rowCache.getRow(departure);
+    assertNotSame(first, delayed);
+    assertTrue(new String(delayed, Charset.defaultCharset()).contains("Delay: 00:05"));
+
+    register.updateTrack("R1", 2);
+    byte[] tracked = rowCache.getRow(departure);
+    assertTrue(new String(tracked, Charset.defaultCharset()).contains("Track: 2"));
+    assertEquals(3, rowCache.getMisses());
+  }
+
+  /**
+   * Negative test that removed departures and a new service day leave no rows behind.
+   */
+  @Test
+  void testRowsAreDropped() {
+    rowCache.getRow(register.getDepartureFromId("R1"));
+    rowCache.getRow(register.getDepartureFromId("R2"));
+    assertEquals(2, rowCache.size());
+
+    register.deleteDeparture(register.getDepartureFromId("R1"));
+    assertEquals(1, rowCache.size());
+
+    register.startServiceDay(1);
+    assertEquals(0, rowCache.size());
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ntnu.stud.ui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import edu.ntnu.stud.entity.Clock;
+import edu.ntnu.stud.entity.TrainDeparture;
+import edu.ntnu.stud.logic.TrainDepartureRegister;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the live board class.
+ * The following must be tested:
+ * <ul>
+ *   <li>
+ *     Positive test:
+ *     Test that the first frame draws the whole board.
+ *   </li>
+ *   <li>
+ *     Positive test:
+ *     Test that later frames only write the cells that changed.
+ *   </li>
+ *   <li>
+ *     Negative test:
+ *     Test a board that is too small, starting it twice and closing it without starting it.
+ *   </li>
+ * </ul>
+ */
+class LiveBoardTest {
+
+  private static TrainDepartureRegister createRegister() {
+    TrainDepartureRegister register = new TrainDepartureRegister();
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 0), "Oslo", "R1", "R10"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(7, 30), "Bergen", "B2", "F4"));
+    register.addDeparture(new TrainDeparture(LocalTime.of(8, 0), "Trondheim", "T3", "L2"));
+    return register;
+  }
+
+  /**
+   * Positive test that the first frame clears the terminal and draws every departure.
+   */
+  @Test
+  void testFirstFrameDrawsBoard() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LiveBoard board = new LiveBoard(createRegister(), new Clock(), "Departures", out, 80, 24);
+
+    assertTrue(board.paintFrame() > 0);
+    String frame = out.toString();
+    assertTrue(frame.startsWith("\u001b[?25l\u001b[2J"));
+    assertTrue(frame.contains("Departures"));
+    assertTrue(frame.contains("R1"));
+    assertTrue(frame.contains("Bergen"));
+    assertTrue(frame.contains("T3"));
+    assertEquals(1, board.getFrameCount());
+    assertEquals(out.size(), board.getBytesWritten());
+  }
+
+  /**
+   * Positive test that an unchanged frame writes nothing, and that a delay only repaints the
+   * cells of its own row.
+   */
+  @Test
+  void testOnlyChangedCellsAreWritten() {
+    TrainDepartureRegister register = createRegister();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LiveBoard board = new LiveBoard(register, new Clock(), "Departures", out, 80, 24);
+    int firstFrame = board.paintFrame();
+
+    assertEquals(0, board.paintFrame());
+
+    out.reset();
+    assertTrue(register.updateDelay("B2", LocalTime.of(0, 5)));
+    int written = board.paintFrame();
+    assertTrue(written > 0);
+    assertTrue(written < firstFrame / 10);
+    // The departure to Bergen is the second departure, on the fifth row of the terminal.
+    assertTrue(out.toString().startsWith("\u001b[5;"));
+    assertFalse(out.toString().contains("\u001b[4;"));
+    assertFalse(out.toString().contains("\u001b[6;"));
+    assertTrue(out.toString().contains("00:05"));
+    assertEquals(3, board.getFrameCount());
+  }
+
+  /**
+   * Negative test that a board too small for the departures, starting a board twice and closing
+   * a board that was never started do not fail.
+   */
+  @Test
+  void testSmallBoardAndStartTwice() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LiveBoard board = new LiveBoard(createRegister(), new Clock(), null, out, 1, 1);
+    assertTrue(board.paintFrame() > 0);
+    assertTrue(out.toString().contains("more departures"));
+
+    LiveBoard unstarted = new LiveBoard(createRegister(), new Clock(), "Departures",
+        new ByteArrayOutputStream(), 80, 24);
+    unstarted.close();
+    assertEquals(0, unstarted.getFrameCount());
+
+    try (LiveBoard started = new LiveBoard(createRegister(), new Clock(), "Departures",
+        new ByteArrayOutputStream(), 80, 24)) {
+      assertTrue(started.start(LiveBoard.DEFAULT_FRAME_INTERVAL_MILLIS));
+      assertFalse(started.start(LiveBoard.DEFAULT_FRAME_INTERVAL_MILLIS));
+    }
+  }
+}